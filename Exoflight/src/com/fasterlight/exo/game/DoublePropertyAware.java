@@ -0,0 +1,39 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.game;
+
+/**
+  * Implemented by objects that can return some of their properties
+  * as plain doubles, without the reflection and boxing of getProp().
+  * PropertyPath looks up the index for a key once, then calls
+  * getDoubleProp() from then on.
+  */
+public interface DoublePropertyAware
+{
+	/**
+	  * Returns an index for 'key' to pass to getDoubleProp(),
+	  * or -1 if it isn't a double property.
+	  */
+	public int getDoublePropIndex(String key);
+
+	/**
+	  * Returns the same value as getProp() would for the key.
+	  */
+	public double getDoubleProp(int index);
+}
@@ -0,0 +1,312 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.game;
+
+import java.util.*;
+
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.ship.SpaceShip;
+import com.fasterlight.vecmath.Vector3d;
+
+/**
+  * An immutable picture of the universe at a single tick,
+  * captured by the simulation thread at the end of a step
+  * and read by the render thread without any locking.
+  * Positions and velocities are stored relative to each
+  * thing's parent, so relative queries between nearby things
+  * don't lose precision.
+  * Accessors return null when a thing isn't in the snapshot;
+  * callers should fall back to the live objects at getTime().
+  */
+public class FrameSnapshot
+{
+	static final int MAX_DEPTH = 8;
+
+	private final long time;
+	private final Map entries;
+	// catalog satellites that aren't real things yet;
+	// x,y,z triples relative to the catalog's planet, NaN if real
+	private final SatelliteCatalog satcatalog;
+	private final double[] satpos;
+	// same for asteroids, relative to the catalog's parent
+	private final AsteroidCatalog astcatalog;
+	private final double[] astpos;
+
+	static class Entry
+	{
+		UniverseThing parent;
+		Vector3d pos, vel;
+		Orientation ort;
+		TelemetryValues telem;
+	}
+
+	/**
+	  * The handful of telemetry values the views read every frame.
+	  */
+	public static class TelemetryValues
+	{
+		double alt, altagl, cendist;
+		double apoapsis, periapsis, eccent;
+		boolean hasconic;
+		Vector3d cendistvec;
+		Orientation ortfixed;
+
+		TelemetryValues(Telemetry telem)
+		{
+			alt = telem.getALT();
+			altagl = telem.getALTAGL();
+			cendist = telem.getCENDIST();
+			cendistvec = telem.getCenDistVec();
+			hasconic = telem.getConic() != null;
+			apoapsis = telem.getAPOAPSIS();
+			periapsis = telem.getPERIAPSIS();
+			eccent = telem.getECCENT();
+			ortfixed = telem.getOrientationFixed();
+		}
+		public double getALT()
+		{
+			return alt;
+		}
+		public double getALTAGL()
+		{
+			return altagl;
+		}
+		public double getCENDIST()
+		{
+			return cendist;
+		}
+		public Vector3d getCenDistVec()
+		{
+			return new Vector3d(cendistvec);
+		}
+		public boolean hasConic()
+		{
+			return hasconic;
+		}
+		public double getAPOAPSIS()
+		{
+			return apoapsis;
+		}
+		public double getPERIAPSIS()
+		{
+			return periapsis;
+		}
+		public double getECCENT()
+		{
+			return eccent;
+		}
+		public Orientation getOrientationFixed()
+		{
+			return new Orientation(ortfixed);
+		}
+	}
+
+	//
+
+	private FrameSnapshot(long time, Map entries,
+		SatelliteCatalog satcatalog, double[] satpos,
+		AsteroidCatalog astcatalog, double[] astpos)
+	{
+		this.time = time;
+		this.entries = entries;
+		this.satcatalog = satcatalog;
+		this.satpos = satpos;
+		this.astcatalog = astcatalog;
+		this.astpos = astpos;
+	}
+
+	/**
+	  * Captures the current state of all things in the game.
+	  * Must be called by the thread that owns the game.
+	  */
+	public static FrameSnapshot capture(SpaceGame game)
+	{
+		long t = game.time();
+		Universe u = game.getUniverse();
+		Map entries = new HashMap();
+
+		Entry root = new Entry();
+		root.pos = new Vector3d();
+		root.vel = new Vector3d();
+		entries.put(u, root);
+
+		Iterator it = u.getThingList().iterator();
+		while (it.hasNext())
+		{
+			UniverseThing ut = (UniverseThing)it.next();
+			if (ut.getTrajectory() == null)
+				continue;
+			Entry e = new Entry();
+			e.parent = ut.getParent();
+			e.pos = ut.getPosition(e.parent, t);
+			e.vel = ut.getVelocity(e.parent, t);
+			e.ort = ut.getOrientation(t);
+			if (ut instanceof SpaceShip && e.parent instanceof Planet)
+				e.telem = new TelemetryValues(ut.getTelemetry());
+			entries.put(ut, e);
+		}
+
+		SatelliteCatalog cat = game.getRequestedSatellites();
+		double[] satpos = null;
+		if (cat != null)
+		{
+			satpos = new double[cat.size()*3];
+			cat.propagate(t, satpos, null);
+			for (int i=0; i<cat.size(); i++)
+			{
+				if (game.isMaterialized(i))
+					satpos[i*3] = satpos[i*3+1] = satpos[i*3+2] = Double.NaN;
+			}
+		}
+
+		AsteroidCatalog astcat = null;
+		double[] astpos = null;
+		if (game.isAsteroidsRequested())
+		{
+			astcat = game.getAsteroidCatalog();
+			astcat.update(t);
+			astpos = new double[astcat.size()*3];
+			astcat.copyPositions(astpos);
+		}
+		return new FrameSnapshot(t, entries, cat, satpos, astcat, astpos);
+	}
+
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	  * Returns the satellite catalog whose positions are in
+	  * getSatellitePositions(), or null if nobody asked for it
+	  * (see SpaceGame.requestSatellites()).
+	  */
+	public SatelliteCatalog getSatelliteCatalog()
+	{
+		return satcatalog;
+	}
+
+	/**
+	  * Returns the positions of the catalog satellites, as x,y,z
+	  * triples relative to the catalog's planet.  Satellites that
+	  * have been made into real things are NaN.  Don't modify.
+	  */
+	public double[] getSatellitePositions()
+	{
+		return satpos;
+	}
+
+	/**
+	  * Returns the asteroid catalog whose positions are in
+	  * getAsteroidPositions(), or null if nobody asked for it
+	  * (see SpaceGame.requestAsteroids()).
+	  */
+	public AsteroidCatalog getAsteroidCatalog()
+	{
+		return astcatalog;
+	}
+
+	/**
+	  * Returns the positions of the asteroids, as x,y,z triples
+	  * relative to the catalog's parent.  Promoted ones are NaN.
+	  * Don't modify.
+	  */
+	public double[] getAsteroidPositions()
+	{
+		return astpos;
+	}
+
+	public boolean contains(UniverseThing thing)
+	{
+		return entries.containsKey(thing);
+	}
+
+	/**
+	  * Returns the position of 'thing' relative to 'ref'
+	  * (null = the universe origin), or null if either
+	  * isn't in the snapshot.
+	  */
+	public Vector3d getPosition(UniverseThing thing, UniverseThing ref)
+	{
+		return getRelative(thing, ref, false);
+	}
+
+	public Vector3d getVelocity(UniverseThing thing, UniverseThing ref)
+	{
+		return getRelative(thing, ref, true);
+	}
+
+	public Orientation getOrientation(UniverseThing thing)
+	{
+		Entry e = (Entry)entries.get(thing);
+		return (e != null && e.ort != null) ? new Orientation(e.ort) : null;
+	}
+
+	public TelemetryValues getTelemetry(UniverseThing thing)
+	{
+		Entry e = (Entry)entries.get(thing);
+		return (e != null) ? e.telem : null;
+	}
+
+	private Vector3d getRelative(UniverseThing thing, UniverseThing ref, boolean vel)
+	{
+		// walk up from 'ref', remembering its offset from each ancestor
+		UniverseThing[] anc = new UniverseThing[MAX_DEPTH];
+		Vector3d[] offs = new Vector3d[MAX_DEPTH];
+		int n = 0;
+		Vector3d off = new Vector3d();
+		UniverseThing ut = ref;
+		while (n < MAX_DEPTH)
+		{
+			anc[n] = ut;
+			offs[n] = new Vector3d(off);
+			n++;
+			if (ut == null)
+				break;
+			Entry e = (Entry)entries.get(ut);
+			if (e == null)
+				return null;
+			off.add(vel ? e.vel : e.pos);
+			ut = e.parent;
+		}
+
+		// walk up from 'thing' until we hit one of those ancestors
+		Vector3d r = new Vector3d();
+		ut = thing;
+		for (int depth=0; depth<MAX_DEPTH; depth++)
+		{
+			for (int i=0; i<n; i++)
+			{
+				if (anc[i] == ut)
+				{
+					r.sub(offs[i]);
+					return r;
+				}
+			}
+			if (ut == null)
+				return null;
+			Entry e = (Entry)entries.get(ut);
+			if (e == null)
+				return null;
+			r.add(vel ? e.vel : e.pos);
+			ut = e.parent;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,118 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.game;
+
+import com.fasterlight.spif.*;
+
+/**
+  * Keeps running timing statistics for a loop
+  * (simulation steps or rendered frames).
+  * Updated by one thread, read by others.
+  */
+public class LoopMetrics
+implements PropertyAware
+{
+	private String name;
+	private volatile long count;
+	private volatile float avgmsec;
+	private volatile long maxmsec;
+	private volatile long lastmsec;
+
+	// weight of each new sample in the running average
+	static final float SMOOTHING = 0.05f;
+
+	public LoopMetrics(String name)
+	{
+		this.name = name;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public void record(long msec)
+	{
+		if (count == 0)
+			avgmsec = msec;
+		else
+			avgmsec += (msec - avgmsec) * SMOOTHING;
+		if (msec > maxmsec)
+			maxmsec = msec;
+		lastmsec = msec;
+		count++;
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public float getAverage()
+	{
+		return avgmsec;
+	}
+
+	public long getMax()
+	{
+		return maxmsec;
+	}
+
+	public long getLast()
+	{
+		return lastmsec;
+	}
+
+	public void reset()
+	{
+		count = 0;
+		avgmsec = 0;
+		maxmsec = 0;
+		lastmsec = 0;
+	}
+
+	public String toString()
+	{
+		return name + ": " + count + " loops, avg " +
+			(Math.round(avgmsec*10)/10f) + " ms, max " + maxmsec + " ms";
+	}
+
+	// PROPERTIES
+
+	private static PropertyHelper prophelp = new PropertyHelper(LoopMetrics.class);
+
+	static {
+		prophelp.registerGet("name", "getName");
+		prophelp.registerGet("count", "getCount");
+		prophelp.registerGet("average", "getAverage");
+		prophelp.registerGet("max", "getMax");
+		prophelp.registerGet("last", "getLast");
+	}
+
+	public Object getProp(String key)
+	{
+		return prophelp.getProp(this, key);
+	}
+
+	public void setProp(String key, Object value)
+	{
+		prophelp.setProp(this, key, value);
+	}
+
+}
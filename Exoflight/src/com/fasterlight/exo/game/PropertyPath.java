@@ -0,0 +1,241 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.game;
+
+import java.util.*;
+
+import com.fasterlight.spif.*;
+
+/**
+  * A dotted property path (like "ship.telemetry.alt") that is
+  * split up once, instead of every time it's evaluated.
+  * Paths are shared through compile(), and so are their prefixes, so
+  * "ship.telemetry.alt" and "ship.telemetry.vertvel" both go through
+  * the same "ship.telemetry" object.
+  * When evaluated with a stamp (usually the game time or a frame #),
+  * each prefix remembers the object it found for that root and stamp,
+  * so a panel full of labels resolves "ship.telemetry" just once.
+  * The leaf is always read fresh.  Anything that can swap out an
+  * intermediate object without changing the stamp (like picking another
+  * ship) should call invalidateAll().
+  * Paths with anything but plain keys ($, # and so on) are just
+  * handed to PropertyEvaluator.
+  */
+public class PropertyPath
+{
+	private String path;
+	private PropertyPath prefix; // null if only one key
+	private String leaf;
+	private boolean plain;
+
+	private volatile Cached cached;
+
+	private volatile DoubleLeaf dblleaf;
+
+	static class Cached
+	{
+		Object root;
+		long stamp;
+		int generation;
+		Object value;
+	}
+
+	// index of our leaf in a DoublePropertyAware class
+	static class DoubleLeaf
+	{
+		Class clazz;
+		int index;
+	}
+
+	private static volatile int generation;
+	private static Map paths = new HashMap();
+
+	//
+
+	/**
+	  * Returns the shared PropertyPath for 'path'.
+	  */
+	public static PropertyPath compile(String path)
+	{
+		synchronized (paths)
+		{
+			PropertyPath pp = (PropertyPath)paths.get(path);
+			if (pp == null)
+			{
+				pp = new PropertyPath(path);
+				paths.put(path, pp);
+			}
+			return pp;
+		}
+	}
+
+	/**
+	  * Forgets all cached intermediate objects.
+	  */
+	public static synchronized void invalidateAll()
+	{
+		generation++;
+	}
+
+	private PropertyPath(String path)
+	{
+		this.path = path;
+		this.plain = isPlain(path);
+		if (plain)
+		{
+			int i = path.lastIndexOf('.');
+			if (i > 0)
+			{
+				prefix = compile(path.substring(0, i));
+				leaf = path.substring(i+1);
+			} else
+				leaf = path;
+		}
+	}
+
+	private static boolean isPlain(String path)
+	{
+		if (path.length() == 0)
+			return false;
+		boolean dot = true;
+		for (int i=0; i<path.length(); i++)
+		{
+			char ch = path.charAt(i);
+			if (ch == '.')
+			{
+				if (dot)
+					return false;
+				dot = true;
+			} else if (Character.isLetterOrDigit(ch) || ch == '_')
+				dot = false;
+			else
+				return false;
+		}
+		return !dot;
+	}
+
+	public String getPath()
+	{
+		return path;
+	}
+
+	public String toString()
+	{
+		return path;
+	}
+
+	//
+
+	// returns the object our leaf belongs to, or null
+	// if we have to go the slow way
+	private Object getParent(Object root, long stamp, boolean usecache)
+	{
+		if (prefix == null)
+			return (root instanceof PropertyAware) ? root : null;
+		Object o = usecache ? prefix.getCached(root, stamp) : prefix.get(root);
+		return (o instanceof PropertyAware) ? o : null;
+	}
+
+	private Object getCached(Object root, long stamp)
+	{
+		Cached c = cached;
+		int gen = generation;
+		if (c != null && c.root == root && c.stamp == stamp && c.generation == gen)
+			return c.value;
+		c = new Cached();
+		c.root = root;
+		c.stamp = stamp;
+		c.generation = gen;
+		c.value = get(root, stamp);
+		cached = c;
+		return c.value;
+	}
+
+	/**
+	  * Evaluates the path without any caching.
+	  */
+	public Object get(Object root)
+	{
+		if (!plain)
+			return PropertyEvaluator.get(root, path);
+		Object parent = getParent(root, 0, false);
+		if (parent == null)
+			return PropertyEvaluator.get(root, path);
+		return ((PropertyAware)parent).getProp(leaf);
+	}
+
+	/**
+	  * Evaluates the path, using the intermediate objects found
+	  * the last time it (or a path with the same prefix) was
+	  * evaluated with the same root and stamp.
+	  */
+	public Object get(Object root, long stamp)
+	{
+		if (!plain)
+			return PropertyEvaluator.get(root, path);
+		Object parent = getParent(root, stamp, true);
+		if (parent == null)
+			return PropertyEvaluator.get(root, path);
+		return ((PropertyAware)parent).getProp(leaf);
+	}
+
+	private int getDoubleIndex(Object parent)
+	{
+		if (!(parent instanceof DoublePropertyAware))
+			return -1;
+		DoubleLeaf dl = dblleaf;
+		if (dl == null || dl.clazz != parent.getClass())
+		{
+			dl = new DoubleLeaf();
+			dl.clazz = parent.getClass();
+			dl.index = ((DoublePropertyAware)parent).getDoublePropIndex(leaf);
+			dblleaf = dl;
+		}
+		return dl.index;
+	}
+
+	/**
+	  * Returns true if getDouble() can read the value straight from
+	  * a DoublePropertyAware object for this root and stamp.
+	  */
+	public boolean hasDoubleAccessor(Object root, long stamp)
+	{
+		if (!plain)
+			return false;
+		return getDoubleIndex(getParent(root, stamp, true)) >= 0;
+	}
+
+	/**
+	  * Like get(root, stamp), but returns a double.
+	  * Returns 'nullvalue' if the property is null.
+	  */
+	public double getDouble(Object root, long stamp, double nullvalue)
+	{
+		if (plain)
+		{
+			Object parent = getParent(root, stamp, true);
+			int i = getDoubleIndex(parent);
+			if (i >= 0)
+				return ((DoublePropertyAware)parent).getDoubleProp(i);
+		}
+		Object o = get(root, stamp);
+		return (o != null) ? PropertyUtil.toDouble(o) : nullvalue;
+	}
+
+}
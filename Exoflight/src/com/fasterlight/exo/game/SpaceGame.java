@@ -22,7 +22,7 @@ import java.io.*;
 import java.util.*;
 
 import com.fasterlight.exo.orbit.*;
-import com.fasterlight.exo.orbit.traj.OrbitTrajectory;
+import com.fasterlight.exo.orbit.traj.*;
 import com.fasterlight.exo.seq.*;
 import com.fasterlight.exo.ship.*;
 import com.fasterlight.exo.strategy.*;
@@ -56,6 +56,29 @@ implements Constants, PropertyAware
 	private String last_message = "";
 	private List messages = new ArrayList();
 
+	// last state published by the simulation thread,
+	// and whether a render thread has taken it yet
+	private volatile FrameSnapshot snapshot;
+	private volatile boolean snapshot_taken = true;
+	private LoopMetrics sim_metrics = new LoopMetrics("sim");
+	private LoopMetrics render_metrics = new LoopMetrics("render");
+
+	// satellites that aren't real things until someone looks at them
+	private transient SatelliteCatalog satcatalog;
+	private transient Map satthings;
+	private transient AsteroidCatalog astcatalog;
+	private transient volatile boolean ast_requested;
+	private transient volatile boolean sat_requested;
+
+	// for plotting telemetry
+	private transient TelemetryRecorder recorder;
+
+	// per-game helpers; they go away with the game.
+	// only touched from the game thread, so no locking
+	private CapabilityScheduler cap_scheduler; // saved, but null in older games
+	private transient PropagationScheduler prop_scheduler;
+	private transient PropagationLOD prop_lod;
+
 	public static final int MSG_HMS_COLOR = 0xffdddddd; // white
 	public static final int MSG_INFO_COLOR = 0xffffff3f; // cyan
 	public static final int MSG_WARNING_COLOR = 0xffff3fff; // cyan
@@ -158,38 +181,185 @@ implements Constants, PropertyAware
 		bases = Collections.unmodifiableList(bases);
 	}
 
+	/**
+	  * Loads the Earth satellite catalog.  The satellites are drawn
+	  * from the catalog, and become real things when they are
+	  * selected or targeted (see materializeSatellite()).
+	  * Not called by start(); see requestSatellites().
+	  */
 	public void setupEarthSats()
 	{
+		loadSatelliteCatalog("orbits/earth-tles.dat", "Earth");
+	}
+
+	/**
+	  * Reads a TLE file into the satellite catalog, replacing the
+	  * old one and removing the satellites made from it.  Nothing
+	  * is added to the universe until materializeSatellite() is called.
+	  */
+	public SatelliteCatalog loadSatelliteCatalog(String resource, String planetname)
+	{
+		if (satthings != null)
+		{
+			Iterator it = satthings.values().iterator();
+			while (it.hasNext())
+			{
+				SpaceShip thing = (SpaceShip)it.next();
+				if (thing.getTrajectory() != null)
+					thing.setTrajectory(null);
+			}
+		}
+		satcatalog = null;
+		satthings = null;
+		SatelliteCatalog cat = new SatelliteCatalog((Planet)getBody(planetname));
+		try {
+			InputStream in = ClassLoader.getSystemResourceAsStream(resource);
+			if (in == null)
+				throw new IOException("Could not find " + resource);
+			try {
+				cat.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException ioe)
+		{
+			ioe.printStackTrace();
+			throw new RuntimeException(ioe.toString());
+		}
+		satcatalog = cat;
+		satthings = new HashMap();
+		return cat;
+	}
+
+	public SatelliteCatalog getSatelliteCatalog()
+	{
+		return satcatalog;
+	}
+
+	/**
+	  * Makes a SpaceShip for entry 'i' of the satellite catalog,
+	  * or returns the one that was already made.
+	  * Returns null if there is no such entry.
+	  * This adds a thing to the universe, so only call it from the
+	  * game thread (or with the simulation lock held).
+	  */
+	public SpaceShip materializeSatellite(int i)
+	{
+		if (satcatalog == null || i < 0 || i >= satcatalog.size())
+			return null;
+		Integer key = new Integer(i);
+		SpaceShip thing = (SpaceShip)satthings.get(key);
+		// make a new one if the old one was removed
+		if (thing != null && thing.getTrajectory() != null)
+			return thing;
+
+		Planet parent = satcatalog.getPlanet();
+		OrbitTrajectory traj = new OrbitTrajectory(parent, satcatalog.getConic(i));
+		traj.setSecularJ2(satcatalog.getSecularJ2());
+		// goes to Cowell if anyone takes an interest
+		traj.setLazy(true);
+
+		Structure struct = new Structure(this);
+		struct.addModule(new Module(this, "Comm Satellite"));
+
+		thing = new SpaceShip(struct);
+		thing.setName(satcatalog.getName(i));
+		thing.setTrajectory(traj);
+		satthings.put(key, thing);
+		return thing;
+	}
+
+	/**
+	  * Same as materializeSatellite(int), by name.
+	  */
+	public SpaceShip materializeSatellite(String name)
+	{
+		if (satcatalog == null)
+			return null;
+		return materializeSatellite(satcatalog.indexOf(name));
+	}
+
+	/**
+	  * Asks the simulation thread to load the Earth satellite catalog
+	  * (if none is loaded) and put the satellites in each snapshot.
+	  * Called by views that draw them.
+	  */
+	public void requestSatellites()
+	{
+		sat_requested = true;
+	}
+
+	/**
+	  * Returns the satellite catalog to put in a snapshot,
+	  * or null if no view has asked for it.
+	  */
+	SatelliteCatalog getRequestedSatellites()
+	{
+		if (!sat_requested)
+			return null;
+		if (satcatalog == null)
+			setupEarthSats();
+		return satcatalog;
+	}
+
+	/**
+	  * Returns true if entry 'i' of the satellite catalog
+	  * has been made into a SpaceShip.
+	  */
+	boolean isMaterialized(int i)
+	{
+		if (satthings == null)
+			return false;
+		UniverseThing thing = (UniverseThing)satthings.get(new Integer(i));
+		return thing != null && thing.getTrajectory() != null;
+	}
+
+	/**
+	  * Returns the catalog of minor bodies around the Sun,
+	  * reading orbits/astorb.dat the first time.
+	  */
+	public synchronized AsteroidCatalog getAsteroidCatalog()
+	{
+		if (astcatalog == null)
+			astcatalog = loadAsteroidCatalog("orbits/astorb.dat", "Sun");
+		return astcatalog;
+	}
+
+	/**
+	  * Asks the simulation thread to load the asteroid catalog
+	  * and put the asteroids in each snapshot.
+	  * Called by views that draw them.
+	  */
+	public void requestAsteroids()
+	{
+		ast_requested = true;
+	}
+
+	boolean isAsteroidsRequested()
+	{
+		return ast_requested;
+	}
+
+	public AsteroidCatalog loadAsteroidCatalog(String resource, String parentname)
+	{
+		AsteroidCatalog cat = new AsteroidCatalog(getBody(parentname));
+		cat.setScheduler(PropagationScheduler.getScheduler(this));
 		try {
-		BufferedReader in;
-		String line;
-      // read some TLE's
-      in = new BufferedReader(new InputStreamReader(
-      	ClassLoader.getSystemResourceAsStream("orbits/earth-tles.dat")));
-      while ((line=in.readLine()) != null)
-      {
-      	String name = line.trim();
-      	String tle1 = in.readLine();
-      	String tle2 = in.readLine();
-      	UniverseThing parent = getBody("Earth");
-      	KeplerianElements params = new KeplerianElements(tle1, tle2, parent.getMass()*Constants.GRAV_CONST_KM);
-      	Conic o = new Conic(params);
-      	o = ((Planet)parent).ijk2xyz(o);
-      	Trajectory traj = new OrbitTrajectory(parent, o);
-
-      	Structure struct = new Structure(this);
-      	struct.addModule(new Module(this, "Comm Satellite"));
-
-      	SpaceShip thing = new SpaceShip(struct);
-      	thing.setName(name);
-      	thing.setTrajectory(traj);
-      }
-      in.close();
-      } catch (IOException ioe)
-      {
-      	ioe.printStackTrace();
-      	throw new RuntimeException(ioe.toString());
-      }
+			InputStream in = ClassLoader.getSystemResourceAsStream(resource);
+			if (in == null)
+				throw new IOException("Could not find " + resource);
+			try {
+				cat.load(in);
+			} finally {
+				in.close();
+			}
+		} catch (IOException ioe)
+		{
+			ioe.printStackTrace();
+			throw new RuntimeException(ioe.toString());
+		}
+		astcatalog = cat;
+		return cat;
 	}
 
 	public UniverseThing getBody(String name)
@@ -327,6 +497,89 @@ todo
 		return grg;
 	}
 
+	public CapabilityScheduler getCapabilityScheduler()
+	{
+		if (cap_scheduler == null)
+			cap_scheduler = new CapabilityScheduler(this);
+		return cap_scheduler;
+	}
+
+	public PropagationScheduler getPropagationScheduler()
+	{
+		if (prop_scheduler == null)
+			prop_scheduler = new PropagationScheduler(this);
+		return prop_scheduler;
+	}
+
+	public PropagationLOD getPropagationLOD()
+	{
+		if (prop_lod == null)
+			prop_lod = new PropagationLOD(this);
+		return prop_lod;
+	}
+
+	/**
+	  * Captures the current state of the universe so that
+	  * a render thread can read it without touching live objects.
+	  * Called by the simulation thread after each step, but only
+	  * captures once the last snapshot has been taken, so the
+	  * universe is copied at most once per frame.
+	  */
+	public void publishSnapshot()
+	{
+		FrameSnapshot snap = snapshot;
+		if (snap != null && (!snapshot_taken || snap.getTime() == time()))
+			return;
+		snapshot_taken = false;
+		snapshot = FrameSnapshot.capture(this);
+	}
+
+	/**
+	  * Returns the last published snapshot, or null if
+	  * nobody is publishing them.
+	  */
+	public FrameSnapshot getSnapshot()
+	{
+		return snapshot;
+	}
+
+	/**
+	  * Returns the last published snapshot, and lets the
+	  * simulation thread publish a new one.
+	  * Called by the render thread at the start of each frame.
+	  */
+	public FrameSnapshot takeSnapshot()
+	{
+		snapshot_taken = true;
+		return snapshot;
+	}
+
+	public LoopMetrics getSimMetrics()
+	{
+		return sim_metrics;
+	}
+
+	public LoopMetrics getRenderMetrics()
+	{
+		return render_metrics;
+	}
+
+	public TelemetryRecorder getTelemetryRecorder()
+	{
+		return recorder;
+	}
+
+	/**
+	  * Sets the recorder the plots read from.
+	  * Stops the old one (but not its streaming).
+	  */
+	public void setTelemetryRecorder(TelemetryRecorder recorder)
+	{
+		if (this.recorder != null && this.recorder != recorder)
+			this.recorder.stop();
+		this.recorder = recorder;
+	}
+
 	public void message(Object o)
 	{
 		if (o == null)
@@ -425,6 +678,9 @@ todo
 		prophelp.registerGet("ships", "getShips");
 		prophelp.registerGet("planets", "getPlanets");
 		prophelp.registerGet("governor", "getGovernor");
+		prophelp.registerGet("simmetrics", "getSimMetrics");
+		prophelp.registerGet("rendermetrics", "getRenderMetrics");
+		prophelp.registerGet("recorder", "getTelemetryRecorder");
 		prophelp.registerSet("message", "message", Object.class);
 		prophelp.registerSet("runsequence", "runSequence", String.class);
 		prophelp.registerGet("lastmessage", "getLastMessage");
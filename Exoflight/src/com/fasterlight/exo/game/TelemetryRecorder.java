@@ -0,0 +1,627 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.game;
+
+import java.io.*;
+import java.util.LinkedList;
+
+import com.fasterlight.exo.orbit.Constants;
+import com.fasterlight.game.*;
+import com.fasterlight.spif.*;
+
+/**
+  * Samples a set of channels (property paths like "ship.telemetry.alt",
+  * relative to some root object) at a fixed rate of game time.
+  * Each channel has its own double[] ring buffer, with one shared
+  * array of sample times, so nothing gets boxed when the channel
+  * is DoublePropertyAware (see PropertyPath.getDouble()).
+  * Samples can be queried by time window (for plots), and can be
+  * streamed to a binary or CSV file by a background thread.
+  * Sampling is done by the simulation thread; queries, and
+  * starting and stopping the stream, can come from any thread.
+  */
+public class TelemetryRecorder
+implements PropertyAware
+{
+	static final int MAGIC = 0x544c4d31; // "TLM1"
+
+	private SpaceGame game;
+	private Object root;
+	private String[] channels;
+	private PropertyPath[] paths;
+	private long interval;
+
+	// ring buffer
+	private long[] times;
+	private double[][] values;
+	private int head; // next slot to write
+	private int size;
+	private long total;
+
+	private double[] row; // scratch, sim thread only
+	private SampleEvent event;
+
+	private StreamWriter writer;
+	private long dropped; // by the last writer
+
+	//
+
+	/**
+	  * Records 'channels' relative to 'root' at the rate and for the
+	  * length of time given in the settings.
+	  */
+	public TelemetryRecorder(SpaceGame game, Object root, String[] channels)
+	{
+		this(game, root, channels, RATE, (int)Math.ceil(RATE*SECONDS));
+	}
+
+	/**
+	  * Records 'channels' relative to 'root', 'rate' samples per second,
+	  * keeping the last 'capacity' samples.
+	  */
+	public TelemetryRecorder(SpaceGame game, Object root, String[] channels,
+		double rate, int capacity)
+	{
+		if (rate <= 0 || capacity <= 0)
+			throw new IllegalArgumentException("Bad rate or capacity");
+		this.game = game;
+		this.root = root;
+		this.channels = (String[])channels.clone();
+		this.paths = new PropertyPath[channels.length];
+		for (int i=0; i<channels.length; i++)
+			paths[i] = PropertyPath.compile(channels[i]);
+		this.interval = Math.max(1, Math.round(Constants.TICKS_PER_SEC/rate));
+		this.times = new long[capacity];
+		this.values = new double[channels.length][capacity];
+		this.row = new double[channels.length];
+	}
+
+	public Object getRoot()
+	{
+		return root;
+	}
+
+	public int getChannelCount()
+	{
+		return channels.length;
+	}
+
+	public String getChannel(int i)
+	{
+		return channels[i];
+	}
+
+	public int getChannelIndex(String channel)
+	{
+		for (int i=0; i<channels.length; i++)
+		{
+			if (channels[i].equals(channel))
+				return i;
+		}
+		return -1;
+	}
+
+	public int getCapacity()
+	{
+		return times.length;
+	}
+
+	/**
+	  * Returns the time between samples, in ticks.
+	  */
+	public long getInterval()
+	{
+		return interval;
+	}
+
+	public double getRate()
+	{
+		return Constants.TICKS_PER_SEC/(double)interval;
+	}
+
+	//
+
+	/**
+	  * Starts sampling at the current game time.
+	  */
+	public void start()
+	{
+		if (event != null)
+			return;
+		event = new SampleEvent(game.time());
+		game.postEvent(event);
+	}
+
+	public void stop()
+	{
+		if (event == null)
+			return;
+		game.cancelEvent(event);
+		event = null;
+	}
+
+	public boolean isStarted()
+	{
+		return event != null;
+	}
+
+	class SampleEvent
+	extends GameEvent
+	{
+		SampleEvent(long time)
+		{
+			super(time);
+		}
+		public void handleEvent(Game game)
+		{
+			if (event != this)
+				return;
+			sample(eventtime);
+			eventtime += interval;
+			game.postEvent(this);
+		}
+		public String toString()
+		{
+			return "Record " + channels.length + " channels";
+		}
+	}
+
+	/**
+	  * Takes a sample of all channels, stamped with time 't'.
+	  * Called by the sample event, but can be called directly
+	  * by whoever owns the game.
+	  */
+	public void sample(long t)
+	{
+		// evaluate outside the lock, so readers don't wait on us
+		for (int i=0; i<paths.length; i++)
+		{
+			try {
+				row[i] = paths[i].getDouble(root, t, Double.NaN);
+			} catch (PropertyNotFoundException pnfe) {
+				row[i] = Double.NaN;
+			}
+		}
+		synchronized (this)
+		{
+			int slot = head;
+			times[slot] = t;
+			for (int i=0; i<row.length; i++)
+				values[i][slot] = row[i];
+			head = (slot+1 == times.length) ? 0 : slot+1;
+			if (size < times.length)
+				size++;
+			total++;
+			// under the lock, so stopStreaming() can't
+			// finish the writer while we're adding to it
+			if (writer != null)
+				writer.add(t, row);
+		}
+	}
+
+	// QUERIES
+
+	/**
+	  * Returns the number of samples in the buffer.
+	  */
+	public synchronized int getSampleCount()
+	{
+		return size;
+	}
+
+	/**
+	  * Returns the number of samples taken since the recorder was made
+	  * (or cleared), including ones that have fallen out of the buffer.
+	  */
+	public synchronized long getTotalSamples()
+	{
+		return total;
+	}
+
+	public synchronized void clear()
+	{
+		head = 0;
+		size = 0;
+		total = 0;
+	}
+
+	// slot of the i'th oldest sample
+	private int slot(int i)
+	{
+		int s = head - size + i;
+		return (s < 0) ? s + times.length : s;
+	}
+
+	public synchronized long getOldestTime()
+	{
+		return (size > 0) ? times[slot(0)] : Long.MIN_VALUE;
+	}
+
+	public synchronized long getNewestTime()
+	{
+		return (size > 0) ? times[slot(size-1)] : Long.MIN_VALUE;
+	}
+
+	/**
+	  * Returns the latest value of a channel, or NaN if there isn't one.
+	  */
+	public synchronized double getLatest(int channel)
+	{
+		return (size > 0) ? values[channel][slot(size-1)] : Double.NaN;
+	}
+
+	// index (0 = oldest) of the first sample at or after 't'
+	private int findTime(long t)
+	{
+		int lo = 0;
+		int hi = size;
+		while (lo < hi)
+		{
+			int mid = (lo+hi) >>> 1;
+			if (times[slot(mid)] < t)
+				lo = mid+1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/**
+	  * Copies the samples of 'channel' with times in [t0,t1] into
+	  * 'vout' (and their times into 'tout', if it's not null),
+	  * oldest first.  Copies no more than will fit in 'vout'.
+	  * Returns the number of samples copied.
+	  */
+	public synchronized int getSamples(int channel, long t0, long t1,
+		long[] tout, double[] vout)
+	{
+		double[] v = values[channel];
+		int n = 0;
+		for (int i=findTime(t0); i<size && n<vout.length; i++)
+		{
+			int s = slot(i);
+			if (times[s] > t1)
+				break;
+			if (tout != null)
+				tout[n] = times[s];
+			vout[n++] = v[s];
+		}
+		return n;
+	}
+
+	/**
+	  * Finds the min and max of 'channel' over [t0,t1], ignoring NaNs.
+	  * Puts them in minmax[0] and minmax[1] (NaN if there aren't any),
+	  * and returns the number of samples that weren't NaN.
+	  */
+	public synchronized int getRange(int channel, long t0, long t1, double[] minmax)
+	{
+		double[] v = values[channel];
+		double min = Double.NaN;
+		double max = Double.NaN;
+		int n = 0;
+		for (int i=findTime(t0); i<size; i++)
+		{
+			int s = slot(i);
+			if (times[s] > t1)
+				break;
+			double x = v[s];
+			if (x != x)
+				continue;
+			if (n == 0 || x < min)
+				min = x;
+			if (n == 0 || x > max)
+				max = x;
+			n++;
+		}
+		minmax[0] = min;
+		minmax[1] = max;
+		return n;
+	}
+
+	// STREAMING
+
+	/**
+	  * Starts writing every sample to 'file', from a background thread.
+	  * Writes CSV if the file name ends in ".csv", binary otherwise.
+	  */
+	public void startStreaming(File file)
+	throws IOException
+	{
+		boolean csv = file.getName().toLowerCase().endsWith(".csv");
+		startStreaming(new FileOutputStream(file), csv);
+	}
+
+	/**
+	  * Starts writing every sample to 'out', from a background thread.
+	  * The binary format is the int MAGIC, the # of channels,
+	  * the channel names (as UTF), and the sample interval in ticks,
+	  * followed by one record per sample: the time in ticks (a long)
+	  * and a double per channel.
+	  * The CSV format has a header line, and time in seconds.
+	  * The stream is closed by stopStreaming().
+	  */
+	public synchronized void startStreaming(OutputStream out, boolean csv)
+	throws IOException
+	{
+		if (writer != null)
+			throw new IllegalStateException("Already streaming");
+		writer = new StreamWriter(out, csv);
+		writer.start();
+	}
+
+	/**
+	  * Writes out whatever samples are left, closes the stream,
+	  * and waits for the writer thread to finish.
+	  * Throws the first IOException the writer ran into, if any.
+	  */
+	public void stopStreaming()
+	throws IOException
+	{
+		StreamWriter w;
+		synchronized (this)
+		{
+			w = writer;
+			writer = null;
+			if (w != null)
+				dropped = w.getDropped();
+		}
+		if (w != null)
+			w.finish();
+	}
+
+	public synchronized boolean isStreaming()
+	{
+		return writer != null;
+	}
+
+	/**
+	  * Returns the # of samples left out of the stream because
+	  * the writer thread fell behind.  Each record has its time,
+	  * so readers can see where the gaps are.
+	  */
+	public synchronized long getDroppedSamples()
+	{
+		return (writer != null) ? writer.getDropped() : dropped;
+	}
+
+	/**
+	  * Gathers samples into blocks, and writes the full ones
+	  * out in its own thread.  If more than MAX_BLOCKS are waiting,
+	  * the newest block is thrown away instead of queued.
+	  */
+	class StreamWriter
+	implements Runnable
+	{
+		DataOutputStream dout;
+		PrintWriter pout;
+		Thread thread;
+		int nch = channels.length;
+
+		Block current;
+		LinkedList queue = new LinkedList();
+		LinkedList free = new LinkedList();
+		boolean done;
+		IOException error;
+		long dropped;
+
+		StreamWriter(OutputStream out, boolean csv)
+		throws IOException
+		{
+			out = new BufferedOutputStream(out);
+			if (csv)
+			{
+				pout = new PrintWriter(new OutputStreamWriter(out));
+				pout.print("time");
+				for (int i=0; i<nch; i++)
+				{
+					pout.print(',');
+					pout.print(channels[i]);
+				}
+				pout.println();
+			} else {
+				dout = new DataOutputStream(out);
+				dout.writeInt(MAGIC);
+				dout.writeInt(nch);
+				for (int i=0; i<nch; i++)
+					dout.writeUTF(channels[i]);
+				dout.writeLong(interval);
+			}
+			current = new Block();
+		}
+
+		void start()
+		{
+			thread = new Thread(this, "Telemetry writer");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		// sim thread, with the recorder locked
+		void add(long t, double[] row)
+		{
+			Block b = current;
+			b.times[b.n] = t;
+			System.arraycopy(row, 0, b.values, b.n*nch, nch);
+			if (++b.n == BLOCK_SIZE)
+			{
+				synchronized (this)
+				{
+					if (queue.size() >= MAX_BLOCKS)
+					{
+						// the writer can't keep up, don't let the queue grow
+						dropped += b.n;
+						b.n = 0;
+						return;
+					}
+					queue.addLast(b);
+					current = free.isEmpty() ? new Block() : (Block)free.removeFirst();
+					notifyAll();
+				}
+			}
+		}
+
+		synchronized long getDropped()
+		{
+			return dropped;
+		}
+
+		void finish()
+		throws IOException
+		{
+			synchronized (this)
+			{
+				if (current.n > 0)
+					queue.addLast(current);
+				done = true;
+				notifyAll();
+			}
+			try {
+				thread.join();
+			} catch (InterruptedException ie) {
+				throw new InterruptedIOException(ie.toString());
+			}
+			if (error != null)
+				throw error;
+		}
+
+		public void run()
+		{
+			try {
+				while (true)
+				{
+					Block b;
+					synchronized (this)
+					{
+						while (queue.isEmpty() && !done)
+							wait();
+						if (queue.isEmpty())
+							break;
+						b = (Block)queue.removeFirst();
+					}
+					if (error == null)
+						write(b);
+					b.n = 0;
+					synchronized (this)
+					{
+						free.addLast(b);
+					}
+				}
+			} catch (InterruptedException ie) {
+				error = new InterruptedIOException(ie.toString());
+			}
+			try {
+				if (dout != null)
+					dout.close();
+				else
+					pout.close();
+			} catch (IOException ioe) {
+				if (error == null)
+					error = ioe;
+			}
+		}
+
+		void write(Block b)
+		{
+			try {
+				int k = 0;
+				for (int j=0; j<b.n; j++)
+				{
+					if (dout != null)
+					{
+						dout.writeLong(b.times[j]);
+						for (int i=0; i<nch; i++)
+							dout.writeDouble(b.values[k++]);
+					} else {
+						pout.print(b.times[j]*(1d/Constants.TICKS_PER_SEC));
+						for (int i=0; i<nch; i++)
+						{
+							pout.print(',');
+							pout.print(b.values[k++]);
+						}
+						pout.println();
+					}
+				}
+				if (pout != null && pout.checkError())
+					throw new IOException("Error writing CSV");
+			} catch (IOException ioe) {
+				error = ioe;
+			}
+		}
+
+		class Block
+		{
+			long[] times = new long[BLOCK_SIZE];
+			double[] values = new double[BLOCK_SIZE*nch];
+			int n;
+		}
+	}
+
+	//
+
+	public String toString()
+	{
+		return "TelemetryRecorder[" + channels.length + " channels @ " +
+			getRate() + " Hz]";
+	}
+
+	// PROPERTIES
+
+	private static PropertyHelper prophelp = new PropertyHelper(TelemetryRecorder.class);
+
+	static {
+		prophelp.registerGet("root", "getRoot");
+		prophelp.registerGet("rate", "getRate");
+		prophelp.registerGet("capacity", "getCapacity");
+		prophelp.registerGet("count", "getSampleCount");
+		prophelp.registerGet("total", "getTotalSamples");
+		prophelp.registerGet("started", "isStarted");
+		prophelp.registerGet("streaming", "isStreaming");
+		prophelp.registerGet("dropped", "getDroppedSamples");
+	}
+
+	public Object getProp(String key)
+	{
+		return prophelp.getProp(this, key);
+	}
+
+	public void setProp(String key, Object value)
+	{
+		prophelp.setProp(this, key, value);
+	}
+
+	// SETTINGS
+
+	static double RATE;
+	static double SECONDS;
+	static int BLOCK_SIZE;
+	static int MAX_BLOCKS;
+
+	static SettingsGroup settings = new SettingsGroup(TelemetryRecorder.class, "Telemetry")
+	{
+		public void updateSettings()
+		{
+			RATE = getDouble("RecorderRate", 10);
+			SECONDS = getDouble("RecorderSeconds", 2*60*60);
+			BLOCK_SIZE = getInt("RecorderBlockSize", 256);
+			MAX_BLOCKS = getInt("RecorderMaxBlocks", 64);
+		}
+	};
+
+}
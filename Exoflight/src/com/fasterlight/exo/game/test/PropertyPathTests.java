@@ -0,0 +1,162 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.game.test;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.*;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.CowellTrajectory;
+import com.fasterlight.exo.seq.*;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.spif.PropertyEvaluator;
+import com.fasterlight.testing.*;
+import com.fasterlight.util.Vec3d;
+
+public class PropertyPathTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	static final String[] PATHS = {
+		"ship.telemetry.alt", "ship.telemetry.periapsis", "ship.telemetry.apoapsis",
+		"ship.telemetry.velocity", "ship.telemetry.vertvel", "ship.telemetry.tangvel",
+		"ship.telemetry.altagl", "ship.telemetry.truevel", "ship.telemetry.mach",
+		"ship.telemetry.incl", "ship.telemetry.period", "ship.telemetry.dynpres",
+		"ship.telemetry.elevation", "ship.structure.totaldeltav", "ship.trajectory.type",
+		"ship.name", "zerotime", "game.$Earth"
+	};
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+	}
+
+	public PropertyPathTests(String name)
+	{
+		super(name);
+	}
+
+	SpaceShip makeShip(String name, double alt)
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		Structure struct = new Structure(game);
+		struct.addModule(new Module(game, "Comm Satellite"));
+		SpaceShip ship = new SpaceShip(struct);
+		ship.setName(name);
+		double r = earth.getRadius() + alt;
+		double v = Math.sqrt(earth.getMass()*Constants.GRAV_CONST_KM/r);
+		ship.setTrajectory(new CowellTrajectory(earth,
+			new Vec3d(r,0,0), new Vec3d(0,v,0), game.time(), new Orientation()));
+		return ship;
+	}
+
+	//
+
+	public void testShared()
+	{
+		assertTrue(PropertyPath.compile("ship.telemetry.alt") == PropertyPath.compile("ship.telemetry.alt"));
+		assertEquals("ship.telemetry.alt", PropertyPath.compile("ship.telemetry.alt").getPath());
+	}
+
+	public void testMatchesEvaluator()
+	{
+		SpaceShip ship = makeShip("Path test", 400);
+		Sequencer seq = new Sequencer(game);
+		seq.setShip(ship);
+		for (int j=0; j<3; j++)
+		{
+			long t = game.time();
+			for (int i=0; i<PATHS.length; i++)
+			{
+				PropertyPath path = PropertyPath.compile(PATHS[i]);
+				Object o1 = PropertyEvaluator.get(seq, PATHS[i]);
+				Object o2 = path.get(seq, t);
+				assertEquals(PATHS[i], o1, o2);
+				assertEquals(PATHS[i], o1, path.get(seq));
+				if (o1 instanceof Number)
+				{
+					double d = path.getDouble(seq, t, Double.NaN);
+					assertEquals(PATHS[i], new Double(((Number)o1).doubleValue()), new Double(d));
+				}
+			}
+			game.update(Constants.TICKS_PER_SEC*60);
+		}
+		ship.setTrajectory(null);
+	}
+
+	public void testDoubleAccessor()
+	{
+		SpaceShip ship = makeShip("Path test", 400);
+		Sequencer seq = new Sequencer(game);
+		seq.setShip(ship);
+		long t = game.time();
+		assertTrue(PropertyPath.compile("ship.telemetry.alt").hasDoubleAccessor(seq, t));
+		assertTrue(PropertyPath.compile("ship.telemetry.dynpres").hasDoubleAccessor(seq, t));
+		assertTrue(!PropertyPath.compile("ship.name").hasDoubleAccessor(seq, t));
+		assertTrue(!PropertyPath.compile("game.$Earth").hasDoubleAccessor(seq, t));
+		ship.setTrajectory(null);
+	}
+
+	public void testInvalidate()
+	{
+		SpaceShip ship1 = makeShip("Path test 1", 400);
+		SpaceShip ship2 = makeShip("Path test 2", 800);
+		Sequencer seq = new Sequencer(game);
+		seq.setShip(ship1);
+		long t = game.time();
+		PropertyPath path = PropertyPath.compile("ship.telemetry.alt");
+		double alt1 = path.getDouble(seq, t, 0);
+		assertEquals("Path test 1", PropertyPath.compile("ship.name").get(seq, t));
+		// setShip() invalidates, so we don't get ship1's telemetry
+		seq.setShip(ship2);
+		assertEquals("Path test 2", PropertyPath.compile("ship.name").get(seq, t));
+		assertEquals(alt1 + 400, path.getDouble(seq, t, 0), 1e-6);
+		ship1.setTrajectory(null);
+		ship2.setTrajectory(null);
+	}
+
+	public void testCondition()
+	{
+		SpaceShip ship = makeShip("Path test", 400);
+		Sequencer seq = new Sequencer(game);
+		seq.setShip(ship);
+		assertEquals(1, new PropertyCondition("ship.telemetry.alt", new Double(300), Condition.OP_GT).evaluate(seq));
+		assertEquals(0, new PropertyCondition("ship.telemetry.alt", new Double(300), Condition.OP_LT).evaluate(seq));
+		assertEquals(1, new PropertyCondition("ship.name", "Path test", Condition.OP_EQ).evaluate(seq));
+		assertEquals(1, new PropertyCondition("ship.telemetry.alt", "ship.telemetry.alt", Condition.OP_EQ, true).evaluate(seq));
+		ship.setTrajectory(null);
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(PropertyPathTests.class);
+		return suite;
+	}
+
+}
@@ -0,0 +1,196 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.game.test;
+
+import java.io.*;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.*;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.CowellTrajectory;
+import com.fasterlight.exo.seq.Sequencer;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.testing.*;
+import com.fasterlight.util.Vec3d;
+
+public class TelemetryRecorderTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	static final String[] CHANNELS = {
+		"ship.telemetry.alt", "ship.telemetry.velocity", "ship.telemetry.vertvel",
+		"ship.telemetry.gaccel", "ship.telemetry.mach", "ship.telemetry.dynpres",
+		"ship.telemetry.apoapsis", "ship.telemetry.periapsis"
+	};
+
+	static final long TPS = Constants.TICKS_PER_SEC;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+	}
+
+	public TelemetryRecorderTests(String name)
+	{
+		super(name);
+	}
+
+	Sequencer makeShip(double alt)
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		Structure struct = new Structure(game);
+		struct.addModule(new Module(game, "Comm Satellite"));
+		SpaceShip ship = new SpaceShip(struct);
+		ship.setName("Recorder test");
+		double r = earth.getRadius() + alt;
+		double v = Math.sqrt(earth.getMass()*Constants.GRAV_CONST_KM/r);
+		ship.setTrajectory(new CowellTrajectory(earth,
+			new Vec3d(r,0,0), new Vec3d(0,v,0), game.time(), new Orientation()));
+		Sequencer seq = new Sequencer(game);
+		seq.setShip(ship);
+		return seq;
+	}
+
+	//
+
+	public void testRingBuffer()
+	{
+		Sequencer seq = makeShip(400);
+		TelemetryRecorder rec = new TelemetryRecorder(game, seq, CHANNELS, 10, 100);
+		long dt = rec.getInterval();
+		assertEquals(TPS/10, dt);
+		long t0 = game.time();
+		rec.start();
+		game.update(dt*200 + dt/2);
+		rec.stop();
+		// 200 intervals, plus the one at t0
+		assertEquals(201, rec.getTotalSamples());
+		assertEquals(100, rec.getSampleCount());
+		assertEquals(t0 + dt*200, rec.getNewestTime());
+		assertEquals(t0 + dt*101, rec.getOldestTime());
+
+		// a 30-sample window
+		int alt = rec.getChannelIndex("ship.telemetry.alt");
+		long[] times = new long[100];
+		double[] vals = new double[100];
+		int n = rec.getSamples(alt, t0 + dt*150, t0 + dt*180, times, vals);
+		assertEquals(31, n);
+		assertEquals(t0 + dt*150, times[0]);
+		for (int i=1; i<n; i++)
+			assertEquals(dt, times[i]-times[i-1]);
+		for (int i=0; i<n; i++)
+			assertEquals(400, vals[i], 50);
+		double[] one = new double[1];
+		assertEquals(1, rec.getSamples(alt, t0 + dt*180, t0 + dt*180, null, one));
+		assertEquals(vals[n-1], one[0], 0);
+
+		// before the oldest sample
+		assertEquals(0, rec.getSamples(alt, t0, t0 + dt*50, null, vals));
+
+		double[] minmax = new double[2];
+		assertEquals(100, rec.getRange(alt, Long.MIN_VALUE, Long.MAX_VALUE, minmax));
+		assertTrue(minmax[0] <= minmax[1]);
+		seq.getShip().setTrajectory(null);
+	}
+
+	public void testBinaryStream()
+	throws IOException
+	{
+		Sequencer seq = makeShip(400);
+		TelemetryRecorder rec = new TelemetryRecorder(game, seq, CHANNELS, 10, 1000);
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		rec.startStreaming(bout, false);
+		rec.start();
+		game.update(TPS*60);
+		rec.stop();
+		rec.stopStreaming();
+		assertEquals(0, rec.getDroppedSamples());
+
+		DataInputStream din = new DataInputStream(new ByteArrayInputStream(bout.toByteArray()));
+		din.readInt(); // magic
+		assertEquals(CHANNELS.length, din.readInt());
+		for (int i=0; i<CHANNELS.length; i++)
+			assertEquals(CHANNELS[i], din.readUTF());
+		assertEquals(rec.getInterval(), din.readLong());
+		int nsamp = rec.getSampleCount();
+		long[] times = new long[nsamp];
+		double[] vals = new double[nsamp];
+		for (int k=0; k<CHANNELS.length; k++)
+		{
+			assertEquals(nsamp, rec.getSamples(k, Long.MIN_VALUE, Long.MAX_VALUE, times, vals));
+		}
+		int vel = rec.getChannelIndex("ship.telemetry.velocity");
+		rec.getSamples(vel, Long.MIN_VALUE, Long.MAX_VALUE, times, vals);
+		for (int j=0; j<nsamp; j++)
+		{
+			assertEquals(times[j], din.readLong());
+			for (int i=0; i<CHANNELS.length; i++)
+			{
+				double x = din.readDouble();
+				if (i == vel)
+					assertEquals(vals[j], x, 0);
+			}
+		}
+		assertEquals(0, din.available());
+		seq.getShip().setTrajectory(null);
+	}
+
+	public void testCSVStream()
+	throws IOException
+	{
+		Sequencer seq = makeShip(400);
+		TelemetryRecorder rec = new TelemetryRecorder(game, seq, CHANNELS, 2, 1000);
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		rec.startStreaming(bout, true);
+		rec.start();
+		game.update(TPS*30);
+		rec.stop();
+		rec.stopStreaming();
+
+		BufferedReader in = new BufferedReader(new StringReader(bout.toString()));
+		assertEquals("time,ship.telemetry.alt", in.readLine().substring(0, 23));
+		int lines = 0;
+		String line;
+		while ((line = in.readLine()) != null)
+		{
+			assertEquals(CHANNELS.length+1, line.split(",").length);
+			lines++;
+		}
+		assertEquals(rec.getTotalSamples(), lines);
+		seq.getShip().setTrajectory(null);
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(TelemetryRecorderTests.class);
+		return suite;
+	}
+
+}
@@ -28,7 +28,7 @@ import javax.media.opengl.*;
 import com.fasterlight.exo.game.*;
 import com.fasterlight.exo.newgui.*;
 import com.fasterlight.exo.orbit.*;
-import com.fasterlight.exo.orbit.traj.LandedTrajectory;
+import com.fasterlight.exo.orbit.traj.*;
 import com.fasterlight.exo.ship.SpaceShip;
 import com.fasterlight.exo.ship.sys.ShipAttitudeSystem;
 import com.fasterlight.exo.sound.GameSound;
@@ -68,6 +68,11 @@ public class Exoflight implements Runnable, Constants, NotifyingEventObserver
 	String defaultMissionName = "Lunar Hop";
 
 	Engine engine;
+	SimThread simthread;
+
+	// held by the simulation thread during each step, and by
+	// the AWT thread while it dispatches input and commands
+	final Object simlock = new Object();
 
 	static final int WORLD_WIDTH = 1024;
 	static final int WORLD_HEIGHT = 768;
@@ -86,6 +91,10 @@ public class Exoflight implements Runnable, Constants, NotifyingEventObserver
 	static boolean USE_NATIVE_MENU =
 		System.getProperty("os.name").startsWith("Mac OS");
 	static boolean ADD_LISTENERS = true;
+
+	static int SIM_STEP_MSEC =
+		Integer.parseInt(System.getProperty("exo.simstepmsec", "10"));
+	static int SIM_MAX_BACKOFF_MSEC = 1000;
 //		System.getProperty("os.name").startsWith("Linux");
 
 	//
@@ -121,20 +130,98 @@ public class Exoflight implements Runnable, Constants, NotifyingEventObserver
 		}
 	}
 
+	/**
+	 * Steps the simulation on its own thread, so that the game clock
+	 * isn't tied to the frame rate.  Steps and frames take turns on
+	 * the simulation lock.  After each step it publishes a
+	 * FrameSnapshot for the views to draw from.
+	 * If a step throws, the thread waits longer before each retry;
+	 * if it throws an Error, the simulation stops.
+	 */
+	class SimThread extends Thread
+	{
+		boolean running = true;
+		SimThread()
+		{
+			super("Simulation");
+			setDaemon(true);
+		}
+		public void run()
+		{
+			int delay = SIM_STEP_MSEC;
+			while (running)
+			{
+				try
+				{
+					synchronized (simlock)
+					{
+						SpaceGame g = game;
+						if (g != null)
+						{
+							long t0 = System.currentTimeMillis();
+							updateControls();
+							g.getGovernor().update();
+							g.publishSnapshot();
+							g.getSimMetrics().record(System.currentTimeMillis() - t0);
+						}
+					}
+					delay = SIM_STEP_MSEC;
+				} catch (Exception ee)
+				{
+					ee.printStackTrace(System.out);
+					delay = Math.min(Math.max(delay, 1) * 2, SIM_MAX_BACKOFF_MSEC);
+				} catch (Error ee)
+				{
+					ee.printStackTrace(System.out);
+					System.out.println("Simulation stopped");
+					running = false;
+					break;
+				}
+				try
+				{
+					Thread.sleep(delay);
+				} catch (InterruptedException ie)
+				{
+					running = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Dispatches all events, including drawing frames, while holding
+	 * the simulation lock, so they never see or change the game in
+	 * the middle of a step.  The GUI panels read live telemetry and
+	 * properties, so frames can't be drawn while the game is stepping.
+	 */
+	class SimLockEventQueue extends EventQueue
+	{
+		protected void dispatchEvent(AWTEvent event)
+		{
+			synchronized (simlock)
+			{
+				super.dispatchEvent(event);
+			}
+		}
+	}
+
 	public void run()
 	{
 		try
 		{
+			long t0 = System.currentTimeMillis();
 			if (mainwindow.isShowing()
 				&& mainframe.getState() != Frame.ICONIFIED)
 			{
+				// take the snapshot once, so all views draw the same step
+				if (guictx != null)
+					guictx.setFrameSnapshot((game != null) ? game.takeSnapshot() : null);
 				glcanvas.display();
 			}
 			if (game == null)
 				return;
 
-			updateControls();
-			game.getGovernor().update();
+			game.getRenderMetrics().record(System.currentTimeMillis() - t0);
 			if (getTracked() instanceof SpaceShip)
 				gsound.update((SpaceShip) getTracked());
 		} catch (Throwable exc)
@@ -286,6 +373,10 @@ public class Exoflight implements Runnable, Constants, NotifyingEventObserver
 	{
 		if (engine == null)
 		{
+			Toolkit.getDefaultToolkit().getSystemEventQueue().push(
+				new SimLockEventQueue());
+			simthread = new SimThread();
+			simthread.start();
 			engine = new Engine();
 			engine.start();
 			engine.setPriority(Thread.NORM_PRIORITY - 1); //todo: const
@@ -513,6 +604,8 @@ public class Exoflight implements Runnable, Constants, NotifyingEventObserver
 
 	void exitProgram()
 	{
+		if (game != null)
+			PropagationScheduler.getScheduler(game).shutdown();
 		game = null;
 		if (mainframe != null)
 			mainframe.setVisible(false);
@@ -522,6 +615,8 @@ public class Exoflight implements Runnable, Constants, NotifyingEventObserver
 		{
 			engine.running = false;
 			engine.join(1000);
+			simthread.running = false;
+			simthread.join(1000);
 		} catch (Exception exc)
 		{
 			exc.printStackTrace();
@@ -545,6 +640,7 @@ public class Exoflight implements Runnable, Constants, NotifyingEventObserver
 		if (game != null)
 		{
 			game.removeObserver(this);
+			PropagationScheduler.getScheduler(game).shutdown();
 		}
 
 		// show title
@@ -0,0 +1,295 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.main;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.seq.Sequencer;
+import com.fasterlight.exo.ship.SpaceShip;
+import com.fasterlight.exo.strategy.Mission;
+import com.fasterlight.game.Settings;
+
+/**
+  * Runs a mission with no graphics, sound or input devices,
+  * as fast as the CPU allows.  Only needs FLCore, the data dir
+  * and our own classes on the classpath.
+  *
+  * Usage: HeadlessRunner -c category -m mission [options]
+  * <pre>
+  *   -c name     mission category (underscores become spaces)
+  *   -m name     mission name (underscores become spaces)
+  *   -l secs     stop after this many simulated secs past zero time
+  *   -r secs     simulated secs per update (default 1)
+  *   -p secs     print telemetry every this many simulated secs (0 = never)
+  *   -i file     settings file (default settings.ini)
+  *   -d          debug output
+  * </pre>
+  * Exits with status 0 if the mission sequence completed,
+  * 1 if it failed or the ship was lost, 2 if time ran out.
+  */
+public class HeadlessRunner
+implements Constants
+{
+	public static final int RESULT_SUCCESS = 0;
+	public static final int RESULT_FAILED = 1;
+	public static final int RESULT_TIMEOUT = 2;
+
+	String categname;
+	String missname;
+	double deltat = 1.0;
+	double tlimit = 60*60;
+	double printint = 60;
+	boolean debug;
+
+	SpaceGame game;
+	Sequencer seq;
+	String failReason;
+
+	long wallstart, wallend;
+	long simstart, simend;
+
+	//
+
+	public HeadlessRunner(String categname, String missname)
+	{
+		this.categname = categname;
+		this.missname = missname;
+	}
+
+	public void setTimeLimit(double secs)
+	{
+		this.tlimit = secs;
+	}
+
+	/**
+	  * Sets the simulated secs per update, which must be
+	  * at least one tick, or the game clock would never advance.
+	  */
+	public void setUpdateInterval(double secs)
+	{
+		if (!((long)(TICKS_PER_SEC*secs) > 0))
+			throw new IllegalArgumentException("Update interval must be at least one tick: " + secs);
+		this.deltat = secs;
+	}
+
+	public void setPrintInterval(double secs)
+	{
+		this.printint = secs;
+	}
+
+	public void setDebug(boolean debug)
+	{
+		this.debug = debug;
+	}
+
+	public SpaceGame getGame()
+	{
+		return game;
+	}
+
+	public String getFailReason()
+	{
+		return failReason;
+	}
+
+	/**
+	  * Loads and prepares the mission.
+	  */
+	public void load()
+	{
+		System.out.println("Loading mission \"" + categname + "/" + missname + '"');
+		Mission m = Mission.getMission(categname, missname);
+		if (m == null)
+			throw new IllegalArgumentException("Mission not found: " + categname + "/" + missname);
+		game = new SpaceGame();
+		m.prepare(game);
+		game.setDebug(debug);
+		seq = m.getSequencer();
+		if (seq == null)
+			throw new IllegalArgumentException("Mission has no sequencer: " + missname);
+		seq.setDebug(debug);
+	}
+
+	/**
+	  * Runs the mission until the ship's sequence finishes,
+	  * something fails, or time runs out.
+	  * Returns one of the RESULT_ values.
+	  */
+	public int run()
+	{
+		if (game == null)
+			load();
+		seq.start();
+
+		long dt = (long)(TICKS_PER_SEC*deltat);
+		long printticks = (long)(TICKS_PER_SEC*printint);
+		long nextprint = game.time();
+		int seqState = 0;
+		int result;
+
+		simstart = game.time();
+		wallstart = System.currentTimeMillis();
+		while (true)
+		{
+			long t = game.time();
+			if ((t - seq.getZeroTime()) > tlimit*TICKS_PER_SEC)
+			{
+				failReason = "Time expired";
+				result = RESULT_TIMEOUT;
+				break;
+			}
+			SpaceShip ship = seq.getShip();
+			if (ship != null)
+			{
+				if (ship.isExploded())
+				{
+					failReason = "Ship crashed! " + ship;
+					result = RESULT_FAILED;
+					break;
+				}
+				Sequencer shipseq = ship.getSequencer();
+				if (shipseq != null)
+				{
+					shipseq.setDebug(debug);
+					if (shipseq.hasFailed())
+					{
+						failReason = "Sequencer failed: " + ship.getShipWarningSystem().getWarnings();
+						result = RESULT_FAILED;
+						break;
+					}
+					if (seqState == 0 && shipseq.isStarted())
+						seqState++;
+					else if (seqState == 1 && !shipseq.isStarted())
+					{
+						result = RESULT_SUCCESS;
+						break;
+					}
+				}
+				if (printticks > 0 && t >= nextprint)
+				{
+					printStatus(ship);
+					nextprint = t + printticks;
+				}
+			}
+			game.update(dt);
+		}
+		simend = game.time();
+		wallend = System.currentTimeMillis();
+		return result;
+	}
+
+	void printStatus(SpaceShip ship)
+	{
+		Telemetry telem = ship.getTelemetry();
+		long tt = (game.time() - seq.getZeroTime())/TICKS_PER_SEC;
+		System.out.println("t=" + tt +
+			" alt=" + AstroUtil.toDistance(telem.getValue("alt")) +
+			" vel=" + AstroUtil.toDistance(telem.getValue("velocity")) + "/s" +
+			" agl=" + AstroUtil.toDistance(telem.getValue("altagl")) +
+			" G=" + AstroUtil.format(telem.getValue("gaccel")) + " G");
+	}
+
+	/**
+	  * Simulated seconds elapsed during run().
+	  */
+	public double getSimSeconds()
+	{
+		return (simend - simstart)*(1d/TICKS_PER_SEC);
+	}
+
+	/**
+	  * Wall-clock seconds elapsed during run().
+	  */
+	public double getWallSeconds()
+	{
+		return (wallend - wallstart)*(1d/1000);
+	}
+
+	/**
+	  * Simulated seconds per wall-clock second.
+	  */
+	public double getSpeedRatio()
+	{
+		double wall = getWallSeconds();
+		return (wall > 0) ? getSimSeconds()/wall : Double.POSITIVE_INFINITY;
+	}
+
+	//
+
+	static void usage()
+	{
+		System.out.println("Usage: HeadlessRunner -c category -m mission " +
+			"[-l limitsecs] [-r stepsecs] [-p printsecs] [-i settings.ini] [-d]");
+		System.exit(RESULT_FAILED);
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		String categname = null;
+		String missname = null;
+		String settingsfile = "settings.ini";
+		double tlimit = 60*60;
+		double deltat = 1;
+		double printint = 60;
+		boolean debug = false;
+		for (int i=0; i<args.length; i++)
+		{
+			String s = args[i];
+			if (s.equals("-c") && i+1 < args.length)
+				categname = args[++i].replace('_',' ');
+			else if (s.equals("-m") && i+1 < args.length)
+				missname = args[++i].replace('_',' ');
+			else if (s.equals("-l") && i+1 < args.length)
+				tlimit = Double.parseDouble(args[++i]);
+			else if (s.equals("-r") && i+1 < args.length)
+				deltat = Double.parseDouble(args[++i]);
+			else if (s.equals("-p") && i+1 < args.length)
+				printint = Double.parseDouble(args[++i]);
+			else if (s.equals("-i") && i+1 < args.length)
+				settingsfile = args[++i];
+			else if (s.equals("-d"))
+				debug = true;
+			else
+				usage();
+		}
+		if (categname == null || missname == null)
+			usage();
+		if ((long)(TICKS_PER_SEC*deltat) <= 0)
+		{
+			System.out.println("Step must be at least " + (1d/TICKS_PER_SEC) + " secs");
+			usage();
+		}
+
+		Settings.setFilename(settingsfile);
+		HeadlessRunner runner = new HeadlessRunner(categname, missname);
+		runner.setTimeLimit(tlimit);
+		runner.setUpdateInterval(deltat);
+		runner.setPrintInterval(printint);
+		runner.setDebug(debug);
+		runner.load();
+		int result = runner.run();
+
+		System.out.println("Result: " + (result == RESULT_SUCCESS ? "success" : runner.getFailReason()));
+		System.out.println("Simulated " + AstroUtil.format(runner.getSimSeconds()) + " secs in " +
+			AstroUtil.format(runner.getWallSeconds()) + " wall secs (" +
+			AstroUtil.format(runner.getSpeedRatio()) + "x)");
+		System.exit(result);
+	}
+}
@@ -24,9 +24,12 @@ import java.util.*;
 
 import javax.media.opengl.GL;
 
+import com.fasterlight.exo.game.PropertyPath;
 import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.game.TelemetryRecorder;
 import com.fasterlight.exo.newgui.roam.PlanetRenderer;
 import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.PropagationLOD;
 import com.fasterlight.exo.ship.SpaceShip;
 import com.fasterlight.exo.strategy.Mission;
 import com.fasterlight.game.SettingsGroup;
@@ -51,6 +54,9 @@ public class GUIContext extends GLOContext
 
 	Map vars = new HashMap();
 	SpaceGame game;
+	Set lodthings = new HashSet(); // what we told PropagationLOD we're tracking
+	boolean plotting; // has a plot asked for the recorder?
+	FrameSnapshot framesnap; // what all views draw this frame from
 
 	// gl caps
 	public boolean glMultiTex;
@@ -175,6 +181,7 @@ public class GUIContext extends GLOContext
 		if (game != this.game)
 		{
 			this.game = game;
+			lodthings.clear();
 			clearCaches();
 		}
 	}
@@ -250,6 +257,19 @@ public class GUIContext extends GLOContext
 		return game;
 	}
 
+	/**
+	  * Sets the snapshot that every view draws the next frame from.
+	  */
+	public void setFrameSnapshot(FrameSnapshot snap)
+	{
+		this.framesnap = snap;
+	}
+
+	public FrameSnapshot getFrameSnapshot()
+	{
+		return framesnap;
+	}
+
 	public SpaceShip getShip()
 	{
 		return (SpaceShip) vars.get("ship");
@@ -585,6 +605,10 @@ public class GUIContext extends GLOContext
 				if ("demo".equals(key))
 					return democmpt;
 				break;
+			case 'r' :
+				if ("recorder".equals(key))
+					return getTelemetryRecorder();
+				break;
 			case 'v' :
 				if ("version".equals(key))
 					return Constants.EXOFLIGHT_VERSION;
@@ -620,6 +644,8 @@ public class GUIContext extends GLOContext
 
 	public void setProp(String key, Object value)
 	{
+		// might be part of someone's property path
+		PropertyPath.invalidateAll();
 		// todo: paused?
 		switch (key.charAt(0))
 		{
@@ -637,6 +663,8 @@ public class GUIContext extends GLOContext
 					vars.put(key, value);
 					vars.put("tracked", value);
 					vars.put("selected", value);
+					updateTracked();
+					updateRecorder((SpaceShip)value);
 					return;
 				}
 			default :
@@ -648,9 +676,41 @@ public class GUIContext extends GLOContext
 				{
 					// todo? bad to catch & put?
 					vars.put(key, value);
-					return;
 				}
+				if ("tracked".equals(key) || "selected".equals(key))
+					updateTracked();
+		}
+	}
+
+	static final String[] TRACKED_KEYS = { "ship", "tracked", "selected" };
+
+	/**
+	  * Lets PropagationLOD know what we're looking at,
+	  * so those things are propagated in full detail.
+	  */
+	void updateTracked()
+	{
+		if (game == null)
+			return;
+		Set things = new HashSet();
+		for (int i=0; i<TRACKED_KEYS.length; i++)
+		{
+			Object o = vars.get(TRACKED_KEYS[i]);
+			if (o instanceof UniverseThing)
+				things.add(o);
 		}
+		PropagationLOD lod = PropagationLOD.getPolicy(game);
+		Iterator it = lodthings.iterator();
+		while (it.hasNext())
+		{
+			UniverseThing ut = (UniverseThing)it.next();
+			if (!things.contains(ut))
+				lod.setTracked(ut, false);
+		}
+		it = things.iterator();
+		while (it.hasNext())
+			lod.setTracked((UniverseThing)it.next(), true);
+		lodthings = things;
 	}
 
 	public SpaceShip getCurrentShip()
@@ -658,6 +718,46 @@ public class GUIContext extends GLOContext
 		return (SpaceShip) getProp("ship");
 	}
 
+	static final String[] RECORDER_CHANNELS = {
+		"telemetry.alt", "telemetry.velocity", "telemetry.vertvel",
+		"telemetry.gaccel", "telemetry.mach", "telemetry.dynpres",
+		"telemetry.apoapsis", "telemetry.periapsis"
+	};
+
+	/**
+	  * Returns the recorder of the current ship's telemetry, for
+	  * the plots (the "recorder" property).  Nothing is recorded
+	  * until a plot asks for it the first time; after that the
+	  * recorder follows the current ship.
+	  * Returns null if there's no ship.
+	  */
+	public TelemetryRecorder getTelemetryRecorder()
+	{
+		if (game == null)
+			return null;
+		plotting = true;
+		updateRecorder(getCurrentShip());
+		return game.getTelemetryRecorder();
+	}
+
+	// moves the recorder to 'ship', if anyone is plotting
+	void updateRecorder(SpaceShip ship)
+	{
+		if (game == null || !plotting)
+			return;
+		TelemetryRecorder rec = game.getTelemetryRecorder();
+		if (rec != null && rec.getRoot() == ship)
+			return;
+		if (ship == null)
+		{
+			game.setTelemetryRecorder(null);
+			return;
+		}
+		rec = new TelemetryRecorder(game, ship, RECORDER_CHANNELS);
+		rec.start();
+		game.setTelemetryRecorder(rec);
+	}
+
 	public void setCurrentShip(SpaceShip selected)
 	{
 		setProp("ship", selected);
@@ -25,6 +25,7 @@ import javax.media.opengl.GL;
 
 import Acme.LruHashtable;
 
+import com.fasterlight.exo.game.*;
 import com.fasterlight.exo.newgui.roam.*;
 import com.fasterlight.exo.orbit.*;
 import com.fasterlight.exo.ship.*;
@@ -80,6 +81,10 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 	boolean use_cache = false;
 	private Vector2f lastRenderPt;
 
+	// the snapshot this frame is drawn from, and its time
+	FrameSnapshot snap;
+	long frametime;
+
 	//
 
 	public GroundtrackView(Game game)
@@ -124,7 +129,11 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 	Vector3d getThingLLR(UniverseThing ut, Planet p, long t)
 	{
 		double dt = t * (1d / TICKS_PER_SEC);
-		Vector3d pos = ut.getPosition(p, t);
+		// use the frame's snapshot for the current position
+		Vector3d pos = (snap != null && t == snap.getTime()) ?
+			snap.getPosition(ut, p) : null;
+		if (pos == null)
+			pos = ut.getPosition(p, t);
 		p.xyz2ijk(pos);
 		p.ijk2llr(pos, dt);
 		return pos;
@@ -162,10 +171,48 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 		gl.glPopMatrix();
 	}
 
+	/**
+	  * Draws the catalog satellites that aren't real things yet,
+	  * from the positions in the frame's snapshot.
+	  * Picking one makes it real (see handleEvent()).
+	  */
+	void renderCatalog(GLOContext ctx, Planet p, long t)
+	{
+		// the simulation thread moves them, we just draw them
+		((SpaceGame) game).requestSatellites();
+		if (snap == null || snap.getSatelliteCatalog() == null
+				|| snap.getSatelliteCatalog().getPlanet() != p)
+			return;
+		double[] satpos = snap.getSatellitePositions();
+		double dt = t * (1d / TICKS_PER_SEC);
+		Vector3d pos = new Vector3d();
+		guictx.texcache.setTexture("triangle-ALPHA.png");
+		gl.glColor3f(0.15f, 0.15f, 0.6f);
+		for (int i = 0; i < satpos.length / 3; i++)
+		{
+			if (Double.isNaN(satpos[i * 3]))
+				continue;
+			pos.set(satpos[i * 3], satpos[i * 3 + 1], satpos[i * 3 + 2]);
+			p.xyz2ijk(pos);
+			p.ijk2llr(pos, dt);
+			Vector2f scrnpos = ll2xy(pos.x, pos.y);
+			picklist.addPickRec(x1 + scrnpos.x, y1 + scrnpos.y, 6, new Integer(i));
+
+			gl.glPushMatrix();
+			gl.glTranslatef(x1 + scrnpos.x, y1 + scrnpos.y, 0);
+			drawTexturedBox(ctx, -6, -6, 12, 12);
+			gl.glPopMatrix();
+		}
+	}
+
 	static int NUM_LMAPS = 32;
 
 	public void render(GLOContext ctx)
 	{
+		// draw everything as of the frame's snapshot
+		snap = guictx.getFrameSnapshot();
+		frametime = (snap != null) ? snap.getTime() : game.time();
+
 		// todo
 		if (getSelected() != null
 				&& getSelected().getParent() instanceof Planet)
@@ -177,12 +224,15 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 		drawMode = MODE_MAP;
 		if (getTracked() != null && autoMapScale)
 		{
+			FrameSnapshot.TelemetryValues snaptel = (snap != null) ?
+				snap.getTelemetry(getTracked()) : null;
 			Telemetry telem = getTracked().getTelemetry();
-			if (telem.getConic() != null)
+			if (snaptel != null ? snaptel.hasConic() : telem.getConic() != null)
 			{
 				double parentRadius = getTracked().getParent().getRadius();
-				double peri = telem.getPERIAPSIS() + parentRadius;
-				double ecc = telem.getECCENT();
+				double peri = (snaptel != null) ?
+					snaptel.getPERIAPSIS() : telem.getPERIAPSIS();
+				peri += parentRadius;
 				float ratio = (float)(peri / parentRadius);
 				if (ratio < 1)
 				{
@@ -192,7 +242,7 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 		}
 		if (getTracked() != null && getZoomFactor() > 1)
 		{
-			Vector3d llr = getThingLLR(getTracked(), refthing, game.time());
+			Vector3d llr = getThingLLR(getTracked(), refthing, frametime);
 			cenlon = (float) llr.x;
 			cenlat = (float) llr.y;
 			drawMode = MODE_COLOR;
@@ -291,13 +341,15 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 	private void drawThings(Planet p)
 	{
 		// draw satellites
-		long t = game.time();
+		long t = frametime;
 		gl.glBlendFunc(GL.GL_SRC_ALPHA, GL.GL_ONE_MINUS_SRC_ALPHA);
 
 		UniverseThing sel = getSelected();
 
 		// renderThing(ctx, p.getParent(), p, t); // render sun?
 
+		renderCatalog(ctx, p, t);
+
 		Iterator it = p.getChildren();
 		while (it.hasNext())
 		{
@@ -326,10 +378,10 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 	private void drawUmbra(Planet p)
 	{
 		// todo: make work for other Stars (besides Sun)
-		Vector3d sunpos = p.getPosition(null, game.time());
+		Vector3d sunpos = p.getPosition(null, frametime);
 		sunpos.scale(-1);
 		p.xyz2ijk(sunpos);
-		p.ijk2llr(sunpos, game.time() * (1d / TICKS_PER_SEC));
+		p.ijk2llr(sunpos, frametime * (1d / TICKS_PER_SEC));
 
 		double theta = sunpos.x;
 		double phi = sunpos.y;
@@ -402,7 +454,7 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 	void renderConic(Planet p, Conic conic)
 	{
 		long dur, tinc;
-		long t = game.time();
+		long t = frametime;
 		double period = conic.getPeriod();
 		if (!Double.isNaN(period))
 		{
@@ -525,6 +577,9 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 				int y = mbe.y;
 
 				Object o = picklist.pickObject(x, y);
+				// a catalog satellite, make it real
+				if (o instanceof Integer)
+					o = ((SpaceGame) game).materializeSatellite(((Integer) o).intValue());
 				if (o != null)
 				{
 					System.out.println("SELECTED " + o);
@@ -544,7 +599,13 @@ public class GroundtrackView extends GLOComponent implements ThingSelectable,
 				PickList.PickRec pickrec = picklist.pickObjectRec(x, y);
 				if (pickrec != null)
 				{
-					showHintFor((UniverseThing) pickrec.obj);
+					if (pickrec.obj instanceof Integer)
+					{
+						if (snap != null && snap.getSatelliteCatalog() != null)
+							hintrend.showHintFor(pickrec.obj, snap.getSatelliteCatalog().getName(
+								((Integer) pickrec.obj).intValue()));
+					} else
+						showHintFor((UniverseThing) pickrec.obj);
 				}
 				return true;
 			}
@@ -116,30 +116,35 @@ public class PorkchopPlot extends GLOComponent
 
 		int width = this.getWidth();
 		int height = this.getHeight();
-		float mincost = (float) opt.getMinCost();
-		float maxcost = (float) opt.getMaxCost();
-		maxcost = Math.min(25, maxcost); // todo: const
-		Rect4f r = opt.getBounds();
-
-		int size = opt.getSize();
-		lastqtsize = size;
-
 		float rad = (1 / 24f);
 		float xx, yy;
 		int i = 0, color, lum;
 
-		texdata.rewind();
-		for (int y = 0; y < texh; y++)
+		// the search may be running on another thread,
+		// so hold it off until we have the whole picture
+		synchronized (opt)
 		{
-			yy = y * 1f / texh;
-			for (int x = 0; x < texw; x++)
+			float mincost = (float) opt.getMinCost();
+			float maxcost = (float) opt.getMaxCost();
+			maxcost = Math.min(25, maxcost); // todo: const
+			Rect4f r = opt.getBounds();
+
+			int size = opt.getSize();
+			lastqtsize = size;
+
+			texdata.rewind();
+			for (int y = 0; y < texh; y++)
 			{
-				xx = x * 1f / texw;
-				lum = (int) (opt.getInterpCost(xx, yy, rad) * 255.0f / maxcost);
-				if (lum > 255)
-					lum = 255;
-				color = lum | (((lum == 0) ? 0 : 255 - lum) << 8);
-				texdata.put(color);
+				yy = y * 1f / texh;
+				for (int x = 0; x < texw; x++)
+				{
+					xx = x * 1f / texw;
+					lum = (int) (opt.getInterpCost(xx, yy, rad) * 255.0f / maxcost);
+					if (lum > 255)
+						lum = 255;
+					color = lum | (((lum == 0) ? 0 : 255 - lum) << 8);
+					texdata.put(color);
+				}
 			}
 		}
 
@@ -22,7 +22,7 @@ import java.util.*;
 
 import javax.media.opengl.GL;
 
-import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.game.*;
 import com.fasterlight.exo.orbit.*;
 import com.fasterlight.exo.orbit.traj.*;
 import com.fasterlight.exo.ship.*;
@@ -56,6 +56,8 @@ public class TacticalView extends ViewBase implements Constants
 
 	boolean zoomToOrbit, zoomToPlanet;
 	boolean showEcliptic, showEquatorialPlane;
+	boolean showAsteroids;
+	int[] astpicks;
 
 	///
 
@@ -90,7 +92,7 @@ public class TacticalView extends ViewBase implements Constants
 
 	Vector3d translateThing(UniverseThing thing)
 	{
-		Vector3d pos = thing.getPosition(refthing, game.time());
+		Vector3d pos = getThingPosition(thing, refthing);
 		adjustRadius(pos);
 		gl.glTranslated(pos.x, pos.y, pos.z);
 		return pos;
@@ -233,7 +235,7 @@ public class TacticalView extends ViewBase implements Constants
 		Conic o = UniverseUtil.getConicFor(ut);
 		if (o != null)
 		{
-			Vector3d pos = ut.getParent().getPosition(refthing, game.time());
+			Vector3d pos = getThingPosition(ut.getParent(), refthing);
 			if (ut == selected)
 				gl.glColor4f(0.5f, 0.0f, 0.0f, 1.0f);
 			else
@@ -461,13 +463,13 @@ public class TacticalView extends ViewBase implements Constants
 		}
 		else
 		{
-			double infrad = ut.getInfluenceRadius(game.time());
+			double infrad = ut.getInfluenceRadius(frametime);
 			if (infrad == 0)
 				drawchildren = true;
 			else
 			{
 				double adjrad = adjustRadius(infrad);
-				Vector3d pos = ut.getPosition(refthing, game.time());
+				Vector3d pos = getThingPosition(ut, refthing);
 				adjustRadius(pos);
 				// only recurse if influence radius is above
 				// certain amount, and if it intersects the view volume
@@ -494,9 +496,13 @@ public class TacticalView extends ViewBase implements Constants
 		// move tracked to center
 		if (tracked != null && (zoomToOrbit || zoomToPlanet))
 		{
-			double rad = tracked.getTelemetry().getCENDIST();
+			FrameSnapshot.TelemetryValues snaptel = getSnapshotTelemetry(tracked);
+			double rad = (snaptel != null) ?
+				snaptel.getCENDIST() : tracked.getTelemetry().getCENDIST();
 			{
-				double apo = tracked.getTelemetry().getAPOAPSIS() + tracked.getParent().getRadius();
+				double apo = (snaptel != null) ?
+					snaptel.getAPOAPSIS() : tracked.getTelemetry().getAPOAPSIS();
+				apo += tracked.getParent().getRadius();
 				if (apo > rad)
 					rad = apo;
 			}
@@ -516,7 +522,7 @@ public class TacticalView extends ViewBase implements Constants
 		if (refthing instanceof Star)
 			maxrad = refthing.getMass() * (4e10 / 2e20);
 		else
-			maxrad = refthing.getInfluenceRadius(game.time()) * 4;
+			maxrad = refthing.getInfluenceRadius(frametime) * 4;
 
 		picklist.clear();
 
@@ -543,7 +549,7 @@ public class TacticalView extends ViewBase implements Constants
 		gl.glEnable(GL.GL_FOG);
 
 		// setup lighting
-		Vector3d sun = refthing.getPosition(null, game.time());
+		Vector3d sun = getThingPosition(refthing, null);
 		float[] lightPosition = {(float) sun.x, (float) sun.y, (float) sun.z, 0.0f };
 		gl.glLightfv(GL.GL_LIGHT0, GL.GL_POSITION, lightPosition, 0);
 		float ambient_mag = 0.33f;
@@ -556,11 +562,11 @@ public class TacticalView extends ViewBase implements Constants
 		// if an object is tracked, translate
 		if (tracked != null)
 		{
-			Vector3d pos = tracked.getPosition(refthing, game.time());
+			Vector3d pos = getThingPosition(tracked, refthing);
 			adjustRadius(pos);
 			gl.glTranslated(-pos.x, -pos.y, -pos.z);
 			/*
-			Vector3d vel = tracked.getVelocity(refthing, game.time());
+			Vector3d vel = getThingVelocity(tracked, refthing);
 			ball.setModifier(new Orientation(vel, pos).getQuat());
 			*/
 		}
@@ -594,9 +600,94 @@ public class TacticalView extends ViewBase implements Constants
 			renderEclipticPlane();
 		}
 
+		if (showAsteroids)
+		{
+			renderAsteroids();
+		}
+
 		gl.glPopAttrib();
 	}
 
+	void renderAsteroids()
+	{
+		// the simulation thread moves them, we just draw them
+		game.requestAsteroids();
+		if (snap == null || snap.getAsteroidCatalog() == null
+				|| snap.getAsteroidCatalog().getParent() != refthing)
+			return;
+		double[] astpos = snap.getAsteroidPositions();
+		gl.glColor3f(0.5f, 0.5f, 0.5f);
+		gl.glBegin(GL.GL_POINTS);
+		Vector3d pos = new Vector3d();
+		for (int i=0; i<astpos.length/3; i++)
+		{
+			if (Double.isNaN(astpos[i*3]))
+				continue;
+			pos.set(astpos[i*3], astpos[i*3+1], astpos[i*3+2]);
+			adjustRadius(pos);
+			gl.glVertex3d(pos.x, pos.y, pos.z);
+		}
+		gl.glEnd();
+
+		// only the ones near the middle of the view can be picked
+		if (isPicking())
+		{
+			AsteroidCatalog astcat = snap.getAsteroidCatalog();
+			if (astpicks == null)
+				astpicks = new int[MAX_ASTEROID_PICKS];
+			Vector3d center = (tracked != null) ?
+				getThingPosition(tracked, refthing) : new Vector3d();
+			int n = astcat.findWithin(center, getViewDistance() / vscale, astpicks);
+			for (int j=0; j<n; j++)
+			{
+				int i = astpicks[j];
+				if (Double.isNaN(astpos[i*3]))
+					continue;
+				pos.set(astpos[i*3], astpos[i*3+1], astpos[i*3+2]);
+				adjustRadius(pos);
+				addPickPoint(PICK_RAD, new Integer(i), pos);
+			}
+		}
+	}
+
+	/**
+	  * Selects the catalog asteroid nearest to the tracked thing,
+	  * if there's one in view, making it real.
+	  */
+	public void selectNearestAsteroid()
+	{
+		if (tracked == null || snap == null || snap.getAsteroidCatalog() == null)
+			return;
+		AsteroidCatalog astcat = snap.getAsteroidCatalog();
+		Vector3d center = getThingPosition(tracked, astcat.getParent());
+		int i = astcat.nearest(center, getViewDistance() / vscale);
+		if (i >= 0)
+			setSelected(astcat.promote(i));
+	}
+
+	// catalog asteroids are Integers in the pick list
+	protected void showHintForPick(Object o)
+	{
+		if (o instanceof Integer)
+		{
+			if (snap != null && snap.getAsteroidCatalog() != null)
+				hintrend.showHintFor(o, snap.getAsteroidCatalog().getName(((Integer) o).intValue()));
+		} else
+			super.showHintForPick(o);
+	}
+
+	// picking a catalog asteroid makes it real
+	protected UniverseThing getPickedThing(Object o)
+	{
+		if (o instanceof Integer)
+		{
+			if (snap == null || snap.getAsteroidCatalog() == null)
+				return null;
+			return snap.getAsteroidCatalog().promote(((Integer) o).intValue());
+		}
+		return super.getPickedThing(o);
+	}
+
 	void renderEclipticPlane()
 	{
 		gl.glPushAttrib(GL.GL_ENABLE_BIT);
@@ -636,6 +727,11 @@ public class TacticalView extends ViewBase implements Constants
 			GLOKeyEvent keyev = (GLOKeyEvent) event;
 			if (keyev.isPressed())
 			{
+				if (showAsteroids && keyev.getKeyCode() == GLOKeyEvent.VK_N)
+				{
+					selectNearestAsteroid();
+					return true;
+				}
 				/*
 				switch ( keyev.getKeyCode() )
 				{
@@ -718,6 +814,16 @@ public class TacticalView extends ViewBase implements Constants
 		this.showEcliptic = showEcliptic;
 	}
 
+	public boolean getShowAsteroids()
+	{
+		return showAsteroids;
+	}
+
+	public void setShowAsteroids(boolean showAsteroids)
+	{
+		this.showAsteroids = showAsteroids;
+	}
+
 	public boolean getShowEquatorialPlane()
 	{
 		return showEquatorialPlane;
@@ -738,6 +844,7 @@ public class TacticalView extends ViewBase implements Constants
 		prophelp.registerGetSet("zoom_to_planet", "ZoomToPlanet", boolean.class);
 		prophelp.registerGetSet("showecliptic", "ShowEcliptic", boolean.class);
 		prophelp.registerGetSet("showequatorial", "ShowEquatorialPlane", boolean.class);
+		prophelp.registerGetSet("showasteroids", "ShowAsteroids", boolean.class);
 	}
 
 	public Object getProp(String key)
@@ -772,6 +879,8 @@ public class TacticalView extends ViewBase implements Constants
 
 	static float ORBIT_MIN_DEV;
 
+	static int MAX_ASTEROID_PICKS;
+
 	static SettingsGroup settings = new SettingsGroup(TacticalView.class, "Tactical")
 	{
 		public void updateSettings()
@@ -783,6 +892,7 @@ public class TacticalView extends ViewBase implements Constants
 			MAX_ORBIT_RENDER_SCALE = getFloat("MaxOrbitRenderScale", 16.0f);
 			ORBIT_WIDTH = getFloat("OrbitWidth", 0.1f);
 			ORBIT_MIN_DEV = getFloat("OrbitMinDev", 0.5f);
+			MAX_ASTEROID_PICKS = getInt("MaxAsteroidPicks", 64);
 		}
 	};
 }
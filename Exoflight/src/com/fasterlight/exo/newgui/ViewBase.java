@@ -23,7 +23,7 @@ import java.util.Iterator;
 import javax.media.opengl.GL;
 import javax.media.opengl.glu.GLU;
 
-import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.game.*;
 import com.fasterlight.exo.orbit.*;
 import com.fasterlight.exo.ship.*;
 import com.fasterlight.game.Settings;
@@ -63,6 +63,10 @@ public class ViewBase
 
 	protected HintRenderer hintrend = new HintRenderer(this);
 
+	// the snapshot this frame is drawn from, and its time
+	protected FrameSnapshot snap;
+	protected long frametime;
+
 	///
 
 	public ViewBase(SpaceGame game)
@@ -235,7 +239,7 @@ public class ViewBase
 		return v;
 	}
 
-	Vector3f addPickPoint(float radius, UniverseThing ut, Vector3d pos)
+	Vector3f addPickPoint(float radius, Object obj, Vector3d pos)
 	{
 		setManualProject();
 		Vector3d v = new Vector3d(pos);
@@ -244,28 +248,71 @@ public class ViewBase
 		{
 			float x = ctx.xscrn2world((float) v.x);
 			float y = getHeight() - ctx.yscrn2world((float) v.y);
-			picklist.addPickRec(x, y, radius, ut);
+			picklist.addPickRec(x, y, radius, obj);
 		}
 		return new Vector3f(v);
 	}
 
+	public void render(GLOContext ctx)
+	{
+		beginFrame();
+		super.render(ctx);
+	}
+
+	/**
+	  * Gets the snapshot this frame is drawn from, which is the same
+	  * for all views, so everything is drawn as of the same step.
+	  */
+	void beginFrame()
+	{
+		snap = guictx.getFrameSnapshot();
+		frametime = (snap != null) ? snap.getTime() : game.time();
+	}
+
+	// these read from the frame's snapshot, and fall back to
+	// the live objects for things the snapshot doesn't have
+	// (which is safe since frames are drawn under the sim lock)
+
+	Vector3d getThingPosition(UniverseThing thing, UniverseThing ref)
+	{
+		Vector3d r = (snap != null) ? snap.getPosition(thing, ref) : null;
+		return (r != null) ? r : thing.getPosition(ref, frametime);
+	}
+
+	Vector3d getThingVelocity(UniverseThing thing, UniverseThing ref)
+	{
+		Vector3d r = (snap != null) ? snap.getVelocity(thing, ref) : null;
+		return (r != null) ? r : thing.getVelocity(ref, frametime);
+	}
+
+	Orientation getThingOrientation(UniverseThing thing)
+	{
+		Orientation ort = (snap != null) ? snap.getOrientation(thing) : null;
+		return (ort != null) ? ort : thing.getOrientation(frametime);
+	}
+
+	FrameSnapshot.TelemetryValues getSnapshotTelemetry(UniverseThing thing)
+	{
+		return (snap != null) ? snap.getTelemetry(thing) : null;
+	}
+
 	Vector3d translateThing(UniverseThing thing)
 	{
-		Vector3d pos = thing.getPosition(getTracked(), game.time());
+		Vector3d pos = getThingPosition(thing, getTracked());
 		gl.glTranslated(pos.x, pos.y, pos.z);
 		return pos;
 	}
 
 	Vector3d invTranslateThing(UniverseThing thing)
 	{
-		Vector3d pos = thing.getPosition(getTracked(), game.time());
+		Vector3d pos = getThingPosition(thing, getTracked());
 		gl.glTranslated(-pos.x, -pos.y, -pos.z);
 		return pos;
 	}
 
 	Orientation rotateThing(UniverseThing thing)
 	{
-		Orientation ort = thing.getOrientation(game.time());
+		Orientation ort = getThingOrientation(thing);
 		rotateByOrientation(ort);
 		return ort;
 	}
@@ -289,7 +336,7 @@ public class ViewBase
 
 	Orientation rotateThingByVelocity(UniverseThing thing)
 	{
-		Vector3d vel = thing.getTrajectory().getVel(game.time());
+		Vector3d vel = getThingVelocity(thing, thing.getParent());
 		vel.normalize();
 		Orientation ort = new Orientation(vel);
 		Matrix3d mat = ort.getInvertedMatrix();
@@ -314,7 +361,7 @@ public class ViewBase
 
 	public Matrix3d getPlanetRotateMatrix(Planet p)
 	{
-		return p.getRotateMatrix(game.time());
+		return p.getRotateMatrix(frametime);
 	}
 
 	//
@@ -432,6 +479,25 @@ public class ViewBase
 		hintrend.showHintFor(ut, ut.getName());
 	}
 
+	/**
+	  * Shows the hint for an object in the pick list.
+	  * Subclasses that put other things in the pick list override this.
+	  */
+	protected void showHintForPick(Object o)
+	{
+		if (o instanceof UniverseThing)
+			showHintFor((UniverseThing) o);
+	}
+
+	/**
+	  * Returns the thing to select when an object in the pick list
+	  * is clicked, or null.  Called with the simulation lock held.
+	  */
+	protected UniverseThing getPickedThing(Object o)
+	{
+		return (o instanceof UniverseThing) ? (UniverseThing) o : null;
+	}
+
 	public void renderForeground(GLOContext ctx)
 	{
 		super.renderForeground(ctx);
@@ -462,10 +528,10 @@ public class ViewBase
 				int x = mbe.x;
 				int y = mbe.y;
 
-				Object o = picklist.pickObject(x, y);
-				if (o != null)
+				UniverseThing ut = getPickedThing(picklist.pickObject(x, y));
+				if (ut != null)
 				{
-					setSelected((UniverseThing) o);
+					setSelected(ut);
 				}
 			}
 		}
@@ -482,7 +548,7 @@ public class ViewBase
 				PickList.PickRec pickrec = picklist.pickObjectRec(x, y);
 				if (pickrec != null)
 				{
-					showHintFor((UniverseThing) pickrec.obj);
+					showHintForPick(pickrec.obj);
 				}
 				return true;
 			}
@@ -190,7 +190,7 @@ public class VisualView
 		par = ut.getParent();
 		while (par != star)
 		{
-			double d = UniverseUtil.getLOSArea(ut, star, par, game.time());
+			double d = UniverseUtil.getLOSArea(ut, star, par, frametime);
 			level *= (float) d;
 			if (level == 0)
 				break;
@@ -221,8 +221,10 @@ public class VisualView
 			if (plan.getAtmosphere() != null)
 			{
 				float ceil = plan.getAtmosphere().getCeiling();
+				FrameSnapshot.TelemetryValues snaptel = getSnapshotTelemetry(ut);
+				double alt = (snaptel != null) ? snaptel.getALT() : ut.getTelemetry().getALT();
 				float h =
-					Math.min(1, (float) ut.getTelemetry().getALT() / ceil);
+					Math.min(1, (float) alt / ceil);
 				l += (1 - h) * 0.2f * level;
 			}
 		}
@@ -307,7 +309,7 @@ public class VisualView
 		Matrix3d mat = getPlanetRotateMatrix(ut);
 
 		// get sun position
-		sunpos.set(ut.getPosition(null, game.time()));
+		sunpos.set(getThingPosition(ut, null));
 
 		double utdist = drec.rad * minviewsize / (height * fov / 90);
 
@@ -415,9 +417,18 @@ public class VisualView
 		if (ut == tracked.getParent())
 		{
 			shadow_planet = ut;
-			Telemetry tele = tracked.getTelemetry();
-			float agl = (float) tele.getALTAGL();
-			Vector3f nml = new Vector3f(tele.getCenDistVec());
+			FrameSnapshot.TelemetryValues snaptel = getSnapshotTelemetry(tracked);
+			float agl;
+			Vector3f nml;
+			if (snaptel != null)
+			{
+				agl = (float) snaptel.getALTAGL();
+				nml = new Vector3f(snaptel.getCenDistVec());
+			} else {
+				Telemetry tele = tracked.getTelemetry();
+				agl = (float) tele.getALTAGL();
+				nml = new Vector3f(tele.getCenDistVec());
+			}
 			nml.scale(-1.0f / nml.length());
 			shadow_planeeq = new Plane4f(nml, -agl);
 		}
@@ -511,7 +522,7 @@ public class VisualView
 					tracked,
 					ut,
 					tracked.getParent(),
-					game.time()))
+					frametime))
 			{
 				gl.glDisable(GL.GL_TEXTURE_2D);
 				gl.glBegin(GL.GL_POINTS);
@@ -534,7 +545,7 @@ public class VisualView
 					tracked,
 					ut,
 					tracked.getParent(),
-					game.time())
+					frametime)
 					> 0)
 		{
 			// push some attribs, to be safe...
@@ -564,14 +575,14 @@ public class VisualView
 				gl.glEnable(GL.GL_LIGHTING);
 
 				// draw shadow
-				Telemetry telem = ut.getTelemetry();
+				FrameSnapshot.TelemetryValues snaptel = getSnapshotTelemetry(ut);
 				if (shadow_planet != null
 					&& lightlevel > 0.01f
 					&& !nightVision
 					&& ut.getParent() == shadow_planet
 					&& minviewsize
 						* ut.getRadius()
-						/ (sin_fov * telem.getALTAGL())
+						/ (sin_fov * (snaptel != null ? snaptel.getALTAGL() : ut.getTelemetry().getALTAGL()))
 						> 1)
 				{
 					gl.glPushAttrib(GL.GL_ENABLE_BIT);
@@ -583,7 +594,7 @@ public class VisualView
 					gl.glPushMatrix();
 					gl.glLoadIdentity();
 
-					Vector3d lightpos = ut.getPosition(null, game.time());
+					Vector3d lightpos = getThingPosition(ut, null);
 					lightpos.normalize();
 					float[] arr = getShadowMatrix(shadow_planeeq, lightpos);
 					//					System.out.println(shadow_planeeq + "\t" + shadow_planeeq.distFromPt(new Vector3f()));
@@ -734,7 +745,7 @@ public class VisualView
 		gl.glPopMatrix();
 
 		// setup lighting
-		sunpos.set(tracked.getPosition(null, game.time()));
+		sunpos.set(getThingPosition(tracked, null));
 		float[] lightPosition =
 			{(float) - sunpos.x, (float) - sunpos.y, (float) - sunpos.z, 0.0f };
 		gl.glLightfv(GL.GL_LIGHT0, GL.GL_POSITION, lightPosition, 0);
@@ -812,7 +823,7 @@ public class VisualView
 		}
 		else
 		{
-			double infrad = ut.getInfluenceRadius(game.time());
+			double infrad = ut.getInfluenceRadius(frametime);
 			if (infrad == 0)
 				drawchildren = true;
 			else
@@ -881,7 +892,7 @@ public class VisualView
 		DisplayRec(UniverseThing thing)
 		{
 			this.thing = thing;
-			this.pos = thing.getPosition(tracked, game.time());
+			this.pos = getThingPosition(thing, tracked);
 			this.rad = (float) thing.getRadius();
 			this.visrad = thing.getVisibleRadius() * VISRAD_SLOP;
 			this.frustrad = this.rad * VISRAD_SLOP;
@@ -1204,7 +1215,10 @@ public class VisualView
 		// if internal camera, move the viewpoint
 		if (vofs != null)
 		{
-			Orientation refort =
+			FrameSnapshot.TelemetryValues snaptel =
+				getSnapshotTelemetry(cam.getReference());
+			Orientation refort = (snaptel != null) ?
+				snaptel.getOrientationFixed() :
 				cam.getReference().getTelemetry().getOrientationFixed();
 			refort.transform(vofs);
 			gl.glTranslatef(vofs.x, vofs.y, vofs.z);
@@ -0,0 +1,508 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit;
+
+import java.io.*;
+import java.util.*;
+
+import com.fasterlight.exo.orbit.traj.*;
+import com.fasterlight.game.*;
+import com.fasterlight.util.Util;
+import com.fasterlight.vecmath.Vector3d;
+
+/**
+  * The minor bodies from an astorb.dat file (Lowell Observatory),
+  * kept as arrays of elements instead of as things in the universe.
+  * update() moves the whole catalog to a given time, on the
+  * PropagationScheduler's threads if there is one, and keeps
+  * the bodies sorted by X so nearest() and findWithin() don't have
+  * to look at all of them.  promote() makes a real Asteroid for
+  * a body when someone wants to go there.
+  * The elements are heliocentric ecliptic J2000, which is already
+  * the XYZ frame, so no conversion is needed.
+  */
+public class AsteroidCatalog
+implements Constants
+{
+	UniverseThing parent;
+	double mu;
+	PropagationScheduler sched;
+
+	int count;
+	String[] names;
+	int[] numbers;
+	float[] magnitudes; // absolute magnitude (H)
+	float[] diameters; // km
+	double[] epoch; // s
+	double[] a; // km
+	double[] ecc;
+	double[] M0;
+	double[] n; // rad/s
+	double[] px, py, pz, qx, qy, qz; // perifocal axes, in XYZ
+	double[] incl, raan, argp;
+
+	Asteroid[] promoted;
+
+	// positions at 'postime', relative to parent
+	long postime = INVALID_TICK;
+	double[] pos;
+	int[] byx; // indices sorted by pos X
+	Integer[] sortbuf; // same order as byx, for Arrays.sort()
+
+	//
+
+	public AsteroidCatalog(UniverseThing parent)
+	{
+		this.parent = parent;
+		this.mu = parent.getMass()*GRAV_CONST_KM;
+	}
+
+	public UniverseThing getParent()
+	{
+		return parent;
+	}
+
+	/**
+	  * If set, update() splits the catalog up between
+	  * the scheduler's worker threads.
+	  */
+	public void setScheduler(PropagationScheduler sched)
+	{
+		this.sched = sched;
+	}
+
+	/**
+	  * Reads an astorb.dat file, one body per line.
+	  */
+	public void load(InputStream in)
+	throws IOException
+	{
+		BufferedReader br = new BufferedReader(new InputStreamReader(in));
+		List lines = new ArrayList();
+		String line;
+		while ((line=br.readLine()) != null)
+		{
+			if (line.trim().length() > 0)
+				lines.add(line);
+		}
+		allocate(lines.size());
+		for (int i=0; i<count; i++)
+		{
+			line = (String)lines.get(i);
+			try {
+				parseLine(i, line);
+			} catch (RuntimeException re) {
+				throw new IOException("Bad astorb.dat line " + (i+1) + ": " + re);
+			}
+		}
+	}
+
+	void allocate(int nents)
+	{
+		count = nents;
+		names = new String[nents];
+		numbers = new int[nents];
+		magnitudes = new float[nents];
+		diameters = new float[nents];
+		epoch = new double[nents];
+		a = new double[nents];
+		ecc = new double[nents];
+		M0 = new double[nents];
+		n = new double[nents];
+		px = new double[nents];
+		py = new double[nents];
+		pz = new double[nents];
+		qx = new double[nents];
+		qy = new double[nents];
+		qz = new double[nents];
+		incl = new double[nents];
+		raan = new double[nents];
+		argp = new double[nents];
+		promoted = new Asteroid[nents];
+		pos = new double[nents*3];
+		byx = new int[nents];
+		sortbuf = new Integer[nents];
+		for (int i=0; i<nents; i++)
+		{
+			byx[i] = i;
+			sortbuf[i] = new Integer(i);
+		}
+		postime = INVALID_TICK;
+	}
+
+	void parseLine(int i, String line)
+	{
+		String num = line.substring(0, 6).trim();
+		numbers[i] = (num.length() > 0) ? Integer.parseInt(num) : 0; // 0 = unnumbered
+		names[i] = line.substring(6, 25).trim();
+		magnitudes[i] = (float)Util.parseDouble(line.substring(41, 47).trim());
+		String diam = line.substring(58, 64).trim();
+		float d = (diam.length() > 0) ? (float)Util.parseDouble(diam) : 0;
+		if (d <= 0)
+		{
+			// guess from the magnitude, with an albedo of 0.15
+			d = (float)(1329/Math.sqrt(0.15)*Math.pow(10, -magnitudes[i]/5));
+		}
+		diameters[i] = d;
+		// fixed columns -- big angles can run into each other
+		String ymd = line.substring(105, 113);
+		Calendar cal = new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+		cal.clear();
+		cal.set(Integer.parseInt(ymd.substring(0, 4)),
+			Integer.parseInt(ymd.substring(4, 6))-1,
+			Integer.parseInt(ymd.substring(6, 8)));
+		epoch[i] = AstroUtil.javaDateToSeconds(cal.getTime());
+		M0[i] = Util.toRadians(Util.parseDouble(line.substring(114, 125).trim()));
+		argp[i] = Util.toRadians(Util.parseDouble(line.substring(125, 136).trim()));
+		raan[i] = Util.toRadians(Util.parseDouble(line.substring(136, 147).trim()));
+		incl[i] = Util.toRadians(Util.parseDouble(line.substring(147, 157).trim()));
+		ecc[i] = Util.parseDouble(line.substring(157, 168).trim());
+		a[i] = Util.parseDouble(line.substring(168, 181).trim())*AU_TO_KM;
+		if (!(ecc[i] >= 0 && ecc[i] < 1 && a[i] > 0))
+			throw new IllegalArgumentException("not an ellipse");
+		n[i] = Math.sqrt(mu/(a[i]*a[i]*a[i]));
+
+		// same as the columns of KeplerianElements.getMatrix()
+		double co = Math.cos(raan[i]);
+		double so = Math.sin(raan[i]);
+		double cw = Math.cos(argp[i]);
+		double sw = Math.sin(argp[i]);
+		double ci = Math.cos(incl[i]);
+		double si = Math.sin(incl[i]);
+		px[i] = co*cw - so*sw*ci;
+		py[i] = so*cw + co*sw*ci;
+		pz[i] = sw*si;
+		qx[i] = -co*sw - so*cw*ci;
+		qy[i] = -so*sw + co*cw*ci;
+		qz[i] = cw*si;
+	}
+
+	//
+
+	public int size()
+	{
+		return count;
+	}
+
+	public String getName(int i)
+	{
+		return names[i];
+	}
+
+	public int getNumber(int i)
+	{
+		return numbers[i];
+	}
+
+	public float getDiameter(int i)
+	{
+		return diameters[i];
+	}
+
+	public float getMagnitude(int i)
+	{
+		return magnitudes[i];
+	}
+
+	/**
+	  * Returns the index of the body named 'name', or -1.
+	  */
+	public int indexOf(String name)
+	{
+		for (int i=0; i<count; i++)
+		{
+			if (names[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+
+	public KeplerianElements getElements(int i)
+	{
+		KeplerianElements ke = new KeplerianElements();
+		ke.setMu(mu);
+		ke.setEccentricity(ecc[i]);
+		ke.setSemiMajorAxis(a[i]);
+		ke.setInclination(incl[i]);
+		ke.setRAAN(raan[i]);
+		ke.setArgPeriapsis(argp[i]);
+		ke.setMeanAnomaly(M0[i]);
+		ke.setEpoch(epoch[i]);
+		return ke;
+	}
+
+	public Conic getConic(int i)
+	{
+		return new Conic(getElements(i));
+	}
+
+	//
+
+	/**
+	  * Computes the position (and velocity, if 'vel' is non-null)
+	  * of bodies [start,end) at 'time', relative to the parent.
+	  * The results go in 'p' and 'v' as x,y,z triples.
+	  */
+	public void propagate(long time, double[] p, double[] v, int start, int end)
+	{
+		double t = time*(1d/TICKS_PER_SEC);
+		for (int i=start; i<end; i++)
+		{
+			double e = ecc[i];
+			double E = Kepler.solve(e, M0[i] + n[i]*(t - epoch[i]));
+			double cosE = Math.cos(E);
+			double sinE = Math.sin(E);
+			double se = Math.sqrt(1 - e*e);
+			double xp = a[i]*(cosE - e);
+			double yp = a[i]*se*sinE;
+			int k = i*3;
+			p[k] = xp*px[i] + yp*qx[i];
+			p[k+1] = xp*py[i] + yp*qy[i];
+			p[k+2] = xp*pz[i] + yp*qz[i];
+			if (v != null)
+			{
+				double f = n[i]*a[i]/(1 - e*cosE);
+				double vxp = -f*sinE;
+				double vyp = f*se*cosE;
+				v[k] = vxp*px[i] + vyp*qx[i];
+				v[k+1] = vxp*py[i] + vyp*qy[i];
+				v[k+2] = vxp*pz[i] + vyp*qz[i];
+			}
+		}
+	}
+
+	public void propagate(long time, double[] p, double[] v)
+	{
+		propagate(time, p, v, 0, count);
+	}
+
+	class PropagateJob
+	implements PropagationScheduler.Job
+	{
+		long time;
+		int start, end;
+		PropagateJob(long time, int start, int end)
+		{
+			this.time = time;
+			this.start = start;
+			this.end = end;
+		}
+		public void integrate()
+		{
+			propagate(time, pos, null, start, end);
+		}
+		public void commit(Game game)
+		{
+		}
+	}
+
+	/**
+	  * Moves all bodies to 'time', if they aren't there already.
+	  */
+	public synchronized void update(long time)
+	{
+		if (time == postime)
+			return;
+		if (sched != null && PropagationScheduler.getNumThreads() > 1 && count > CHUNK_SIZE)
+		{
+			List jobs = new ArrayList();
+			for (int i=0; i<count; i+=CHUNK_SIZE)
+				jobs.add(new PropagateJob(time, i, Math.min(count, i+CHUNK_SIZE)));
+			sched.integrateNow(jobs);
+		} else
+			propagate(time, pos, null, 0, count);
+		postime = time;
+		sortByX();
+	}
+
+	public long getUpdateTime()
+	{
+		return postime;
+	}
+
+	/**
+	  * Returns the position of body 'i' as of the last update().
+	  */
+	public Vector3d getPosition(int i)
+	{
+		return new Vector3d(pos[i*3], pos[i*3+1], pos[i*3+2]);
+	}
+
+	public void getPosition(int i, Vector3d p)
+	{
+		p.set(pos[i*3], pos[i*3+1], pos[i*3+2]);
+	}
+
+	/**
+	  * Copies the positions as of the last update() into 'p',
+	  * as x,y,z triples.  Promoted bodies are NaN.
+	  */
+	public synchronized void copyPositions(double[] p)
+	{
+		System.arraycopy(pos, 0, p, 0, count*3);
+		for (int i=0; i<count; i++)
+		{
+			if (promoted[i] != null)
+				p[i*3] = p[i*3+1] = p[i*3+2] = Double.NaN;
+		}
+	}
+
+	private Comparator xcomparator = new Comparator()
+	{
+		public int compare(Object a, Object b)
+		{
+			double xa = pos[((Integer)a).intValue()*3];
+			double xb = pos[((Integer)b).intValue()*3];
+			return (xa < xb) ? -1 : (xa > xb) ? 1 : 0;
+		}
+	};
+
+	// merge sort, starting from the last order --
+	// nearly linear when it hardly changes between updates
+	private void sortByX()
+	{
+		Arrays.sort(sortbuf, 0, count, xcomparator);
+		for (int i=0; i<count; i++)
+			byx[i] = sortbuf[i].intValue();
+	}
+
+	// returns the first slot in 'byx' with pos X >= x
+	private int searchX(double x)
+	{
+		int lo = 0;
+		int hi = count;
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+			if (pos[byx[mid]*3] < x)
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	private double dist2(int i, Vector3d p)
+	{
+		double dx = pos[i*3] - p.x;
+		double dy = pos[i*3+1] - p.y;
+		double dz = pos[i*3+2] - p.z;
+		return dx*dx + dy*dy + dz*dz;
+	}
+
+	/**
+	  * Returns the body nearest to 'p' (relative to the parent)
+	  * as of the last update(), or -1 if none is within 'maxdist'.
+	  */
+	public synchronized int nearest(Vector3d p, double maxdist)
+	{
+		double best = maxdist*maxdist;
+		int besti = -1;
+		int mid = searchX(p.x);
+		// walk out both ways until X alone is too far
+		for (int k=mid; k<count; k++)
+		{
+			int i = byx[k];
+			double dx = pos[i*3] - p.x;
+			if (dx*dx > best)
+				break;
+			double d2 = dist2(i, p);
+			if (d2 < best)
+			{
+				best = d2;
+				besti = i;
+			}
+		}
+		for (int k=mid-1; k>=0; k--)
+		{
+			int i = byx[k];
+			double dx = pos[i*3] - p.x;
+			if (dx*dx > best)
+				break;
+			double d2 = dist2(i, p);
+			if (d2 < best)
+			{
+				best = d2;
+				besti = i;
+			}
+		}
+		return besti;
+	}
+
+	/**
+	  * Puts the bodies within 'radius' of 'p' (relative to the parent)
+	  * as of the last update() into 'result', and returns how many
+	  * there were.  Stops when 'result' is full.
+	  */
+	public synchronized int findWithin(Vector3d p, double radius, int[] result)
+	{
+		double r2 = radius*radius;
+		int nfound = 0;
+		for (int k=searchX(p.x-radius); k<count && nfound<result.length; k++)
+		{
+			int i = byx[k];
+			if (pos[i*3] > p.x+radius)
+				break;
+			if (dist2(i, p) <= r2)
+				result[nfound++] = i;
+		}
+		return nfound;
+	}
+
+	//
+
+	/**
+	  * Returns an Asteroid for body 'i', putting it into
+	  * the universe the first time.
+	  */
+	public synchronized Asteroid promote(int i)
+	{
+		Asteroid ast = promoted[i];
+		if (ast != null)
+			return ast;
+		ast = new Asteroid();
+		ast.setName(names[i]);
+		float r = diameters[i]/2;
+		ast.setRadius(r);
+		ast.setMass(DENSITY*(4*Math.PI/3)*r*r*r*1e9);
+		ast.setTrajectory(new OrbitTrajectory(parent, getConic(i)));
+		promoted[i] = ast;
+		return ast;
+	}
+
+	public Asteroid getPromoted(int i)
+	{
+		return promoted[i];
+	}
+
+	//
+
+	static int CHUNK_SIZE;
+	static double DENSITY; // kg/m^3
+
+	static SettingsGroup settings = new SettingsGroup(AsteroidCatalog.class, "Propagation")
+	{
+		public void updateSettings()
+		{
+			CHUNK_SIZE = getInt("AsteroidChunkSize", 256);
+			DENSITY = getDouble("AsteroidDensity", 2000);
+		}
+	};
+
+}
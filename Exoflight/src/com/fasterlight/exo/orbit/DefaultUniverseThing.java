@@ -20,6 +20,7 @@ package com.fasterlight.exo.orbit;
 
 import java.util.*;
 
+import com.fasterlight.exo.orbit.traj.StaticTrajectory;
 import com.fasterlight.game.Game;
 import com.fasterlight.spif.*;
 import com.fasterlight.util.Vec3d;
@@ -39,6 +40,10 @@ public class DefaultUniverseThing
 	Universe u;
 	Telemetry telem;
 
+	// position & velocity relative to parent, for one tick
+	// (only kept for static trajectories, since they can't change)
+	private transient volatile LocalState local_cache;
+
 	//
 
 	public DefaultUniverseThing()
@@ -117,33 +122,117 @@ public class DefaultUniverseThing
 		return children.iterator();
 	}
 
+	static class LocalState
+	{
+		final long time;
+		final Trajectory traj;
+		final Vector3d r, v;
+
+		LocalState(long time, Trajectory traj)
+		{
+			this.time = time;
+			this.traj = traj;
+			this.r = traj.getPos(time);
+			this.v = traj.getVel(time);
+		}
+	}
+
+	/**
+	  * Returns the cached position & velocity relative to our parent
+	  * at 'time', or null if our trajectory is not cacheable.
+	  */
+	private LocalState getLocalState(long time)
+	{
+		if (!(traj instanceof StaticTrajectory))
+			return null;
+		// read it once, another thread may replace it
+		LocalState ls = local_cache;
+		if (ls == null || ls.time != time || ls.traj != traj)
+		{
+			ls = new LocalState(time, traj);
+			local_cache = ls;
+		}
+		return ls;
+	}
+
+	/**
+	  * Finds the nearest thing that is both an ancestor of (or equal to)
+	  * 'a' and 'b', or null if they have none in common.
+	  */
+	public static UniverseThing getCommonAncestor(UniverseThing a, UniverseThing b)
+	{
+		for (UniverseThing x = a; x != null; x = x.getParent())
+		{
+			for (UniverseThing y = b; y != null; y = y.getParent())
+			{
+				if (x == y)
+					return x;
+			}
+		}
+		return null;
+	}
+
+	/**
+	  * Adds sign * (position of 'ut' relative to ancestor 'anc') to 'pos'.
+	  */
+	private static void addPathPosition(Vector3d pos, UniverseThing ut,
+		UniverseThing anc, long time, double sign)
+	{
+		while (ut != anc && ut != null)
+		{
+			if (ut instanceof DefaultUniverseThing)
+			{
+				DefaultUniverseThing dut = (DefaultUniverseThing)ut;
+				dut.assertTrajectory();
+				LocalState ls = dut.getLocalState(time);
+				Vector3d r = (ls != null) ? ls.r : dut.traj.getPos(time);
+				pos.scaleAdd(sign, r, pos);
+			} else
+				pos.scaleAdd(sign, ut.getPosition(ut.getParent(), time), pos);
+			ut = ut.getParent();
+		}
+	}
+
+	/**
+	  * Adds sign * (velocity of 'ut' relative to ancestor 'anc') to 'vel'.
+	  */
+	private static void addPathVelocity(Vector3d vel, UniverseThing ut,
+		UniverseThing anc, long time, double sign)
+	{
+		while (ut != anc && ut != null)
+		{
+			if (ut instanceof DefaultUniverseThing)
+			{
+				DefaultUniverseThing dut = (DefaultUniverseThing)ut;
+				dut.assertTrajectory();
+				LocalState ls = dut.getLocalState(time);
+				Vector3d v = (ls != null) ? ls.v : dut.traj.getVel(time);
+				vel.scaleAdd(sign, v, vel);
+			} else
+				vel.scaleAdd(sign, ut.getVelocity(ut.getParent(), time), vel);
+			ut = ut.getParent();
+		}
+	}
+
 	public Vector3d getPosition(UniverseThing ref, long time)
 	{
 		if (ref == this)
 			return new Vec3d();
-		// if the reference frame is our parent, we don't need
-		// to do anything else
 		assertTrajectory();
 
-		Vector3d pos = traj.getPos(time);
-		if (getParent() != ref)
+		// if the reference frame is our parent, we don't need
+		// to do anything else
+		if (getParent() == ref)
 		{
-			// if we have a parent, add its position with relation
-			// to 'ref'
-			if (getParent() != null)
-			{
-				pos.add(getParent().getPosition(ref, time));
-			}
-			else
-			{
-				// if we don't have a parent, we need to
-				// subtract the position of the reference object
-				// with respect to the origin
-				// optz: use common parent instead of origin
-				if (ref != null)
-					pos.sub(ref.getPosition(null, time));
-			}
+			LocalState ls = getLocalState(time);
+			return (ls != null) ? new Vec3d(ls.r) : traj.getPos(time);
 		}
+
+		// go up to the common parent, and back down to 'ref'
+		UniverseThing anc = getCommonAncestor(this, ref);
+		Vector3d pos = new Vec3d();
+		addPathPosition(pos, this, anc, time, 1);
+		addPathPosition(pos, ref, anc, time, -1);
 		return pos;
 	}
 
@@ -151,22 +240,18 @@ public class DefaultUniverseThing
 	{
 		if (ref == this)
 			return new Vec3d();
-
 		assertTrajectory();
 
-		Vector3d vel = traj.getVel(time);
-		if (getParent() != ref)
+		if (getParent() == ref)
 		{
-			if (getParent() != null)
-			{
-				vel.add(getParent().getVelocity(ref, time));
-			}
-			else
-			{
-				if (ref != null)
-					vel.sub(ref.getVelocity(null, time));
-			}
+			LocalState ls = getLocalState(time);
+			return (ls != null) ? new Vec3d(ls.v) : traj.getVel(time);
 		}
+
+		UniverseThing anc = getCommonAncestor(this, ref);
+		Vector3d vel = new Vec3d();
+		addPathVelocity(vel, this, anc, time, 1);
+		addPathVelocity(vel, ref, anc, time, -1);
 		return vel;
 	}
 
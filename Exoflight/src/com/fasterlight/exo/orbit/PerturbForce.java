@@ -47,6 +47,13 @@ public class PerturbForce
 		T = new Vector3d(pf.T);
 	}
 
+	public void set(PerturbForce pf)
+	{
+		a.set(pf.a);
+		f.set(pf.f);
+		T.set(pf.T);
+	}
+
 	public void clear()
 	{
 		a.set(0,0,0);
@@ -68,9 +75,10 @@ public class PerturbForce
 	public void addOffsetForce(Vector3d df, Vector3d pt)
 	{
 		f.add(df);
-		Vector3d v = new Vector3d(); // torque = cross(r,pt)
-		v.cross(pt,df);
-		T.add(v);
+		// torque = cross(r,pt)
+		T.x += pt.y*df.z - pt.z*df.y;
+		T.y += pt.z*df.x - pt.x*df.z;
+		T.z += pt.x*df.y - pt.y*df.x;
 	}
 	/**
 	  * Add a force, offset by the CM -- so there's a torque
@@ -78,9 +86,10 @@ public class PerturbForce
 	public void addOffsetForce(Vector3d df, Vector3d pt, double scale)
 	{
 		f.scaleAdd(scale, df, f);
-		Vector3d v = new Vector3d(); // torque = cross(r,pt)
-		v.cross(pt,df);
-		T.scaleAdd(scale, v, T);
+		// torque = cross(r,pt)
+		T.x += (pt.y*df.z - pt.z*df.y)*scale;
+		T.y += (pt.z*df.x - pt.x*df.z)*scale;
+		T.z += (pt.x*df.y - pt.y*df.x)*scale;
 	}
 	/**
 	  * Add a force, offset by the CM -- so there's a torque
@@ -90,11 +99,10 @@ public class PerturbForce
 		f.x += df.x;
 		f.y += df.y;
 		f.z += df.z;
-		Vector3f v = new Vector3f(); // torque = cross(r,pt)
-		v.cross(pt,df);
-		T.x += v.x;
-		T.y += v.y;
-		T.z += v.z;
+		// torque = cross(r,pt)
+		T.x += pt.y*df.z - pt.z*df.y;
+		T.y += pt.z*df.x - pt.x*df.z;
+		T.z += pt.x*df.y - pt.y*df.x;
 	}
 	/**
 	  * Add a force, offset by the CM -- so there's a torque
@@ -104,11 +112,10 @@ public class PerturbForce
 		f.x += df.x*scale;
 		f.y += df.y*scale;
 		f.z += df.z*scale;
-		Vector3f v = new Vector3f(); // torque = cross(r,pt)
-		v.cross(pt,df);
-		T.x += v.x*scale;
-		T.y += v.y*scale;
-		T.z += v.z*scale;
+		// torque = cross(r,pt)
+		T.x += (pt.y*df.z - pt.z*df.y)*scale;
+		T.y += (pt.z*df.x - pt.x*df.z)*scale;
+		T.z += (pt.x*df.y - pt.y*df.x)*scale;
 	}
 	/**
 	  * Transform by an orientation
@@ -0,0 +1,365 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit;
+
+import java.io.*;
+import java.util.*;
+
+import com.fasterlight.game.SettingsGroup;
+import com.fasterlight.vecmath.*;
+
+/**
+  * A catalog of satellites read from two-line element sets,
+  * kept as arrays of elements instead of as SpaceShips.
+  * Parsing is split up between threads, and propagate() moves
+  * the whole catalog to a given time in one pass over the arrays,
+  * with the J2 secular rates (like the secular part of SGP4).
+  * Elements are in the planet's IJK frame; positions come out in XYZ.
+  * To fly or look at a satellite, make it into a real thing
+  * (see SpaceGame.materializeSatellite()).
+  */
+public class SatelliteCatalog
+implements Constants
+{
+	Planet planet;
+	double mu;
+	boolean secularJ2 = true;
+
+	int count;
+	String[] names;
+	Map nameindex; // name -> Integer
+	String[] tle1s, tle2s;
+	double[] epoch; // s
+	double[] a; // semimajor axis, km
+	double[] ecc;
+	double[] incl;
+	double[] raan;
+	double[] argp;
+	double[] M0; // mean anomaly at epoch
+	double[] n; // mean motion, rad/s
+	double[] raandot, argpdot, Mdot; // J2 secular rates, rad/s
+
+	//
+
+	public SatelliteCatalog(Planet planet)
+	{
+		this.planet = planet;
+		this.mu = planet.getMass()*GRAV_CONST_KM;
+	}
+
+	public Planet getPlanet()
+	{
+		return planet;
+	}
+
+	/**
+	  * If true (the default), propagate() adds the J2 secular
+	  * rates to RAAN, argument of periapsis and mean anomaly.
+	  */
+	public void setSecularJ2(boolean b)
+	{
+		this.secularJ2 = b;
+	}
+
+	public boolean getSecularJ2()
+	{
+		return secularJ2;
+	}
+
+	/**
+	  * Reads a file of 3-line entries (name, line 1, line 2),
+	  * like orbits/earth-tles.dat.
+	  */
+	public void load(InputStream in)
+	throws IOException
+	{
+		BufferedReader br = new BufferedReader(new InputStreamReader(in));
+		List lines = new ArrayList();
+		String line;
+		while ((line=br.readLine()) != null)
+		{
+			if (line.trim().length() > 0)
+				lines.add(line);
+		}
+		int nents = lines.size()/3;
+		String[] nms = new String[nents];
+		String[] tle1 = new String[nents];
+		String[] tle2 = new String[nents];
+		for (int i=0; i<nents; i++)
+		{
+			nms[i] = ((String)lines.get(i*3)).trim();
+			tle1[i] = (String)lines.get(i*3+1);
+			tle2[i] = (String)lines.get(i*3+2);
+		}
+		parse(nms, tle1, tle2, NUM_THREADS);
+	}
+
+	/**
+	  * Replaces the catalog with the given entries,
+	  * using up to 'nthreads' threads to parse them.
+	  */
+	public void parse(String[] nms, String[] tle1, String[] tle2, int nthreads)
+	{
+		int nents = nms.length;
+		names = nms;
+		nameindex = new HashMap(nents*2);
+		for (int i=nents-1; i>=0; i--)
+			nameindex.put(nms[i], new Integer(i)); // first one wins
+		tle1s = tle1;
+		tle2s = tle2;
+		epoch = new double[nents];
+		a = new double[nents];
+		ecc = new double[nents];
+		incl = new double[nents];
+		raan = new double[nents];
+		argp = new double[nents];
+		M0 = new double[nents];
+		n = new double[nents];
+		raandot = new double[nents];
+		argpdot = new double[nents];
+		Mdot = new double[nents];
+		count = nents;
+
+		nthreads = Math.max(1, Math.min(nthreads, nents/MIN_ENTRIES_PER_THREAD));
+		if (nthreads == 1)
+		{
+			parseRange(tle1, tle2, 0, nents);
+			return;
+		}
+		// each thread gets its own slice of the arrays
+		ParseThread[] threads = new ParseThread[nthreads];
+		for (int i=0; i<nthreads; i++)
+		{
+			threads[i] = new ParseThread(tle1, tle2, nents*i/nthreads, nents*(i+1)/nthreads);
+			threads[i].start();
+		}
+		RuntimeException failure = null;
+		for (int i=0; i<nthreads; i++)
+		{
+			try {
+				threads[i].join();
+			} catch (InterruptedException ie) {
+				throw new RuntimeException("Interrupted while parsing TLEs");
+			}
+			if (failure == null)
+				failure = threads[i].failure;
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	class ParseThread extends Thread
+	{
+		String[] tle1, tle2;
+		int start, end;
+		RuntimeException failure;
+
+		ParseThread(String[] tle1, String[] tle2, int start, int end)
+		{
+			super("TLE parser");
+			this.tle1 = tle1;
+			this.tle2 = tle2;
+			this.start = start;
+			this.end = end;
+		}
+		public void run()
+		{
+			try {
+				parseRange(tle1, tle2, start, end);
+			} catch (RuntimeException re) {
+				failure = re;
+			}
+		}
+	}
+
+	void parseRange(String[] tle1, String[] tle2, int start, int end)
+	{
+		double J2 = planet.getJ2();
+		double R = planet.getRadius();
+		for (int j=start; j<end; j++)
+		{
+			KeplerianElements ke;
+			try {
+				ke = new KeplerianElements(tle1[j], tle2[j], mu);
+			} catch (RuntimeException re) {
+				throw new IllegalArgumentException("Bad TLE for " + names[j] + ": " + re);
+			}
+			epoch[j] = ke.getEpoch();
+			a[j] = ke.getSemiMajorAxis();
+			ecc[j] = ke.getEccentricity();
+			incl[j] = ke.getInclination();
+			raan[j] = ke.getRAAN();
+			argp[j] = ke.getArgPeriapsis();
+			M0[j] = ke.getMeanAnomaly();
+			n[j] = Math.sqrt(mu/(a[j]*a[j]*a[j]));
+			// J2 secular rates (same as OrbitTrajectory.setSecularJ2())
+			double e2 = 1 - ecc[j]*ecc[j];
+			double rp = R/(a[j]*e2);
+			double k = J2*rp*rp*n[j];
+			double cosi = Math.cos(incl[j]);
+			raandot[j] = -1.5*k*cosi;
+			argpdot[j] = 0.75*k*(5*cosi*cosi - 1);
+			Mdot[j] = 0.75*k*Math.sqrt(e2)*(3*cosi*cosi - 1);
+		}
+	}
+
+	//
+
+	public int size()
+	{
+		return count;
+	}
+
+	public String getName(int i)
+	{
+		return names[i];
+	}
+
+	/**
+	  * Returns the index of the satellite named 'name', or -1.
+	  */
+	public int indexOf(String name)
+	{
+		Integer i = (nameindex != null) ? (Integer)nameindex.get(name) : null;
+		return (i != null) ? i.intValue() : -1;
+	}
+
+	public String getTLE1(int i)
+	{
+		return tle1s[i];
+	}
+
+	public String getTLE2(int i)
+	{
+		return tle2s[i];
+	}
+
+	/**
+	  * Returns the elements of satellite 'i' at its epoch,
+	  * in the IJK frame (like the TLE).
+	  */
+	public KeplerianElements getElements(int i)
+	{
+		return new KeplerianElements(tle1s[i], tle2s[i], mu);
+	}
+
+	/**
+	  * Returns the orbit of satellite 'i' at its epoch, in XYZ.
+	  */
+	public Conic getConic(int i)
+	{
+		return planet.ijk2xyz(getElements(i).getConic());
+	}
+
+	/**
+	  * Computes the position (and velocity, if 'vel' is non-null)
+	  * of every satellite at 'time', in XYZ.  The results go in 'pos'
+	  * and 'vel' as x,y,z triples, so they must be 3*size() long.
+	  */
+	public void propagate(long time, double[] pos, double[] vel)
+	{
+		double t = time*(1d/TICKS_PER_SEC);
+		Matrix3d m = planet.getIJK2XYZMatrix();
+		double j2 = secularJ2 ? 1 : 0;
+		for (int i=0; i<count; i++)
+		{
+			double dt = t - epoch[i];
+			double e = ecc[i];
+			double O = raan[i] + raandot[i]*dt*j2;
+			double w = argp[i] + argpdot[i]*dt*j2;
+			double M = M0[i] + (n[i] + Mdot[i]*j2)*dt;
+			M = Math.IEEEremainder(M, Math.PI*2);
+
+			// Newton's method for Kepler's equation
+			double E = (M < 0) ? M - e : M + e;
+			for (int iter=0; iter<KEPLER_ITERS; iter++)
+			{
+				double dE = (M - E + e*Math.sin(E)) / (1 - e*Math.cos(E));
+				E += dE;
+				if (Math.abs(dE) < Kepler.THRESHOLD)
+					break;
+			}
+			double cosE = Math.cos(E);
+			double sinE = Math.sin(E);
+			double se = Math.sqrt(1 - e*e);
+			// perifocal position
+			double xp = a[i]*(cosE - e);
+			double yp = a[i]*se*sinE;
+
+			// perifocal -> IJK (columns of KeplerianElements.getMatrix())
+			double co = Math.cos(O);
+			double so = Math.sin(O);
+			double cw = Math.cos(w);
+			double sw = Math.sin(w);
+			double ci = Math.cos(incl[i]);
+			double si = Math.sin(incl[i]);
+			double px = co*cw - so*sw*ci;
+			double py = so*cw + co*sw*ci;
+			double pz = sw*si;
+			double qx = -co*sw - so*cw*ci;
+			double qy = -so*sw + co*cw*ci;
+			double qz = cw*si;
+
+			double x = xp*px + yp*qx;
+			double y = xp*py + yp*qy;
+			double z = xp*pz + yp*qz;
+			int k = i*3;
+			pos[k] = m.m00*x + m.m01*y + m.m02*z;
+			pos[k+1] = m.m10*x + m.m11*y + m.m12*z;
+			pos[k+2] = m.m20*x + m.m21*y + m.m22*z;
+
+			if (vel != null)
+			{
+				double f = n[i]*a[i]/(1 - e*cosE);
+				double vxp = -f*sinE;
+				double vyp = f*se*cosE;
+				x = vxp*px + vyp*qx;
+				y = vxp*py + vyp*qy;
+				z = vxp*pz + vyp*qz;
+				vel[k] = m.m00*x + m.m01*y + m.m02*z;
+				vel[k+1] = m.m10*x + m.m11*y + m.m12*z;
+				vel[k+2] = m.m20*x + m.m21*y + m.m22*z;
+			}
+		}
+	}
+
+	//
+
+	static final int KEPLER_ITERS = 16;
+	static final int MIN_ENTRIES_PER_THREAD = 256;
+
+	static int NUM_THREADS;
+
+	/**
+	  * Sets the # of threads used to parse catalogs in load().
+	  */
+	public static void setNumThreads(int n)
+	{
+		NUM_THREADS = Math.max(1, n);
+	}
+
+	static SettingsGroup settings = new SettingsGroup(SatelliteCatalog.class, "Propagation")
+	{
+		public void updateSettings()
+		{
+			NUM_THREADS = getInt("CatalogThreads", Runtime.getRuntime().availableProcessors());
+		}
+	};
+
+}
@@ -18,6 +18,7 @@
 *********************************************************************/
 package com.fasterlight.exo.orbit;
 
+import com.fasterlight.exo.game.DoublePropertyAware;
 import com.fasterlight.exo.game.SpaceGame;
 import com.fasterlight.exo.orbit.traj.*;
 import com.fasterlight.game.Game;
@@ -37,7 +38,7 @@ import com.fasterlight.vecmath.Vector3d;
   * asked for it ... see?
   */
 public abstract class Telemetry
-implements PropertyAware
+implements PropertyAware, DoublePropertyAware
 {
 	protected long t;
 
@@ -739,6 +740,89 @@ implements PropertyAware
 		prophelp.setProp(this, key, value);
 	}
 
+	// same as the double getters in prophelp
+	static final String[] DOUBLE_PROPS = {
+		"cendist", "position", "velocity", "tangvel", "vertvel", "alt",
+		"lat", "long", "altagl", "elevation", "semimajor", "semilatus",
+		"eccent", "apoapsis", "periapsis", "incl", "longascnode", "raan",
+		"argperi", "trueanom", "period", "mass", "infrad", "radius",
+		"accel", "gravaccel", "vaccel", "gaccel", "atmtemp", "atmpres",
+		"atmdens", "spdsound", "mach", "adjmach", "truevel", "los",
+		"losamt", "fpitch", "fyaw", "froll", "ppitch", "pyaw",
+		"proll", "lateralvel", "forwardvel", "timetoperi", "timetoapo", "timetocrash",
+		"timetoexit"
+	};
+
+	// subclasses number their own double props from here
+	protected static final int NUM_DOUBLE_PROPS = DOUBLE_PROPS.length;
+
+	public int getDoublePropIndex(String key)
+	{
+		for (int i=0; i<DOUBLE_PROPS.length; i++)
+		{
+			if (DOUBLE_PROPS[i].equals(key))
+				return i;
+		}
+		return -1;
+	}
+
+	public double getDoubleProp(int index)
+	{
+		switch (index)
+		{
+			case 0 : return getCENDIST();
+			case 1 : return getCENDIST();
+			case 2 : return getVELOCITY();
+			case 3 : return getTANGVEL();
+			case 4 : return getVERTVEL();
+			case 5 : return getALT();
+			case 6 : return getLAT();
+			case 7 : return getLONG();
+			case 8 : return getALTAGL();
+			case 9 : return getELEVATION();
+			case 10 : return getSEMIMAJOR();
+			case 11 : return getSEMILATUS();
+			case 12 : return getECCENT();
+			case 13 : return getAPOAPSIS();
+			case 14 : return getPERIAPSIS();
+			case 15 : return getINCL();
+			case 16 : return getLONGASCNODE();
+			case 17 : return getRAAN();
+			case 18 : return getARGPERI();
+			case 19 : return getTRUEANOM();
+			case 20 : return getPERIOD();
+			case 21 : return getMASS();
+			case 22 : return getINFRAD();
+			case 23 : return getRADIUS();
+			case 24 : return getACCEL();
+			case 25 : return getGRAVACCEL();
+			case 26 : return getVACCEL();
+			case 27 : return getGACCEL();
+			case 28 : return getATMTEMP();
+			case 29 : return getATMPRES();
+			case 30 : return getATMDENS();
+			case 31 : return getSPDSOUND();
+			case 32 : return getMACH();
+			case 33 : return getADJMACH();
+			case 34 : return getTRUEVEL();
+			case 35 : return getLOS();
+			case 36 : return getLOSAMT();
+			case 37 : return getFixedPitch();
+			case 38 : return getFixedYaw();
+			case 39 : return getFixedRoll();
+			case 40 : return getPlanetPitch();
+			case 41 : return getPlanetYaw();
+			case 42 : return getPlanetRoll();
+			case 43 : return getLATERALVEL();
+			case 44 : return getFORWARDVEL();
+			case 45 : return getTimeUntilPeriapsis();
+			case 46 : return getTimeUntilApoapsis();
+			case 47 : return getTimeUntilCrash();
+			case 48 : return getTimeUntilExit();
+			default : throw new IllegalArgumentException("Bad double prop index " + index);
+		}
+	}
+
 	static PropertyHelper prophelp = new PropertyHelper(Telemetry.class);
 
 	static {
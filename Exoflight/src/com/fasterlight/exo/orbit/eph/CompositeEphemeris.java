@@ -24,10 +24,14 @@ import com.fasterlight.exo.orbit.StateVector;
 
 /***
 Uses multiple Ephemeri to make a big ephemeris.
+
+Watches which way (and how fast) time is going, and loads the
+next ProxyEphemeris on a background thread before it is needed.
+Only the 'max_resident' most recently used proxies are kept loaded.
 ***/
 
 public class CompositeEphemeris
-implements Ephemeris
+implements Ephemeris, Runnable
 {
 	List ephemeri = new ArrayList();
 
@@ -35,6 +39,29 @@ implements Ephemeris
 	int bodies_supported = -1;
 	int last_eph_index;
 
+	// how far ahead to prefetch, in wall-clock seconds (0 = never)
+	double prefetch_secs = 30;
+	// prefetch at least this many days before the boundary
+	static final double MIN_PREFETCH_DAYS = 2;
+	// how often to sample the rate of time
+	long rate_sample_msec = 500;
+
+	int max_resident = 3;
+
+	// +1 if time is going forward, -1 if backward, 0 if not known
+	int direction;
+	// days per wall-clock second
+	double rate;
+	long rate_msec;
+	double rate_jed = Double.NaN;
+
+	// loaded proxies, least recently used first
+	LinkedHashMap resident = new LinkedHashMap(8, 0.75f, true);
+	Ephemeris last_touched;
+
+	Thread loadthread;
+	ProxyEphemeris pending;
+
 	//
 
 	public CompositeEphemeris()
@@ -78,7 +105,47 @@ implements Ephemeris
 		return bodies_supported;
 	}
 
-	public void getBodyStateVector(StateVector sv, int bodyIndex, double julianTime)
+	/**
+	  * How many wall-clock seconds ahead of a chunk boundary
+	  * should we start loading the next chunk?  0 = don't prefetch.
+	  */
+	public void setPrefetchSeconds(double secs)
+	{
+		this.prefetch_secs = secs;
+	}
+
+	public double getPrefetchSeconds()
+	{
+		return prefetch_secs;
+	}
+
+	/**
+	  * Sets the max # of ProxyEphemeris that are kept loaded.
+	  */
+	public void setMaxResident(int n)
+	{
+		this.max_resident = Math.max(1, n);
+	}
+
+	public int getMaxResident()
+	{
+		return max_resident;
+	}
+
+	/**
+	  * Sets how often (in msec) the rate of time is sampled.
+	  */
+	public void setRateSampleMillis(long msec)
+	{
+		this.rate_sample_msec = msec;
+	}
+
+	public int getNumResident()
+	{
+		return resident.size();
+	}
+
+	private Ephemeris findEphemeris(int bodyMask, double julianTime)
 	{
 		int l = ephemeri.size();
 		int li = last_eph_index;
@@ -87,14 +154,190 @@ implements Ephemeris
 			int ii = i%l;
 			Ephemeris ephem = (Ephemeris)ephemeri.get(ii);
 			if (julianTime >= ephem.getStartTime() && julianTime < ephem.getEndTime()
-				&& (ephem.getBodiesSupported() & (1<<bodyIndex)) != 0 )
+				&& (ephem.getBodiesSupported() & bodyMask) == bodyMask )
 			{
-				ephem.getBodyStateVector(sv, bodyIndex, julianTime);
 				last_eph_index = ii;
+				if (ephem != last_touched)
+					touch(ephem);
+				checkTimeFlow(ii, julianTime);
+				return ephem;
+			}
+		}
+		return null;
+	}
+
+	public void getBodyStateVector(StateVector sv, int bodyIndex, double julianTime)
+	{
+		Ephemeris ephem = findEphemeris(1<<bodyIndex, julianTime);
+		if (ephem == null)
+			throw new RuntimeException("Could not find state for body " + bodyIndex + ", JED=" + julianTime);
+		ephem.getBodyStateVector(sv, bodyIndex, julianTime);
+	}
+
+	public void getBodyStateVectors(StateVector[] svs, int bodyMask, double julianTime)
+	{
+		Ephemeris ephem = findEphemeris(bodyMask, julianTime);
+		if (ephem != null)
+		{
+			ephem.getBodyStateVectors(svs, bodyMask, julianTime);
+			return;
+		}
+		// no single ephemeris has them all, so go one at a time
+		for (int i=0; i<32; i++)
+		{
+			if ((bodyMask & (1<<i)) != 0)
+				getBodyStateVector(svs[i], i, julianTime);
+		}
+	}
+
+	// PREFETCHING
+
+	/**
+	  * Every so often, see which way time is going and how fast,
+	  * and if we'll reach the edge of ephemeris 'ii' soon,
+	  * start loading the next one.
+	  */
+	private void checkTimeFlow(int ii, double julianTime)
+	{
+		if (prefetch_secs <= 0)
+			return;
+		long msec = System.currentTimeMillis();
+		if (!Double.isNaN(rate_jed) && msec - rate_msec < rate_sample_msec)
+			return;
+
+		if (!Double.isNaN(rate_jed))
+		{
+			double djed = julianTime - rate_jed;
+			direction = (djed > 0) ? 1 : (djed < 0) ? -1 : 0;
+			if (msec > rate_msec)
+				rate = Math.abs(djed)*1000/(msec - rate_msec);
+		}
+		rate_jed = julianTime;
+		rate_msec = msec;
+
+		if (direction == 0)
+			return;
+		Ephemeris ephem = (Ephemeris)ephemeri.get(ii);
+		double lookahead = Math.max(MIN_PREFETCH_DAYS, rate*prefetch_secs);
+		double edge = (direction > 0) ? ephem.getEndTime() : ephem.getStartTime();
+		if (Math.abs(edge - julianTime) < lookahead)
+		{
+			int next = ii + direction;
+			if (next >= 0 && next < ephemeri.size())
+				prefetch((Ephemeris)ephemeri.get(next));
+		}
+	}
+
+	/**
+	  * Marks an ephemeris as recently used, and unloads
+	  * the least recently used proxies if there are too many.
+	  */
+	private void touch(Ephemeris ephem)
+	{
+		last_touched = ephem;
+		if (!(ephem instanceof ProxyEphemeris))
+			return;
+		// only this thread sets 'pending', the loader just clears it
+		ProxyEphemeris loading;
+		synchronized (this)
+		{
+			loading = pending;
+		}
+		resident.put(ephem, ephem);
+		Iterator it = resident.keySet().iterator();
+		while (resident.size() > max_resident && it.hasNext())
+		{
+			ProxyEphemeris proxy = (ProxyEphemeris)it.next();
+			if (proxy != ephem && proxy != loading)
+			{
+				it.remove();
+				proxy.unload();
+			}
+		}
+	}
+
+	private void prefetch(Ephemeris ephem)
+	{
+		if (!(ephem instanceof ProxyEphemeris))
+			return;
+		ProxyEphemeris proxy = (ProxyEphemeris)ephem;
+		if (proxy.isLoaded() || resident.containsKey(proxy))
+			return;
+		synchronized (this)
+		{
+			if (pending != null)
 				return;
+			pending = proxy;
+			if (loadthread != null)
+				notifyAll();
+			else
+				startLoadThread();
+		}
+		// the current one stays most recent
+		Ephemeris cur = last_touched;
+		touch(proxy);
+		if (cur != null)
+			touch(cur);
+	}
+
+	private void startLoadThread()
+	{
+		loadthread = new Thread(this, "Ephemeris prefetch");
+		loadthread.setDaemon(true);
+		loadthread.setPriority(Thread.MIN_PRIORITY);
+		loadthread.start();
+	}
+
+	public void run()
+	{
+		while (loadthread != null)
+		{
+			ProxyEphemeris proxy;
+			synchronized (this)
+			{
+				while (pending == null && loadthread != null)
+				{
+					try {
+						wait();
+					} catch (InterruptedException ie) {
+						return;
+					}
+				}
+				proxy = pending;
+			}
+			if (proxy != null)
+			{
+				try {
+					proxy.getDelegate();
+				} catch (RuntimeException re) {
+					System.out.println("Could not prefetch " + proxy + ": " + re);
+				}
+				synchronized (this)
+				{
+					pending = null;
+					notifyAll();
+				}
 			}
 		}
-		throw new RuntimeException("Could not find state for body " + bodyIndex + ", JED=" + julianTime);
+	}
+
+	/**
+	  * Waits until the prefetch thread isn't loading anything.
+	  */
+	public synchronized void waitForPrefetch()
+	throws InterruptedException
+	{
+		while (pending != null && loadthread != null)
+			wait();
+	}
+
+	/**
+	  * Stops the prefetch thread.
+	  */
+	public synchronized void close()
+	{
+		loadthread = null;
+		notifyAll();
 	}
 
 	//
@@ -260,6 +260,31 @@ implements Ephemeris, java.io.Serializable, Comparable
 		sv.v.set(planet_rprime[bodyIndex][1], planet_rprime[bodyIndex][2], planet_rprime[bodyIndex][3]);
 	}
 
+	public void getBodyStateVectors(StateVector[] svs, int bodyMask, double julianTime)
+	{
+		if (julianTime != this.cached_jed)
+		{
+			this.cached_jed = julianTime;
+			this.cached_flags = 0;
+		}
+		// compute everything first, so that the Earth/Moon
+		// transform is done before we copy anything out
+		for (int i=1; i<=11; i++)
+		{
+			if ((bodyMask & (1<<i)) != 0)
+				internalCompute(i, julianTime);
+		}
+		for (int i=1; i<=11; i++)
+		{
+			if ((bodyMask & (1<<i)) != 0)
+			{
+				StateVector sv = svs[i];
+				sv.r.set(planet_r[i][1], planet_r[i][2], planet_r[i][3]);
+				sv.v.set(planet_rprime[i][1], planet_rprime[i][2], planet_rprime[i][3]);
+			}
+		}
+	}
+
 	/**
 	  * Computes the state vector for a body
 	  * and sticks it into 'sv'.
@@ -51,4 +51,13 @@ public interface Ephemeris
 	public void getBodyStateVector(StateVector sv, int bodyIndex,
 		double julianTime);
 
+	/**
+	  * Gets the state vectors for all bodies in 'bodyMask'
+	  * (bit N = body index N) at a single Julian date.
+	  * svs[N] receives the state of body N; entries for
+	  * bodies not in the mask are left alone.
+	  */
+	public void getBodyStateVectors(StateVector[] svs, int bodyMask,
+		double julianTime);
+
 }
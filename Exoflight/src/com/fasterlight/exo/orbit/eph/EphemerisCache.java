@@ -0,0 +1,195 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.eph;
+
+import com.fasterlight.exo.orbit.StateVector;
+
+/**
+  * Wraps another Ephemeris and remembers the state of every body
+  * at the last few Julian dates it was asked for.  An integrator
+  * evaluates perturbations at several distinct times per step
+  * (13 for RK78) and asks for the same bodies at each one, so
+  * the default size covers a whole stage set.
+  *
+  * When a date is seen for the first time, all of the bodies that
+  * were asked for at the previous date are computed in one batch.
+  */
+public class EphemerisCache
+implements Ephemeris
+{
+	public static final int DEFAULT_SIZE = 13;
+
+	private Ephemeris eph;
+
+	// one slot per cached epoch
+	private double[] slot_jed;
+	// bodies computed for each slot
+	private int[] slot_flags;
+	// bodies that have been asked for in each slot
+	private int[] slot_wanted;
+	private StateVector[][] slot_svs;
+
+	private int last_slot;
+	private int next_slot;
+
+	private int hits, misses;
+
+	//
+
+	public EphemerisCache(Ephemeris eph)
+	{
+		this(eph, DEFAULT_SIZE);
+	}
+
+	public EphemerisCache(Ephemeris eph, int size)
+	{
+		if (size < 1)
+			throw new IllegalArgumentException("size must be >= 1");
+		this.eph = eph;
+		slot_jed = new double[size];
+		slot_flags = new int[size];
+		slot_wanted = new int[size];
+		slot_svs = new StateVector[size][32];
+		for (int i=0; i<size; i++)
+		{
+			slot_jed[i] = Double.NaN;
+			for (int j=0; j<32; j++)
+				slot_svs[i][j] = new StateVector();
+		}
+	}
+
+	public Ephemeris getEphemeris()
+	{
+		return eph;
+	}
+
+	public double getStartTime()
+	{
+		return eph.getStartTime();
+	}
+
+	public double getEndTime()
+	{
+		return eph.getEndTime();
+	}
+
+	public int getBodiesSupported()
+	{
+		return eph.getBodiesSupported();
+	}
+
+	/**
+	  * Forget everything -- call this if the underlying
+	  * ephemeris' units or transforms change.
+	  */
+	public void clear()
+	{
+		for (int i=0; i<slot_jed.length; i++)
+		{
+			slot_jed[i] = Double.NaN;
+			slot_flags[i] = 0;
+			slot_wanted[i] = 0;
+		}
+	}
+
+	public int getHits()
+	{
+		return hits;
+	}
+
+	public int getMisses()
+	{
+		return misses;
+	}
+
+	private int findSlot(double julianTime)
+	{
+		// most queries are for the same date as the last one
+		if (slot_jed[last_slot] == julianTime)
+			return last_slot;
+		int n = slot_jed.length;
+		for (int i=0; i<n; i++)
+		{
+			if (slot_jed[i] == julianTime)
+			{
+				last_slot = i;
+				return i;
+			}
+		}
+		// not there, take the oldest one and prime it with the
+		// bodies that were wanted last time around
+		int wanted = slot_wanted[last_slot];
+		int i = next_slot;
+		next_slot = (i+1)%n;
+		slot_jed[i] = julianTime;
+		slot_flags[i] = 0;
+		slot_wanted[i] = 0;
+		if (wanted != 0)
+		{
+			eph.getBodyStateVectors(slot_svs[i], wanted, julianTime);
+			slot_flags[i] = wanted;
+		}
+		last_slot = i;
+		return i;
+	}
+
+	private StateVector[] getSlot(int bodyMask, double julianTime)
+	{
+		int i = findSlot(julianTime);
+		slot_wanted[i] |= bodyMask;
+		int needed = bodyMask & ~slot_flags[i];
+		if (needed != 0)
+		{
+			eph.getBodyStateVectors(slot_svs[i], needed, julianTime);
+			slot_flags[i] |= needed;
+			misses++;
+		} else
+			hits++;
+		return slot_svs[i];
+	}
+
+	public void getBodyStateVector(StateVector sv, int bodyIndex, double julianTime)
+	{
+		StateVector[] svs = getSlot(1<<bodyIndex, julianTime);
+		StateVector src = svs[bodyIndex];
+		sv.r.set(src.r);
+		sv.v.set(src.v);
+	}
+
+	public void getBodyStateVectors(StateVector[] svs, int bodyMask, double julianTime)
+	{
+		StateVector[] src = getSlot(bodyMask, julianTime);
+		for (int i=0; i<32; i++)
+		{
+			if ((bodyMask & (1<<i)) != 0)
+			{
+				svs[i].r.set(src[i].r);
+				svs[i].v.set(src[i].v);
+			}
+		}
+	}
+
+	//
+
+	public String toString()
+	{
+		return "[EphemerisCache, " + slot_jed.length + " epochs -> " + eph + "]";
+	}
+
+}
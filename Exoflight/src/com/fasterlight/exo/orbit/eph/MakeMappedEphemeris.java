@@ -0,0 +1,142 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.eph;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+/**
+  * Utility to convert the serialized DE405 chunks made by
+  * MakeBinaryEphemeris into a single flat file for MappedEphemeris.
+  */
+public class MakeMappedEphemeris
+{
+	/**
+	  * Writes a set of chunks into one flat file.
+	  * The chunks must be on the same record grid and cover a
+	  * contiguous span, but they can overlap.
+	  */
+	public static void writeMapped(DE405Ephemeris[] chunks, String outfile)
+	throws IOException
+	{
+		chunks = (DE405Ephemeris[])chunks.clone();
+		Arrays.sort(chunks);
+
+		int nper = DE405Ephemeris.numbers_per_interval;
+		double dur = DE405Ephemeris.interval_duration;
+		double start = chunks[0].start_time;
+		double end = start;
+		for (int i=0; i<chunks.length; i++)
+			end = Math.max(end, chunks[i].end_time);
+		int nrecs = (int)Math.round((end - start)/dur);
+
+		DE405Ephemeris first = chunks[0];
+		int flags = 0;
+		if (first.units_au)
+			flags |= MappedEphemeris.FLAG_UNITS_AU;
+		if (first.xform_moon)
+			flags |= MappedEphemeris.FLAG_XFORM_MOON;
+		if (first.xform_earth)
+			flags |= MappedEphemeris.FLAG_XFORM_EARTH;
+
+		FileOutputStream fout = new FileOutputStream(outfile);
+		try {
+			FileChannel chan = fout.getChannel();
+
+			ByteBuffer hdr = ByteBuffer.allocate(MappedEphemeris.HEADER_SIZE);
+			hdr.order(ByteOrder.LITTLE_ENDIAN);
+			hdr.putInt(0, MappedEphemeris.MAGIC);
+			hdr.putInt(4, MappedEphemeris.VERSION);
+			hdr.putInt(8, nper);
+			hdr.putInt(12, nrecs);
+			hdr.putInt(16, flags);
+			hdr.putDouble(24, start);
+			hdr.putDouble(32, dur);
+			chan.write(hdr);
+
+			ByteBuffer rec = ByteBuffer.allocate(nper*8);
+			rec.order(ByteOrder.LITTLE_ENDIAN);
+			int ci = 0;
+			for (int r=0; r<nrecs; r++)
+			{
+				double jd = start + r*dur;
+				// find the first chunk that has this whole record
+				while (ci < chunks.length && jd + dur > chunks[ci].end_time)
+					ci++;
+				if (ci >= chunks.length || jd < chunks[ci].start_time)
+					throw new IOException("Gap in ephemeris chunks at JD " + jd);
+				DE405Ephemeris chunk = chunks[ci];
+				int local = (int)Math.round((jd - chunk.start_time)/dur);
+				// coefficients are 1-based in DE405Ephemeris
+				int ofs = local*nper + 1;
+				rec.clear();
+				for (int i=0; i<nper; i++)
+					rec.putDouble(chunk.ephemeris_coefficients[ofs+i]);
+				rec.flip();
+				chan.write(rec);
+			}
+		} finally {
+			fout.close();
+		}
+		System.out.println("Wrote " + outfile + ", " + nrecs + " records, JD " + start + " to " + end);
+	}
+
+	static DE405Ephemeris readChunk(File file)
+	throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream in = new ObjectInputStream(
+			new BufferedInputStream(new FileInputStream(file)));
+		try {
+			return (DE405Ephemeris)in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		String dir = "eph";
+		String outfile = MappedEphemeris.DEFAULT_PATH;
+		if (args.length > 0)
+			dir = args[0];
+		if (args.length > 1)
+			outfile = args[1];
+		File[] files = new File(dir).listFiles();
+		List chunks = new ArrayList();
+		for (int i=0; files != null && i<files.length; i++)
+		{
+			String name = files[i].getName();
+			if (name.startsWith("de405-") && name.endsWith(".ser"))
+			{
+				DE405Ephemeris de405 = readChunk(files[i]);
+				System.out.println(name + " " + de405);
+				chunks.add(de405);
+			}
+		}
+		if (chunks.isEmpty())
+		{
+			System.out.println("No de405-*.ser files in " + dir);
+			return;
+		}
+		writeMapped((DE405Ephemeris[])chunks.toArray(new DE405Ephemeris[chunks.size()]), outfile);
+	}
+}
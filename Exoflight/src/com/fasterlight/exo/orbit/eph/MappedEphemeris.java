@@ -0,0 +1,375 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.eph;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+
+import com.fasterlight.exo.orbit.*;
+
+/**
+  * An ephemeris backed by a single flat file of DE405 Chebyshev
+  * coefficients, which is memory-mapped instead of deserialized.
+  * Records are found by index arithmetic, so opening the file is
+  * cheap and pages are only read in when a record is first used.
+  * Files are made from the .ser chunks by MakeMappedEphemeris.
+  *
+  * File layout (all little-endian):
+  * <pre>
+  *  0  int     magic
+  *  4  int     version
+  *  8  int     numbers per record
+  * 12  int     # of records
+  * 16  int     flags (FLAG_xxx)
+  * 24  double  Julian start time
+  * 32  double  record duration, in days
+  * 64  double  coefficients, records * numbers per record
+  * </pre>
+  */
+public class MappedEphemeris
+implements Ephemeris, Comparable
+{
+	public static final String DEFAULT_PATH = "eph/de405.eph";
+
+	static final int MAGIC = 0x48504558; // "XEPH"
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+
+	static final int FLAG_UNITS_AU = 1;
+	static final int FLAG_XFORM_MOON = 2;
+	static final int FLAG_XFORM_EARTH = 4;
+
+	static final double emrat = DE405Ephemeris.emrat;
+
+	// offset of each body's coefficients within a record
+	static final int[] body_offset = new int[12];
+	static {
+		int ofs = 0;
+		for (int i=1; i<=11; i++)
+		{
+			body_offset[i] = ofs;
+			ofs += 3*DE405Ephemeris.number_of_coef_sets[i]*DE405Ephemeris.number_of_coefs[i];
+		}
+	}
+
+	private String path;
+	private DoubleBuffer coeffs;
+	private int numbers_per_interval;
+	private int num_records;
+	private double interval_duration;
+	private double start_time, end_time;
+
+	private boolean units_au;
+	private boolean xform_moon;
+	private boolean xform_earth;
+
+	private double[][] planet_r = new double[12][3];
+	private double[][] planet_rprime = new double[12][3];
+	private double[] position_poly = new double[20];
+	private double[] velocity_poly = new double[20];
+
+	// the Julian date which we have cached
+	private double cached_jed = Double.MIN_VALUE;
+	// bits define which bodies are cached for 'cached_jed'
+	private int cached_flags;
+
+	//
+
+	/**
+	  * Opens the default file, DEFAULT_PATH
+	  */
+	public MappedEphemeris()
+	throws IOException
+	{
+		this(DEFAULT_PATH);
+	}
+
+	/**
+	  * Opens a file, which is looked up on the classpath
+	  * if it isn't found relative to the current directory.
+	  */
+	public MappedEphemeris(String path)
+	throws IOException
+	{
+		File file = findFile(path);
+		if (file == null)
+			throw new FileNotFoundException(path);
+		this.path = path;
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel chan = raf.getChannel();
+			ByteBuffer buf = chan.map(FileChannel.MapMode.READ_ONLY, 0, chan.size());
+			buf.order(ByteOrder.LITTLE_ENDIAN);
+			if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+				throw new IOException("Not an ephemeris file, or wrong version: " + path);
+			numbers_per_interval = buf.getInt(8);
+			num_records = buf.getInt(12);
+			int flags = buf.getInt(16);
+			start_time = buf.getDouble(24);
+			interval_duration = buf.getDouble(32);
+			end_time = start_time + num_records*interval_duration;
+			units_au = (flags & FLAG_UNITS_AU) != 0;
+			xform_moon = (flags & FLAG_XFORM_MOON) != 0;
+			xform_earth = (flags & FLAG_XFORM_EARTH) != 0;
+			long expected = HEADER_SIZE + 8L*numbers_per_interval*num_records;
+			if (chan.size() < expected)
+				throw new IOException("Ephemeris file is truncated: " + path);
+			buf.position(HEADER_SIZE);
+			// slice() resets the byte order, so set it again
+			coeffs = buf.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		} finally {
+			// the mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	  * Finds a file relative to the current directory,
+	  * or as a file on the classpath.  Returns null if not found.
+	  */
+	public static File findFile(String path)
+	{
+		File file = new File(path);
+		if (file.exists())
+			return file;
+		URL url = MappedEphemeris.class.getClassLoader().getResource(path);
+		if (url != null && "file".equals(url.getProtocol()))
+		{
+			try {
+				file = new File(java.net.URLDecoder.decode(url.getPath(), "UTF-8"));
+			} catch (UnsupportedEncodingException uee) {
+				return null;
+			}
+			if (file.exists())
+				return file;
+		}
+		return null;
+	}
+
+	public double getStartTime()
+	{
+		return start_time;
+	}
+
+	public double getEndTime()
+	{
+		return end_time;
+	}
+
+	// which indexes are supported?
+	public int getBodiesSupported()
+	{
+		// we support 1-11
+		return ((1<<11)-1) << 1;
+	}
+
+	/**
+	  * We can do units in UNITS_KM or UNITS_AU.
+	  * Default comes from the file.
+	  */
+	public void setUnits(int units)
+	{
+		units_au = (units == DE405Ephemeris.UNITS_AU);
+		cached_jed = Double.MIN_VALUE;
+	}
+
+	/**
+	  * Should we transform Earth by the Earth-Moon barycenter?
+	  * Default comes from the file.
+	  */
+	public void setTransformEarth(boolean b)
+	{
+		this.xform_earth = b;
+		cached_jed = Double.MIN_VALUE;
+	}
+
+	/**
+	  * Should we transform the Moon by the Earth-Moon barycenter?
+	  * Default comes from the file.
+	  */
+	public void setTransformMoon(boolean b)
+	{
+		this.xform_moon = b;
+		cached_jed = Double.MIN_VALUE;
+	}
+
+	public int getNumRecords()
+	{
+		return num_records;
+	}
+
+	public void getBodyStateVector(StateVector sv, int bodyIndex, double julianTime)
+	{
+		// if time different, reset flags
+		if (julianTime != this.cached_jed)
+		{
+			this.cached_jed = julianTime;
+			this.cached_flags = 0;
+		}
+		internalCompute(bodyIndex, julianTime);
+
+		double[] r = planet_r[bodyIndex];
+		double[] rp = planet_rprime[bodyIndex];
+		sv.r.set(r[0], r[1], r[2]);
+		sv.v.set(rp[0], rp[1], rp[2]);
+	}
+
+	public void getBodyStateVectors(StateVector[] svs, int bodyMask, double julianTime)
+	{
+		if (julianTime != this.cached_jed)
+		{
+			this.cached_jed = julianTime;
+			this.cached_flags = 0;
+		}
+		for (int i=1; i<=11; i++)
+		{
+			if ((bodyMask & (1<<i)) != 0)
+				internalCompute(i, julianTime);
+		}
+		for (int i=1; i<=11; i++)
+		{
+			if ((bodyMask & (1<<i)) != 0)
+			{
+				double[] r = planet_r[i];
+				double[] rp = planet_rprime[i];
+				svs[i].r.set(r[0], r[1], r[2]);
+				svs[i].v.set(rp[0], rp[1], rp[2]);
+			}
+		}
+	}
+
+	private void internalCompute(int bodyIndex, double julianTime)
+	{
+		// if cached, return -- it is computed!
+		if ( ((1<<bodyIndex) & cached_flags) != 0 )
+			return;
+
+		cached_flags |= (1<<bodyIndex);
+
+		computeBody(bodyIndex, julianTime, planet_r[bodyIndex], planet_rprime[bodyIndex]);
+
+		// see DE405Ephemeris.internalCompute()
+		if (xform_moon || xform_earth)
+		{
+			if (bodyIndex == 10)
+				internalCompute(3, julianTime);
+			else if (bodyIndex == 3)
+			{
+				internalCompute(10, julianTime);
+				double[] er = planet_r[3];
+				double[] erp = planet_rprime[3];
+				double[] mr = planet_r[10];
+				double[] mrp = planet_rprime[10];
+				for (int j=0; j<3; j++)
+				{
+					double new3 = er[j] - mr[j]/(1 + emrat);
+					if (xform_moon)
+						mr[j] = new3 + mr[j];
+					if (xform_earth)
+						er[j] = new3;
+					new3 = erp[j] - mrp[j]/(1 + emrat);
+					if (xform_moon)
+						mrp[j] = new3 + mrp[j];
+					if (xform_earth)
+						erp[j] = new3;
+				}
+			}
+		}
+	}
+
+	/**
+	  * Evaluates the Chebyshev polynomials for body 'i'
+	  * (same as DE405Ephemeris.get_planet_posvel(), but 0-based)
+	  */
+	private void computeBody(int i, double jultime, double[] r, double[] rprime)
+	{
+		if (jultime < start_time || jultime > end_time)
+			throw new IllegalArgumentException("jultime is outside bounds: " + jultime);
+
+		// find the record by index arithmetic
+		int rec = (int)((jultime - start_time)/interval_duration);
+		if (rec >= num_records)
+			rec = num_records-1;
+		double interval_start_time = start_time + rec*interval_duration;
+
+		int nsets = DE405Ephemeris.number_of_coef_sets[i];
+		int ncoeff = DE405Ephemeris.number_of_coefs[i];
+		double subinterval_duration = interval_duration/nsets;
+		int subinterval = (int)((jultime - interval_start_time)/subinterval_duration);
+		if (subinterval >= nsets)
+			subinterval = nsets-1;
+
+		int pointer = rec*numbers_per_interval + body_offset[i] + subinterval*3*ncoeff;
+
+		// chebyshev time within the subinterval, between -1 and +1
+		double ct = 2*(jultime - (subinterval*subinterval_duration + interval_start_time))/subinterval_duration - 1;
+
+		double[] pp = position_poly;
+		double[] vp = velocity_poly;
+		pp[0] = 1;
+		pp[1] = ct;
+		for (int j=2; j<ncoeff; j++)
+			pp[j] = 2*ct*pp[j-1] - pp[j-2];
+		vp[0] = 0;
+		vp[1] = 1;
+		vp[2] = 4*ct;
+		for (int j=3; j<ncoeff; j++)
+			vp[j] = 2*ct*vp[j-1] + 2*pp[j-1] - vp[j-2];
+
+		double vscale = 2.0*nsets/interval_duration;
+		DoubleBuffer cf = coeffs;
+		for (int j=0; j<3; j++)
+		{
+			int p = pointer + j*ncoeff;
+			double x = 0;
+			double xp = 0;
+			for (int k=0; k<ncoeff; k++)
+			{
+				double c = cf.get(p+k);
+				x += c*pp[k];
+				xp += c*vp[k];
+			}
+			xp *= vscale;
+			if (units_au)
+			{
+				x /= DE405Ephemeris.au;
+				xp /= DE405Ephemeris.au;
+			}
+			r[j] = x;
+			rprime[j] = xp;
+		}
+	}
+
+	//
+
+	public String toString()
+	{
+		return "[MappedEphemeris " + path + ", JD:" + start_time + " to " + end_time +
+			", flags=" + Integer.toString(getBodiesSupported(),16) + "]";
+	}
+
+	public int compareTo(Object o)
+	{
+		Ephemeris eph = (Ephemeris)o;
+		return AstroUtil.sign(getStartTime() - eph.getStartTime());
+	}
+
+}
@@ -63,7 +63,18 @@ implements Ephemeris, Comparable
 		getDelegate().getBodyStateVector(sv, bodyIndex, julianTime);
 	}
 
-	public Ephemeris getDelegate()
+	public void getBodyStateVectors(StateVector[] svs, int bodyMask,
+		double julianTime)
+	{
+		getDelegate().getBodyStateVectors(svs, bodyMask, julianTime);
+	}
+
+	/**
+	  * Loads the delegate if needed, and returns it.
+	  * Synchronized, since CompositeEphemeris may be loading
+	  * it on another thread.
+	  */
+	public synchronized Ephemeris getDelegate()
 	{
 		if (delegat == null)
 		{
@@ -77,6 +88,23 @@ implements Ephemeris, Comparable
 		return delegat;
 	}
 
+	public synchronized boolean isLoaded()
+	{
+		return delegat != null;
+	}
+
+	/**
+	  * Drops the delegate, it will be reloaded when next needed.
+	  */
+	public synchronized void unload()
+	{
+		if (delegat != null)
+		{
+			System.out.println("Unloading " + path);
+			delegat = null;
+		}
+	}
+
 	//
 
 	public String toString()
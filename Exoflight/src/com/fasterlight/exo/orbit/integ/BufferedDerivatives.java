@@ -0,0 +1,38 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.integ;
+
+/**
+ * A Derivatives that can write its results into a caller-supplied
+ * array, so that integrators can evaluate the equations of motion
+ * without allocating a new array for every stage.
+ *
+ * @author Steven Hugg
+ */
+public interface BufferedDerivatives extends Derivatives {
+
+    /** Compute the derivatives into an existing array.
+     * @param tick  base time of the step, in ticks
+     * @param dt    offset from 'tick', in seconds
+     * @param x     the current state
+     * @param dxdt  receives the derivatives (same length as x)
+     */
+    public void derivs(long tick, double dt, double[] x, double[] dxdt);
+
+}
@@ -0,0 +1,102 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.integ;
+
+import com.fasterlight.vecmath.Vector3d;
+
+/**
+ * A quintic Hermite polynomial through position, velocity and
+ * acceleration at both ends of an integration step.  Used as a
+ * dense output, so that states inside a step can be found without
+ * re-integrating.  Error is O(h^6) in position and O(h^5) in velocity.
+ *
+ * @author Steven Hugg
+ */
+public class QuinticSpline3d {
+
+    private double h, invh;
+    private double[] cx = new double[6];
+    private double[] cy = new double[6];
+    private double[] cz = new double[6];
+
+    /** Set the endpoints of the spline.
+     * @param h    length of the interval
+     * @param p0   position at start
+     * @param v0   velocity at start
+     * @param a0   acceleration at start
+     * @param p1   position at end
+     * @param v1   velocity at end
+     * @param a1   acceleration at end
+     */
+    public void set(double h, Vector3d p0, Vector3d v0, Vector3d a0,
+    Vector3d p1, Vector3d v1, Vector3d a1) {
+        this.h = h;
+        this.invh = 1/h;
+        setCoeffs(cx, h, p0.x, v0.x, a0.x, p1.x, v1.x, a1.x);
+        setCoeffs(cy, h, p0.y, v0.y, a0.y, p1.y, v1.y, a1.y);
+        setCoeffs(cz, h, p0.z, v0.z, a0.z, p1.z, v1.z, a1.z);
+    }
+
+    private static void setCoeffs(double[] c, double h, double p0, double v0, double a0,
+    double p1, double v1, double a1) {
+        // scale derivatives to the unit interval
+        double hv0 = h*v0;
+        double hv1 = h*v1;
+        double hha0 = h*h*a0;
+        double hha1 = h*h*a1;
+        double d = p1 - p0 - hv0 - hha0*0.5;
+        double e = hv1 - hv0 - hha0;
+        double f = hha1 - hha0;
+        c[0] = p0;
+        c[1] = hv0;
+        c[2] = hha0*0.5;
+        c[3] = 10*d - 4*e + f*0.5;
+        c[4] = -15*d + 7*e - f;
+        c[5] = 6*d - 3*e + f*0.5;
+    }
+
+    private static double value(double[] c, double s) {
+        return c[0] + s*(c[1] + s*(c[2] + s*(c[3] + s*(c[4] + s*c[5]))));
+    }
+
+    private static double deriv(double[] c, double s) {
+        return c[1] + s*(2*c[2] + s*(3*c[3] + s*(4*c[4] + s*5*c[5])));
+    }
+
+    /** Get the position at offset 'x' from the start of the interval.
+     */
+    public void getPos(double x, Vector3d out) {
+        double s = x*invh;
+        out.set(value(cx, s), value(cy, s), value(cz, s));
+    }
+
+    /** Get the velocity at offset 'x' from the start of the interval.
+     */
+    public void getVel(double x, Vector3d out) {
+        double s = x*invh;
+        out.set(deriv(cx, s)*invh, deriv(cy, s)*invh, deriv(cz, s)*invh);
+    }
+
+    /** Returns the length of the interval.
+     */
+    public double getInterval() {
+        return h;
+    }
+
+}
@@ -107,5 +107,59 @@ public class RungeKutta4 {
         return yout;
     }
 
-    
+    // scratch buffers for the BufferedDerivatives version of step()
+    private double[][] fbuf;
+    private double[] ytmpbuf;
+
+    private void ensureScratch(int n) {
+        if (ytmpbuf == null || ytmpbuf.length != n) {
+            fbuf = new double[4][n];
+            ytmpbuf = new double[n];
+        }
+    }
+
+    /** Take a single integration step, writing the new state into 'yout'.
+     * Stages are evaluated into scratch buffers that are reused from
+     * call to call, so nothing is allocated unless the state length changes.
+     * @param x     time or independent variable
+     * @param y     double[] containing needed inputs (usually the state)
+     * @param yout  double[] that receives the new state
+     * @param derivs   Object containing the Equations of Motion
+     */
+    public void step(long t0, double x, double[] y, double[] yout, BufferedDerivatives derivs) {
+        int n = y.length;
+        ensureScratch(n);
+        double f[][] = fbuf;
+        double ytmp[] = ytmpbuf;
+
+        double h = this.step_size;
+
+        double hh = h * 0.5;
+        double h6 = h/6.0;
+        double xh = x + hh;
+
+        derivs.derivs(t0, x, y, f[0]);
+
+        for (int i = 0; i < n; i++) {
+            ytmp[i] = y[i] + hh * f[0][i];
+        }
+        derivs.derivs(t0, xh, ytmp, f[1]);
+
+        for (int i = 0; i < n; i++) {
+            ytmp[i] = y[i] + hh * f[1][i];
+        }
+        derivs.derivs(t0, xh, ytmp, f[2]);
+
+        for (int i = 0; i < n; i++) {
+            ytmp[i] = y[i] + h * f[2][i];
+        }
+        derivs.derivs(t0, x + h, ytmp, f[3]);
+
+        for (int i = 0; i < n; i++) {
+            yout[i] = y[i] + h6*(f[0][i] + 2.0 *(f[1][i] + f[2][i]) +f[3][i]);
+        }
+    }
+
+
+
 }
@@ -144,6 +144,49 @@ public class RungeKuttaFehlberg45 {
 
     }
 
+    // scratch buffers for the BufferedDerivatives version of rkck()
+    private double[][] fbuf;
+    private double[] ytmpbuf;
+
+    private void ensureScratch(int n) {
+        if (ytmpbuf == null || ytmpbuf.length != n) {
+            fbuf = new double[RK_LEN][n];
+            ytmpbuf = new double[n];
+        }
+    }
+
+    /** Same as the Derivatives version of rkck(), but evaluates stages
+     * into scratch buffers that are reused from call to call.
+     * Nothing is allocated unless the state length changes.
+     */
+    public void rkck(double[] y, double[] dydx, long t0, double x, double h,
+    double[] yout, double[] yerr, BufferedDerivatives dv) {
+
+        int n = y.length;
+        ensureScratch(n);
+
+        double f[][] = fbuf;
+        double ytmp[] = ytmpbuf;
+
+        for (int k = 1; k < RK_LEN; k++) {
+            double[] bk = b[k];
+            for (int i = 0; i < n; i++) {
+                double sum = bk[0]*dydx[i];
+                for (int j = 1; j < k; j++)
+                    sum += bk[j]*f[j][i];
+                ytmp[i] = y[i] + h * sum;
+            }
+            dv.derivs(t0, x + a[k]*h, ytmp, f[k]);
+        }
+
+        for (int i = 0; i < n; i++) {
+            yout[i] = y[i] + h*(c[0]*dydx[i] +c[2]*f[2][i] + c[3]*f[3][i] + c[4]*f[4][i] + c[5]*f[5][i]);
+            yerr[i] = y[i] + h*(chat[0]*dydx[i] +chat[2]*f[2][i] + chat[3]*f[3][i] + chat[4]*f[4][i]) - yout[i];
+        }
+
+    }
+
+
     public void print(double t, double [] y){
         // do nothing
     }
@@ -448,6 +448,48 @@ public class RungeKuttaFehlberg78 {
         }
     }
 
+    // scratch buffers for the BufferedDerivatives version of rkck()
+    private double[][] fbuf;
+    private double[] ytmpbuf;
+
+    private void ensureScratch(int n) {
+        if (ytmpbuf == null || ytmpbuf.length != n) {
+            fbuf = new double[13][n];
+            ytmpbuf = new double[n];
+        }
+    }
+
+    /** Same as the Derivatives version of rkck(), but evaluates stages
+     * into scratch buffers that are reused from call to call.
+     * Nothing is allocated unless the state length changes.
+     */
+    public void rkck(double[] y, double[] dydx, long t0, double x, double h,
+    double[] yout, double[] yerr, BufferedDerivatives dv) {
+
+        int n = y.length;
+        ensureScratch(n);
+
+        double f[][] = fbuf;
+        double ytmp[] = ytmpbuf;
+
+        for (int k = 1; k < 13; k++) {
+            double[] bk = b[k];
+            for (int i = 0; i < n; i++) {
+                double sum = bk[0]*dydx[i];
+                for (int j = 1; j < k; j++)
+                    sum += bk[j]*f[j][i];
+                ytmp[i] = y[i] + h * sum;
+            }
+            dv.derivs(t0, x + a[k]*h, ytmp, f[k]);
+        }
+
+        for (int i = 0; i < n; i++) {
+            yout[i] = y[i] + h*(chat[5]*f[5][i] + chat[6]*f[6][i] + chat[7]*f[7][i] + chat[8]*f[8][i] + chat[9]*f[9][i] + chat[11]*f[11][i] + chat[12]*f[12][i]);
+            yerr[i] = h*c[0]*(f[11][i] + f[12][i] - dydx[i] - f[10][i]);
+        }
+    }
+
+
 	/**
 	 * Store one integration step in an ArrayList
 	 * @param steps The ArrayList to store the step into
@@ -35,6 +35,11 @@ implements Constants
 	Vector3d r1,v1; // pos, vel of src
 	Vector3d r2,v2; // pos, vel of dest
 
+	// if set, used instead of asking the bodies
+	Conic srcconic, destconic;
+	double start_rad = Double.NaN;
+	double infrad = Double.NaN;
+
 	Vector3d vt1,vt2; // vel of transfer orbit start, finish
 	Conic tranorbit;
 	double dv1;		// delta-v on first leg
@@ -62,6 +67,40 @@ implements Constants
 		return dest;
 	}
 
+	/**
+	  * Uses 'conic' (relative to the source's parent) to find
+	  * the source's position instead of its trajectory.
+	  * Navigator doesn't modify it, so it can be shared.
+	  */
+	public void setSourceConic(Conic conic)
+	{
+		this.srcconic = conic;
+	}
+
+	public void setTargetConic(Conic conic)
+	{
+		this.destconic = conic;
+	}
+
+	/**
+	  * Sets the radius of the parking orbit for the
+	  * interplanetary case, instead of using the source's
+	  * current distance from its parent.
+	  */
+	public void setStartRadius(double start_rad)
+	{
+		this.start_rad = start_rad;
+	}
+
+	/**
+	  * Sets the sphere of influence of the source's parent
+	  * for the interplanetary case.
+	  */
+	public void setInfluenceRadius(double infrad)
+	{
+		this.infrad = infrad;
+	}
+
 
 	public long getTimeOfDeparture()
 	{
@@ -135,10 +174,24 @@ implements Constants
 		UniverseThing parent = src.getParent();
 		double U = parent.getMass()*Constants.GRAV_CONST_KM;
 
-		r1 = src.getPosition(parent, tod);
-		r2 = dest.getPosition(parent, tod+tof);
-		v1 = src.getVelocity(parent, tod);
-		v2 = dest.getVelocity(parent, tod+tof);
+		if (srcconic != null)
+		{
+			StateVector sv = new Conic(srcconic).getStateVectorAtTime(AstroUtil.tick2dbl(tod));
+			r1 = sv.r;
+			v1 = sv.v;
+		} else {
+			r1 = src.getPosition(parent, tod);
+			v1 = src.getVelocity(parent, tod);
+		}
+		if (destconic != null)
+		{
+			StateVector sv = new Conic(destconic).getStateVectorAtTime(AstroUtil.tick2dbl(tod+tof));
+			r2 = sv.r;
+			v2 = sv.v;
+		} else {
+			r2 = dest.getPosition(parent, tod+tof);
+			v2 = dest.getVelocity(parent, tod+tof);
+		}
 
 		Lambert gauss = new Lambert();
 		gauss.solve(r1, r2, U, AstroUtil.tick2dbl(tof), longway);
@@ -159,7 +212,9 @@ implements Constants
 		UniverseThing earth = src.getParent();
 		UniverseThing sun = earth.getParent();
 
-		double infrad = earth.getInfluenceRadius(tod);
+		double infrad = this.infrad;
+		if (Double.isNaN(infrad))
+			infrad = earth.getInfluenceRadius(tod);
 
 		double sunU = sun.getMass()*GRAV_CONST_KM;
 		double earthU = earth.getMass()*GRAV_CONST_KM;
@@ -167,12 +222,22 @@ implements Constants
 		// get pole of source planet
 		Vector3d earth_pole = ((Planet)earth).getSpinAxis();
 
-		double start_rad = src.getTelemetry().getCENDIST(); //todo?
+		double start_rad = this.start_rad;
+		if (Double.isNaN(start_rad))
+			start_rad = src.getTelemetry().getCENDIST(); //todo?
 
 		Vector3d r1 = earth.getPosition(sun, tod);
-		Vector3d r2 = dest.getPosition(sun, tod+tof);
 		Vector3d v1 = earth.getVelocity(sun, tod);
-		Vector3d v2 = dest.getVelocity(sun, tod+tof);
+		Vector3d r2, v2;
+		if (destconic != null)
+		{
+			StateVector sv = new Conic(destconic).getStateVectorAtTime(AstroUtil.tick2dbl(tod+tof));
+			r2 = sv.r;
+			v2 = sv.v;
+		} else {
+			r2 = dest.getPosition(sun, tod+tof);
+			v2 = dest.getVelocity(sun, tod+tof);
+		}
 
 		Lambert gauss = new Lambert();
 		gauss.solve(r1, r2, sunU, AstroUtil.tick2dbl(tof), longway);
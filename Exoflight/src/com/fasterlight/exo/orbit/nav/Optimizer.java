@@ -21,6 +21,7 @@ package com.fasterlight.exo.orbit.nav;
 import java.util.*;
 
 import com.fasterlight.exo.orbit.AstroUtil;
+import com.fasterlight.game.SettingsGroup;
 import com.fasterlight.util.*;
 import com.fasterlight.vecmath.*;
 
@@ -35,6 +36,12 @@ import com.fasterlight.vecmath.*;
   * 3. assign a cost to that space, the sum of the costs of each corner / area
   * 4. pop the best (cheapest cost) node off of the queue
   * 5. subdivide into 4 quadrants, compute each
+  *
+  * The new costs for each step are computed together, on the
+  * OptimizerPool threads if computeCost() is thread-safe, and
+  * then published under the optimizer's lock in the same order
+  * as a serial search would.  So other threads can read the
+  * results while startSearch() runs the search in the background.
   */
 public abstract class Optimizer
 {
@@ -49,6 +56,10 @@ public abstract class Optimizer
 
 	boolean debug = false;
 
+	private Object iterlock = new Object(); // one iteration at a time
+	private volatile boolean cancelled;
+	private volatile boolean searching;
+
 	class SearchSpace implements Comparable
 	{
 		Rect4f r;
@@ -121,37 +132,103 @@ public abstract class Optimizer
 	public double getCost(float x, float y)
 	{
 		Vector2f pos = new Vector2f(x, y);
-		Double cost = (Double) costs.get(pos);
-		if (cost == null)
+		synchronized (this)
 		{
-			double n = computeCost(pos.x, pos.y);
-			if (n < bestcost)
-			{
-				bestcost = n;
-				bestpoint = pos;
-			}
-			if (n > maxcost)
+			Double cost = (Double) costs.get(pos);
+			if (cost != null)
+				return cost.doubleValue();
+		}
+		double n = computeCost(pos.x, pos.y);
+		synchronized (this)
+		{
+			putCost(pos, n);
+		}
+		return n;
+	}
+
+	// call with the lock held
+	private void putCost(Vector2f pos, double n)
+	{
+		if (costs.get(pos) != null)
+			return;
+		if (n < bestcost)
+		{
+			bestcost = n;
+			bestpoint = pos;
+		}
+		if (n > maxcost)
+		{
+			maxcost = n;
+		}
+		//			costs.put(pos, cost);
+		costs.put(new Double(n), pos);
+	}
+
+	// adds (x,y) to the list if we don't have its cost yet
+	private int addPoint(float[] xs, float[] ys, int n, float x, float y)
+	{
+		if (costs.get(new Vector2f(x, y)) != null)
+			return n;
+		for (int i = 0; i < n; i++)
+		{
+			if (xs[i] == x && ys[i] == y)
+				return n;
+		}
+		xs[n] = x;
+		ys[n] = y;
+		return n + 1;
+	}
+
+	/**
+	  * Computes the costs that the SearchSpaces for 'rects'
+	  * will need, all at once.
+	  */
+	void computeCosts(Rect4f[] rects)
+	{
+		float[] xs = new float[rects.length * 5];
+		float[] ys = new float[rects.length * 5];
+		int n = 0;
+		synchronized (this)
+		{
+			// same order as the SearchSpace constructor
+			for (int i = 0; i < rects.length; i++)
 			{
-				maxcost = n;
+				Rect4f r = rects[i];
+				n = addPoint(xs, ys, n, r.x1, r.y1);
+				n = addPoint(xs, ys, n, r.x2, r.y1);
+				n = addPoint(xs, ys, n, r.x1, r.y2);
+				n = addPoint(xs, ys, n, r.x2, r.y2);
+				n = addPoint(xs, ys, n, (r.x1 + r.x2) / 2, (r.y1 + r.y2) / 2);
 			}
-			cost = new Double(n);
-			//			costs.put(pos, cost);
-			costs.put(cost, pos);
 		}
-		return cost.doubleValue();
+		double[] results = new double[n];
+		if (n > 1 && NUM_THREADS > 1 && isThreadSafe())
+		{
+			OptimizerPool.getPool().computeCosts(this, xs, ys, results, n, NUM_THREADS);
+		} else {
+			for (int i = 0; i < n && !cancelled; i++)
+				results[i] = computeCost(xs[i], ys[i]);
+		}
+		if (cancelled)
+			return;
+		synchronized (this)
+		{
+			for (int i = 0; i < n; i++)
+				putCost(new Vector2f(xs[i], ys[i]), results[i]);
+		}
 	}
 
-	public double getMinCost()
+	public synchronized double getMinCost()
 	{
 		return bestcost;
 	}
 
-	public double getMaxCost()
+	public synchronized double getMaxCost()
 	{
 		return maxcost;
 	}
 
-	public double getInterpCost(float x, float y, float rad)
+	public synchronized double getInterpCost(float x, float y, float rad)
 	{
 		Rect4f r = new Rect4f(x - rad, y - rad, x + rad, y + rad);
 		Vector v = costs.getEntriesInRect(r);
@@ -176,42 +253,157 @@ public abstract class Optimizer
 		return (sum / denom);
 	}
 
-	public Tuple2f getBestPoint()
+	public synchronized Tuple2f getBestPoint()
 	{
 		return bestpoint;
 	}
 
 	public abstract double computeCost(float x, float y);
 
-	public boolean iterate()
+	/**
+	  * True if computeCost() can be called from several
+	  * threads at once.
+	  */
+	public boolean isThreadSafe()
 	{
-		if (niters++ == 0)
-			addSpace(new SearchSpace(bounds));
-		if (pqv.isEmpty())
-			return false;
-		SearchSpace ss = (SearchSpace) pqv.remove();
-		Vector2f cen = new Vector2f((ss.r.x1 + ss.r.x2) / 2, (ss.r.y1 + ss.r.y2) / 2);
-		addSpace(new SearchSpace(new Rect4f(ss.r.x1, ss.r.y1, cen.x, cen.y)));
-		addSpace(new SearchSpace(new Rect4f(cen.x, ss.r.y1, ss.r.x2, cen.y)));
-		addSpace(new SearchSpace(new Rect4f(ss.r.x1, cen.y, cen.x, ss.r.y2)));
-		addSpace(new SearchSpace(new Rect4f(cen.x, cen.y, ss.r.x2, ss.r.y2)));
 		return true;
 	}
 
+	public boolean iterate()
+	{
+		synchronized (iterlock)
+		{
+			if (cancelled)
+				return false;
+			if (niters == 0)
+			{
+				Rect4f[] rects = { bounds };
+				computeCosts(rects);
+				if (cancelled)
+					return false;
+				synchronized (this)
+				{
+					addSpace(new SearchSpace(bounds));
+				}
+			}
+			SearchSpace ss;
+			synchronized (this)
+			{
+				if (pqv.isEmpty())
+				{
+					niters++;
+					return false;
+				}
+				ss = (SearchSpace) pqv.remove();
+			}
+			Vector2f cen = new Vector2f((ss.r.x1 + ss.r.x2) / 2, (ss.r.y1 + ss.r.y2) / 2);
+			Rect4f[] rects = {
+				new Rect4f(ss.r.x1, ss.r.y1, cen.x, cen.y),
+				new Rect4f(cen.x, ss.r.y1, ss.r.x2, cen.y),
+				new Rect4f(ss.r.x1, cen.y, cen.x, ss.r.y2),
+				new Rect4f(cen.x, cen.y, ss.r.x2, ss.r.y2)
+			};
+			computeCosts(rects);
+			if (cancelled)
+				return false;
+			// all the costs are there now, so this is quick
+			synchronized (this)
+			{
+				for (int i = 0; i < rects.length; i++)
+					addSpace(new SearchSpace(rects[i]));
+				niters++;
+			}
+			return true;
+		}
+	}
+
+	/**
+	  * Iterates on a background thread until getSize() reaches
+	  * 'maxiters', the search space runs out, or cancel() is called.
+	  * Does nothing if a search is already running.
+	  */
+	public synchronized void startSearch(final int maxiters)
+	{
+		if (searching)
+			return;
+		searching = true;
+		Thread t = new Thread("Optimizer")
+		{
+			public void run()
+			{
+				try {
+					while (getSize() < maxiters && iterate())
+						;
+				} finally {
+					synchronized (Optimizer.this)
+					{
+						searching = false;
+						Optimizer.this.notifyAll();
+					}
+				}
+			}
+		};
+		t.setDaemon(true);
+		t.start();
+	}
+
+	public boolean isSearching()
+	{
+		return searching;
+	}
+
+	/**
+	  * Waits for a background search to finish.
+	  */
+	public synchronized void waitForSearch()
+	throws InterruptedException
+	{
+		while (searching)
+			wait();
+	}
+
+	/**
+	  * Stops the search; costs being computed are thrown away.
+	  * The results so far can still be read.
+	  */
+	public void cancel()
+	{
+		cancelled = true;
+	}
+
+	public boolean isCancelled()
+	{
+		return cancelled;
+	}
+
 	/**
 	  * Returns a Vector of Map.Entry
 	  * which contains (Double, Tuple2f)
 	  */
-	public Vector getPoints(Rect4f rect)
+	public synchronized Vector getPoints(Rect4f rect)
 	{
 		return costs.getEntriesInRect(rect);
 	}
 
-	public int getSize()
+	public synchronized int getSize()
 	{
 		return niters;
 	}
 
+	/**
+	  * Sets the # of threads used to compute costs.
+	  * 0 or 1 computes them on the calling thread.
+	  */
+	public static void setNumThreads(int n)
+	{
+		NUM_THREADS = Math.max(0, n);
+	}
+
+	public static int getNumThreads()
+	{
+		return NUM_THREADS;
+	}
+
 	public static void main(String[] args)
 	{
 		Rect4f bounds = new Rect4f(-10, -10, 10, 10);
@@ -227,4 +419,16 @@ public abstract class Optimizer
 		for (int i = 0; i < 100; i++)
 			opt.iterate();
 	}
+
+	//
+
+	static int NUM_THREADS;
+
+	static SettingsGroup settings = new SettingsGroup(Optimizer.class, "Navigation")
+	{
+		public void updateSettings()
+		{
+			NUM_THREADS = getInt("OptimizerThreads", Runtime.getRuntime().availableProcessors());
+		}
+	};
 }
@@ -0,0 +1,191 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.nav;
+
+/**
+  * A pool of worker threads that computes a batch of costs
+  * for an Optimizer.  The calling thread helps out, then waits
+  * for the rest of the batch.  One batch at a time.
+  */
+class OptimizerPool
+implements Runnable
+{
+	private Thread[] workers;
+
+	private Optimizer opt;
+	private float[] xs, ys;
+	private double[] results;
+	private int count;
+	private int next_point;
+	private int points_done;
+	private int helpers;
+	private int generation;
+	private Throwable failure;
+	private Object batchlock = new Object(); // one batch at a time
+
+	//
+
+	private static OptimizerPool pool;
+
+	static synchronized OptimizerPool getPool()
+	{
+		if (pool == null)
+			pool = new OptimizerPool();
+		return pool;
+	}
+
+	/**
+	  * Sets results[i] to opt.computeCost(xs[i], ys[i]) for i < n,
+	  * using up to 'nthreads' threads (including this one).
+	  * If the optimizer is cancelled, the rest are skipped.
+	  */
+	void computeCosts(Optimizer opt, float[] xs, float[] ys, double[] results,
+		int n, int nthreads)
+	{
+		synchronized (batchlock)
+		{
+			int nhelpers = Math.min(nthreads, n) - 1;
+			startWorkers(nhelpers);
+			synchronized (this)
+			{
+				this.opt = opt;
+				this.xs = xs;
+				this.ys = ys;
+				this.results = results;
+				this.count = n;
+				next_point = 0;
+				points_done = 0;
+				helpers = nhelpers;
+				failure = null;
+				generation++;
+				notifyAll();
+			}
+			// this thread helps too
+			work();
+			// wait for the workers even if we're interrupted,
+			// so they're done with this batch before the next one
+			boolean interrupted = false;
+			Throwable t;
+			synchronized (this)
+			{
+				while (points_done < count)
+				{
+					try {
+						wait();
+					} catch (InterruptedException ie) {
+						interrupted = true;
+					}
+				}
+				this.opt = null;
+				this.results = null;
+				t = failure;
+				failure = null;
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			if (t instanceof RuntimeException)
+				throw (RuntimeException)t;
+			if (t instanceof Error)
+				throw (Error)t;
+			if (t != null)
+				throw new RuntimeException(t.toString());
+		}
+	}
+
+	private void work()
+	{
+		while (true)
+		{
+			int i;
+			synchronized (this)
+			{
+				if (opt == null || next_point >= count)
+					return;
+				i = next_point++;
+			}
+			try {
+				if (!opt.isCancelled())
+					results[i] = opt.computeCost(xs[i], ys[i]);
+			} catch (Throwable t) {
+				// handed to the caller
+				synchronized (this)
+				{
+					if (failure == null)
+						failure = t;
+				}
+			} finally {
+				synchronized (this)
+				{
+					if (++points_done == count)
+						notifyAll();
+				}
+			}
+		}
+	}
+
+	private void startWorkers(int n)
+	{
+		if (workers != null && workers.length >= n)
+			return;
+		Thread[] newworkers = new Thread[n];
+		int i = 0;
+		if (workers != null)
+		{
+			System.arraycopy(workers, 0, newworkers, 0, workers.length);
+			i = workers.length;
+		}
+		for (; i<n; i++)
+		{
+			Thread t = new Thread(this, "Optimizer " + i);
+			t.setDaemon(true);
+			t.start();
+			newworkers[i] = t;
+		}
+		workers = newworkers;
+	}
+
+	public void run()
+	{
+		int seen;
+		synchronized (this)
+		{
+			seen = generation;
+		}
+		while (true)
+		{
+			synchronized (this)
+			{
+				while (generation == seen || helpers == 0)
+				{
+					seen = generation;
+					try {
+						wait();
+					} catch (InterruptedException ie) {
+						return;
+					}
+				}
+				seen = generation;
+				// only as many as were asked for
+				helpers--;
+			}
+			work();
+		}
+	}
+
+}
@@ -19,12 +19,17 @@
 package com.fasterlight.exo.orbit.nav;
 
 import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.StaticTrajectory;
 import com.fasterlight.util.Rect4f;
-import com.fasterlight.vecmath.Vector3d;
 
 /**
   * An Optimizer class that computes the best Lambert trajectory
   * for a particular set of constraints.
+  *
+  * Bodies on static trajectories (planets) are safe to query
+  * from any thread.  Anything else (ships) is snapshotted as a
+  * conic when the optimizer is made, so the costs can be computed
+  * on worker threads while the game goes on.
   */
 public class TOFOptimizer extends Optimizer implements Constants
 {
@@ -34,6 +39,11 @@ public class TOFOptimizer extends Optimizer implements Constants
 
 	public static final double MAX_COST = 999;
 
+	Conic srcconic, destconic; // null if body is safe to query
+	double start_rad = Double.NaN;
+	double infrad = Double.NaN;
+	boolean threadsafe = true;
+
 	public TOFOptimizer(
 		UniverseThing src,
 		UniverseThing dest,
@@ -51,6 +61,43 @@ public class TOFOptimizer extends Optimizer implements Constants
 		this.src = src;
 		this.dest = dest;
 		this.ref = ref;
+		srcconic = snapshot(src);
+		destconic = snapshot(dest);
+		// same test as Navigator.solve()
+		UniverseThing srcparent = src.getParent();
+		if (srcparent.getParent() == dest.getParent())
+		{
+			start_rad = src.getTelemetry().getCENDIST();
+			infrad = srcparent.getInfluenceRadius(t1l);
+		}
+	}
+
+	// returns a copy of the body's current orbit, or null
+	// if it's safe to ask the body directly
+	private Conic snapshot(UniverseThing thing)
+	{
+		if (thing.getTrajectory() instanceof StaticTrajectory)
+			return null;
+		Conic o = UniverseUtil.getConicFor(thing);
+		if (o == null)
+		{
+			// landed, etc.
+			threadsafe = false;
+			return null;
+		}
+		o = new Conic(o);
+		// fill in the lazy parts now, so the copies are read-only
+		o.getElements_unsafe();
+		o.getStateVectorAtEpoch();
+		return o;
+	}
+
+	/**
+	  * True if computeCost() can be called from other threads.
+	  */
+	public boolean isThreadSafe()
+	{
+		return threadsafe;
 	}
 
 	public void setMinRadius(double minrad)
@@ -58,24 +105,24 @@ public class TOFOptimizer extends Optimizer implements Constants
 		this.minrad = minrad;
 	}
 
-	// transient-- danger-- todo
-	long t1, t2;
-	Vector3d r1, r2, v1, v2;
-
 	Navigator solveNavigatorFor(float x, float y) throws NavigationException
 	{
 		// x is t1, y is t2
-		t1 = x2time(x);
-		t2 = y2time(y);
+		long t1 = x2time(x);
+		long t2 = y2time(y);
 
 		// Vallado, pg. 456
 		Navigator g = new Navigator();
 		g.setSourceBody(src);
 		g.setTargetBody(dest);
+		g.setSourceConic(srcconic);
+		g.setTargetConic(destconic);
+		g.setStartRadius(start_rad);
+		g.setInfluenceRadius(infrad);
 		g.setTimeOfDeparture(t1);
 		g.setFlightTime(t2);
 		//		g.setThreshold(0.001);
-		boolean longway = Lambert.useLongWay(r1, v1, r2, v2);
+		boolean longway = false; // todo: Lambert.useLongWay()
 		g.setLongWay(longway);
 		g.solve();
 		return g;
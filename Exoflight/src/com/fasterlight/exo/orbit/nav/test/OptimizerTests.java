@@ -0,0 +1,207 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.nav.test;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.nav.*;
+import com.fasterlight.exo.orbit.traj.*;
+import com.fasterlight.testing.*;
+import com.fasterlight.util.Rect4f;
+import com.fasterlight.util.Vec3d;
+
+public class OptimizerTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	static final long DAY = Constants.TICKS_PER_SEC*86400;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+	}
+
+	public OptimizerTests(String name)
+	{
+		super(name);
+		THRESHOLD = 1e-6;
+	}
+
+	TOFOptimizer makeEarthMars()
+	{
+		long t = game.time();
+		TOFOptimizer opt = new TOFOptimizer(
+			game.getBody("Earth"), game.getBody("Mars"), game.getBody("Sun"),
+			t, t+DAY*730, DAY*100, DAY*400);
+		opt.setMinXSize(1f/256);
+		opt.setMinYSize(1f/256);
+		return opt;
+	}
+
+	TOFOptimizer searchEarthMars(int nthreads, int iters)
+	{
+		int oldthreads = Optimizer.getNumThreads();
+		Optimizer.setNumThreads(nthreads);
+		try {
+			TOFOptimizer opt = makeEarthMars();
+			for (int i=0; i<iters; i++)
+				opt.iterate();
+			return opt;
+		} finally {
+			Optimizer.setNumThreads(oldthreads);
+		}
+	}
+
+	public void testParallelMatchesSerial()
+	{
+		TOFOptimizer serial = searchEarthMars(1, 200);
+		TOFOptimizer parallel = searchEarthMars(4, 200);
+		assertTrue(serial.isThreadSafe());
+		assertEquals(serial.getSize(), parallel.getSize());
+		// costs are published in the same order, so it all matches
+		assertEquals(serial.getBestPoint(), parallel.getBestPoint());
+		assertEquals(serial.getMinCost(), parallel.getMinCost());
+		assertEquals(serial.getMaxCost(), parallel.getMaxCost());
+		assertEquals(serial.getPoints(serial.getBounds()).size(),
+			parallel.getPoints(parallel.getBounds()).size());
+		assertTrue(serial.getMinCost() < TOFOptimizer.MAX_COST);
+	}
+
+	public void testBackgroundSearch()
+	throws Exception
+	{
+		TOFOptimizer serial = searchEarthMars(1, 100);
+		TOFOptimizer opt = makeEarthMars();
+		opt.startSearch(100);
+		opt.waitForSearch();
+		assertTrue(!opt.isSearching());
+		assertEquals(100, opt.getSize());
+		assertEquals(serial.getBestPoint(), opt.getBestPoint());
+	}
+
+	public void testCancel()
+	throws Exception
+	{
+		TOFOptimizer opt = makeEarthMars();
+		opt.startSearch(Integer.MAX_VALUE);
+		while (opt.getSize() < 10)
+			Thread.sleep(1);
+		opt.cancel();
+		opt.waitForSearch();
+		int size = opt.getSize();
+		assertTrue(opt.isCancelled());
+		assertTrue(!opt.iterate());
+		assertEquals(size, opt.getSize());
+		// results so far are still there
+		assertNotNull(opt.getBestPoint());
+	}
+
+	// an Error in a worker comes back to the caller,
+	// and the pool is still usable afterwards
+	public void testWorkerError()
+	{
+		int oldthreads = Optimizer.getNumThreads();
+		Optimizer.setNumThreads(4);
+		try {
+			Optimizer bad = new Optimizer(new Rect4f(0,0,1,1))
+			{
+				public double computeCost(float x, float y)
+				{
+					throw new AssertionFailedError("worker error");
+				}
+			};
+			try {
+				bad.iterate();
+				fail("no error from worker");
+			} catch (AssertionFailedError afe) {
+				assertEquals("worker error", afe.getMessage());
+			}
+			TOFOptimizer opt = makeEarthMars();
+			for (int i=0; i<10; i++)
+				opt.iterate();
+			assertEquals(10, opt.getSize());
+		} finally {
+			Optimizer.setNumThreads(oldthreads);
+		}
+	}
+
+	// a ship's orbit is snapshotted, and should give the same
+	// answers as asking the ship
+	public void testShipSnapshot()
+	throws Exception
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = 0;
+		try {
+			Planet earth = (Planet)game.getBody("Earth");
+			UniverseThing moon = game.getBody("Luna");
+			DefaultUniverseThing thing = new DefaultUniverseThing();
+			thing.setName("Optimizer test");
+			thing.setMass(1000);
+			thing.setRadius(0.005f);
+			double r = earth.getRadius() + 300;
+			double v = Math.sqrt(earth.getMass()*Constants.GRAV_CONST_KM/r);
+			thing.setTrajectory(new CowellTrajectory(earth,
+				new Vec3d(r,0,0), new Vec3d(0,v,0), game.time(), new Orientation()));
+
+			long t = game.time();
+			TOFOptimizer opt = new TOFOptimizer(thing, moon, earth,
+				t, t+DAY, DAY*2, DAY*5);
+			assertTrue(opt.isThreadSafe());
+			for (int i=0; i<=4; i++)
+			{
+				float x = i/4f;
+				float y = 1-i/4f;
+				Navigator g = new Navigator();
+				g.setSourceBody(thing);
+				g.setTargetBody(moon);
+				g.setTimeOfDeparture(opt.x2time(x));
+				g.setFlightTime(opt.y2time(y));
+				try {
+					g.solve();
+					assertEquals(g.getTotalDV(), opt.computeCost(x, y), 1e-5);
+				} catch (NavigationException nave) {
+					assertTrue(opt.computeCost(x, y) >= TOFOptimizer.MAX_COST);
+				}
+			}
+			thing.setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(OptimizerTests.class);
+		return suite;
+	}
+
+}
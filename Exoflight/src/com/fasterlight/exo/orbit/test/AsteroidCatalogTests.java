@@ -0,0 +1,182 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.test;
+
+import java.util.Random;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.PropagationScheduler;
+import com.fasterlight.testing.*;
+import com.fasterlight.vecmath.Vector3d;
+
+public class AsteroidCatalogTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	Random rand = new Random(1234);
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+	}
+
+	public AsteroidCatalogTests(String name)
+	{
+		super(name);
+	}
+
+	//
+
+	public void testLoad()
+	{
+		AsteroidCatalog cat = game.getAsteroidCatalog();
+		assertEquals(1144, cat.size());
+		int i = cat.indexOf("Ceres");
+		assertEquals(0, i);
+		assertEquals(1, cat.getNumber(i));
+		assertEquals(848.4f, cat.getDiameter(i), 1e-3f);
+		assertEquals(3.34f, cat.getMagnitude(i), 1e-3f);
+		// two-digit magnitudes fill the whole column
+		int j = cat.indexOf("Oppavia");
+		assertEquals(255, cat.getNumber(j));
+		assertEquals(10.39f, cat.getMagnitude(j), 1e-3f);
+		assertEquals(57.4f, cat.getDiameter(j), 1e-3f);
+		KeplerianElements ke = cat.getElements(i);
+		assertEquals(2.76693093*Constants.AU_TO_KM, ke.getSemiMajorAxis(), 1);
+		assertEquals(0.07852598, ke.getEccentricity(), 1e-9);
+	}
+
+	public void testMatchesConic()
+	{
+		AsteroidCatalog cat = game.getAsteroidCatalog();
+		int n = cat.size();
+		double[] pos = new double[n*3];
+		double[] vel = new double[n*3];
+		for (int days=0; days<3000; days+=731)
+		{
+			long t = game.time() + days*Constants.TICKS_PER_DAY;
+			cat.propagate(t, pos, vel);
+			for (int i=0; i<n; i+=7)
+			{
+				StateVector sv = cat.getConic(i).getStateVectorAtTime(t*(1d/Constants.TICKS_PER_SEC));
+				Vector3d r = new Vector3d(pos[i*3], pos[i*3+1], pos[i*3+2]);
+				Vector3d v = new Vector3d(vel[i*3], vel[i*3+1], vel[i*3+2]);
+				r.sub(sv.r);
+				v.sub(sv.v);
+				// within a meter, and a mm/s
+				assertTrue(cat.getName(i) + " pos error " + r.length(), r.length() < 1e-3);
+				assertTrue(cat.getName(i) + " vel error " + v.length(), v.length() < 1e-6);
+			}
+		}
+	}
+
+	public void testParallelMatchesSerial()
+	{
+		int oldthreads = PropagationScheduler.getNumThreads();
+		try {
+			AsteroidCatalog cat = game.getAsteroidCatalog();
+			long t = game.time() + 100*Constants.TICKS_PER_DAY;
+			PropagationScheduler.setNumThreads(4);
+			cat.update(t);
+			double[] pos = new double[cat.size()*3];
+			cat.propagate(t, pos, null);
+			for (int i=0; i<cat.size(); i++)
+				assertEquals(new Vector3d(pos[i*3], pos[i*3+1], pos[i*3+2]), cat.getPosition(i));
+		} finally {
+			PropagationScheduler.setNumThreads(oldthreads);
+		}
+	}
+
+	public void testQueries()
+	{
+		AsteroidCatalog cat = game.getAsteroidCatalog();
+		cat.update(game.time() + 1000*Constants.TICKS_PER_DAY);
+		int[] found = new int[cat.size()];
+		for (int iter=0; iter<100; iter++)
+		{
+			Vector3d p = cat.getPosition(rand.nextInt(cat.size()));
+			p.x += (rand.nextDouble()-0.5)*1e8;
+			p.y += (rand.nextDouble()-0.5)*1e8;
+			double radius = rand.nextDouble()*1e8;
+			// check against brute force
+			int besti = -1;
+			double bestd = radius;
+			int nwithin = 0;
+			for (int i=0; i<cat.size(); i++)
+			{
+				Vector3d d = cat.getPosition(i);
+				d.sub(p);
+				if (d.length() < bestd)
+				{
+					bestd = d.length();
+					besti = i;
+				}
+				if (d.length() <= radius)
+					nwithin++;
+			}
+			assertEquals(besti, cat.nearest(p, radius));
+			int nfound = cat.findWithin(p, radius, found);
+			assertEquals(nwithin, nfound);
+			for (int j=0; j<nfound; j++)
+			{
+				Vector3d d = cat.getPosition(found[j]);
+				d.sub(p);
+				assertTrue(d.length() <= radius);
+			}
+		}
+	}
+
+	public void testPromote()
+	{
+		AsteroidCatalog cat = game.getAsteroidCatalog();
+		int i = cat.indexOf("Vesta");
+		assertTrue(i >= 0);
+		assertTrue(cat.getPromoted(i) == null);
+		Asteroid ast = cat.promote(i);
+		assertTrue(ast == cat.promote(i));
+		assertTrue(ast.getParent() == cat.getParent());
+		assertEquals("Vesta", ast.getName());
+		long t = game.time();
+		cat.update(t);
+		Vector3d r = ast.getTrajectory().getPos(t);
+		r.sub(cat.getPosition(i));
+		assertTrue("error " + r.length(), r.length() < 1e-3);
+		ast.setTrajectory(null);
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(AsteroidCatalogTests.class);
+		return suite;
+	}
+
+}
@@ -18,7 +18,7 @@
 *********************************************************************/
 package com.fasterlight.exo.orbit.test;
 
-import java.io.BufferedReader;
+import java.io.*;
 
 import junit.framework.*;
 
@@ -161,6 +161,146 @@ extends NumericTestCase
 
 	}
 
+	public void testMapped()
+	throws Exception
+	{
+		DE405Ephemeris[] chunks = new DE405Ephemeris[3];
+		for (int i=0; i<chunks.length; i++)
+		{
+			String path = "eph/de405-" + (1980+i*20) + ".ser";
+			chunks[i] = (DE405Ephemeris)IOUtil.readSerializedObject(path);
+		}
+		File file = File.createTempFile("de405", ".eph");
+		file.deleteOnExit();
+		MakeMappedEphemeris.writeMapped(chunks, file.getPath());
+
+		MappedEphemeris mapped = new MappedEphemeris(file.getPath());
+		assertEquals(chunks[0].getStartTime(), mapped.getStartTime(), 0);
+		assertEquals(chunks[2].getEndTime(), mapped.getEndTime(), 0);
+		mapped.setTransformMoon(true);
+
+		doEphemerisTest(mapped);
+
+		// the mapped file should agree with the chunks it came from
+		CompositeEphemeris composite = new CompositeEphemeris();
+		for (int i=0; i<chunks.length; i++)
+		{
+			chunks[i].setTransformMoon(true);
+			composite.addEphemeris(chunks[i]);
+		}
+		java.util.Random rand = new java.util.Random(405);
+		StateVector sv1 = new StateVector();
+		StateVector sv2 = new StateVector();
+		int bodflags = mapped.getBodiesSupported();
+		assertEquals(composite.getBodiesSupported(), bodflags);
+		double t0 = mapped.getStartTime();
+		double t1 = mapped.getEndTime();
+		int count = 0;
+		for (int iter=0; iter<NUM_ITERS; iter++)
+		{
+			double jed = t0 + rand.nextDouble()*(t1-t0);
+			for (int b=1; b<=11; b++)
+			{
+				if ((bodflags & (1<<b)) != 0)
+				{
+					composite.getBodyStateVector(sv1, b, jed);
+					mapped.getBodyStateVector(sv2, b, jed);
+					// the times within a record are computed a bit differently
+					double rerr = AstroUtil.vecdist(sv1.r, sv2.r);
+					double verr = AstroUtil.vecdist(sv1.v, sv2.v);
+					assertTrue("body " + b + " at " + jed + ": " + rerr,
+						rerr <= 1e-9*sv1.r.length());
+					assertTrue("body " + b + " at " + jed + ": " + verr,
+						verr <= 1e-9*sv1.v.length());
+					count++;
+				}
+			}
+		}
+		assertTrue(count > 0);
+	}
+
+	public void testCache()
+	throws Exception
+	{
+		String path = "eph/de405-1980.ser";
+		DE405Ephemeris direct = (DE405Ephemeris)IOUtil.readSerializedObject(path);
+		DE405Ephemeris de405 = (DE405Ephemeris)IOUtil.readSerializedObject(path);
+		de405.setTransformMoon(true);
+		direct.setTransformMoon(true);
+		EphemerisCache cache = new EphemerisCache(de405);
+
+		doEphemerisTest(cache);
+
+		// cycle through more epochs than the cache holds,
+		// mixing single and batch queries
+		java.util.Random rand = new java.util.Random(405);
+		double[] jeds = new double[EphemerisCache.DEFAULT_SIZE + 4];
+		for (int i=0; i<jeds.length; i++)
+			jeds[i] = direct.getStartTime() + 1000 + i*0.37;
+		StateVector[] svs = new StateVector[12];
+		for (int i=0; i<svs.length; i++)
+			svs[i] = new StateVector();
+		StateVector sv = new StateVector();
+		int mask = (1<<3) | (1<<5) | (1<<10) | (1<<11);
+		for (int iter=0; iter<NUM_ITERS; iter++)
+		{
+			double jed = jeds[rand.nextInt(jeds.length)];
+			if (rand.nextBoolean())
+			{
+				cache.getBodyStateVectors(svs, mask, jed);
+				for (int b=1; b<=11; b++)
+				{
+					if ((mask & (1<<b)) != 0)
+					{
+						direct.getBodyStateVector(sv, b, jed);
+						assertEquals(sv, svs[b]);
+					}
+				}
+			} else {
+				int b = 1 + rand.nextInt(11);
+				cache.getBodyStateVector(svs[0], b, jed);
+				direct.getBodyStateVector(sv, b, jed);
+				assertEquals(sv, svs[0]);
+			}
+		}
+		assertTrue(cache.getHits() > 0);
+	}
+
+	public void testPrefetch()
+	throws Exception
+	{
+		ProxyEphemeris[] proxies = {
+			new ProxyEphemeris("eph/de405-1960.ser", 2436912.5, 2444240.5, 0xffe),
+			new ProxyEphemeris("eph/de405-1980.ser", 2444208.5, 2451568.5, 0xffe),
+			new ProxyEphemeris("eph/de405-2000.ser", 2451536.5, 2458864.5, 0xffe),
+		};
+		CompositeEphemeris composite = new CompositeEphemeris();
+		for (int i=0; i<proxies.length; i++)
+			composite.addEphemeris(proxies[i]);
+		composite.setMaxResident(2);
+		composite.setRateSampleMillis(0);
+
+		// creep up on the end of the first chunk
+		StateVector sv = new StateVector();
+		double jed = proxies[0].getEndTime() - 1.5;
+		composite.getBodyStateVector(sv, 3, jed);
+		composite.getBodyStateVector(sv, 3, jed + 0.01);
+		// the next one should load in the background
+		composite.waitForPrefetch();
+		assertTrue(proxies[1].isLoaded());
+		assertTrue(!proxies[2].isLoaded());
+
+		// go through all of them, only 2 should stay loaded
+		for (int i=0; i<proxies.length; i++)
+		{
+			composite.getBodyStateVector(sv, 3, proxies[i].getStartTime() + 100);
+			composite.waitForPrefetch();
+		}
+		assertTrue(composite.getNumResident() <= 2);
+		assertTrue(!proxies[0].isLoaded());
+		composite.close();
+	}
+
 	//
 
 	public static Test suite()
@@ -18,9 +18,11 @@
 *********************************************************************/
 package com.fasterlight.exo.orbit.test;
 
+import java.util.List;
+
 import junit.framework.*;
 
-import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.game.*;
 import com.fasterlight.exo.orbit.*;
 import com.fasterlight.testing.*;
 import com.fasterlight.vecmath.Vector3d;
@@ -113,6 +115,79 @@ extends NumericTestCase
 		System.out.println("earthv=" + earth.getVelocity(null, time));
 	}
 
+	public void testRelativePositions()
+	{
+		List planets = game.getPlanets();
+		long time = AstroUtil.julian2tick(2451545.0);
+		for (int i=0; i<planets.size(); i++)
+		{
+			UniverseThing a = (UniverseThing)planets.get(i);
+			Vector3d apos = a.getPosition(null, time);
+			Vector3d avel = a.getVelocity(null, time);
+			for (int j=0; j<planets.size(); j++)
+			{
+				UniverseThing b = (UniverseThing)planets.get(j);
+				Vector3d pos = a.getPosition(b, time);
+				Vector3d vel = a.getVelocity(b, time);
+				// same as going through the origin
+				Vector3d exppos = new Vector3d(apos);
+				exppos.sub(b.getPosition(null, time));
+				Vector3d expvel = new Vector3d(avel);
+				expvel.sub(b.getVelocity(null, time));
+				exppos.sub(pos);
+				expvel.sub(vel);
+				assertTrue(a + "->" + b + ": " + exppos, exppos.length() < 1e-3);
+				assertTrue(a + "->" + b + ": " + expvel, expvel.length() < 1e-9);
+				// and the opposite of going the other way
+				pos.add(b.getPosition(a, time));
+				assertTrue(a + "<-" + b + ": " + pos, pos.length() < 1e-3);
+				// and the same thing the second time around
+				assertEquals(a.getPosition(b, time), a.getPosition(b, time));
+			}
+		}
+	}
+
+	public void testSnapshot()
+	{
+		game.takeSnapshot();
+		game.publishSnapshot();
+		FrameSnapshot snap = game.takeSnapshot();
+		long time = game.time();
+		assertEquals(time, snap.getTime());
+		List planets = game.getPlanets();
+		for (int i=0; i<planets.size(); i++)
+		{
+			UniverseThing a = (UniverseThing)planets.get(i);
+			Vector3d pos = snap.getPosition(a, null);
+			pos.sub(a.getPosition(null, time));
+			assertTrue(a + ": " + pos, pos.length() < 1e-3);
+			for (int j=0; j<planets.size(); j++)
+			{
+				UniverseThing b = (UniverseThing)planets.get(j);
+				pos = snap.getPosition(a, b);
+				pos.sub(a.getPosition(b, time));
+				assertTrue(a + "->" + b + ": " + pos, pos.length() < 1e-3);
+				Vector3d vel = snap.getVelocity(a, b);
+				vel.sub(a.getVelocity(b, time));
+				assertTrue(a + "->" + b + ": " + vel, vel.length() < 1e-9);
+			}
+		}
+		// things it doesn't know about fall back to the live state
+		DefaultUniverseThing thing = new DefaultUniverseThing();
+		assertTrue(snap.getPosition(thing, null) == null);
+		// publishing again at the same time is a no-op
+		game.publishSnapshot();
+		assertTrue(snap == game.getSnapshot());
+		// and so is publishing before the last one was taken
+		game.update(Constants.TICKS_PER_SEC);
+		game.publishSnapshot();
+		snap = game.getSnapshot();
+		game.update(Constants.TICKS_PER_SEC);
+		game.publishSnapshot();
+		assertTrue(snap == game.getSnapshot());
+		assertTrue(snap == game.takeSnapshot());
+	}
+
 	//
 
 	public static Test suite()
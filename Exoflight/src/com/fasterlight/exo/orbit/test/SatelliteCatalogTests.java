@@ -0,0 +1,196 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.test;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.*;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.OrbitTrajectory;
+import com.fasterlight.testing.*;
+import com.fasterlight.vecmath.Vector3d;
+
+public class SatelliteCatalogTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+	}
+
+	public SatelliteCatalogTests(String name)
+	{
+		super(name);
+		THRESHOLD = 1e-5;
+	}
+
+	SatelliteCatalog loadCatalog()
+	{
+		return game.loadSatelliteCatalog("orbits/earth-tles.dat", "Earth");
+	}
+
+	// makes a catalog with the same entries, parsed with 'nthreads' threads
+	SatelliteCatalog copyCatalog(SatelliteCatalog cat, int n, int nthreads)
+	{
+		String[] names = new String[n];
+		String[] tle1 = new String[n];
+		String[] tle2 = new String[n];
+		for (int i=0; i<n; i++)
+		{
+			int j = i % cat.size();
+			names[i] = cat.getName(j);
+			tle1[i] = cat.getTLE1(j);
+			tle2[i] = cat.getTLE2(j);
+		}
+		SatelliteCatalog cat2 = new SatelliteCatalog(cat.getPlanet());
+		cat2.parse(names, tle1, tle2, nthreads);
+		return cat2;
+	}
+
+	//
+
+	public void testLoad()
+	{
+		SatelliteCatalog cat = loadCatalog();
+		assertTrue(cat.size() > 0);
+		for (int i=0; i<cat.size(); i++)
+			assertEquals(i, cat.indexOf(cat.getName(i)));
+		assertEquals(-1, cat.indexOf("No Such Satellite"));
+	}
+
+	public void testMatchesConic()
+	{
+		SatelliteCatalog cat = loadCatalog();
+		cat.setSecularJ2(false);
+		int n = cat.size();
+		double[] pos = new double[n*3];
+		double[] vel = new double[n*3];
+		for (int hour=0; hour<48; hour+=7)
+		{
+			long t = game.time() + hour*3600*Constants.TICKS_PER_SEC;
+			cat.propagate(t, pos, vel);
+			for (int i=0; i<n; i++)
+			{
+				StateVector sv = cat.getConic(i).getStateVectorAtTime(t*(1d/Constants.TICKS_PER_SEC));
+				assertEquals(sv.r, new Vector3d(pos[i*3], pos[i*3+1], pos[i*3+2]));
+				assertEquals(sv.v, new Vector3d(vel[i*3], vel[i*3+1], vel[i*3+2]));
+			}
+		}
+	}
+
+	public void testMatchesSecularJ2()
+	{
+		SatelliteCatalog cat = loadCatalog();
+		int n = cat.size();
+		double[] pos = new double[n*3];
+		long t = game.time() + 5*86400*Constants.TICKS_PER_SEC;
+		cat.propagate(t, pos, null);
+		for (int i=0; i<n; i++)
+		{
+			OrbitTrajectory traj = new OrbitTrajectory(cat.getPlanet(), cat.getConic(i));
+			traj.setSecularJ2(true);
+			Vector3d r = traj.getPos(t);
+			r.sub(new Vector3d(pos[i*3], pos[i*3+1], pos[i*3+2]));
+			// within a meter after 5 days
+			assertTrue(cat.getName(i) + " error " + r.length(), r.length() < 1e-3);
+		}
+	}
+
+	public void testParallelMatchesSerial()
+	{
+		SatelliteCatalog cat = loadCatalog();
+		int n = 2000;
+		SatelliteCatalog serial = copyCatalog(cat, n, 1);
+		SatelliteCatalog parallel = copyCatalog(cat, n, 4);
+		double[] pos1 = new double[n*3];
+		double[] pos2 = new double[n*3];
+		serial.propagate(game.time(), pos1, null);
+		parallel.propagate(game.time(), pos2, null);
+		for (int i=0; i<n*3; i++)
+			assertTrue(pos1[i] == pos2[i]);
+	}
+
+	public void testMaterialize()
+	{
+		SatelliteCatalog cat = loadCatalog();
+		UniverseThing thing = game.materializeSatellite(0);
+		assertTrue(thing == game.materializeSatellite(0));
+		assertEquals(cat.getName(0), thing.getName());
+		double[] pos = new double[cat.size()*3];
+		cat.propagate(game.time(), pos, null);
+		assertEquals(new Vector3d(pos[0], pos[1], pos[2]), thing.getTrajectory().getPos(game.time()));
+		thing.setTrajectory(null);
+		// no catalog, no satellites
+		assertTrue(new SpaceGame().materializeSatellite(0) == null);
+	}
+
+	public void testSelect()
+	{
+		SatelliteCatalog cat = loadCatalog();
+		String name = cat.getName(1);
+		// it's drawn from the snapshot until someone asks for it
+		assertTrue(game.getBody(name) == null);
+		// not in the snapshot until a view wants it
+		game.update(1);
+		game.takeSnapshot();
+		game.publishSnapshot();
+		FrameSnapshot snap = game.takeSnapshot();
+		assertTrue(snap.getSatelliteCatalog() == null);
+		game.requestSatellites();
+		game.update(1);
+		game.publishSnapshot();
+		snap = game.takeSnapshot();
+		assertTrue(snap.getSatelliteCatalog() == cat);
+		double[] pos = new double[cat.size()*3];
+		cat.propagate(snap.getTime(), pos, null);
+		assertTrue(pos[3] == snap.getSatellitePositions()[3]);
+		// looking it up doesn't make it real, selecting it does
+		assertTrue(game.getUniverse().getProp("$" + name) == null);
+		UniverseThing thing = game.materializeSatellite(name);
+		assertTrue(thing != null);
+		assertTrue(thing == game.getUniverse().getProp("$" + name));
+		assertTrue(thing == game.getBody(name));
+		game.update(1);
+		game.publishSnapshot();
+		snap = game.takeSnapshot();
+		assertTrue(Double.isNaN(snap.getSatellitePositions()[3]));
+		// loading a new catalog takes it away
+		loadCatalog();
+		assertTrue(thing.getTrajectory() == null);
+		assertTrue(game.getBody(name) == null);
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(SatelliteCatalogTests.class);
+		return suite;
+	}
+
+}
@@ -32,6 +32,9 @@ import com.fasterlight.vecmath.*;
   * A trajectory that integrates the position of the object
   * using the Runge-Kutta-Fehlberg 4/5 order method (large timesteps)
   * and the Runge Kutta 4th order method (small timesteps).
+  * In adaptive coast mode, unpowered arcs well clear of the
+  * atmosphere and ground use Runge-Kutta-Fehlberg 7/8 with
+  * continuous step size control.
   * The attraction of the parent body on the object is intergrated,
   * and other forces may be added with the addPerturbation() method.
   *
@@ -40,7 +43,7 @@ import com.fasterlight.vecmath.*;
   * todo: why does switching from OrbitTrajectory change attitude?
   * make sure to do state diagram
   */
-public class CowellTrajectory extends DefaultMutableTrajectory implements Derivatives
+public class CowellTrajectory extends DefaultMutableTrajectory implements BufferedDerivatives
 {
 	double U;
 	Perturbation bodyperturb;
@@ -60,12 +63,14 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 
 	RKState4 oldy0;
 	RKState4 olddy1; // y0 and dy1 at t0
+	private RKState4 solvestate = new RKState4(); // scratch state for solve()
 
 	// whether or not to integrate orientation
 	private boolean integrateAngular = true;
 
-	PerturbForce lastpforce;
+	PerturbForce lastpforce = new PerturbForce();
 	PerturbForce curpforce; // curpforce is the one we want to show the world
+	private PerturbForce scratchpf = new PerturbForce(); // used by f()
 
 	private boolean in_routine; // set when we are computing forces
 
@@ -90,6 +95,34 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 	static final int STATE_LENGTH_POS = 6;
 	static final int STATE_LENGTH_POS_ANG = STATE_LENGTH_POS + 7;
 
+	// scratch arrays for the integrators, one set per state length
+	private ScratchArrays scratchPos = new ScratchArrays(STATE_LENGTH_POS);
+	private ScratchArrays scratchPosAng = new ScratchArrays(STATE_LENGTH_POS_ANG);
+
+	// dense output for the last accepted step, from t0 to dense_t1
+	private QuinticSpline3d dense = new QuinticSpline3d();
+	private boolean dense_valid; // true if the spline is set
+	private long dense_t1;
+	private RKState2 denseend = new RKState2(); // state at dense_t1
+	private RKState2 densedy = new RKState2(); // derivs at dense_t1
+	private boolean useDenseOutput = DENSE_OUTPUT;
+
+	// use RKF78 with continuous step control on coast arcs
+	private boolean adaptiveCoast = ADAPTIVE_COAST;
+
+	// # of times f() has been called
+	private int force_evals;
+
+	// when we last had no user perturbations, for PropagationLOD
+	private long idlesince = INVALID_TICK;
+
+	// copied from the thing when a step is scheduled, so that
+	// a worker thread never reads the ship (see PosUpdateEvent.integrate())
+	private boolean in_job;
+	private Perturbation[] job_perturbs;
+	private double job_mass, job_radius;
+	private boolean job_expendable;
+
 	//
 
 	public CowellTrajectory()
@@ -111,6 +144,7 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 			thing.setTrajectory(null);
 
 		lasttime = INVALID_TICK;
+		dense_valid = false;
 		super.set(ref, r0, v0, t0, ort);
 		this.U = ref.getMass() * GRAV_CONST_KM;
 		if (U != 0)
@@ -164,13 +198,16 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 
 	//
 
+	private PerturbForce notifypf = new PerturbForce();
+
 	// assumes ort == ort0
 	void notifyShipForce(PerturbForce pf1, RKState4 y0)
 	{
 		double rad = ship.getRadius();
 		double mass = ship.getMass();
 
-		PerturbForce pf2 = new PerturbForce(pf1);
+		PerturbForce pf2 = notifypf;
+		pf2.set(pf1);
 		// disregard 'a' component (gravity)
 		pf2.a.set(0, 0, 0);
 		// add force to accel, because 'accel' is the
@@ -185,10 +222,21 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 
 	//
 
-	class PosUpdateEvent extends GameEvent
+	class PosUpdateEvent extends GameEvent implements PropagationScheduler.Job
 	{
 		RKState4 y0, dy1; // y0 and dy1 at eventtime
 
+		// curts is the actual time step calculated in this step
+		// while 'timestep' is the time step used for the next iteration
+		int curts;
+		boolean inc_rk_step;
+
+		// for integrating on another thread
+		private int start_timestep;
+		private byte start_errortries;
+		private Perturbation[] sched_perturbs;
+		private boolean needs_serial;
+
 		PosUpdateEvent(long time)
 		{
 			super(time);
@@ -251,9 +299,11 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 		}
 		public void handleEvent(Game game)
 		{
+			dense_valid = false;
 			if (y0 == null)
 			{
 				y0 = new RKState4(r0, v0, ort0, angvel);
+				dy1 = new RKState4();
 				oldy0 = new RKState4(y0);
 				olddy1 = new RKState4(y0);
 			}
@@ -275,6 +325,9 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 			if (checkInfluenceExit())
 				return;
 
+			if (checkLazy(eventtime))
+				return;
+
 			// integrate angular perturbations if we have drag,
 			// or if we have user perturbations
 			integrateAngular = false;
@@ -288,9 +341,9 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 
 			// compute forces for t0 = now
 			t0 = eventtime;
-			dy1 = f(t0, y0, true);
+			f(t0, y0, true, dy1);
 			olddy1.set(dy1);
-			curpforce = lastpforce;
+			setCurrentPerturbForce();
 
 			if (checkInfluenceEnter())
 				return;
@@ -300,11 +353,130 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 			// lower timestep if too much torque
 			//			timestep = Math.min(timestep, 1<<((int)(8/(0.001+lastpforce.m.lengthSquared()))));
 
-			boolean inc_rk_step = false;
+			// if nothing we do can affect anyone else,
+			// let the scheduler integrate us with the others
+			if (PropagationScheduler.isEnabled() && canIntegrateConcurrently())
+			{
+				start_timestep = timestep;
+				start_errortries = errortries;
+				sched_perturbs = getPerturbationArray();
+				copyJobState();
+				PropagationScheduler.getScheduler(game).schedule(this, eventtime);
+				return;
+			}
+
+			if (integrate(game, false))
+				finishStep(game);
+		}
+
+		/**
+		  * True if this step only involves gravity, so that
+		  * the integration can't have side effects on anything
+		  * but this trajectory.
+		  */
+		private boolean canIntegrateConcurrently()
+		{
+			if (integrateAngular || wheels_mask != 0)
+				return false;
+			// make sure we can't get into the atmosphere during the step
+			if (dragperturb != null)
+			{
+				double h = timestep * (1d / TICKS_PER_SEC);
+				double reach = y0.b.length()*h + dy1.b.length()*h*h;
+				double rl = y0.a.length() - reach;
+				if (rl*rl < atmo_ceiling_rad2)
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		  * Copies what a concurrent step reads from the thing.
+		  * The drag perturbation is left out, since
+		  * canIntegrateConcurrently() keeps us out of the atmosphere.
+		  */
+		private void copyJobState()
+		{
+			int n = 0;
+			job_perturbs = new Perturbation[sched_perturbs.length];
+			for (int i = 0; i < sched_perturbs.length; i++)
+			{
+				if (sched_perturbs[i] != dragperturb)
+					job_perturbs[n++] = sched_perturbs[i];
+			}
+			if (n < job_perturbs.length)
+			{
+				Perturbation[] arr = new Perturbation[n];
+				System.arraycopy(job_perturbs, 0, arr, 0, n);
+				job_perturbs = arr;
+			}
+			job_mass = thing.getMass(eventtime);
+			job_radius = thing.getRadius();
+			job_expendable = (ship != null && ship.isExpendable());
+		}
+
+		/**
+		  * Called by PropagationScheduler, maybe on another thread.
+		  * Only uses this trajectory's own state and what
+		  * copyJobState() copied, plus planet positions.
+		  */
+		public void integrate()
+		{
+			// replaced since we were scheduled, commit() will ignore it
+			if (posevent != this)
+				return;
+			in_job = true;
+			try {
+				integrate(null, true);
+			} finally {
+				in_job = false;
+			}
+		}
+
+		/**
+		  * Called by PropagationScheduler after all trajectories
+		  * have been integrated.
+		  */
+		public void commit(Game game)
+		{
+			if (posevent != this || !isActive())
+				return;
+			// if the trajectory changed since we were scheduled,
+			// do it again on the game thread
+			if (getPerturbationArray() != sched_perturbs)
+				needs_serial = true;
+			if (needs_serial)
+			{
+				needs_serial = false;
+				timestep = start_timestep;
+				errortries = start_errortries;
+				y0.set(oldy0);
+				if (!integrate(game, false))
+					return;
+			}
+			finishStep(game);
+		}
+
+		/**
+		  * Integrates from y0 to y0 at eventtime+curts, finding a timestep
+		  * that gives a small enough error.
+		  * Returns false if the trajectory crashed.
+		  * If 'concurrent' is true, we can only modify this trajectory;
+		  * if we need to do more than that (ground contact, crashing)
+		  * we set 'needs_serial' and bail out.
+		  */
+		boolean integrate(Game game, boolean concurrent)
+		{
+			inc_rk_step = false;
 
-			// curts is the actual time step calculated in this step
-			// while 'timestep' is the time step used for the next iteration
-			int curts = timestep;
+			if (adaptiveCoast)
+			{
+				int maxts = getCoastTimestep();
+				if (maxts > 0 && integrateCoast(maxts))
+					return true;
+			}
+
+			curts = timestep;
 
 			// iterate until we decide on a timestep for this frame
 			do
@@ -320,7 +492,7 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 				if (debug)
 					System.out.println(
 						"t="
-							+ game.time()
+							+ t0
 							+ " timestep="
 							+ timestep
 							+ " error="
@@ -328,16 +500,18 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 							+ " "
 							+ integrateAngular);
 
-				if (ship != null && ship.isExpendable())
+				if (in_job ? job_expendable : (ship != null && ship.isExpendable()))
 					error *= COARSE_ERROR_FACTOR;
 
 				// check for ground interaction
 				if (timestep == MIN_TIMESTEP || error <= HI_ERROR_THRESH)
 				{
 					double rl = y0.a.length();
-					double thingrad = thing.getRadius();
+					double thingrad = getThingRadius();
 					if (rl - thingrad < gcheck_rad)
 					{
+						if (concurrent)
+							return bailOut();
 						// if any wheels are newly detected, this fn returns true
 						// so we set error to a high value and go through the
 						// loop again, to pick up the interaction forces
@@ -374,7 +548,7 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 						if (++crashtries > NUM_CRASH_TRIES)
 						{
 							crash();
-							return;
+							return false;
 						}
 						if (debug2)
 							System.out.println(
@@ -398,13 +572,15 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 						// (stops it in its tracks)
 						if (!(error < BAD_ERROR_THRESH))
 						{
+							if (concurrent)
+								return bailOut();
 							if (DO_UCE_WARNING && ship != null)
 								ship.getShipWarningSystem().setWarning(
 									"UCE",
 									"Trajectory overflow");
 							System.out.println(ship + " error = " + error);
 							crash();
-							return;
+							return false;
 						}
 						// otherwise, just deal with the error and continue
 						break;
@@ -437,8 +613,92 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 				}
 			}
 			while (true);
+			return true;
+		}
+
+		/**
+		  * If we're on a coast arc -- no thrust, no ground contact,
+		  * and we can't reach the atmosphere or the ground during the
+		  * step -- returns the largest timestep we should take.
+		  * Otherwise returns 0.
+		  */
+		private int getCoastTimestep()
+		{
+			if (integrateAngular || wheels_mask != 0)
+				return 0;
+			double rl = y0.a.length();
+			double vl = y0.b.length();
+			double al = dy1.b.length();
+			double floor = Math.max(Math.sqrt(atmo_ceiling_rad2), gcheck_rad + getThingRadius());
+			double avail = rl - floor;
+			if (avail <= 0 || vl == 0)
+				return 0;
+			// solve al*h^2 + vl*h = avail for the time to reach the floor
+			double hclear = (al > 0) ?
+				(Math.sqrt(vl*vl + 4*al*avail) - vl) / (2*al) :
+				avail / vl;
+			// don't sweep through more than COAST_MAX_ARC radians
+			// in one step, so the dense output stays accurate
+			double harc = COAST_MAX_ARC * rl / vl;
+			double h = Math.min(hclear, harc) * TICKS_PER_SEC;
+			if (h < LARGE_TIMESTEP)
+				return 0;
+			return (int) Math.min(h, MAX_TIMESTEP);
+		}
+
+		/**
+		  * Integrates one step with RKF78, shrinking the step until
+		  * the embedded error estimate is within tolerance and then
+		  * picking the next timestep from it.
+		  * Returns false (with y0 restored) if the step would have
+		  * to go below LARGE_TIMESTEP, in which case the regular
+		  * step control takes over.
+		  */
+		private boolean integrateCoast(int maxts)
+		{
+			curts = Math.max(LARGE_TIMESTEP, Math.min(timestep, maxts));
+			do
+			{
+				double error = integrateRKF78(curts, y0, dy1);
+				lastIntegrationError = error;
+				if (debug)
+					System.out.println(
+						"t=" + t0 + " coast timestep=" + curts + " error=" + error);
+				if (error <= 1)
+				{
+					double scale = (error > 0) ?
+						COAST_SAFETY * Math.pow(error, -1d/8) : COAST_MAX_GROW;
+					scale = Math.min(scale, COAST_MAX_GROW);
+					timestep = (int) Math.max(LARGE_TIMESTEP,
+						Math.min(curts * scale, MAX_TIMESTEP));
+					errortries = 0;
+					return true;
+				}
+				y0.set(oldy0);
+				double scale = Math.max(COAST_MIN_SHRINK, COAST_SAFETY * Math.pow(error, -1d/7));
+				curts = (int) (curts * scale);
+			}
+			while (curts >= LARGE_TIMESTEP);
+
+			timestep = LARGE_TIMESTEP;
+			return false;
+		}
+
+		// put things back, we'll integrate again in commit()
+		private boolean bailOut()
+		{
+			timestep = start_timestep;
+			errortries = start_errortries;
+			y0.set(oldy0);
+			needs_serial = true;
+			return true;
+		}
+
+		// called after integrate(), on the game thread
+		private void finishStep(Game game)
+		{
 			// notify ship, if it is a ship
-			curpforce = lastpforce;
+			setCurrentPerturbForce();
 			if (debug2)
 				System.out.println("curpforce = " + curpforce);
 			if (ship != null)
@@ -453,6 +713,19 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 			lasttime = INVALID_TICK;
 			game.postEvent(this);
 
+			// fit the spline here, so getPos() and getVel()
+			// can interpolate inside this step without calling f()
+			if (useDenseOutput)
+			{
+				denseend.set(y0);
+				dense_t1 = t;
+				f(dense_t1, denseend, false, densedy);
+				dense.set((dense_t1 - t0) * (1d / TICKS_PER_SEC),
+					oldy0.a, oldy0.b, olddy1.b,
+					denseend.a, denseend.b, densedy.b);
+				dense_valid = true;
+			}
+
 			// now increase the rk step, if necc.
 			if (inc_rk_step)
 			{
@@ -484,16 +757,18 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 		}
 	}
 
+	private Vector3d tmperr = new Vector3d();
+
 	private double estimateError(double ts, RKState4 y0, RKState4 dy1)
 	{
 		double error;
-		Vector3d r = new Vector3d();
+		Vector3d r = tmperr;
 		r.scaleAdd(0.5 * ts * ts, dy1.b, oldy0.a);
 		r.scaleAdd(ts, dy1.a, r);
 		r.sub(y0.a);
 		error = Math.sqrt(r.lengthSquared() / y0.a.lengthSquared());
 		// also do velocity
-		Vector3d v = new Vector3d();
+		Vector3d v = tmperr;
 		v.scaleAdd(ts, dy1.b, oldy0.b);
 		v.sub(y0.b);
 		double vl = v.length();
@@ -523,8 +798,9 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 
 		long t = getGame().time();
 		solve(t, true);
-		curpforce = lastpforce;
+		setCurrentPerturbForce();
 
+		dense_valid = false;
 		r0.set(laststate.a);
 		v0.set(laststate.b);
 		if (integrateAngular)
@@ -555,6 +831,7 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 			updateInitialValues();
 
 			oldy0 = null;
+			dense_valid = false;
 			posevent = new PosUpdateEvent(t0);
 			getGame().postEvent(posevent);
 		}
@@ -573,10 +850,8 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 			Vector3d w,
 			long time)
 		{
-			Vector3d acc = new Vec3d(r);
-			double r2 = acc.lengthSquared();
-			acc.scale(-U / (r2 * Math.sqrt(r2)));
-			force.a.add(acc);
+			double r2 = r.lengthSquared();
+			force.a.scaleAdd(-U / (r2 * Math.sqrt(r2)), r, force.a);
 		}
 	}
 
@@ -585,41 +860,83 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 	private Orientation tmpQ = new Orientation();
 	private Vector3d tmpf = new Vector3d();
 	private Vector3d tmpm = new Vector3d();
+	private Vector3d tmpiv = new Vector3d();
+
+	// scratch states for derivs()
+	private RKState2 derivin2 = new RKState2();
+	private RKState2 derivout2 = new RKState2();
+	private RKState4 derivin4 = new RKState4();
+	private RKState4 derivout4 = new RKState4();
+
+	/**
+	  * Holds the arrays used by one integration step,
+	  * for a given state length.
+	  */
+	static class ScratchArrays
+	{
+		double[] y, yy, yerr, dydx;
+		ScratchArrays(int n)
+		{
+			y = new double[n]; // start state
+			yy = new double[n]; // end state
+			yerr = new double[n]; // error
+			dydx = new double[n]; // derivs at start
+		}
+	}
+
+	// copy lastpforce to curpforce
+	private void setCurrentPerturbForce()
+	{
+		if (curpforce == null)
+		{
+			curpforce = new PerturbForce();
+		}
+		curpforce.set(lastpforce);
+	}
+
+	private double getThingRadius()
+	{
+		return in_job ? job_radius : thing.getRadius();
+	}
 
 	// s contains pos, vel
-	// returns vel, accel
-	private RKState2 f(long time, RKState2 s, boolean taint)
+	// puts vel, accel into 'out'
+	private void f(long time, RKState2 s, boolean taint, RKState2 out)
 	{
-		PerturbForce pf = getAllPerturbForces(s.a, s.b, ort0, angvel, time);
+		force_evals++;
+		PerturbForce pf = getAllPerturbForces(scratchpf, s.a, s.b, ort0, angvel, time);
 		if (taint)
-			lastpforce = pf;
+			lastpforce.set(pf);
 
 		// compute accel from force & mass
-		double mass = thing.getMass(time);
+		double mass = in_job ? job_mass : thing.getMass(time);
 		double invmass = 1d / mass;
 		tmpf.scaleAdd(invmass, pf.f, pf.a);
 
-		RKState2 s2 = new RKState2(s.b, tmpf);
-		return s2;
+		out.a.set(s.b);
+		out.b.set(tmpf);
 	}
 
 	// s contains pos, vel
-	// returns vel, accel
-	private RKState4 f(long time, RKState4 s, boolean taint)
+	// puts vel, accel into 'out'
+	private void f(long time, RKState4 s, boolean taint, RKState4 out)
 	{
-		PerturbForce pf = getAllPerturbForces(s.a, s.b, s.c, s.d, time);
+		force_evals++;
+		PerturbForce pf = getAllPerturbForces(scratchpf, s.a, s.b, s.c, s.d, time);
 		if (taint)
-			lastpforce = pf;
+			lastpforce.set(pf);
 
 		// compute accel from force & mass
-		double mass = thing.getMass(time);
+		double mass = in_job ? job_mass : thing.getMass(time);
 		double invmass = 1d / mass;
 		tmpf.scaleAdd(invmass, pf.f, pf.a);
 
 		// compute moment from torque, mass, inertia
-		if (ship != null)
+		// (a concurrent step has no torque)
+		if (ship != null && !in_job)
 		{
-			Vector3d iv = ship.getStructure().getInertiaVector();
+			Vector3d iv = tmpiv;
+			ship.getStructure().getInertiaVector(iv);
 			tmpm.set(pf.T);
 			s.c.invTransform(tmpm);
 			tmpm.x /= mass * iv.x;
@@ -641,11 +958,20 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 		tmpQ.scale(0.5);
 		tmpQ.mul(s.c);
 
-		RKState4 s2 = new RKState4(s.b, tmpf, tmpQ, tmpm);
-		return s2;
+		out.a.set(s.b);
+		out.b.set(tmpf);
+		out.c.set(tmpQ);
+		out.d.set(tmpm);
 	}
 
 	public double[] derivs(long t, double dt, double[] y)
+	{
+		double[] arr = new double[y.length];
+		derivs(t, dt, y, arr);
+		return arr;
+	}
+
+	public void derivs(long t, double dt, double[] y, double[] dydt)
 	{
 		// TODO: rounding sucks
 		//if (dt*TICKS_PER_SEC != Math.round(dt*TICKS_PER_SEC))
@@ -655,24 +981,20 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 			case STATE_LENGTH_POS:
 			{
 				long tick = t + Math.round(dt * TICKS_PER_SEC);
-				RKState2 s = new RKState2();
-				s.setFrom2(y);
+				derivin2.setFrom2(y);
 				boolean taint = false; // TODO: taint?
-				s = f(tick, s, taint);
-				double[] arr = new double[STATE_LENGTH_POS];
-				s.copyTo2(arr);
-				return arr;
+				f(tick, derivin2, taint, derivout2);
+				derivout2.copyTo2(dydt);
+				break;
 			}
 			case STATE_LENGTH_POS_ANG:
 			{
 				long tick = t + Math.round(dt * TICKS_PER_SEC);
-				RKState4 s = new RKState4();
-				s.setFrom4(y);
+				derivin4.setFrom4(y);
 				boolean taint = false; // TODO: taint?
-				s = f(tick, s, taint);
-				double[] arr = new double[STATE_LENGTH_POS_ANG];
-				s.copyTo4(arr);
-				return arr;
+				f(tick, derivin4, taint, derivout4);
+				derivout4.copyTo4(dydt);
+				break;
 			}
 			default:
 				throw new IllegalArgumentException();
@@ -698,12 +1020,14 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 	double integrateWithAng(int tdelta, RKState4 y0, RKState4 dy1, boolean taint)
 	{
 		double h = tdelta * (1d / TICKS_PER_SEC);
-		double[] y = new double[STATE_LENGTH_POS_ANG];
+		ScratchArrays sa = scratchPosAng;
+		double[] y = sa.y;
 		y0.copyTo4(y);
 
-        double[] yy = new double[STATE_LENGTH_POS_ANG]; // end state
-        double[] yerr = new double[STATE_LENGTH_POS_ANG]; // error
-        double[] dydx = derivs(t0+tdelta, 0, y);
+        double[] yy = sa.yy; // end state
+        double[] yerr = sa.yerr; // error
+        double[] dydx = sa.dydx;
+        derivs(t0+tdelta, 0, y, dydx);
         rkf45.rkck(y, dydx, t0+tdelta, 0, h, yy, yerr, this);
 
 		y0.setFrom4(yy);
@@ -716,12 +1040,14 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 	double integrateWithNoAng(int tdelta, RKState2 y0, RKState2 dy1, boolean taint)
 	{
 		double h = tdelta * (1d / TICKS_PER_SEC);
-		double[] y = new double[STATE_LENGTH_POS]; // start state 
+		ScratchArrays sa = scratchPos;
+		double[] y = sa.y; // start state 
 		y0.copyTo2(y);
 		
-        double[] yy = new double[STATE_LENGTH_POS]; // end state
-        double[] yerr = new double[STATE_LENGTH_POS]; // error
-        double[] dydx = derivs(t0+tdelta, 0, y);
+        double[] yy = sa.yy; // end state
+        double[] yerr = sa.yerr; // error
+        double[] dydx = sa.dydx;
+        derivs(t0+tdelta, 0, y, dydx);
         rkf45.rkck(y, dydx, t0+tdelta, 0, h, yy, yerr, this);
         
 		y0.setFrom2(yy);
@@ -733,10 +1059,12 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 	double integrateRK4(int tdelta, RKState4 y0, RKState4 dy1, boolean taint)
 	{
 		double h = tdelta * (1d / TICKS_PER_SEC);
-		double[] y = new double[STATE_LENGTH_POS_ANG];
+		ScratchArrays sa = scratchPosAng;
+		double[] y = sa.y;
 		y0.copyTo4(y);
 		rk4.setStepSize(h);
-		double[] yy = rk4.step(t0+tdelta, 0, y, this);
+		double[] yy = sa.yy;
+		rk4.step(t0+tdelta, 0, y, yy, this);
 		y0.setFrom4(yy);
 		// TODO: taint force in first step
 		this.laststate.set(y0);
@@ -746,6 +1074,34 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 		return estimateError(tdelta / TICKS_PER_SEC, y0, dy1); // * STIFF_ERROR_SCALE;
 	}
 
+	// integrate position only, with RKF78
+	// returns the error divided by the coast tolerance
+	double integrateRKF78(int tdelta, RKState2 y0, RKState2 dy1)
+	{
+		double h = tdelta * (1d / TICKS_PER_SEC);
+		ScratchArrays sa = scratchPos;
+		double[] y = sa.y;
+		y0.copyTo2(y);
+
+		double[] yy = sa.yy;
+		double[] yerr = sa.yerr;
+		double[] dydx = sa.dydx;
+		// we already have the derivs at the start
+		dy1.copyTo2(dydx);
+		rkf78.rkck(y, dydx, t0, 0, h, yy, yerr, this);
+
+		y0.setFrom2(yy);
+		this.laststate.set(y0);
+
+		double m = 0;
+		for (int i=0; i<yerr.length; i++)
+		{
+			double tol = COAST_ABS_TOLERANCE + COAST_REL_TOLERANCE*Math.abs(yy[i]);
+			m = Math.max(m, Math.abs(yerr[i]) / tol);
+		}
+		return m;
+	}
+
 	private double getMaxArr(double[] yerr)
 	{
 		double m = 0;
@@ -793,9 +1149,33 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 		//		RKState4 dy1 = f(time, y0, taint);
 		// TODO: what if outside of boundaries?
 		int tdelta = (int)(time - t0);
-		integrateStep(tdelta, new RKState4(oldy0), olddy1, taint);
+		solvestate.set(oldy0);
+		integrateStep(tdelta, solvestate, olddy1, taint);
+	}
+
+	/**
+	  * Returns the number of times the forces on the object
+	  * have been evaluated.
+	  */
+	public int getForceEvaluationCount()
+	{
+		return force_evals;
+	}
+
+	/**
+	  * If true, coast arcs are integrated with RKF78 and
+	  * continuous step size control.
+	  * Defaults to the Cowell.AdaptiveCoast setting.
+	  */
+	public void setAdaptiveCoast(boolean b)
+	{
+		this.adaptiveCoast = b;
 	}
 
+	public boolean getAdaptiveCoast()
+	{
+		return adaptiveCoast;
+	}
 	private Conic getPrivateConic()
 	{
 		return new Conic(r0, v0, U, t0 * (1d / TICKS_PER_SEC));
@@ -808,19 +1188,36 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 		return svec;
 	}
 
+	/**
+	  * Returns true if 'time' is inside the last accepted step
+	  * and the dense output spline can be evaluated.
+	  * The spline is fitted when the step is committed,
+	  * so this doesn't change any state.
+	  */
+	private boolean hasDenseOutput(long time)
+	{
+		if (!useDenseOutput || !dense_valid || oldy0 == null)
+			return false;
+		return (time > t0 && time <= dense_t1);
+	}
+
 	// hotspot
 
 	public Vector3d getPos(long time)
 	{
 		if (time == t0)
 			return new Vec3d(r0);
+		if (hasDenseOutput(time))
+		{
+			Vector3d r = new Vec3d();
+			dense.getPos((time - t0) * (1d / TICKS_PER_SEC), r);
+			return r;
+		}
 		if (time > t0 + timestep || oldy0 == null)
 		{
 			StateVector res = solveKepler(time);
 			return new Vec3d(res.r);
 		}
-		//CubicSpline3d cs3d = new CubicSpline3d(r0, posevent.y0.a, v0, posevent.y0.b);
-		//return cs3d.f((time-t0)*1d/timestep);
 		solve(time, false);
 		return new Vec3d(laststate.a);
 	}
@@ -829,17 +1226,44 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 	{
 		if (time == t0)
 			return new Vec3d(v0);
+		if (hasDenseOutput(time))
+		{
+			Vector3d v = new Vec3d();
+			dense.getVel((time - t0) * (1d / TICKS_PER_SEC), v);
+			return v;
+		}
 		if (time > t0 + timestep || oldy0 == null)
 		{
 			StateVector res = solveKepler(time);
 			return new Vec3d(res.v);
 		}
-		//CubicSpline3d cs3d = new CubicSpline3d(r0, posevent.y0.a, v0, posevent.y0.b);
-		//return cs3d.fp((time-t0)*1d/timestep);
 		solve(time, false);
 		return new Vec3d(laststate.b);
 	}
 
+	/**
+	  * If true (the default), getPos() and getVel() interpolate
+	  * inside the last integration step instead of re-integrating.
+	  * Turning it on takes effect at the next step.
+	  */
+	public void setUseDenseOutput(boolean b)
+	{
+		this.useDenseOutput = b;
+	}
+
+	public boolean getUseDenseOutput()
+	{
+		return useDenseOutput;
+	}
+
+	/**
+	  * Returns the end time of the last accepted integration step.
+	  */
+	public long getLastT1()
+	{
+		return dense_valid ? dense_t1 : t0;
+	}
+
 	public Orientation getOrt(long time)
 	{
 		if (!integrateAngular || time > t0 + timestep || oldy0 == null)
@@ -898,6 +1322,48 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 		return false;
 	}
 
+	/**
+	  * If we're an idle ship that nobody is tracking, and
+	  * no program is running, switch to a lazy OrbitTrajectory
+	  * (see PropagationLOD).
+	  * Called at the start of a step, when r0 and v0 are at 't'.
+	  */
+	boolean checkLazy(long t)
+	{
+		if (ship == null || !PropagationLOD.isEnabled())
+			return false;
+		if (countUserPerturbations() > 0 || wheels_mask != 0)
+		{
+			idlesince = INVALID_TICK;
+			return false;
+		}
+		if (idlesince == INVALID_TICK)
+			idlesince = t;
+		PropagationLOD lod = PropagationLOD.getPolicy(getGame());
+		// a ship that's running a program counts as tracked
+		if (lod.isTracked(thing) ||
+			(ship.getSequencer() != null && ship.getSequencer().isStarted()))
+		{
+			lod.checkProximity(thing, ref, r0, t);
+			return false;
+		}
+		double floor = gcheck_rad + thing.getRadius();
+		if (dragperturb != null)
+			floor = Math.max(floor, lod.getDragFloor((Planet)ref));
+		if (!lod.canDemote(thing, ref, r0, v0, t - idlesince, floor))
+			return false;
+
+		OrbitTrajectory traj = new OrbitTrajectory();
+		traj.setLazy(true);
+		traj.setSecularJ2((perturbFlags & PF_J2) != 0);
+		// ort0 and angvel are current as of angt0
+		traj.set(ref, r0, v0, t, super.getOrt(t));
+		traj.setAngularVelocity(angvel);
+		lod.demoted();
+		thing.setTrajectory(traj);
+		return true;
+	}
+
 	/**
 	  * See if we escape the current body's influence
 	  */
@@ -1041,9 +1507,11 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 
 	/**
 	  * Get all the perturbation forces,
-	  * including the main body perturbation and contact forces (if any)
+	  * including the main body perturbation and contact forces (if any).
+	  * 'pf' is cleared and filled in, and then returned.
 	  */
 	protected PerturbForce getAllPerturbForces(
+		PerturbForce pf,
 		Vector3d r,
 		Vector3d v,
 		Orientation ort,
@@ -1053,7 +1521,11 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 		in_routine = true; // avoid recursion
 		try
 		{
-			PerturbForce pf = super.getPerturbForces(r, v, ort, w, time);
+			pf.clear();
+			if (in_job)
+				addPerturbForces(pf, job_perturbs, r, v, ort, w, time);
+			else
+				super.addPerturbForces(pf, r, v, ort, w, time);
 			// add primary body perturbation
 			if (bodyperturb != null)
 				bodyperturb.addPerturbForce(pf, r, v, ort, w, time);
@@ -1110,6 +1582,15 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 	private static float COARSE_ERROR_FACTOR;
 	private static double MIN_SURFACE_VEL_2;
 	private static boolean DO_UCE_WARNING;
+	private static boolean DENSE_OUTPUT;
+	private static boolean ADAPTIVE_COAST;
+	private static double COAST_ABS_TOLERANCE;
+	private static double COAST_REL_TOLERANCE;
+	private static double COAST_MAX_ARC;
+
+	static final double COAST_SAFETY = 0.9;
+	static final double COAST_MAX_GROW = 4;
+	static final double COAST_MIN_SHRINK = 0.1;
 
 	static SettingsGroup settings = new SettingsGroup(CowellTrajectory.class, "Cowell")
 	{
@@ -1125,6 +1606,11 @@ public class CowellTrajectory extends DefaultMutableTrajectory implements Deriva
 			COARSE_ERROR_FACTOR = getFloat("CoarseErrorScale", 0.01f);
 			MIN_SURFACE_VEL_2 = AstroUtil.sqr(getDouble("MinStoppingVel", 0.0005));
 			DO_UCE_WARNING = getBoolean("UCEWarning", true);
+			DENSE_OUTPUT = getBoolean("DenseOutput", true);
+			ADAPTIVE_COAST = getBoolean("AdaptiveCoast", false);
+			COAST_ABS_TOLERANCE = getDouble("CoastAbsTolerance", 1e-9);
+			COAST_REL_TOLERANCE = getDouble("CoastRelTolerance", 1e-13);
+			COAST_MAX_ARC = getDouble("CoastMaxArc", 0.25);
 		}
 	};
 
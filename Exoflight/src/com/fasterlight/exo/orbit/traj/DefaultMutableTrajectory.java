@@ -40,6 +40,7 @@ public abstract class DefaultMutableTrajectory
 
 	private Set default_perturbs = new HashSet();
 	private Set user_perturbs = new HashSet();
+	private Perturbation[] perturb_array; // cached from the two sets above
 	protected Perturbation dragperturb;
 	private boolean activated;
 
@@ -299,6 +300,7 @@ public abstract class DefaultMutableTrajectory
 	{
 		refresh();
 		user_perturbs.add(p);
+		perturb_array = null;
 		checkPerturbs();
 	}
 	/**
@@ -309,6 +311,7 @@ public abstract class DefaultMutableTrajectory
 	{
 		refresh();
 		user_perturbs.remove(p);
+		perturb_array = null;
 		checkPerturbs();
 	}
 
@@ -325,6 +328,24 @@ public abstract class DefaultMutableTrajectory
 		return new JoinedIterator(default_perturbs.iterator(), user_perturbs.iterator());
 	}
 
+	/**
+	  * Returns both default and user perturbations as an array,
+	  * which is cached until either set changes.
+	  */
+	protected Perturbation[] getPerturbationArray()
+	{
+		if (perturb_array == null)
+		{
+			Perturbation[] arr = new Perturbation[countPerturbations()];
+			Iterator it = getPerturbations();
+			int i = 0;
+			while (it.hasNext())
+				arr[i++] = (Perturbation) it.next();
+			perturb_array = arr;
+		}
+		return perturb_array;
+	}
+
 	public Iterator getDefaultPerturbations()
 	{
 		return default_perturbs.iterator();
@@ -396,21 +417,37 @@ public abstract class DefaultMutableTrajectory
 		if (debug)
 			System.out.println(">>>" + this.getThing());
 		PerturbForce pf = new PerturbForce();
+		addPerturbForces(pf, r, v, ort, w, time);
+		return pf;
+	}
+
+	/**
+	  * Adds the forces of all perturbations to an existing PerturbForce.
+	  */
+	void addPerturbForces(PerturbForce pf, Vector3d r, Vector3d v, Orientation ort, Vector3d w, long time)
+	{
+		addPerturbForces(pf, getPerturbationArray(), r, v, ort, w, time);
+	}
+
+	/**
+	  * Adds the forces of a given set of perturbations.
+	  */
+	void addPerturbForces(PerturbForce pf, Perturbation[] perts, Vector3d r, Vector3d v, Orientation ort, Vector3d w, long time)
+	{
 		// now go thru list of perturbs
-		Iterator it = getPerturbations();
-		while (it.hasNext())
+		for (int i = 0; i < perts.length; i++)
 		{
-			Perturbation pert = (Perturbation) it.next();
+			Perturbation pert = perts[i];
 			pert.addPerturbForce(pf, r, v, ort, w, time);
 			if (debug)
 				System.out.println(pert + ": a=" + pf.a + " f=" + pf.f + " T=" + pf.T);
 		}
-		return pf;
 	}
 
 	protected void addDefaultPerturbs()
 	{
 		default_perturbs.clear();
+		perturb_array = null;
 		dragperturb = null;
 		// add drag perturbation
 		if ((perturbFlags & PF_DRAG) != 0)
@@ -20,7 +20,7 @@ package com.fasterlight.exo.orbit.traj;
 
 import com.fasterlight.exo.game.SpaceGame;
 import com.fasterlight.exo.orbit.*;
-import com.fasterlight.exo.orbit.eph.Ephemeris;
+import com.fasterlight.exo.orbit.eph.*;
 import com.fasterlight.game.*;
 import com.fasterlight.spif.*;
 import com.fasterlight.util.Vec3d;
@@ -78,7 +78,7 @@ implements Trajectory, PropertyAware
 		return getConic(getGame().time());
 	}
 
-	public Conic getConic(long time)
+	public synchronized Conic getConic(long time)
 	{
 		if (time != last_conic_time)
 		{
@@ -99,13 +99,21 @@ implements Trajectory, PropertyAware
 		return new StateVector(getStateVector_unsafe());
 	}
 
-	public StateVector getStateVector_unsafe(long time)
+	/**
+	  * Returns a shared StateVector, so callers on other threads
+	  * should use getPos(), getVel() or getStateVector() instead.
+	  */
+	public synchronized StateVector getStateVector_unsafe(long time)
 	{
 		if (time != last_sv_time)
 		{
 			double julianTime = AstroUtil.tick2julian(time);
 			StateVector sv = last_sv;
-			defaultEphemeris.getBodyStateVector(sv, bodyIndex, julianTime);
+			// trajectories may be integrated on several threads
+			synchronized (defaultEphemeris)
+			{
+				defaultEphemeris.getBodyStateVector(sv, bodyIndex, julianTime);
+			}
 			// km/day to km/s
 			sv.v.scale(1d/86400);
 			last_sv_time = time;
@@ -113,18 +121,18 @@ implements Trajectory, PropertyAware
 		return last_sv;
 	}
 
-	public StateVector getStateVector(long time)
+	public synchronized StateVector getStateVector(long time)
 	{
 		return new StateVector(getStateVector_unsafe(time));
 	}
 
-	public Vector3d getPos(long time)
+	public synchronized Vector3d getPos(long time)
 	{
 		StateVector sv = getStateVector_unsafe(time);
 		return new Vec3d(sv.r);
 	}
 
-	public Vector3d getVel(long time)
+	public synchronized Vector3d getVel(long time)
 	{
 		StateVector sv = getStateVector_unsafe(time);
 		return new Vec3d(sv.v);
@@ -147,12 +155,28 @@ implements Trajectory, PropertyAware
 
 	/**
 	  * A singleton Ephemeris.
+	  * Unless the 'CacheEpochs' setting is 0, it is wrapped in an
+	  * EphemerisCache so that bodies queried at the same time
+	  * are computed in one batch.
 	  */
 	public static Ephemeris getDefaultEphemeris()
 	{
 		if (defaultEphemeris == null)
 		{
-			defaultEphemeris = makeDefaultEphemeris();
+			Ephemeris eph = makeDefaultEphemeris();
+			if (eph instanceof CompositeEphemeris)
+			{
+				CompositeEphemeris ceph = (CompositeEphemeris)eph;
+				ceph.setPrefetchSeconds(Settings.getDouble("Ephemeris", "PrefetchSeconds",
+					ceph.getPrefetchSeconds()));
+				ceph.setMaxResident(Settings.getInt("Ephemeris", "MaxResidentChunks",
+					ceph.getMaxResident()));
+			}
+			int nepochs = Settings.getInt("Ephemeris", "CacheEpochs",
+				EphemerisCache.DEFAULT_SIZE);
+			if (nepochs > 0)
+				eph = new EphemerisCache(eph, nepochs);
+			defaultEphemeris = eph;
 		}
 		return defaultEphemeris;
 	}
@@ -160,8 +184,22 @@ implements Trajectory, PropertyAware
 	public static final String DEFAULT_EPHEMERIS_CLASSNAME =
 		"com.fasterlight.exo.orbit.eph.Ephemeris1960to2020";
 
+	/**
+	  * Uses the memory-mapped ephemeris file if there is one,
+	  * otherwise falls back to the 'EphemerisClass' setting.
+	  */
 	private static Ephemeris makeDefaultEphemeris()
 	{
+		String path = Settings.getString("Ephemeris", "EphemerisFile",
+			MappedEphemeris.DEFAULT_PATH);
+		if (path.length() > 0 && MappedEphemeris.findFile(path) != null)
+		{
+			try {
+				return new MappedEphemeris(path);
+			} catch (Exception exc) {
+				System.out.println("Could not map ephemeris \"" + path + "\": " + exc);
+			}
+		}
 		String clazzname = Settings.getString("Ephemeris", "EphemerisClass",
 			DEFAULT_EPHEMERIS_CLASSNAME);
 		try {
@@ -32,6 +32,7 @@ implements Perturbation
 	double mu;
 	double J2;
 	double refrad2;
+	Vector3d ijk = new Vector3d(); // scratch
 
 	//
 
@@ -52,7 +53,8 @@ implements Perturbation
 		Orientation ort, Vector3d w, long time)
 	{
 		// first transform r to ijk
-		Vector3d ijk = new Vector3d(r);
+		Vector3d ijk = this.ijk;
+		ijk.set(r);
 		ref.xyz2ijk(ijk);
 		double ri = ijk.x;
 		double rj = ijk.y;
@@ -20,7 +20,7 @@ package com.fasterlight.exo.orbit.traj;
 
 import com.fasterlight.exo.orbit.*;
 import com.fasterlight.spif.*;
-import com.fasterlight.vecmath.Vector3d;
+import com.fasterlight.vecmath.*;
 
 /**
   * An OrbitTrajectory describes a body orbiting around another body.
@@ -30,6 +30,14 @@ public class OrbitTrajectory extends DefaultMutableTrajectory
 {
 	Conic orbit;
 
+	// J2 secular drift, see setSecularJ2()
+	boolean secularJ2;
+	Vector3d j2pole, j2normal; // axes for RAAN and arg. of periapsis
+	double raandot, argperidot; // rad/s
+	double meanshift; // extra mean motion, as a fraction of n
+
+	boolean lazy; // made by PropagationLOD
+
 	public OrbitTrajectory()
 	{
 	}
@@ -68,6 +76,7 @@ public class OrbitTrajectory extends DefaultMutableTrajectory
 			thing.setTrajectory(null);
 		super.set(ref, r0, v0, t0, ort);
 		this.orbit = new Conic(r0, v0, ref.getMass() * GRAV_CONST_KM, t0 * (1d / TICKS_PER_SEC));
+		computeSecularRates();
 		if (act)
 			thing.setTrajectory(this);
 	}
@@ -132,10 +141,67 @@ public class OrbitTrajectory extends DefaultMutableTrajectory
 		return (long) (orbit.getInitialTime() * TICKS_PER_SEC);
 	}
 
+	/**
+	  * If true, and the parent is a planet with a J2 term,
+	  * the orbit's RAAN, argument of periapsis and mean anomaly
+	  * drift at the J2 secular rates (Vallado).
+	  */
+	public void setSecularJ2(boolean b)
+	{
+		this.secularJ2 = b;
+		computeSecularRates();
+	}
+
+	public boolean getSecularJ2()
+	{
+		return secularJ2;
+	}
+
+	private void computeSecularRates()
+	{
+		j2pole = null;
+		if (!secularJ2 || orbit == null || !(ref instanceof Planet))
+			return;
+		Planet planet = (Planet) ref;
+		double J2 = planet.getJ2();
+		double e = orbit.getEccentricity();
+		if (J2 <= 0 || e >= 1)
+			return;
+		StateVector sv = orbit.getStateVectorAtEpoch();
+		j2normal = new Vector3d();
+		j2normal.cross(sv.r, sv.v);
+		j2normal.normalize();
+		j2pole = new Vector3d(0, 0, 1);
+		planet.ijk2xyz(j2pole);
+		double cosi = j2normal.dot(j2pole);
+		double a = orbit.getSemiMajorAxis();
+		double n = Math.sqrt(orbit.getMu() / (a * a * a));
+		double rp = planet.getRadius() / (a * (1 - e * e));
+		double k = J2 * rp * rp;
+		raandot = -1.5 * n * k * cosi;
+		argperidot = 0.75 * n * k * (5 * cosi * cosi - 1);
+		meanshift = 0.75 * k * Math.sqrt(1 - e * e) * (3 * cosi * cosi - 1);
+	}
+
 	private StateVector solveKepler(long time)
 	{
 		double thistime = time * (1d / TICKS_PER_SEC);
-		StateVector res = orbit.getStateVectorAtTime(thistime);
+		if (j2pole == null)
+			return orbit.getStateVectorAtTime(thistime);
+		double dt = thistime - orbit.getInitialTime();
+		StateVector res = orbit.getStateVectorAtTime(thistime + dt * meanshift);
+		if (dt != 0)
+		{
+			// turn the periapsis in the orbit plane,
+			// then turn the plane around the pole
+			Matrix3d m = new Matrix3d();
+			m.set(new AxisAngle4d(j2pole, raandot * dt));
+			Matrix3d m2 = new Matrix3d();
+			m2.set(new AxisAngle4d(j2normal, argperidot * dt));
+			m.mul(m2);
+			m.transform(res.r);
+			m.transform(res.v);
+		}
 		return res;
 	}
 
@@ -174,6 +240,8 @@ public class OrbitTrajectory extends DefaultMutableTrajectory
 
 	protected void convertToCowell()
 	{
+		if (lazy)
+			PropagationLOD.getPolicy(getGame()).promoted();
 		long t = getGame().time();
 		CowellTrajectory traj = new CowellTrajectory(ref, getPos(t), getVel(t), t, getOrt(t));
 		addUserPerturbations(traj);
@@ -185,6 +253,19 @@ public class OrbitTrajectory extends DefaultMutableTrajectory
 		// none!
 	}
 
+	/**
+	  * True if PropagationLOD put us here in place of a CowellTrajectory.
+	  */
+	public boolean isLazy()
+	{
+		return lazy;
+	}
+
+	public void setLazy(boolean b)
+	{
+		this.lazy = b;
+	}
+
 	public Conic getClonedConic()
 	{
 		long t = getGame().time();
@@ -77,7 +77,7 @@ public class PolyElementsTrajectory extends StaticTrajectory implements Trajecto
 		return params[pi].f(t);
 	}
 
-	public KeplerianElements getElements(long time)
+	public synchronized KeplerianElements getElements(long time)
 	{
 		if (last_ke_time != time)
 		{
@@ -110,7 +110,7 @@ public class PolyElementsTrajectory extends StaticTrajectory implements Trajecto
 		return getConic(getGame().time());
 	}
 
-	public Conic getConic(long time)
+	public synchronized Conic getConic(long time)
 	{
 		if (time != last_conic_time)
 		{
@@ -126,7 +126,7 @@ public class PolyElementsTrajectory extends StaticTrajectory implements Trajecto
 		return getStateVector(getGame().time());
 	}
 
-	public StateVector getStateVector(long time)
+	public synchronized StateVector getStateVector(long time)
 	{
 		if (time != last_sv_time)
 		{
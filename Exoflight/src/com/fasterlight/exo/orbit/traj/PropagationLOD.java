@@ -0,0 +1,330 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.traj;
+
+import java.util.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.game.*;
+import com.fasterlight.vecmath.Vector3d;
+
+/**
+  * Level-of-detail policy for propagation.
+  * A ship on a CowellTrajectory that nobody is tracking, that has
+  * had no thrust (or any other user perturbation) for IDLE_TICKS,
+  * and whose orbit stays above the (appreciable) atmosphere and inside
+  * the parent's sphere of influence is handed off to a "lazy" OrbitTrajectory,
+  * which doesn't post any events at all.  If J2 is turned on,
+  * the OrbitTrajectory applies the J2 secular rates.
+  * It goes back to Cowell when a perturbation is added,
+  * when it becomes tracked, or when a tracked ship comes
+  * within PROMOTE_DISTANCE of it.
+  * Off unless "Lazy" is set in the [Propagation] settings.
+  */
+public class PropagationLOD
+implements Constants
+{
+	private Game game;
+	private Map tracked = new WeakHashMap(); // UniverseThing -> Boolean.TRUE
+	// UniverseThing -> long[1] with the time of its last proximity check
+	private Map lastchecks = new WeakHashMap();
+
+	private Map dragfloors = new HashMap(); // Planet -> Double
+
+	private int demotions, promotions;
+
+	//
+
+	/**
+	  * Returns the policy for a given game.
+	  */
+	public static PropagationLOD getPolicy(Game game)
+	{
+		return ((SpaceGame)game).getPropagationLOD();
+	}
+
+	/**
+	  * Is lazy propagation turned on?
+	  */
+	public static boolean isEnabled()
+	{
+		return ENABLED;
+	}
+
+	/**
+	  * If false, ships stay on CowellTrajectory like before.
+	  */
+	public static void setEnabled(boolean b)
+	{
+		ENABLED = b;
+	}
+
+	//
+
+	public PropagationLOD(Game game)
+	{
+		this.game = game;
+	}
+
+	/**
+	  * Tracked things (the ship you're flying, the thing the
+	  * camera is on) always get the full-detail trajectory.
+	  * Tracking a lazy thing promotes it right away.
+	  */
+	public void setTracked(UniverseThing thing, boolean b)
+	{
+		if (thing == null)
+			return;
+		if (b)
+		{
+			tracked.put(thing, Boolean.TRUE);
+			promote(thing);
+		}
+		else
+			tracked.remove(thing);
+	}
+
+	public boolean isTracked(UniverseThing thing)
+	{
+		return tracked.containsKey(thing);
+	}
+
+	/**
+	  * Returns true if 'thing' is on a lazy OrbitTrajectory.
+	  */
+	public static boolean isLazy(UniverseThing thing)
+	{
+		Trajectory traj = thing.getTrajectory();
+		return (traj instanceof OrbitTrajectory) && ((OrbitTrajectory)traj).isLazy();
+	}
+
+	/**
+	  * If 'thing' is on a lazy trajectory, put it back on Cowell.
+	  * Returns true if it was promoted.
+	  */
+	public boolean promote(UniverseThing thing)
+	{
+		if (!isLazy(thing))
+			return false;
+		OrbitTrajectory traj = (OrbitTrajectory)thing.getTrajectory();
+		traj.convertToCowell();
+		return true;
+	}
+
+	/**
+	  * Called by CowellTrajectory to see if it can go lazy.
+	  * 'r' and 'v' are relative to 'ref', 'floorrad' is the
+	  * lowest radius the orbit can safely get to.
+	  */
+	boolean canDemote(UniverseThing thing, UniverseThing ref,
+		Vector3d r, Vector3d v, long idleticks, double floorrad)
+	{
+		if (idleticks < IDLE_TICKS || isTracked(thing))
+			return false;
+		double U = ref.getMass()*GRAV_CONST_KM;
+		if (U <= 0)
+			return false;
+		// has to be an ellipse
+		double rl = r.length();
+		double energy = v.lengthSquared()/2 - U/rl;
+		if (energy >= 0)
+			return false;
+		double a = -U/(2*energy);
+		Vector3d h = new Vector3d();
+		h.cross(r, v);
+		double e = Math.sqrt(Math.max(0, 1 - h.lengthSquared()/(U*a)));
+		// stay out of the atmosphere
+		if (a*(1-e) < floorrad)
+			return false;
+		// and inside the parent's influence, well away from its moons
+		double ra = a*(1+e);
+		long t = game.time();
+		double infrad = ref.getInfluenceRadius(t);
+		if (infrad > 0 && ra > infrad)
+			return false;
+		Iterator it = ref.getChildren();
+		while (it.hasNext())
+		{
+			UniverseThing ut = (UniverseThing)it.next();
+			if (ut instanceof Planet)
+			{
+				double d = ut.getPosition(ref, t).length() - ut.getInfluenceRadius(t)*2;
+				if (ra > d)
+					return false;
+			}
+		}
+		// and not close to anyone who's watching
+		if (isWatched(thing, ref, r, t))
+			return false;
+		return true;
+	}
+
+	/**
+	  * Returns true if a tracked ship (or one that has been
+	  * calling checkProximity() lately) is within twice
+	  * PROMOTE_DISTANCE of 'r'.  The extra margin keeps a thing
+	  * that was just promoted from going right back to lazy.
+	  */
+	boolean isWatched(UniverseThing thing, UniverseThing ref, Vector3d r, long t)
+	{
+		Iterator it = lastchecks.entrySet().iterator();
+		while (it.hasNext())
+		{
+			Map.Entry ent = (Map.Entry)it.next();
+			UniverseThing ut = (UniverseThing)ent.getKey();
+			long[] last = (long[])ent.getValue();
+			if (ut == thing || ut.getParent() != ref || t - last[0] > PROXIMITY_TICKS*2)
+				continue;
+			Vector3d d = ut.getPosition(ref, t);
+			d.sub(r);
+			if (d.length() < PROMOTE_DISTANCE*2)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	  * Returns the radius above which the air is thin enough
+	  * (density below MAX_DENSITY) that we can leave out drag.
+	  */
+	double getDragFloor(Planet planet)
+	{
+		Double d = (Double)dragfloors.get(planet);
+		if (d == null)
+		{
+			Atmosphere atmo = planet.getAtmosphere();
+			float alt = 0;
+			if (atmo != null)
+			{
+				// density only goes down with altitude, so bisect
+				float lo = 0;
+				float hi = atmo.getCeiling();
+				if (atmo.getParamsAt(hi).density < MAX_DENSITY)
+				{
+					for (int i=0; i<24; i++)
+					{
+						float mid = (lo+hi)/2;
+						if (atmo.getParamsAt(mid).density < MAX_DENSITY)
+							hi = mid;
+						else
+							lo = mid;
+					}
+				}
+				alt = hi;
+			}
+			d = new Double(planet.getRadius() + alt);
+			dragfloors.put(planet, d);
+		}
+		return d.doubleValue();
+	}
+
+	void demoted()
+	{
+		demotions++;
+	}
+
+	void promoted()
+	{
+		promotions++;
+	}
+
+	/**
+	  * Called every step by the CowellTrajectory of a tracked
+	  * ship (or one that is running a program);
+	  * every PROXIMITY_TICKS, promotes the lazy things with the same
+	  * parent that are within PROMOTE_DISTANCE.
+	  */
+	void checkProximity(UniverseThing thing, UniverseThing ref, Vector3d r, long t)
+	{
+		long[] last = (long[])lastchecks.get(thing);
+		if (last == null)
+		{
+			last = new long[] { INVALID_TICK };
+			lastchecks.put(thing, last);
+		}
+		else if (t - last[0] < PROXIMITY_TICKS)
+			return;
+		last[0] = t;
+		double rl = r.length();
+		List close = null;
+		Iterator it = ref.getChildren();
+		while (it.hasNext())
+		{
+			UniverseThing ut = (UniverseThing)it.next();
+			if (ut == thing || !isLazy(ut))
+				continue;
+			// quick check against the orbit's radius band
+			Conic o = ((OrbitTrajectory)ut.getTrajectory()).getConic();
+			if (rl < o.getPeriapsis() - PROMOTE_DISTANCE || rl > o.getApoapsis() + PROMOTE_DISTANCE)
+				continue;
+			Vector3d d = ut.getTrajectory().getPos(t);
+			d.sub(r);
+			if (d.length() < PROMOTE_DISTANCE)
+			{
+				if (close == null)
+					close = new ArrayList();
+				close.add(ut);
+			}
+		}
+		// promote after we're done iterating, since it changes the children
+		if (close != null)
+		{
+			for (int i=0; i<close.size(); i++)
+				promote((UniverseThing)close.get(i));
+		}
+	}
+
+	/**
+	  * Returns the # of times a trajectory went lazy.
+	  */
+	public int getDemotionCount()
+	{
+		return demotions;
+	}
+
+	/**
+	  * Returns the # of times a lazy trajectory went back to Cowell.
+	  */
+	public int getPromotionCount()
+	{
+		return promotions;
+	}
+
+	//
+
+	static boolean ENABLED;
+	static long IDLE_TICKS;
+	static long PROXIMITY_TICKS;
+	static double PROMOTE_DISTANCE;
+	static double MAX_DENSITY;
+
+	static SettingsGroup settings = new SettingsGroup(PropagationLOD.class, "Propagation")
+	{
+		public void updateSettings()
+		{
+			ENABLED = getBoolean("Lazy", false);
+			IDLE_TICKS = (long)(getDouble("LazyIdleTime", 60)*TICKS_PER_SEC);
+			PROXIMITY_TICKS = (long)(getDouble("LazyProximityInterval", 10)*TICKS_PER_SEC);
+			PROMOTE_DISTANCE = getDouble("LazyPromoteDistance", 200);
+			MAX_DENSITY = getDouble("LazyMaxDensity", 1e-13);
+		}
+	};
+
+}
@@ -0,0 +1,342 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.traj;
+
+import java.util.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.game.*;
+
+/**
+  * Collects trajectory updates that are due on the same tick
+  * and integrates them at the same time on a pool of worker threads.
+  * Each job only touches its own trajectory during integrate().
+  * Whatever it needs from its ship (mass, perturbations) must be
+  * copied into the job on the game thread before schedule(), since
+  * capabilities can change those between batches.  Planets and the
+  * ephemeris are only read, and the game thread waits for the whole
+  * batch, so nothing else runs meanwhile.  Afterwards each job's
+  * commit() is called on the game thread, in the order the jobs
+  * were scheduled, so the outcome doesn't depend on the threads.
+  */
+public class PropagationScheduler
+{
+	/**
+	  * A unit of work for the scheduler.
+	  */
+	public interface Job
+	{
+		/**
+		  * Called on a worker thread (or the game thread).
+		  * Must not read anything that's not copied into the job.
+		  */
+		public void integrate();
+		/**
+		  * Called on the game thread after all jobs are integrated.
+		  */
+		public void commit(Game game);
+	}
+
+	private Game game;
+	private BatchEvent current;
+
+	private Thread[] workers;
+	private List batch;
+	private int next_job;
+	private int jobs_done;
+	private int generation;
+	private Throwable failure;
+	private int epoch; // bumped by shutdown()
+	private Object batchlock = new Object(); // one batch at a time
+
+	private int batches, jobs;
+
+	//
+
+	/**
+	  * Returns the scheduler for a given game.
+	  */
+	public static PropagationScheduler getScheduler(Game game)
+	{
+		return ((SpaceGame)game).getPropagationScheduler();
+	}
+
+	/**
+	  * Is parallel propagation turned on?
+	  */
+	public static boolean isEnabled()
+	{
+		return NUM_THREADS > 1;
+	}
+
+	/**
+	  * Sets the # of threads (including the game thread) used to
+	  * integrate.  0 or 1 turns the scheduler off, so trajectories
+	  * are integrated right in their own events like before.
+	  */
+	public static void setNumThreads(int n)
+	{
+		NUM_THREADS = Math.max(0, n);
+	}
+
+	public static int getNumThreads()
+	{
+		return NUM_THREADS;
+	}
+
+	//
+
+	public PropagationScheduler(Game game)
+	{
+		this.game = game;
+	}
+
+	/**
+	  * Queues a job to be integrated at 'time', which should
+	  * be the current game time.
+	  */
+	public void schedule(Job job, long time)
+	{
+		if (current == null || current.getTime() != time)
+		{
+			current = new BatchEvent(time);
+			game.postEvent(current);
+		}
+		current.jobs.add(job);
+	}
+
+	/**
+	  * Integrates 'jobs' on the worker threads and waits for them
+	  * to finish.  Doesn't call commit(); the caller can do that.
+	  * Can be called from any thread.
+	  */
+	public void integrateNow(List jobs)
+	{
+		synchronized (batchlock)
+		{
+			integrateAll(jobs);
+		}
+	}
+
+	public int getBatchCount()
+	{
+		return batches;
+	}
+
+	public int getJobCount()
+	{
+		return jobs;
+	}
+
+	class BatchEvent extends GameEvent
+	{
+		List jobs = new ArrayList();
+
+		BatchEvent(long time)
+		{
+			super(time);
+		}
+		long getTime()
+		{
+			return eventtime;
+		}
+		public void handleEvent(Game game)
+		{
+			if (current == this)
+				current = null;
+			batches++;
+			PropagationScheduler.this.jobs += jobs.size();
+			synchronized (batchlock)
+			{
+				integrateAll(jobs);
+			}
+			for (int i=0; i<jobs.size(); i++)
+			{
+				((Job)jobs.get(i)).commit(game);
+			}
+		}
+		public String toString()
+		{
+			return "Propagate " + jobs.size() + " trajectories";
+		}
+	}
+
+	// WORKER THREADS
+
+	private void integrateAll(List jobs)
+	{
+		int nthreads = Math.min(NUM_THREADS, jobs.size());
+		if (nthreads <= 1)
+		{
+			for (int i=0; i<jobs.size(); i++)
+				((Job)jobs.get(i)).integrate();
+			return;
+		}
+		startWorkers(nthreads-1);
+		synchronized (this)
+		{
+			batch = jobs;
+			next_job = 0;
+			jobs_done = 0;
+			failure = null;
+			generation++;
+			notifyAll();
+		}
+		// this thread helps too
+		work();
+		boolean interrupted = false;
+		synchronized (this)
+		{
+			// the workers are still using the batch, so wait them out
+			while (jobs_done < jobs.size())
+			{
+				try {
+					wait();
+				} catch (InterruptedException ie) {
+					interrupted = true;
+				}
+			}
+			batch = null;
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (failure instanceof RuntimeException)
+			throw (RuntimeException)failure;
+		if (failure instanceof Error)
+			throw (Error)failure;
+		if (failure != null)
+			throw new RuntimeException(failure.toString());
+	}
+
+	/**
+	  * Stops the worker threads.  They are started again
+	  * if another batch comes along.
+	  */
+	public void shutdown()
+	{
+		synchronized (batchlock)
+		{
+			synchronized (this)
+			{
+				epoch++;
+				workers = null;
+				notifyAll();
+			}
+		}
+	}
+
+	private void work()
+	{
+		while (true)
+		{
+			Job job;
+			synchronized (this)
+			{
+				if (batch == null || next_job >= batch.size())
+					return;
+				job = (Job)batch.get(next_job++);
+			}
+			try {
+				job.integrate();
+			} catch (Throwable t) {
+				synchronized (this)
+				{
+					if (failure == null)
+						failure = t;
+				}
+			} finally {
+				// always count it, or integrateAll() waits forever
+				synchronized (this)
+				{
+					if (++jobs_done == batch.size())
+						notifyAll();
+				}
+			}
+		}
+	}
+
+	private void startWorkers(int n)
+	{
+		if (workers != null && workers.length >= n)
+			return;
+		Thread[] newworkers = new Thread[n];
+		int i = 0;
+		if (workers != null)
+		{
+			System.arraycopy(workers, 0, newworkers, 0, workers.length);
+			i = workers.length;
+		}
+		for (; i<n; i++)
+		{
+			Thread t = new Thread(new Worker(epoch, generation), "Propagation " + i);
+			t.setDaemon(true);
+			t.start();
+			newworkers[i] = t;
+		}
+		workers = newworkers;
+	}
+
+	class Worker implements Runnable
+	{
+		int myepoch;
+		int seen;
+		Worker(int myepoch, int seen)
+		{
+			this.myepoch = myepoch;
+			this.seen = seen;
+		}
+		public void run()
+		{
+			PropagationScheduler sched = PropagationScheduler.this;
+			while (true)
+			{
+				synchronized (sched)
+				{
+					while (generation == seen && epoch == myepoch)
+					{
+						try {
+							sched.wait();
+						} catch (InterruptedException ie) {
+							return;
+						}
+					}
+					// shut down?
+					if (epoch != myepoch)
+						return;
+					seen = generation;
+				}
+				work();
+			}
+		}
+	}
+
+	//
+
+	static int NUM_THREADS;
+
+	static SettingsGroup settings = new SettingsGroup(PropagationScheduler.class, "Propagation")
+	{
+		public void updateSettings()
+		{
+			// off until it has seen more use
+			NUM_THREADS = getInt("Threads", 1);
+		}
+	};
+
+}
@@ -34,6 +34,11 @@ implements Perturbation
 	boolean adjustForParent;
 	boolean inside_infrad;
 
+	// the last third body position, and the time it was computed
+	Vector3d ref_to_third;
+	long ref_to_third_time = Long.MIN_VALUE;
+	Vector3d acc = new Vector3d();
+
 	//
 
 	/**
@@ -61,10 +66,17 @@ implements Perturbation
 		double r2;
 
 		// compute vector from third body to ref center (e-m)
-		Vector3d ref_to_third = third.getPosition(ref, time);
+		// (ephemeris bodies come from the shared EphemerisCache,
+		// this just saves walking the tree again for the same time)
+		if (time != ref_to_third_time)
+		{
+			ref_to_third = third.getPosition(ref, time);
+			ref_to_third_time = time;
+		}
 
 		// vector from third body to 'r'	(m-b)
-		Vector3d acc = new Vector3d(ref_to_third);
+		Vector3d acc = this.acc;
+		acc.set(ref_to_third);
 		acc.sub(r);
 		r2 = acc.lengthSquared();
 		inside_infrad = (r2 < third_infrad2);
@@ -0,0 +1,314 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.traj.test;
+
+import java.lang.management.ManagementFactory;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.integ.*;
+import com.fasterlight.exo.orbit.traj.*;
+import com.fasterlight.testing.*;
+import com.fasterlight.util.Vec3d;
+import com.fasterlight.vecmath.Vector3d;
+
+public class CowellTrajectoryTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+	}
+
+	public CowellTrajectoryTests(String name)
+	{
+		super(name);
+		THRESHOLD = 1e-5;
+	}
+
+	// puts a small object in a circular LEO on a Cowell trajectory
+	CowellTrajectory makeOrbiter()
+	{
+		return makeOrbiter(400);
+	}
+
+	CowellTrajectory makeOrbiter(double alt)
+	{
+		return makeOrbiter(game, alt);
+	}
+
+	CowellTrajectory makeOrbiter(SpaceGame game, double alt)
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		DefaultUniverseThing thing = new DefaultUniverseThing();
+		thing.setName("Cowell test");
+		thing.setMass(1000);
+		thing.setRadius(0.005f);
+		double r = earth.getRadius() + alt;
+		double v = Math.sqrt(earth.getMass()*Constants.GRAV_CONST_KM/r);
+		CowellTrajectory traj = new CowellTrajectory(earth,
+			new Vec3d(r,0,0), new Vec3d(0,v,0), game.time(), new Orientation());
+		thing.setTrajectory(traj);
+		return traj;
+	}
+
+	//
+
+	// bytes allocated by this thread so far, or -1 if the VM can't tell us
+	static long getAllocatedBytes()
+	{
+		java.lang.management.ThreadMXBean mx = ManagementFactory.getThreadMXBean();
+		if (!(mx instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean smx = (com.sun.management.ThreadMXBean)mx;
+		if (!smx.isThreadAllocatedMemorySupported() || !smx.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return smx.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	static final int NUM_EVALS = 10000;
+
+	// evaluates the forces on a LEO orbiter with every perturbation on
+	// (drag, third body, J2) -- should allocate nothing
+	public void testNoAllocationsPerForceEvaluation()
+	{
+		if (getAllocatedBytes() < 0)
+			return;
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags =
+			DefaultMutableTrajectory.PF_DRAG | DefaultMutableTrajectory.PF_3RDBODY |
+			DefaultMutableTrajectory.PF_J2;
+		try {
+			CowellTrajectory traj = makeOrbiter();
+			assertTrue(traj.countDefaultPerturbations() >= 2);
+			long t = game.time();
+			Vector3d r = traj.getPos(t);
+			Vector3d v = traj.getVel(t);
+			double[] y = { r.x, r.y, r.z, v.x, v.y, v.z };
+			double[] dydt = new double[y.length];
+			// warm up (third body positions are cached per tick)
+			for (int i=0; i<100; i++)
+				traj.derivs(t, 0, y, dydt);
+			long bytes = getAllocatedBytes();
+			for (int i=0; i<NUM_EVALS; i++)
+				traj.derivs(t, 0, y, dydt);
+			bytes = getAllocatedBytes() - bytes;
+			// less than a byte per evaluation
+			assertTrue(bytes + " bytes allocated", bytes < NUM_EVALS);
+			traj.getThing().setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	// two-body gravity, for timing the integrators by themselves
+	static class Kepler implements BufferedDerivatives
+	{
+		double U = 398600.4418;
+		public double[] derivs(long t, double dt, double[] y)
+		{
+			double[] dydt = new double[y.length];
+			derivs(t, dt, y, dydt);
+			return dydt;
+		}
+		public void derivs(long t, double dt, double[] y, double[] dydt)
+		{
+			double r2 = y[0]*y[0] + y[1]*y[1] + y[2]*y[2];
+			double k = -U/(r2*Math.sqrt(r2));
+			dydt[0] = y[3];
+			dydt[1] = y[4];
+			dydt[2] = y[5];
+			dydt[3] = k*y[0];
+			dydt[4] = k*y[1];
+			dydt[5] = k*y[2];
+		}
+	}
+
+	// steps each integrator's buffered version many times
+	public void testNoAllocationsPerStep()
+	{
+		if (getAllocatedBytes() < 0)
+			return;
+		Kepler kep = new Kepler();
+		RungeKutta4 rk4 = new RungeKutta4(10);
+		RungeKuttaFehlberg45 rkf45 = new RungeKuttaFehlberg45();
+		RungeKuttaFehlberg78 rkf78 = new RungeKuttaFehlberg78();
+		double[] y = { 6778, 0, 0, 0, 7.67, 0 };
+		double[] yy = new double[y.length];
+		double[] yerr = new double[y.length];
+		double[] dydx = new double[y.length];
+		for (int pass=0; pass<2; pass++)
+		{
+			// first pass sizes the scratch buffers
+			long bytes = getAllocatedBytes();
+			for (int i=0; i<NUM_EVALS; i++)
+			{
+				kep.derivs(0, 0, y, dydx);
+				rk4.step(0, 0, y, yy, kep);
+				rkf45.rkck(y, dydx, 0, 0, 10, yy, yerr, kep);
+				rkf78.rkck(y, dydx, 0, 0, 10, yy, yerr, kep);
+				System.arraycopy(yy, 0, y, 0, y.length);
+			}
+			bytes = getAllocatedBytes() - bytes;
+			if (pass > 0)
+				assertTrue(bytes + " bytes allocated", bytes < NUM_EVALS);
+		}
+	}
+
+	public void testDenseOutput()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = 0;
+		try {
+			CowellTrajectory traj = makeOrbiter();
+			for (int i=0; i<50; i++)
+			{
+				game.update(Constants.TICKS_PER_SEC*37);
+				long t0 = traj.getLastT0();
+				long t1 = traj.getLastT1();
+				assertTrue(t1 > t0);
+				for (int j=1; j<=8; j++)
+				{
+					long t = t0 + (t1-t0)*j/8;
+					traj.setUseDenseOutput(true);
+					int nevals = traj.getForceEvaluationCount();
+					Vector3d r1 = traj.getPos(t);
+					Vector3d v1 = traj.getVel(t);
+					// interpolating doesn't evaluate forces
+					assertEquals(nevals, traj.getForceEvaluationCount());
+					traj.setUseDenseOutput(false);
+					Vector3d r2 = traj.getPos(t);
+					Vector3d v2 = traj.getVel(t);
+					// within 10 cm and 1 mm/s
+					r1.sub(r2);
+					v1.sub(v2);
+					assertTrue("pos error " + r1.length() + " at t=" + t, r1.length() < 1e-4);
+					assertTrue("vel error " + v1.length() + " at t=" + t, v1.length() < 1e-6);
+				}
+				traj.setUseDenseOutput(true);
+			}
+			traj.getThing().setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	// propagates a bunch of orbiters for an hour in a new game
+	// that starts when 'game' is now, returns their positions
+	Vector3d[] propagateMany(int nthreads)
+	{
+		PropagationScheduler.setNumThreads(nthreads);
+		SpaceGame g = new SpaceGame();
+		g.setGameStartTime(game.time());
+		g.start();
+		CowellTrajectory[] trajs = new CowellTrajectory[16];
+		for (int i=0; i<trajs.length; i++)
+			trajs[i] = makeOrbiter(g, 300 + i*100);
+		g.update(Constants.TICKS_PER_SEC*3600);
+		if (nthreads > 1)
+			assertTrue(PropagationScheduler.getScheduler(g).getJobCount() > 0);
+		Vector3d[] pos = new Vector3d[trajs.length];
+		for (int i=0; i<trajs.length; i++)
+		{
+			pos[i] = trajs[i].getPos(g.time());
+			trajs[i].getThing().setTrajectory(null);
+		}
+		PropagationScheduler.getScheduler(g).shutdown();
+		return pos;
+	}
+
+	// the workers read the planets, ephemeris and J2 model
+	// concurrently, so have all the perturbations on
+	public void testParallelMatchesSerial()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		int oldthreads = PropagationScheduler.getNumThreads();
+		DefaultMutableTrajectory.perturbFlags =
+			DefaultMutableTrajectory.PF_DRAG | DefaultMutableTrajectory.PF_3RDBODY |
+			DefaultMutableTrajectory.PF_J2;
+		try {
+			Vector3d[] serial = propagateMany(1);
+			Vector3d[] parallel = propagateMany(4);
+			// same start time, so the results should be bit-identical
+			for (int i=0; i<serial.length; i++)
+				assertEquals(serial[i], parallel[i]);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+			PropagationScheduler.setNumThreads(oldthreads);
+		}
+	}
+
+	// propagates an orbiter for 'secs' and returns the distance
+	// from where a Keplerian orbit says it should be
+	double propagateCoast(CowellTrajectory traj, long secs)
+	{
+		Planet earth = (Planet)traj.getParent();
+		double U = earth.getMass()*Constants.GRAV_CONST_KM;
+		long t0 = game.time();
+		Conic conic = new Conic(traj.getPos(t0), traj.getVel(t0), U, t0*(1d/Constants.TICKS_PER_SEC));
+		game.update(Constants.TICKS_PER_SEC*secs);
+		long t = game.time();
+		StateVector sv = conic.getStateVectorAtTime(t*(1d/Constants.TICKS_PER_SEC));
+		Vector3d r = traj.getPos(t);
+		r.sub(sv.r);
+		traj.getThing().setTrajectory(null);
+		return r.length();
+	}
+
+	public void testAdaptiveCoast()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = 0;
+		try {
+			CowellTrajectory fixed = makeOrbiter(1000);
+			fixed.setAdaptiveCoast(false);
+			propagateCoast(fixed, 6*3600);
+
+			CowellTrajectory adaptive = makeOrbiter(1000);
+			adaptive.setAdaptiveCoast(true);
+			double adaptiveerr = propagateCoast(adaptive, 6*3600);
+
+			// within 10 m after 6 hours, with fewer force evaluations
+			assertTrue("adaptive error " + adaptiveerr, adaptiveerr < 1e-2);
+			assertTrue(adaptive.getForceEvaluationCount() < fixed.getForceEvaluationCount());
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(CowellTrajectoryTests.class);
+		return suite;
+	}
+
+}
@@ -0,0 +1,275 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.orbit.traj.test;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.*;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.testing.*;
+import com.fasterlight.util.Vec3d;
+import com.fasterlight.vecmath.Vector3d;
+
+public class PropagationLODTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	boolean oldenabled;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+		// it's off by default
+		oldenabled = PropagationLOD.isEnabled();
+		PropagationLOD.setEnabled(true);
+	}
+
+	public void tearDown()
+	{
+		PropagationLOD.setEnabled(oldenabled);
+	}
+
+	public PropagationLODTests(String name)
+	{
+		super(name);
+	}
+
+	// puts a satellite in a circular orbit on a Cowell trajectory
+	SpaceShip makeSatellite(double alt, double inc)
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		Structure struct = new Structure(game);
+		struct.addModule(new Module(game, "Comm Satellite"));
+		SpaceShip ship = new SpaceShip(struct);
+		ship.setName("LOD test");
+		double r = earth.getRadius() + alt;
+		double v = Math.sqrt(earth.getMass()*Constants.GRAV_CONST_KM/r);
+		ship.setTrajectory(new CowellTrajectory(earth,
+			new Vec3d(r,0,0), new Vec3d(0,v*Math.cos(inc),v*Math.sin(inc)),
+			game.time(), new Orientation()));
+		return ship;
+	}
+
+	Conic getConic(UniverseThing thing)
+	{
+		long t = game.time();
+		Trajectory traj = thing.getTrajectory();
+		return new Conic(traj.getPos(t), traj.getVel(t),
+			traj.getParent().getMass()*Constants.GRAV_CONST_KM, t*(1d/Constants.TICKS_PER_SEC));
+	}
+
+	double getError(UniverseThing thing, Conic conic)
+	{
+		long t = game.time();
+		StateVector sv = conic.getStateVectorAtTime(t*(1d/Constants.TICKS_PER_SEC));
+		Vector3d r = thing.getTrajectory().getPos(t);
+		r.sub(sv.r);
+		return r.length();
+	}
+
+	// angle between the orbit planes of two trajectories
+	double getPlaneAngle(Trajectory t1, Trajectory t2, long t)
+	{
+		Vector3d h1 = new Vector3d();
+		h1.cross(t1.getPos(t), t1.getVel(t));
+		h1.normalize();
+		Vector3d h2 = new Vector3d();
+		h2.cross(t2.getPos(t), t2.getVel(t));
+		h2.normalize();
+		return Math.acos(Math.min(1, h1.dot(h2)));
+	}
+
+	//
+
+	public void testDemote()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = 0;
+		try {
+			PropagationLOD lod = PropagationLOD.getPolicy(game);
+			int demotions = lod.getDemotionCount();
+			SpaceShip ship = makeSatellite(1000, 0.5);
+			Conic conic = getConic(ship);
+			game.update(Constants.TICKS_PER_SEC*300);
+			assertTrue(PropagationLOD.isLazy(ship));
+			assertEquals(demotions+1, lod.getDemotionCount());
+			// should pick up where Cowell left off
+			game.update(Constants.TICKS_PER_SEC*3*3600);
+			assertTrue(PropagationLOD.isLazy(ship));
+			assertTrue(getError(ship, conic) < 1e-3);
+			ship.setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	public void testPromote()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = 0;
+		try {
+			PropagationLOD lod = PropagationLOD.getPolicy(game);
+			SpaceShip ship = makeSatellite(1000, 0.5);
+			game.update(Constants.TICKS_PER_SEC*300);
+			assertTrue(PropagationLOD.isLazy(ship));
+
+			// thrust brings it back
+			int promotions = lod.getPromotionCount();
+			SimplePerturbation thrust = new SimplePerturbation();
+			thrust.setForce(new Vector3d(0, 0.001, 0));
+			((MutableTrajectory)ship.getTrajectory()).addPerturbation(thrust);
+			assertTrue(ship.getTrajectory() instanceof CowellTrajectory);
+			assertEquals(promotions+1, lod.getPromotionCount());
+			game.update(Constants.TICKS_PER_SEC*300);
+			assertTrue(ship.getTrajectory() instanceof CowellTrajectory);
+
+			// and when it's done, it goes lazy again
+			((MutableTrajectory)ship.getTrajectory()).removePerturbation(thrust);
+			game.update(Constants.TICKS_PER_SEC*300);
+			assertTrue(PropagationLOD.isLazy(ship));
+
+			// tracking also brings it back, and keeps it there
+			lod.setTracked(ship, true);
+			assertTrue(ship.getTrajectory() instanceof CowellTrajectory);
+			game.update(Constants.TICKS_PER_SEC*300);
+			assertTrue(ship.getTrajectory() instanceof CowellTrajectory);
+			lod.setTracked(ship, false);
+			ship.setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	public void testProximity()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = 0;
+		try {
+			PropagationLOD lod = PropagationLOD.getPolicy(game);
+			SpaceShip target = makeSatellite(1000, 0.5);
+			game.update(Constants.TICKS_PER_SEC*300);
+			assertTrue(PropagationLOD.isLazy(target));
+			// a tracked ship 10 km away
+			long t = game.time();
+			SpaceShip chaser = makeSatellite(1000, 0.5);
+			Vector3d r = target.getTrajectory().getPos(t);
+			r.scale(1 + 10/r.length());
+			chaser.setTrajectory(new CowellTrajectory(target.getParent(),
+				r, target.getTrajectory().getVel(t), t, new Orientation()));
+			lod.setTracked(chaser, true);
+			game.update(Constants.TICKS_PER_SEC*60);
+			assertTrue(target.getTrajectory() instanceof CowellTrajectory);
+			lod.setTracked(chaser, false);
+			chaser.setTrajectory(null);
+			target.setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	public void testHysteresis()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = 0;
+		try {
+			PropagationLOD lod = PropagationLOD.getPolicy(game);
+			// a tracked ship 300 km overhead -- too far to promote
+			// anything, but close enough to keep it from going lazy
+			SpaceShip target = makeSatellite(1000, 0.5);
+			SpaceShip chaser = makeSatellite(1300, 0.5);
+			lod.setTracked(chaser, true);
+			game.update(Constants.TICKS_PER_SEC*120);
+			assertTrue(target.getTrajectory() instanceof CowellTrajectory);
+			// once it's gone, the target can go lazy
+			lod.setTracked(chaser, false);
+			chaser.setTrajectory(null);
+			game.update(Constants.TICKS_PER_SEC*120);
+			assertTrue(PropagationLOD.isLazy(target));
+			target.setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	public void testAtmosphere()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = DefaultMutableTrajectory.PF_DRAG;
+		try {
+			// too low, has to stay on Cowell for the drag
+			SpaceShip ship = makeSatellite(150, 0.5);
+			game.update(Constants.TICKS_PER_SEC*300);
+			assertTrue(ship.getTrajectory() instanceof CowellTrajectory);
+			ship.setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+		}
+	}
+
+	public void testSecularJ2()
+	{
+		int oldflags = DefaultMutableTrajectory.perturbFlags;
+		DefaultMutableTrajectory.perturbFlags = DefaultMutableTrajectory.PF_J2;
+		boolean oldenabled = PropagationLOD.isEnabled();
+		PropagationLOD.setEnabled(false);
+		try {
+			// the real thing
+			SpaceShip ship = makeSatellite(800, 0.9);
+			long t = game.time();
+			Trajectory cowell = ship.getTrajectory();
+			Vector3d r0 = cowell.getPos(t);
+			Vector3d v0 = cowell.getVel(t);
+			OrbitTrajectory kepler = new OrbitTrajectory(cowell.getParent(), r0, v0, t);
+			OrbitTrajectory secular = new OrbitTrajectory();
+			secular.setSecularJ2(true);
+			secular.set(cowell.getParent(), r0, v0, t, null);
+			game.update(Constants.TICKS_PER_SEC*6*3600);
+			// the node regresses about a degree in 6 hours;
+			// the secular rates should take out most of that
+			// (short-period terms are still left over)
+			t = game.time();
+			double ak = getPlaneAngle(cowell, kepler, t);
+			double as = getPlaneAngle(cowell, secular, t);
+			assertTrue("kepler " + ak + ", secular " + as, as < ak/2);
+			ship.setTrajectory(null);
+		} finally {
+			DefaultMutableTrajectory.perturbFlags = oldflags;
+			PropagationLOD.setEnabled(oldenabled);
+		}
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(PropagationLODTests.class);
+		return suite;
+	}
+
+}
@@ -20,7 +20,7 @@ package com.fasterlight.exo.seq;
 
 
 public class AndCondition
-implements Condition
+implements PredictableCondition
 {
 	private Condition c1,c2;
 
@@ -30,6 +30,16 @@ implements Condition
 		this.c2 = c2;
 	}
 
+	public Condition getFirst()
+	{
+		return c1;
+	}
+
+	public Condition getSecond()
+	{
+		return c2;
+	}
+
 	public int evaluate(Sequencer seq)
 	{
 		int x1 = c1.evaluate(seq);
@@ -37,6 +47,18 @@ implements Condition
 		return (x1 & x2);
 	}
 
+	// can't be true until both are
+	public long predictCrossing(Sequencer seq)
+	{
+		long p1 = ConditionWaitNode.predictCrossing(c1, seq);
+		long p2 = ConditionWaitNode.predictCrossing(c2, seq);
+		if (p1 < 0)
+			return p2;
+		if (p2 < 0)
+			return p1;
+		return Math.max(p1, p2);
+	}
+
 	public String toString()
 	{
 		return c1 + " and " + c2;
@@ -0,0 +1,500 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.seq;
+
+import java.io.*;
+import java.util.List;
+
+import com.fasterlight.game.Game;
+import com.fasterlight.util.Vec3d;
+import com.fasterlight.vecmath.*;
+
+/**
+  * A parsed sequence, written out as a compact list of nodes,
+  * so it can be made into a new Sequencer without going through
+  * SeqlangParser again.
+  * Remembers the MD5 of its source (and of any files it includes),
+  * so SequenceCache can tell when it's out of date.
+  * Only knows about the nodes and literals that SeqlangParser makes;
+  * anything else throws a NotSerializableException from encode().
+  * @see SequenceCache
+  */
+public class CompiledSequence
+{
+	static final int MAGIC = 0x53455143; // "SEQC"
+	static final int VERSION = 1;
+
+	// node types
+	static final int N_SET = 1;
+	static final int N_BRANCH = 2;
+	static final int N_ABORT = 3;
+	static final int N_STOP = 4;
+	static final int N_TIMEWAIT = 5;
+	static final int N_CONDWAIT = 6;
+
+	// condition types
+	static final int C_OR = 1;
+	static final int C_AND = 2;
+	static final int C_NOT = 3;
+	static final int C_PROP = 4;
+
+	// literal types
+	static final int L_NULL = 0;
+	static final int L_LONG = 1;
+	static final int L_DOUBLE = 2;
+	static final int L_BOOLEAN = 3;
+	static final int L_STRING = 4;
+	static final int L_VEC3 = 5;
+	static final int L_VEC2 = 6;
+	static final int L_VEC4 = 7;
+
+	private String path;
+	private String hash;
+	private String[] includes;
+	private String[] includehashes;
+	private byte[] data;
+
+	//
+
+	private CompiledSequence()
+	{
+	}
+
+	/**
+	  * Encodes the nodes of 'seq', which was just parsed
+	  * from 'path' (with contents 'src').
+	  * 'includes' is the list of files it included.
+	  */
+	public static CompiledSequence encode(String path, byte[] src, Sequencer seq, List includes)
+	throws IOException
+	{
+		CompiledSequence cs = new CompiledSequence();
+		cs.path = path;
+		cs.hash = SequenceCache.hash(src);
+		cs.includes = new String[includes.size()];
+		cs.includehashes = new String[includes.size()];
+		for (int i=0; i<cs.includes.length; i++)
+		{
+			cs.includes[i] = (String)includes.get(i);
+			cs.includehashes[i] = SequenceCache.hashResource(cs.includes[i]);
+		}
+
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bout);
+		writeString(out, seq.getName());
+		List nodes = seq.getNodes();
+		out.writeInt(nodes.size());
+		for (int i=0; i<nodes.size(); i++)
+			writeNode(out, (SequencerNode)nodes.get(i));
+		out.close();
+		cs.data = bout.toByteArray();
+		return cs;
+	}
+
+	public String getPath()
+	{
+		return path;
+	}
+
+	public String getHash()
+	{
+		return hash;
+	}
+
+	/**
+	  * Returns the size of the encoded nodes, in bytes.
+	  */
+	public int getSize()
+	{
+		return data.length;
+	}
+
+	/**
+	  * Returns false if any of the files we included have changed.
+	  */
+	public boolean isCurrent()
+	{
+		for (int i=0; i<includes.length; i++)
+		{
+			try {
+				if (!includehashes[i].equals(SequenceCache.hashResource(includes[i])))
+					return false;
+			} catch (IOException ioe) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	  * Makes a new Sequencer with fresh nodes.
+	  */
+	public Sequencer instantiate(Game game)
+	{
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			Sequencer seq = new Sequencer(game);
+			seq.setName(readString(in));
+			int n = in.readInt();
+			for (int i=0; i<n; i++)
+				seq.addNode(readNode(in));
+			return seq;
+		} catch (IOException ioe) {
+			// we wrote it, so this shouldn't happen
+			throw new RuntimeException("Bad compiled sequence \"" + path + "\": " + ioe);
+		}
+	}
+
+	// FILES
+
+	public void write(OutputStream os)
+	throws IOException
+	{
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeUTF(path);
+		out.writeUTF(hash);
+		out.writeInt(includes.length);
+		for (int i=0; i<includes.length; i++)
+		{
+			out.writeUTF(includes[i]);
+			out.writeUTF(includehashes[i]);
+		}
+		out.writeInt(data.length);
+		out.write(data);
+		out.flush();
+	}
+
+	/**
+	  * Reads a compiled sequence written by write(), or returns null
+	  * if it's not one (or is from another version).
+	  */
+	public static CompiledSequence read(InputStream is)
+	throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION)
+			return null;
+		CompiledSequence cs = new CompiledSequence();
+		cs.path = in.readUTF();
+		cs.hash = in.readUTF();
+		int n = in.readInt();
+		cs.includes = new String[n];
+		cs.includehashes = new String[n];
+		for (int i=0; i<n; i++)
+		{
+			cs.includes[i] = in.readUTF();
+			cs.includehashes[i] = in.readUTF();
+		}
+		cs.data = new byte[in.readInt()];
+		in.readFully(cs.data);
+		return cs;
+	}
+
+	// NODES
+
+	static void writeNode(DataOutputStream out, SequencerNode node)
+	throws IOException
+	{
+		Class c = node.getClass();
+		if (c == PropertySetNode.class)
+		{
+			PropertySetNode psn = (PropertySetNode)node;
+			out.writeByte(N_SET);
+			writeString(out, psn.key);
+			out.writeBoolean(psn.valueprop);
+			out.writeBoolean(psn.optional);
+			writeLiteral(out, psn.value);
+		}
+		else if (c == BranchNode.class)
+		{
+			out.writeByte(N_BRANCH);
+			out.writeInt(((BranchNode)node).getNodeIndex());
+		}
+		else if (c == SetAbortNode.class)
+		{
+			out.writeByte(N_ABORT);
+			writeString(out, ((SetAbortNode)node).name);
+			out.writeInt(((SetAbortNode)node).getNodeIndex());
+		}
+		else if (c == StopNode.class)
+		{
+			out.writeByte(N_STOP);
+		}
+		else if (c == TimeWaitNode.class)
+		{
+			TimeWaitNode twn = (TimeWaitNode)node;
+			if (twn.hasTimeProperty())
+				throw new NotSerializableException("Wait time from a property: " + node);
+			out.writeByte(N_TIMEWAIT);
+			out.writeLong(twn.getTicks());
+			out.writeInt(twn.getMode());
+		}
+		else if (c == ConditionWaitNode.class)
+		{
+			ConditionWaitNode cwn = (ConditionWaitNode)node;
+			out.writeByte(N_CONDWAIT);
+			writeCondition(out, cwn.getCondition());
+			out.writeLong(cwn.getInterval());
+			out.writeLong(cwn.getTimeout());
+		}
+		else
+			throw new NotSerializableException(c.getName());
+		writeString(out, node.getDescription());
+	}
+
+	static SequencerNode readNode(DataInputStream in)
+	throws IOException
+	{
+		SequencerNode node;
+		int type = in.readByte();
+		switch (type)
+		{
+			case N_SET:
+			{
+				String key = readString(in);
+				boolean valueprop = in.readBoolean();
+				boolean optional = in.readBoolean();
+				Object value = readLiteral(in);
+				node = new PropertySetNode(key, value, null, valueprop, optional);
+				break;
+			}
+			case N_BRANCH:
+				node = new BranchNode(in.readInt());
+				break;
+			case N_ABORT:
+			{
+				SetAbortNode san = new SetAbortNode(readString(in));
+				san.setNodeIndex(in.readInt());
+				node = san;
+				break;
+			}
+			case N_STOP:
+				node = new StopNode();
+				break;
+			case N_TIMEWAIT:
+			{
+				long t = in.readLong();
+				node = new TimeWaitNode(t, in.readInt());
+				break;
+			}
+			case N_CONDWAIT:
+			{
+				Condition cond = readCondition(in);
+				long interval = in.readLong();
+				node = new ConditionWaitNode(cond, interval, in.readLong());
+				break;
+			}
+			default:
+				throw new StreamCorruptedException("Bad node type " + type);
+		}
+		node.setDescription(readString(in));
+		return node;
+	}
+
+	// CONDITIONS
+
+	static void writeCondition(DataOutputStream out, Condition cond)
+	throws IOException
+	{
+		Class c = cond.getClass();
+		if (c == OrCondition.class)
+		{
+			out.writeByte(C_OR);
+			writeCondition(out, ((OrCondition)cond).getFirst());
+			writeCondition(out, ((OrCondition)cond).getSecond());
+		}
+		else if (c == AndCondition.class)
+		{
+			out.writeByte(C_AND);
+			writeCondition(out, ((AndCondition)cond).getFirst());
+			writeCondition(out, ((AndCondition)cond).getSecond());
+		}
+		else if (c == NotCondition.class)
+		{
+			out.writeByte(C_NOT);
+			writeCondition(out, ((NotCondition)cond).getFirst());
+		}
+		else if (c == PropertyCondition.class)
+		{
+			PropertyCondition pc = (PropertyCondition)cond;
+			out.writeByte(C_PROP);
+			writeString(out, pc.getProperty());
+			writeString(out, pc.getValueProperty());
+			if (pc.getValueProperty() == null)
+				writeLiteral(out, pc.getValue());
+			out.writeInt(pc.getOp());
+		}
+		else
+			throw new NotSerializableException(c.getName());
+	}
+
+	static Condition readCondition(DataInputStream in)
+	throws IOException
+	{
+		int type = in.readByte();
+		switch (type)
+		{
+			case C_OR:
+			{
+				Condition c1 = readCondition(in);
+				return new OrCondition(c1, readCondition(in));
+			}
+			case C_AND:
+			{
+				Condition c1 = readCondition(in);
+				return new AndCondition(c1, readCondition(in));
+			}
+			case C_NOT:
+				return new NotCondition(readCondition(in));
+			case C_PROP:
+			{
+				String prop1 = readString(in);
+				String prop2 = readString(in);
+				if (prop2 != null)
+					return new PropertyCondition(prop1, prop2, in.readInt(), true);
+				Object obj = readLiteral(in);
+				return new PropertyCondition(prop1, obj, in.readInt());
+			}
+			default:
+				throw new StreamCorruptedException("Bad condition type " + type);
+		}
+	}
+
+	// LITERALS
+
+	static void writeLiteral(DataOutputStream out, Object o)
+	throws IOException
+	{
+		if (o == null)
+			out.writeByte(L_NULL);
+		else if (o instanceof Long)
+		{
+			out.writeByte(L_LONG);
+			out.writeLong(((Long)o).longValue());
+		}
+		else if (o instanceof Double)
+		{
+			out.writeByte(L_DOUBLE);
+			out.writeDouble(((Double)o).doubleValue());
+		}
+		else if (o instanceof Boolean)
+		{
+			out.writeByte(L_BOOLEAN);
+			out.writeBoolean(((Boolean)o).booleanValue());
+		}
+		else if (o instanceof String)
+		{
+			out.writeByte(L_STRING);
+			writeString(out, (String)o);
+		}
+		else if (o.getClass() == Vec3d.class)
+		{
+			Vec3d v = (Vec3d)o;
+			out.writeByte(L_VEC3);
+			out.writeDouble(v.x);
+			out.writeDouble(v.y);
+			out.writeDouble(v.z);
+		}
+		else if (o.getClass() == Vector2d.class)
+		{
+			Vector2d v = (Vector2d)o;
+			out.writeByte(L_VEC2);
+			out.writeDouble(v.x);
+			out.writeDouble(v.y);
+		}
+		else if (o.getClass() == Vector4d.class)
+		{
+			Vector4d v = (Vector4d)o;
+			out.writeByte(L_VEC4);
+			out.writeDouble(v.x);
+			out.writeDouble(v.y);
+			out.writeDouble(v.z);
+			out.writeDouble(v.w);
+		}
+		else
+			throw new NotSerializableException(o.getClass().getName());
+	}
+
+	static Object readLiteral(DataInputStream in)
+	throws IOException
+	{
+		int type = in.readByte();
+		switch (type)
+		{
+			case L_NULL:
+				return null;
+			case L_LONG:
+				return new Long(in.readLong());
+			case L_DOUBLE:
+				return new Double(in.readDouble());
+			case L_BOOLEAN:
+				return in.readBoolean() ? Boolean.TRUE : Boolean.FALSE;
+			case L_STRING:
+				return readString(in);
+			case L_VEC3:
+			{
+				double x = in.readDouble();
+				double y = in.readDouble();
+				return new Vec3d(x, y, in.readDouble());
+			}
+			case L_VEC2:
+			{
+				double x = in.readDouble();
+				return new Vector2d(x, in.readDouble());
+			}
+			case L_VEC4:
+			{
+				double x = in.readDouble();
+				double y = in.readDouble();
+				double z = in.readDouble();
+				return new Vector4d(x, y, z, in.readDouble());
+			}
+			default:
+				throw new StreamCorruptedException("Bad literal type " + type);
+		}
+	}
+
+	// strings can be null, and included files can be > 64K
+	static void writeString(DataOutputStream out, String s)
+	throws IOException
+	{
+		if (s == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b = s.getBytes("UTF-8");
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	static String readString(DataInputStream in)
+	throws IOException
+	{
+		int n = in.readInt();
+		if (n < 0)
+			return null;
+		byte[] b = new byte[n];
+		in.readFully(b);
+		return new String(b, "UTF-8");
+	}
+
+}
@@ -21,6 +21,14 @@ package com.fasterlight.exo.seq;
 import com.fasterlight.exo.orbit.*;
 import com.fasterlight.game.*;
 
+/**
+  * Waits for a condition to become true.
+  * The condition is evaluated every 'interval' ticks, unless it's
+  * a PredictableCondition that knows it won't be true for a while;
+  * then we wait for part of that time, and as we get within
+  * 'interval' of the crossing we evaluate right at the predicted
+  * time, which closes in on the crossing from the near side.
+  */
 public class ConditionWaitNode
 extends SequencerNode
 {
@@ -55,6 +63,21 @@ extends SequencerNode
 		this.timeout = timeout;
 	}
 
+	public Condition getCondition()
+	{
+		return cond;
+	}
+
+	public long getInterval()
+	{
+		return interval;
+	}
+
+	public long getTimeout()
+	{
+		return timeout;
+	}
+
 	protected void startNode()
 	{
 		starttime = seq.getGame().time();
@@ -68,6 +91,46 @@ extends SequencerNode
 		event = null;
 	}
 
+	/**
+	  * Returns the # of ticks before 'cond' could become true,
+	  * 0 if it was true, or -1 if it can't tell.
+	  */
+	static long predictCrossing(Condition cond, Sequencer seq)
+	{
+		if (cond instanceof PredictableCondition)
+			return ((PredictableCondition)cond).predictCrossing(seq);
+		else
+			return -1;
+	}
+
+	// how long to wait before evaluating again, after a false
+	long getWaitTime(long eventtime)
+	{
+		long wait = interval;
+		if (PREDICT)
+		{
+			long dt = predictCrossing(cond, getSequencer());
+			if (dt > interval)
+			{
+				// rates change, so only wait part of the way
+				long maxwait = Math.max(interval, MAX_WAIT);
+				wait = Math.min(maxwait, Math.max(interval, (long)(dt*SAFETY)));
+			}
+			else if (dt > 0)
+			{
+				// evaluate right at the crossing
+				wait = Math.max(dt, Math.max(1, interval/MIN_WAIT_DIV));
+			}
+		}
+		// don't skip our last chance before timing out
+		if (timeout > 0 && wait > interval)
+		{
+			long deadline = starttime + timeout;
+			wait = Math.max(interval, Math.min(wait, deadline - interval - eventtime));
+		}
+		return wait;
+	}
+
 	public String toString()
 	{
 		return getDescription() + "(Condition " + cond + " every " + AstroUtil.toDuration(interval*(1d/Constants.TICKS_PER_SEC)) + ")";
@@ -84,6 +147,7 @@ extends SequencerNode
 		}
 		public void handleEvent(Game game)
 		{
+			getSequencer().countEvaluation();
 			int eval = cond.evaluate(getSequencer());
 			if (eval > 0)
 			{
@@ -95,7 +159,7 @@ extends SequencerNode
 				notifySeq(FAIL);
 			}
 			else {
-				eventtime += interval;
+				eventtime += getWaitTime(eventtime);
 				if (timeout > 0 && eventtime >= starttime + timeout)
 					notifySeq(TIMEOUT);
 				else
@@ -104,4 +168,22 @@ extends SequencerNode
 		}
 	}
 
+	// SETTINGS
+
+	static boolean PREDICT;
+	static double SAFETY;
+	static long MAX_WAIT;
+	static int MIN_WAIT_DIV;
+
+	static SettingsGroup settings = new SettingsGroup(ConditionWaitNode.class, "Sequencer")
+	{
+		public void updateSettings()
+		{
+			PREDICT = getBoolean("PredictConditions", true);
+			SAFETY = getDouble("PredictSafety", 0.5);
+			MAX_WAIT = (long)(getDouble("MaxPredictWait", 60)*Constants.TICKS_PER_SEC);
+			MIN_WAIT_DIV = getInt("MinWaitDivisor", 16);
+		}
+	};
+
 }
@@ -29,6 +29,11 @@ implements Condition
 		this.c1 = c1;
 	}
 
+	public Condition getFirst()
+	{
+		return c1;
+	}
+
 	public int evaluate(Sequencer seq)
 	{
 		int x1 = c1.evaluate(seq);
@@ -0,0 +1,34 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.seq;
+
+/**
+  * A condition that can guess when it might become true,
+  * so ConditionWaitNode doesn't have to poll it so often.
+  */
+public interface PredictableCondition
+extends Condition
+{
+	/**
+	  * Called after evaluate().  Returns the # of ticks before this
+	  * condition could become true at current rates, 0 if it
+	  * was true, or -1 if it can't tell.
+	  */
+	public long predictCrossing(Sequencer seq);
+}
@@ -18,18 +18,29 @@
 *********************************************************************/
 package com.fasterlight.exo.seq;
 
+import com.fasterlight.exo.game.PropertyPath;
 import com.fasterlight.spif.*;
 
 public class PropertyCondition
-implements Condition
+implements PredictableCondition
 {
 	private Object obj;
 	private String prop1, prop2;
+	private PropertyPath path1, path2;
 	private int op;
 
+	// last two evaluations, for predicting when we'll cross
+	private Sequencer lastseq;
+	private long lastt, prevt;
+	private double lastx, prevx;
+	private boolean hasprev;
+	private int lastresult;
+	private long crossing = -1;
+
 	public PropertyCondition(String prop1, Object obj, int op)
 	{
 		this.prop1 = prop1;
+		this.path1 = PropertyPath.compile(prop1);
 		this.obj = obj;
 		this.op = op;
 	}
@@ -38,18 +49,44 @@ implements Condition
 	{
 		this.prop1 = prop1;
 		this.prop2 = prop2;
+		this.path1 = PropertyPath.compile(prop1);
+		this.path2 = PropertyPath.compile(prop2);
 		this.op = op;
 	}
 
-	private Object getArg1(Sequencer seq)
+	public String getProperty()
 	{
-		return PropertyEvaluator.get(seq, prop1);
+		return prop1;
 	}
 
-	private Object getArg2(Sequencer seq)
+	/**
+	  * Returns the property on the right side, or null if
+	  * it's compared to a value.
+	  */
+	public String getValueProperty()
 	{
-		if (prop2 != null)
-			return PropertyEvaluator.get(seq, prop2);
+		return prop2;
+	}
+
+	public Object getValue()
+	{
+		return obj;
+	}
+
+	public int getOp()
+	{
+		return op;
+	}
+
+	private Object getArg1(Sequencer seq, long t)
+	{
+		return path1.get(seq, t);
+	}
+
+	private Object getArg2(Sequencer seq, long t)
+	{
+		if (path2 != null)
+			return path2.get(seq, t);
 		else
 			return obj;
 	}
@@ -64,24 +101,33 @@ implements Condition
 
 	public int evaluate(Sequencer seq)
 	{
+		long t = seq.getGame().time();
 		Object o1,o2;
+		int c;
 		try {
-			o1 = getArg1(seq);
-			o2 = getArg2(seq);
+			// compare against a number without boxing, if we can
+			if (obj instanceof Number && path1.hasDoubleAccessor(seq, t))
+			{
+				double x = path1.getDouble(seq, t, 0) - ((Number)obj).doubleValue();
+				c = (x == 0) ? 0 : (x<0) ? -1 : 1;
+				return observe(seq, t, x, compare(c));
+			}
+			o1 = getArg1(seq, t);
+			o2 = getArg2(seq, t);
 		} catch (PropertyException pre) {
-			return -1;
+			return observe(seq, t, Double.NaN, -1);
 		}
 
 		if (o1 == null)
-			return (o2 == null)?1:0;
+			return observe(seq, t, Double.NaN, (o2 == null)?1:0);
 		if (o2 == null)
-			return 0;
+			return observe(seq, t, Double.NaN, 0);
 
-		int c;
 		if (o1 instanceof Number && o2 instanceof Number)
 		{
 			double x = ((Number)o1).doubleValue() - ((Number)o2).doubleValue();
 			c = (x == 0) ? 0 : (x<0) ? -1 : 1;
+			return observe(seq, t, x, compare(c));
 		}
 		else if (o1 instanceof Comparable)
 		{
@@ -90,7 +136,85 @@ implements Condition
 		else {
 			c = o1.equals(o2) ? 0 : 1;
 		}
+		return observe(seq, t, Double.NaN, compare(c));
+	}
+
+	/**
+	  * Remembers the difference 'x' between the two sides, and
+	  * guesses when it'll cross zero from the last three evaluations.
+	  * The straight line through the last two is too far off when
+	  * it's speeding up, so if the second difference says it'll
+	  * get there sooner, we take that.  Only for <, <=, > and >=,
+	  * and only if it's headed the right way.
+	  */
+	private int observe(Sequencer seq, long t, double x, int result)
+	{
+		crossing = -1;
+		boolean chained = (seq == lastseq && t > lastt);
+		if (result == 0 && chained && hasprev && op != OP_EQ && op != OP_NE)
+		{
+			double rate = (x - lastx)/(t - lastt);
+			boolean up = (op == OP_GT || op == OP_GE);
+			if (up ? rate > 0 : rate < 0)
+			{
+				double dt = -x/rate;
+				// 'rate' is the rate halfway between the last two
+				double prevrate = (lastx - prevx)/(lastt - prevt);
+				double accel = (rate - prevrate)*2/(t - prevt);
+				double qdt = firstRoot(accel/2, rate + accel*(t - lastt)/2, x);
+				if (qdt >= 0 && qdt < dt)
+					dt = qdt;
+				// one tick past, so > and < are true there
+				if (dt >= 0 && dt < Long.MAX_VALUE/2)
+					crossing = (long)dt + 1;
+			}
+		}
+		prevt = lastt;
+		prevx = lastx;
+		hasprev = chained;
+		lastseq = seq;
+		lastt = t;
+		lastx = x;
+		lastresult = result;
+		return result;
+	}
+
+	// smallest positive t where a*t^2 + b*t + c = 0, or -1
+	private static double firstRoot(double a, double b, double c)
+	{
+		if (a == 0)
+			return (b != 0) ? pos(-c/b) : -1;
+		double d = b*b - 4*a*c;
+		if (!(d >= 0))
+			return -1;
+		double q = -(b + (b < 0 ? -Math.sqrt(d) : Math.sqrt(d)))/2;
+		if (q == 0)
+			return -1;
+		double t1 = pos(q/a);
+		double t2 = pos(c/q);
+		if (t1 < 0)
+			return t2;
+		if (t2 < 0)
+			return t1;
+		return Math.min(t1, t2);
+	}
 
+	private static double pos(double t)
+	{
+		return (t > 0) ? t : -1;
+	}
+
+	public long predictCrossing(Sequencer seq)
+	{
+		if (seq != lastseq || lastresult < 0)
+			return -1;
+		if (lastresult > 0)
+			return 0;
+		return crossing;
+	}
+
+	private int compare(int c)
+	{
 		boolean b;
 		switch (op) {
 			case OP_EQ : b = (c==0); break;
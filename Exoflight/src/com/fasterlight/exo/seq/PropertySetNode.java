@@ -18,6 +18,7 @@
 *********************************************************************/
 package com.fasterlight.exo.seq;
 
+import com.fasterlight.exo.game.PropertyPath;
 import com.fasterlight.spif.*;
 import com.fasterlight.util.UserException;
 
@@ -28,6 +29,7 @@ extends SequencerNode
 	Object value;
 	boolean valueprop = false;
 	boolean optional = false;
+	PropertyPath valuepath;
 
 	public PropertySetNode(String key, String value, String desc, boolean valueprop)
 	{
@@ -41,13 +43,15 @@ extends SequencerNode
 		this.desc = desc;
 		this.valueprop = valueprop;
 		this.optional = opt;
+		if (valueprop)
+			this.valuepath = PropertyPath.compile((String)value);
 	}
 
 	protected void startNode()
 	{
 		try {
 			if (valueprop) {
-				Object v = PropertyEvaluator.get(seq, (String)value);
+				Object v = valuepath.get(seq);
 				if (v == null)
 				{
 					notifySeq(optional ? SUCCESS : FAIL);
@@ -57,6 +61,8 @@ extends SequencerNode
 			} else {
 				PropertyEvaluator.set(seq, key, value);
 			}
+			// might have swapped out something in the middle of a path
+			PropertyPath.invalidateAll();
 			notifySeq(SUCCESS);
 		} catch (UserException ue) {
 			System.out.println(ue);
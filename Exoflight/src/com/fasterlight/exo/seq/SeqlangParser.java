@@ -15,6 +15,7 @@ implements Constants, SeqlangParserConstants {
         private Map branchnodes = new HashMap();
         private boolean goteof;
         private List imports = new ArrayList();
+        private List includes = new ArrayList();
 
         public void addImport(String s)
         {
@@ -72,6 +73,14 @@ implements Constants, SeqlangParserConstants {
                 return goteof;
         }
 
+        /**
+          * Returns the paths of the files included with <"path">.
+          */
+        public List getIncludes()
+        {
+                return includes;
+        }
+
         public void setSequencer(Sequencer seq)
         {
                 this.seq = seq;
@@ -772,6 +781,7 @@ implements Constants, SeqlangParserConstants {
                         String path = t.image;
                         try {
                                 path = path.substring(1,path.length()-1);
+                                includes.add(path);
                                 {if (true) return com.fasterlight.io.IOUtil.readString(path);}
                         } catch (java.io.IOException ioe) {
                                 {if (true) throw new ParseException("Could not include file \"" + path + "\"");}
@@ -0,0 +1,234 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.seq;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+
+import com.fasterlight.game.SettingsGroup;
+import com.fasterlight.io.IOUtil;
+
+/**
+  * Keeps compiled sequences in memory and on disk, keyed by
+  * the MD5 of their source, so each .seq file only gets parsed
+  * once (until it changes).
+  * Sequences that can't be compiled are remembered too, so we
+  * don't keep trying.
+  * @see CompiledSequence
+  */
+public class SequenceCache
+{
+	private static Map compiled = new HashMap();
+	private static Set uncompilable = new HashSet();
+
+	private static int hits, misses;
+
+	//
+
+	/**
+	  * Returns the compiled sequence for source 'src', from memory or
+	  * disk, or null if it hasn't been compiled (or is out of date).
+	  */
+	public static synchronized CompiledSequence get(byte[] src)
+	{
+		if (!ENABLED)
+			return null;
+		String hash = hash(src);
+		CompiledSequence cs = (CompiledSequence)compiled.get(hash);
+		if (cs == null && !uncompilable.contains(hash))
+		{
+			cs = readFromDisk(hash);
+			if (cs != null)
+				compiled.put(hash, cs);
+		}
+		if (cs != null && !cs.isCurrent())
+		{
+			compiled.remove(hash);
+			cs = null;
+		}
+		if (cs != null)
+			hits++;
+		else
+			misses++;
+		return cs;
+	}
+
+	/**
+	  * Compiles 'seq', which was just parsed from 'path'
+	  * (with contents 'src' and included files 'includes'),
+	  * and adds it to the cache.
+	  */
+	public static synchronized void put(String path, byte[] src, Sequencer seq, List includes)
+	{
+		if (!ENABLED)
+			return;
+		CompiledSequence cs;
+		try {
+			cs = CompiledSequence.encode(path, src, seq, includes);
+		} catch (NotSerializableException nse) {
+			System.out.println("Can't compile program \"" + path + "\": " + nse.getMessage());
+			uncompilable.add(hash(src));
+			return;
+		} catch (IOException ioe) {
+			ioe.printStackTrace(System.out);
+			return;
+		}
+		compiled.put(cs.getHash(), cs);
+		writeToDisk(cs);
+	}
+
+	/**
+	  * Forgets everything in memory (but not on disk).
+	  */
+	public static synchronized void clear()
+	{
+		compiled.clear();
+		uncompilable.clear();
+		hits = misses = 0;
+	}
+
+	public static synchronized int getHits()
+	{
+		return hits;
+	}
+
+	public static synchronized int getMisses()
+	{
+		return misses;
+	}
+
+	public static void setEnabled(boolean b)
+	{
+		ENABLED = b;
+	}
+
+	public static boolean isEnabled()
+	{
+		return ENABLED;
+	}
+
+	/**
+	  * Sets the directory compiled sequences are kept in
+	  * (null or "" to not keep them on disk).
+	  */
+	public static void setCacheDir(String dir)
+	{
+		CACHE_DIR = dir;
+	}
+
+	// DISK
+
+	static File getFile(String hash)
+	{
+		if (CACHE_DIR == null || CACHE_DIR.length() == 0)
+			return null;
+		return new File(CACHE_DIR, hash + ".seqc");
+	}
+
+	static CompiledSequence readFromDisk(String hash)
+	{
+		File file = getFile(hash);
+		if (file == null || !file.exists())
+			return null;
+		try {
+			InputStream in = new FileInputStream(file);
+			try {
+				CompiledSequence cs = CompiledSequence.read(in);
+				// make sure it's not some other file
+				return (cs != null && hash.equals(cs.getHash())) ? cs : null;
+			} finally {
+				in.close();
+			}
+		} catch (IOException ioe) {
+			System.out.println("Could not read " + file + ": " + ioe);
+			return null;
+		}
+	}
+
+	static void writeToDisk(CompiledSequence cs)
+	{
+		File file = getFile(cs.getHash());
+		if (file == null)
+			return;
+		try {
+			file.getParentFile().mkdirs();
+			// write to a temp file first, in case someone's reading it
+			File tmp = new File(file.getPath() + ".tmp");
+			OutputStream out = new FileOutputStream(tmp);
+			try {
+				cs.write(out);
+			} finally {
+				out.close();
+			}
+			file.delete();
+			tmp.renameTo(file);
+		} catch (IOException ioe) {
+			System.out.println("Could not write " + file + ": " + ioe);
+		}
+	}
+
+	// HASHING
+
+	static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	public static String hash(byte[] data)
+	{
+		try {
+			byte[] md5 = MessageDigest.getInstance("MD5").digest(data);
+			char[] arr = new char[md5.length*2];
+			for (int i=0; i<md5.length; i++)
+			{
+				arr[i*2] = HEX[(md5[i] >> 4) & 0xf];
+				arr[i*2+1] = HEX[md5[i] & 0xf];
+			}
+			return new String(arr);
+		} catch (NoSuchAlgorithmException nsae) {
+			throw new RuntimeException(nsae.toString());
+		}
+	}
+
+	static String hashResource(String path)
+	throws IOException
+	{
+		InputStream in = IOUtil.getBinaryResource(path);
+		try {
+			return hash(IOUtil.readBytes(in));
+		} finally {
+			in.close();
+		}
+	}
+
+	// SETTINGS
+
+	static boolean ENABLED;
+	static String CACHE_DIR;
+
+	static SettingsGroup settings = new SettingsGroup(SequenceCache.class, "Sequencer")
+	{
+		public void updateSettings()
+		{
+			ENABLED = getBoolean("CompileCache", true);
+			// keep it out of the install (and the source tree)
+			CACHE_DIR = getString("CompileCacheDir",
+				new File(System.getProperty("user.home"), ".exoflight/cache/seq").getPath());
+		}
+	};
+
+}
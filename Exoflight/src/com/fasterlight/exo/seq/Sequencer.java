@@ -21,6 +21,7 @@ package com.fasterlight.exo.seq;
 import java.util.*;
 
 import com.fasterlight.exo.game.NotifyingEvent;
+import com.fasterlight.exo.game.PropertyPath;
 import com.fasterlight.exo.orbit.*;
 import com.fasterlight.exo.ship.SpaceShip;
 import com.fasterlight.game.Game;
@@ -360,6 +361,7 @@ public class Sequencer implements PropertyAware
 		if (top != this.top)
 		{
 			this.top = top;
+			PropertyPath.invalidateAll();
 		}
 	}
 	public PropertyAware getTop()
@@ -500,6 +502,22 @@ public class Sequencer implements PropertyAware
 
 	boolean debug = false;
 
+	private long condevals;
+
+	void countEvaluation()
+	{
+		condevals++;
+	}
+
+	/**
+	  * Returns the # of times conditions have been evaluated
+	  * by this sequencer's wait nodes.
+	  */
+	public long getConditionEvaluations()
+	{
+		return condevals;
+	}
+
 	public void setDebug(boolean b)
 	{
 		this.debug = b;
@@ -532,6 +550,7 @@ public class Sequencer implements PropertyAware
 		prophelp.registerSet("next", "goToNext", boolean.class);
 		prophelp.registerSet("prev", "goToPrev", boolean.class);
 		prophelp.registerGet("failed", "hasFailed");
+		prophelp.registerGet("condevals", "getConditionEvaluations");
 	}
 
 	public Object getProp(String key)
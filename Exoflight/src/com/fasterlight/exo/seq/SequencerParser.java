@@ -18,12 +18,15 @@
 *********************************************************************/
 package com.fasterlight.exo.seq;
 
-import java.io.InputStream;
+import java.io.*;
 
 import com.fasterlight.game.Game;
+import com.fasterlight.io.IOUtil;
 
 /**
   * Helper functions for loading sequences.
+  * Sequences are parsed once, and after that made from
+  * the compiled copy in the SequenceCache.
   */
 public class SequencerParser
 {
@@ -31,13 +34,18 @@ public class SequencerParser
 	throws RuntimeException
 	{
 		try {
-			InputStream in = com.fasterlight.io.IOUtil.getBinaryResource(path);
-			SeqlangParser parser = new SeqlangParser(in);
+			InputStream in = IOUtil.getBinaryResource(path);
+			byte[] src = IOUtil.readBytes(in);
+			in.close();
+			CompiledSequence cs = SequenceCache.get(src);
+			if (cs != null)
+				return cs.instantiate(game);
+			SeqlangParser parser = new SeqlangParser(new ByteArrayInputStream(src));
 			Sequencer seq = new Sequencer(game);
 			parser.setSequencer(seq);
 			parser.parse();
-			in.close();
 			System.out.println("Parsed program \"" + path + '"');
+			SequenceCache.put(path, src, seq, parser.getIncludes());
 			return seq;
 		} catch (Exception exc) {
 			exc.printStackTrace(System.out);
@@ -56,6 +56,17 @@ extends SequencerNode
 			return time;
 	}
 
+	public int getMode()
+	{
+		return mode;
+	}
+
+	// true if the time comes from a property
+	boolean hasTimeProperty()
+	{
+		return time_prop != null;
+	}
+
 	protected void startNode()
 	{
 		long tt = getTicks();
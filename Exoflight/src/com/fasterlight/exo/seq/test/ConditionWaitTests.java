@@ -0,0 +1,220 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.seq.test;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.CowellTrajectory;
+import com.fasterlight.exo.seq.*;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.testing.*;
+import com.fasterlight.util.Vec3d;
+
+public class ConditionWaitTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	static final long TPS = Constants.TICKS_PER_SEC;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+	}
+
+	public ConditionWaitTests(String name)
+	{
+		super(name);
+	}
+
+	// counts evaluations, and remembers when the last one was
+	static class CountingCondition
+	implements PredictableCondition
+	{
+		Condition cond;
+		int count;
+		long lastt;
+		CountingCondition(Condition cond)
+		{
+			this.cond = cond;
+		}
+		public int evaluate(Sequencer seq)
+		{
+			count++;
+			lastt = seq.getGame().time();
+			return cond.evaluate(seq);
+		}
+		public long predictCrossing(Sequencer seq)
+		{
+			return (cond instanceof PredictableCondition) ?
+				((PredictableCondition)cond).predictCrossing(seq) : -1;
+		}
+	}
+
+	// runs a sequencer with just a wait node until it's done
+	ConditionWaitNode runWait(Sequencer seq, Condition cond, long interval, long timeout, long maxsecs)
+	{
+		ConditionWaitNode node = new ConditionWaitNode(cond, interval, timeout);
+		seq.addNode(node);
+		seq.setZeroTime(game.time());
+		seq.start();
+		for (int i=0; i<maxsecs && node.getStatus() == SequencerNode.WAIT; i++)
+			game.update(TPS);
+		seq.stop();
+		return node;
+	}
+
+	SpaceShip makeShip(double alt, double vfactor)
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		Structure struct = new Structure(game);
+		struct.addModule(new Module(game, "Comm Satellite"));
+		SpaceShip ship = new SpaceShip(struct);
+		ship.setName("Wait test");
+		double r = earth.getRadius() + alt;
+		double v = Math.sqrt(earth.getMass()*Constants.GRAV_CONST_KM/r)*vfactor;
+		ship.setTrajectory(new CowellTrajectory(earth,
+			new Vec3d(r,0,0), new Vec3d(0,v,0), game.time(), new Orientation()));
+		return ship;
+	}
+
+	//
+
+	public void testMissionTime()
+	{
+		Sequencer seq = new Sequencer(game);
+		CountingCondition cc = new CountingCondition(
+			new PropertyCondition("missiontime_secs", new Double(1000), Condition.OP_GT));
+		ConditionWaitNode node = runWait(seq, cc, TPS, 0, 2000);
+		assertEquals(SequencerNode.SUCCESS, node.getStatus());
+		// mission time is linear, so we should land right on it
+		double t = (cc.lastt - seq.getZeroTime())*(1d/TPS);
+		assertTrue("t=" + t, t > 1000 && t < 1000.1);
+		assertTrue("evals=" + cc.count, cc.count < 50);
+		assertEquals(cc.count, seq.getConditionEvaluations());
+	}
+
+	public void testOpaqueConditionPolls()
+	{
+		Sequencer seq = new Sequencer(game);
+		// "not not" hides the property condition
+		CountingCondition cc = new CountingCondition(new NotCondition(new NotCondition(
+			new PropertyCondition("missiontime_secs", new Double(100), Condition.OP_GT))));
+		ConditionWaitNode node = runWait(seq, cc, TPS, 0, 200);
+		assertEquals(SequencerNode.SUCCESS, node.getStatus());
+		assertTrue("evals=" + cc.count, cc.count >= 100);
+	}
+
+	public void testAltitudeCrossing()
+	{
+		SpaceShip ship1 = makeShip(300, 1.05);
+		SpaceShip ship2 = makeShip(300, 1.05);
+		long t0 = game.time();
+		Sequencer seq1 = new Sequencer(game);
+		seq1.setShip(ship1);
+		Sequencer seq2 = new Sequencer(game);
+		seq2.setShip(ship2);
+		CountingCondition polled = new CountingCondition(new NotCondition(
+			new PropertyCondition("ship.telemetry.alt", new Double(1000), Condition.OP_LE)));
+		CountingCondition predicted = new CountingCondition(
+			new PropertyCondition("ship.telemetry.alt", new Double(1000), Condition.OP_GT));
+		ConditionWaitNode node1 = new ConditionWaitNode(polled, TPS);
+		ConditionWaitNode node2 = new ConditionWaitNode(predicted, TPS);
+		seq1.addNode(node1);
+		seq2.addNode(node2);
+		seq1.start();
+		seq2.start();
+		for (int i=0; i<3600 && (node1.getStatus() == SequencerNode.WAIT ||
+			node2.getStatus() == SequencerNode.WAIT); i++)
+			game.update(TPS);
+		assertEquals(SequencerNode.SUCCESS, node1.getStatus());
+		assertEquals(SequencerNode.SUCCESS, node2.getStatus());
+		// caught it about when polling did, with fewer evaluations
+		assertTrue(predicted.lastt > t0);
+		assertTrue(predicted.lastt <= polled.lastt + TPS/16);
+		assertTrue("evals=" + predicted.count + " vs " + polled.count, predicted.count*4 < polled.count);
+		ship1.setTrajectory(null);
+		ship2.setTrajectory(null);
+	}
+
+	public void testAcceleratingCrossing()
+	{
+		// hardly moving, so it falls faster and faster --
+		// a straight line would say it's 20 min away, not 40 sec
+		SpaceShip ship1 = makeShip(1000, 0.1);
+		SpaceShip ship2 = makeShip(1000, 0.1);
+		long t0 = game.time();
+		Sequencer seq1 = new Sequencer(game);
+		seq1.setShip(ship1);
+		Sequencer seq2 = new Sequencer(game);
+		seq2.setShip(ship2);
+		CountingCondition polled = new CountingCondition(new NotCondition(
+			new PropertyCondition("ship.telemetry.alt", new Double(995), Condition.OP_GE)));
+		CountingCondition predicted = new CountingCondition(
+			new PropertyCondition("ship.telemetry.alt", new Double(995), Condition.OP_LT));
+		ConditionWaitNode node1 = new ConditionWaitNode(polled, TPS);
+		ConditionWaitNode node2 = new ConditionWaitNode(predicted, TPS);
+		seq1.addNode(node1);
+		seq2.addNode(node2);
+		seq1.start();
+		seq2.start();
+		for (int i=0; i<600 && (node1.getStatus() == SequencerNode.WAIT ||
+			node2.getStatus() == SequencerNode.WAIT); i++)
+			game.update(TPS);
+		assertEquals(SequencerNode.SUCCESS, node1.getStatus());
+		assertEquals(SequencerNode.SUCCESS, node2.getStatus());
+		// not late, and still fewer evaluations
+		assertTrue(polled.lastt - t0 > TPS*20);
+		assertTrue(predicted.lastt <= polled.lastt + TPS/16);
+		assertTrue("evals=" + predicted.count + " vs " + polled.count, predicted.count*2 < polled.count);
+		ship1.setTrajectory(null);
+		ship2.setTrajectory(null);
+	}
+
+	public void testTimeout()
+	{
+		Sequencer seq = new Sequencer(game);
+		CountingCondition cc = new CountingCondition(
+			new PropertyCondition("missiontime_secs", new Double(1e6), Condition.OP_GT));
+		ConditionWaitNode node = runWait(seq, cc, TPS, TPS*300, 400);
+		assertEquals(SequencerNode.TIMEOUT, node.getStatus());
+		// last evaluation was just before timing out, like when polling
+		double t = (cc.lastt - seq.getZeroTime())*(1d/TPS);
+		assertTrue("t=" + t, t >= 298 && t < 300);
+		assertTrue("evals=" + cc.count, cc.count < 100);
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(ConditionWaitTests.class);
+		return suite;
+	}
+
+}
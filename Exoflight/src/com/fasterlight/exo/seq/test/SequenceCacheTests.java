@@ -0,0 +1,175 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.seq.test;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.seq.*;
+import com.fasterlight.io.IOUtil;
+import com.fasterlight.testing.*;
+
+public class SequenceCacheTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	static final String[] DIRS = {
+		"init", "programs", "programs/guidance",
+		"missions/Apollo Missions", "missions/Gemini Missions",
+		"missions/Shuttle Missions", "missions/Test Missions"
+	};
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+		}
+	}
+
+	public SequenceCacheTests(String name)
+	{
+		super(name);
+	}
+
+	List getSequencePaths()
+	throws IOException
+	{
+		List paths = new ArrayList();
+		for (int i=0; i<DIRS.length; i++)
+			paths.addAll(IOUtil.getFilesInClassPath(DIRS[i], ".seq"));
+		assertTrue(paths.size() > 0);
+		return paths;
+	}
+
+	byte[] readSource(String path)
+	throws IOException
+	{
+		InputStream in = IOUtil.getBinaryResource(path);
+		byte[] src = IOUtil.readBytes(in);
+		in.close();
+		return src;
+	}
+
+	void assertSameNodes(String path, Sequencer seq1, Sequencer seq2)
+	{
+		assertEquals(path, seq1.getName(), seq2.getName());
+		List nodes1 = seq1.getNodes();
+		List nodes2 = seq2.getNodes();
+		assertEquals(path, nodes1.size(), nodes2.size());
+		for (int i=0; i<nodes1.size(); i++)
+		{
+			Object n1 = nodes1.get(i);
+			Object n2 = nodes2.get(i);
+			assertEquals(path + " #" + i, n1.getClass(), n2.getClass());
+			assertEquals(path + " #" + i, n1.toString(), n2.toString());
+		}
+	}
+
+	//
+
+	public void testRoundTrip()
+	throws Exception
+	{
+		List paths = getSequencePaths();
+		for (int i=0; i<paths.size(); i++)
+		{
+			String path = (String)paths.get(i);
+			byte[] src = readSource(path);
+			SeqlangParser parser = new SeqlangParser(new ByteArrayInputStream(src));
+			Sequencer seq = new Sequencer(game);
+			parser.setSequencer(seq);
+			parser.parse();
+
+			CompiledSequence cs = CompiledSequence.encode(path, src, seq, parser.getIncludes());
+			assertSameNodes(path, seq, cs.instantiate(game));
+
+			// and through a file
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			cs.write(bout);
+			CompiledSequence cs2 = CompiledSequence.read(new ByteArrayInputStream(bout.toByteArray()));
+			assertEquals(cs.getHash(), cs2.getHash());
+			assertSameNodes(path, seq, cs2.instantiate(game));
+		}
+	}
+
+	public void testFreshNodes()
+	throws Exception
+	{
+		String path = "programs/csm_init.seq";
+		byte[] src = readSource(path);
+		SeqlangParser parser = new SeqlangParser(new ByteArrayInputStream(src));
+		Sequencer seq = new Sequencer(game);
+		parser.setSequencer(seq);
+		parser.parse();
+		CompiledSequence cs = CompiledSequence.encode(path, src, seq, parser.getIncludes());
+		Sequencer seq1 = cs.instantiate(game);
+		Sequencer seq2 = cs.instantiate(game);
+		// each sequencer gets its own nodes
+		assertTrue(seq1.getNode(0) != seq2.getNode(0));
+	}
+
+	public void testCache()
+	throws IOException
+	{
+		File dir = File.createTempFile("seqcache", "");
+		dir.delete();
+		SequenceCache.setCacheDir(dir.getPath());
+		try {
+			SequenceCache.clear();
+			String path = "missions/Apollo Missions/Apollo 11 Launch.seq";
+			Sequencer seq1 = SequencerParser.loadSequence(game, path);
+			assertEquals(0, SequenceCache.getHits());
+			Sequencer seq2 = SequencerParser.loadSequence(game, path);
+			assertEquals(1, SequenceCache.getHits());
+			assertSameNodes(path, seq1, seq2);
+
+			// now from disk
+			SequenceCache.clear();
+			assertEquals(1, dir.list().length);
+			Sequencer seq3 = SequencerParser.loadSequence(game, path);
+			assertEquals(1, SequenceCache.getHits());
+			assertSameNodes(path, seq1, seq3);
+
+			String[] files = dir.list();
+			for (int i=0; i<files.length; i++)
+				new File(dir, files[i]).delete();
+			dir.delete();
+		} finally {
+			SequenceCache.setCacheDir(null);
+			SequenceCache.clear();
+		}
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(SequenceCacheTests.class);
+		return suite;
+	}
+
+}
@@ -0,0 +1,275 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship;
+
+import java.util.*;
+
+import com.fasterlight.vecmath.Vector3f;
+
+/**
+  * Caches the aerodynamic forces of a Structure over a grid
+  * of Mach # and flow direction (in structure coordinates),
+  * and interpolates between grid points.
+  * Grid points are computed with Structure.computeDragCoeff()
+  * the first time they are needed.
+  * The table is thrown away when modules are added or removed,
+  * or when a chute opens or a flap moves.  While something is
+  * changing (a chute opening, a flap in transit) we don't cache.
+  * Structures with control surfaces aren't cached, since their
+  * torque depends on the controls.
+  */
+public class AeroTable
+{
+	private Structure struct;
+	private boolean cacheable;
+	private float[] config = new float[0]; // what the table was built for
+	private float[] newconfig = new float[0];
+	private float[][][] slices; // [mach][theta*NPHI+phi] -> node values
+
+	private int lookups, evals, resets;
+
+	static final int NTHETA = 37; // 5 degree steps, 0..180
+	static final int NPHI = 73; // 5 degree steps, -180..180
+	static final double DTHETA = Math.PI/(NTHETA-1);
+	static final double DPHI = Math.PI*2/(NPHI-1);
+
+	static final float[] MACH_NODES;
+
+	// values stored at each node
+	static final int BC = 0;
+	static final int AREA = 1;
+	static final int FX = 2;
+	static final int TX = 5;
+	static final int NVALUES = 8;
+
+	static {
+		// finer around the transonic bump
+		List list = new ArrayList();
+		for (int i=0; i<=32; i++)
+			list.add(new Float(i*0.05f));
+		for (int i=1; i<=17; i++)
+			list.add(new Float(1.6f + i*0.2f));
+		for (int i=6; i<=30; i++)
+			list.add(new Float(i));
+		MACH_NODES = new float[list.size()];
+		for (int i=0; i<MACH_NODES.length; i++)
+			MACH_NODES[i] = ((Float)list.get(i)).floatValue();
+	}
+
+	//
+
+	public AeroTable(Structure struct)
+	{
+		this.struct = struct;
+		invalidate();
+	}
+
+	/**
+	  * Throw away the table, and see if we can cache at all.
+	  * Call when the modules change.
+	  */
+	public void invalidate()
+	{
+		slices = new float[MACH_NODES.length][][];
+		config = new float[0];
+		cacheable = true;
+		Iterator it = struct.getAllCaps();
+		while (it.hasNext())
+		{
+			if (it.next() instanceof ControlSurfacesCapability)
+				cacheable = false;
+		}
+		resets++;
+	}
+
+	public boolean isCacheable()
+	{
+		return cacheable;
+	}
+
+	public int getLookupCount()
+	{
+		return lookups;
+	}
+
+	public int getEvaluationCount()
+	{
+		return evals;
+	}
+
+	public int getResetCount()
+	{
+		return resets;
+	}
+
+	/**
+	  * Returns the interpolated forces, or null if they
+	  * can't come from the table right now.
+	  */
+	public AeroForces getForces(Vector3f vel, float mach, long time)
+	{
+		if (!cacheable || !checkConfig(time))
+			return null;
+		if (Float.isNaN(vel.x+vel.y+vel.z+mach))
+			return null;
+
+		// find the cell
+		double z = Math.max(-1, Math.min(1, vel.z));
+		double ft = Math.acos(z)/DTHETA;
+		int it = Math.min((int)ft, NTHETA-2);
+		ft -= it;
+		double fp = (Math.atan2(vel.y, vel.x)+Math.PI)/DPHI;
+		int ip = Math.max(0, Math.min((int)fp, NPHI-2));
+		fp -= ip;
+		int im = Arrays.binarySearch(MACH_NODES, mach);
+		if (im < 0)
+			im = -im-2;
+		im = Math.max(0, Math.min(im, MACH_NODES.length-2));
+		double fm = (mach-MACH_NODES[im])/(MACH_NODES[im+1]-MACH_NODES[im]);
+		fm = Math.max(0, Math.min(1, fm));
+
+		// blend the 8 corners
+		double[] sum = new double[NVALUES];
+		for (int c=0; c<8; c++)
+		{
+			int dm = c&1;
+			int dt = (c>>1)&1;
+			int dp = (c>>2)&1;
+			double w = (dm!=0 ? fm : 1-fm) * (dt!=0 ? ft : 1-ft) * (dp!=0 ? fp : 1-fp);
+			if (w == 0)
+				continue;
+			float[] node = getNode(im+dm, it+dt, ip+dp, time);
+			for (int i=0; i<NVALUES; i++)
+				sum[i] += w*node[i];
+		}
+		lookups++;
+
+		AeroForces res = new AeroForces();
+		res.BC = (float)sum[BC];
+		res.area = (float)sum[AREA];
+		res.pf.f.set(sum[FX], sum[FX+1], sum[FX+2]);
+		res.pf.T.set(sum[TX], sum[TX+1], sum[TX+2]);
+		return res;
+	}
+
+	private float[] getNode(int im, int it, int ip, long time)
+	{
+		float[][] slice = slices[im];
+		if (slice == null)
+		{
+			slice = new float[NTHETA*NPHI][];
+			slices[im] = slice;
+		}
+		int idx = it*NPHI + ip;
+		float[] node = slice[idx];
+		if (node == null)
+		{
+			double theta = it*DTHETA;
+			double phi = ip*DPHI - Math.PI;
+			Vector3f dir = new Vector3f(
+				(float)(Math.sin(theta)*Math.cos(phi)),
+				(float)(Math.sin(theta)*Math.sin(phi)),
+				(float)Math.cos(theta));
+			AeroForces af = struct.computeDragCoeff(dir, MACH_NODES[im], time);
+			node = new float[NVALUES];
+			node[BC] = af.BC;
+			node[AREA] = af.area;
+			node[FX] = (float)af.pf.f.x;
+			node[FX+1] = (float)af.pf.f.y;
+			node[FX+2] = (float)af.pf.f.z;
+			node[TX] = (float)af.pf.T.x;
+			node[TX+1] = (float)af.pf.T.y;
+			node[TX+2] = (float)af.pf.T.z;
+			slice[idx] = node;
+			evals++;
+		}
+		return node;
+	}
+
+	/**
+	  * Makes sure the table matches the chutes and flaps at 'time'.
+	  * Returns false if we shouldn't use the table this time.
+	  */
+	private boolean checkConfig(long time)
+	{
+		int n = 0;
+		Iterator it = struct.getModules().iterator();
+		while (it.hasNext())
+		{
+			Module m = (Module)it.next();
+			float chute = 0;
+			if (m.isChuteOpening())
+			{
+				chute = m.getAreaMultiplier(time);
+				if (chute < 1)
+					return false; // still opening
+			}
+			n = addConfig(n, chute);
+			n = addSurfaceConfig(n, m.getForeSurface(), time);
+			n = addSurfaceConfig(n, m.getObliqueSurface(), time);
+			n = addSurfaceConfig(n, m.getAftSurface(), time);
+		}
+		if (n == config.length)
+		{
+			boolean same = true;
+			for (int i=0; i<n; i++)
+			{
+				if (config[i] != newconfig[i])
+				{
+					same = false;
+					break;
+				}
+			}
+			if (same)
+				return true;
+		}
+		// something changed, start over
+		// (we'll use the table next time, if it stays put)
+		float[] tmp = new float[n];
+		System.arraycopy(newconfig, 0, tmp, 0, n);
+		config = tmp;
+		slices = new float[MACH_NODES.length][][];
+		resets++;
+		return false;
+	}
+
+	private int addSurfaceConfig(int n, AeroSurface surf, long time)
+	{
+		while (surf != null)
+		{
+			if (surf.linked_cap != null)
+				n = addConfig(n, surf.linked_cap.getValue(time));
+			surf = surf.next;
+		}
+		return n;
+	}
+
+	private int addConfig(int n, float x)
+	{
+		if (n >= newconfig.length)
+		{
+			float[] tmp = new float[n*2+8];
+			System.arraycopy(newconfig, 0, tmp, 0, newconfig.length);
+			newconfig = tmp;
+		}
+		newconfig[n] = x;
+		return n+1;
+	}
+
+}
@@ -48,8 +48,8 @@ implements Constants, PropertyAware
 	private int rating;
 	private List failuremodes = new ArrayList();
 
-	private ResourceSet capacity = new ResourceSet();
-	private ResourceSet supply = new ResourceSet();
+	ResourceSet capacity = new ResourceSet();
+	ResourceSet supply = new ResourceSet();
 
 	private List sources = new ArrayList();
 	private int source_inhibit = 0;
@@ -222,7 +222,7 @@ implements Constants, PropertyAware
 
 	private void fixSupply()
 	{
-		supply.intersect(getCapacity());
+		supply.intersect(capacity);
 		supply.union(ResourceSet.EMPTY);
 	}
 
@@ -246,6 +246,7 @@ implements Constants, PropertyAware
 	public void removeAllSources()
 	{
 		sources.clear();
+		invalidateNetwork();
 	}
 
 	public void addSource(Capability src)
@@ -253,11 +254,13 @@ implements Constants, PropertyAware
 		if (sources.contains(src))
 			sources.remove(src);
 		sources.add(src);
+		invalidateNetwork();
 	}
 
 	public void removeSource(Capability src)
 	{
 		sources.remove(src);
+		invalidateNetwork();
 	}
 
 	public int getSourceInhibitFlags()
@@ -268,6 +271,14 @@ implements Constants, PropertyAware
 	public void setSourceInhibitFlags(int x)
 	{
 		this.source_inhibit = x;
+		invalidateNetwork();
+	}
+
+	private void invalidateNetwork()
+	{
+		Structure struct = module.getStructure();
+		if (struct != null)
+			struct.invalidateResourceNetwork();
 	}
 
 	public boolean dependsOnModule(Module m)
@@ -290,7 +301,7 @@ implements Constants, PropertyAware
 	{
 		if (debug)
 			System.out.println("consume(" + this + ":" + desired + ", " + flags + ")");
-		ResourceSet sup = new ResourceSet(getSupply());
+		ResourceSet sup = new ResourceSet(supply);
 		sup.sub(desired);
 		if (debug)
 			System.out.println("consume(" + this + ") : diff=" + sup);
@@ -316,7 +327,7 @@ implements Constants, PropertyAware
 		// sup = supply - desired
 		// want: intersect(desired, supply)
 		ResourceSet diff = new ResourceSet(desired);
-		diff.intersect(getSupply());
+		diff.intersect(supply);
 		if ((flags & CHECK_ONLY) == 0)
 		{
 			addSupply(diff, -1);
@@ -334,6 +345,13 @@ implements Constants, PropertyAware
 
 	public ResourceSet request(ResourceSet desired, int flags)
 	{
+		// let the structure's flow graph do it, if we can
+		if (ResourceNetwork.isEnabled() && !debug)
+		{
+			Structure struct = module.getStructure();
+			if (struct != null)
+				return struct.getResourceNetwork().request(this, desired, flags);
+		}
 		if (debug)
 			System.out.println("request(" + desired + ", " + flags + ")");
 		// if ALL_OR_NONE is specified, we must first do a complete check
@@ -354,9 +372,9 @@ implements Constants, PropertyAware
 		Iterator it = getSources().iterator();
 		while (it.hasNext())
 		{
+			Capability cap = (Capability)it.next();
 			if ( (source_inhibit & (1<<si)) == 0 )
 			{
-				Capability cap = (Capability)it.next();
 				rem.sub(cap.consume(rem, flags & CHECK_ONLY));
 				if (rem.mag() <= 0)
 				{
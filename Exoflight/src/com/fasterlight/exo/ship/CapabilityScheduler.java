@@ -0,0 +1,241 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship;
+
+import java.util.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.game.*;
+
+/**
+  * Runs PeriodicCapabilities in batches.
+  * Capabilities with the same interval fire on the same ticks
+  * (their start times are quantized to the interval), so they all
+  * share a single event that walks an array of members, instead
+  * of each putting its own event on the game queue.
+  * Members run in the order they were activated.
+  */
+public class CapabilityScheduler
+implements java.io.Serializable
+{
+	private Game game;
+	private Map groups = new HashMap(); // Integer(interval) -> Group
+
+	private int events, ticks;
+
+	private static boolean enabled = true;
+
+	//
+
+	/**
+	  * Returns the scheduler for a given game.
+	  */
+	public static CapabilityScheduler getScheduler(Game game)
+	{
+		return ((SpaceGame)game).getCapabilityScheduler();
+	}
+
+	/**
+	  * If false, each capability posts its own events like before.
+	  * Only affects capabilities activated afterwards.
+	  */
+	public static void setEnabled(boolean b)
+	{
+		enabled = b;
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	//
+
+	public CapabilityScheduler(Game game)
+	{
+		this.game = game;
+	}
+
+	/**
+	  * Starts calling cap.handlePeriod() at 'time', then
+	  * every cap.getInterval() ticks until it returns false.
+	  */
+	void add(PeriodicCapability cap, long time)
+	{
+		Integer key = new Integer(cap.getInterval());
+		Group group = (Group)groups.get(key);
+		if (group == null || group.getTime() != time)
+		{
+			// this only happens when a group has already fired
+			// this tick, we'll merge with it next time around
+			Group newgroup = new Group(cap.getInterval(), time);
+			if (group == null)
+				groups.put(key, newgroup);
+			game.postEvent(newgroup);
+			group = newgroup;
+		}
+		group.add(cap);
+		cap.group = group;
+	}
+
+	/**
+	  * Stops calling cap.handlePeriod()
+	  */
+	void remove(PeriodicCapability cap)
+	{
+		if (cap.group != null)
+		{
+			cap.group.remove(cap);
+			cap.group = null;
+		}
+	}
+
+	// called by the old-style events so we can compare.
+	// only called on the game thread
+	void countEvent()
+	{
+		events++;
+		ticks++;
+	}
+
+	/**
+	  * Returns the # of events dispatched so far
+	  */
+	public int getEventCount()
+	{
+		return events;
+	}
+
+	/**
+	  * Returns the # of times a capability has been run so far
+	  */
+	public int getTickCount()
+	{
+		return ticks;
+	}
+
+	public int getGroupCount()
+	{
+		return groups.size();
+	}
+
+	//
+
+	class Group extends GameEvent
+	{
+		int interval;
+		PeriodicCapability[] members = new PeriodicCapability[8];
+		int count;
+
+		Group(int interval, long time)
+		{
+			super(time);
+			this.interval = interval;
+		}
+		long getTime()
+		{
+			return eventtime;
+		}
+		void add(PeriodicCapability cap)
+		{
+			if (count == members.length)
+			{
+				PeriodicCapability[] arr = new PeriodicCapability[count*2];
+				System.arraycopy(members, 0, arr, 0, count);
+				members = arr;
+			}
+			members[count++] = cap;
+		}
+		void remove(PeriodicCapability cap)
+		{
+			// just clear the slot, handleEvent() packs the array
+			for (int i=0; i<count; i++)
+			{
+				if (members[i] == cap)
+				{
+					members[i] = null;
+					return;
+				}
+			}
+		}
+		void addAll(Group g)
+		{
+			for (int i=0; i<g.count; i++)
+			{
+				PeriodicCapability cap = g.members[i];
+				if (cap != null)
+				{
+					add(cap);
+					cap.group = this;
+				}
+			}
+		}
+		public void handleEvent(Game game)
+		{
+			events++;
+			// members may be added (or removed) while we go
+			int j = 0;
+			for (int i=0; i<count; i++)
+			{
+				PeriodicCapability cap = members[i];
+				if (cap == null)
+					continue;
+				ticks++;
+				boolean keep = cap.handlePeriod();
+				if (members[i] != cap)
+					continue; // removed while it ran
+				if (keep)
+					members[j++] = cap;
+				else
+					members[i] = null;
+			}
+			// pack the rest of the slots
+			for (int i=j; i<count; i++)
+				members[i] = null;
+			count = j;
+
+			Integer key = new Integer(interval);
+			Group current = (Group)groups.get(key);
+			long nexttime = eventtime + interval;
+			if (count == 0)
+			{
+				if (current == this)
+					groups.remove(key);
+			}
+			else if (current != null && current != this && current.getTime() == nexttime)
+			{
+				// catch up with the main group
+				current.addAll(this);
+				count = 0;
+			}
+			else
+			{
+				if (current == null)
+					groups.put(key, this);
+				eventtime = nexttime;
+				game.postEvent(this);
+			}
+		}
+		public String toString()
+		{
+			return "PeriodicCapabilities: " + count + " every " + interval + " ticks";
+		}
+	}
+
+}
@@ -25,6 +25,8 @@ package com.fasterlight.exo.ship;
 public class ImmutableResourceSet
 extends ResourceSet
 {
+	static final long serialVersionUID = 8861406738243025608L;
+
 	public ImmutableResourceSet(ResourceSet res)
 	{
 		super.set(res);
@@ -50,6 +52,11 @@ extends ResourceSet
 		throw new IllegalArgumentException();
 	}
 
+	void setAmountAt(int i, float amt)
+	{
+		throw new IllegalArgumentException();
+	}
+
 	public void add(ResourceSet a)
 	{
 		throw new IllegalArgumentException();
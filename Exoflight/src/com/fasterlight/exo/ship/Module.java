@@ -89,6 +89,7 @@ implements java.io.Serializable, PropertyAware
 	protected int rotflags = (UP  | ROLL_0);
 
 	protected transient boolean initialized = false;
+	transient int regionidx = -1; // index in ModuleRegions
 
 	protected Orientation ort = new Orientation();
 
@@ -497,7 +498,7 @@ implements java.io.Serializable, PropertyAware
    {
    	mass += dm;
    	if (structure != null)
-	   	structure.adjustMass(dm);
+	   	structure.adjustMass(this, dm);
    }
 
    void adjustEmptyMass(float dm)
@@ -739,6 +740,8 @@ implements java.io.Serializable, PropertyAware
 		}
 		a.links[dira] = b;
 		b.links[dirb] = a;
+		if (a.structure != null)
+			a.structure.moduleLinked(a, b);
 	}
 
 	public static void unlink(Module a, Module b)
@@ -755,6 +758,8 @@ implements java.io.Serializable, PropertyAware
 		}
    	a.links[dira] = null;
    	b.links[dirb] = null;
+		if (a.structure != null)
+			a.structure.moduleUnlinked(a, b);
    }
 
    /**
@@ -0,0 +1,207 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship;
+
+import java.util.*;
+
+/**
+  * Keeps track of which modules in a Structure are connected
+  * to each other (and so share their air), using union-find.
+  * Linking two modules just merges their regions;
+  * unlinking, or adding or removing modules, rebuilds the
+  * index the next time it's needed.
+  * Each region's volume and air are kept in arrays indexed
+  * by resource ordinal, so equalizing doesn't allocate.
+  */
+class ModuleRegions
+{
+	private Structure struct;
+	private Module[] mods = new Module[0];
+	private int[] parent = new int[0]; // union-find forest
+	private int[] region = new int[0]; // module index -> region index
+	private int nregions;
+	private float[] volume = new float[0]; // by region
+	private float[][] atmos = new float[0][]; // [region][resource ordinal]
+
+	private boolean dirty = true; // have to rebuild from scratch
+	private boolean relabel; // have to renumber regions
+	private int rebuilds;
+
+	//
+
+	ModuleRegions(Structure struct)
+	{
+		this.struct = struct;
+	}
+
+	/**
+	  * Modules were added, removed or unlinked.
+	  */
+	void invalidate()
+	{
+		dirty = true;
+	}
+
+	/**
+	  * Modules 'a' and 'b' were just linked.
+	  */
+	void link(Module a, Module b)
+	{
+		if (dirty)
+			return;
+		int ia = a.regionidx;
+		int ib = b.regionidx;
+		if (ia < 0 || ia >= mods.length || mods[ia] != a ||
+			ib < 0 || ib >= mods.length || mods[ib] != b)
+		{
+			dirty = true;
+			return;
+		}
+		union(ia, ib);
+		relabel = true;
+	}
+
+	int getRebuildCount()
+	{
+		return rebuilds;
+	}
+
+	int getRegionCount()
+	{
+		update();
+		return nregions;
+	}
+
+	private int find(int i)
+	{
+		while (parent[i] != i)
+		{
+			parent[i] = parent[parent[i]]; // path halving
+			i = parent[i];
+		}
+		return i;
+	}
+
+	private void union(int a, int b)
+	{
+		a = find(a);
+		b = find(b);
+		if (a != b)
+			parent[Math.max(a,b)] = Math.min(a,b);
+	}
+
+	private void update()
+	{
+		if (dirty)
+		{
+			List modules = struct.getModules();
+			int n = modules.size();
+			if (mods.length != n)
+			{
+				mods = new Module[n];
+				parent = new int[n];
+				region = new int[n];
+			}
+			modules.toArray(mods);
+			for (int i=0; i<n; i++)
+			{
+				mods[i].regionidx = i;
+				parent[i] = i;
+			}
+			for (int i=0; i<n; i++)
+			{
+				Module m = mods[i];
+				for (int d=0; d<Module.NUM_DIRS; d++)
+				{
+					Module linkm = m.getLink(d);
+					// (links outside the structure shouldn't happen)
+					if (linkm != null && linkm.regionidx >= 0 && linkm.regionidx < n &&
+						mods[linkm.regionidx] == linkm)
+						union(i, linkm.regionidx);
+				}
+			}
+			dirty = false;
+			relabel = true;
+			rebuilds++;
+		}
+		if (relabel)
+		{
+			// number the regions, and total up their volumes
+			int n = mods.length;
+			int[] label = new int[n];
+			Arrays.fill(label, -1);
+			nregions = 0;
+			for (int i=0; i<n; i++)
+			{
+				int root = find(i);
+				if (label[root] < 0)
+					label[root] = nregions++;
+				region[i] = label[root];
+			}
+			int nres = Resource.getNumResources();
+			if (volume.length < nregions)
+			{
+				volume = new float[nregions];
+				atmos = new float[nregions][nres];
+			}
+			Arrays.fill(volume, 0);
+			for (int i=0; i<n; i++)
+				volume[region[i]] += mods[i].getVolume();
+			relabel = false;
+		}
+	}
+
+	/**
+	  * Spreads the air in each region over its modules,
+	  * in proportion to their volumes.
+	  */
+	void equalizePressure()
+	{
+		update();
+		for (int r=0; r<nregions; r++)
+			Arrays.fill(atmos[r], 0);
+		// add up the air in each region
+		for (int i=0; i<mods.length; i++)
+		{
+			float[] total = atmos[region[i]];
+			float[] arr = mods[i].atmosphere.amounts;
+			int n = Math.min(arr.length, total.length);
+			for (int j=0; j<n; j++)
+				total[j] += arr[j];
+		}
+		// now give each module its share
+		for (int i=0; i<mods.length; i++)
+		{
+			int r = region[i];
+			if (volume[r] > 0)
+			{
+				float scale = mods[i].getVolume()/volume[r];
+				float[] total = atmos[r];
+				ResourceSet air = mods[i].atmosphere;
+				for (int j=0; j<total.length; j++)
+				{
+					float amt = air.getAmountAt(j);
+					if (total[j] != 0.0f || amt != 0.0f)
+						air.setAmountAt(j, total[j]*scale);
+				}
+			}
+		}
+	}
+
+}
@@ -41,6 +41,7 @@ extends Capability
 	private ResourceSet products = new ResourceSet();
 
 	private PeriodEvent periodevent;
+	CapabilityScheduler.Group group; // if the scheduler is running us
 
 	private long activate_time;
 	private boolean activated;
@@ -110,12 +111,17 @@ extends Capability
 	{
 		if (isActive())
 			return false;
-		if (periodevent == null)
+		if (periodevent == null && group == null)
 		{
 			Game game = getGame();
 			long t = Game.quantize(game.time(), getInterval());
-			periodevent = new PeriodEvent(t);
-			game.postEvent(periodevent);
+			if (CapabilityScheduler.isEnabled())
+			{
+				CapabilityScheduler.getScheduler(game).add(this, t);
+			} else {
+				periodevent = new PeriodEvent(t);
+				game.postEvent(periodevent);
+			}
 		}
 		activated = true;
 		return true;
@@ -163,6 +169,8 @@ extends Capability
 			getGame().cancelEvent(periodevent);
 			periodevent = null;
 		}
+		if (group != null)
+			CapabilityScheduler.getScheduler(getGame()).remove(this);
 
 		running = false;
 		activate_time = Game.INVALID_TICK;
@@ -250,6 +258,21 @@ extends Capability
 
 	//
 
+	/**
+	  * Called by the CapabilityScheduler every interval,
+	  * returns false when we've stopped.
+	  */
+	boolean handlePeriod()
+	{
+		if (activated && doPeriodic())
+			return true;
+		group = null;
+		activated = false;
+		running = false;
+		notifyDeactivated();
+		return false;
+	}
+
 	public class PeriodEvent
 	extends GameEvent
 	{
@@ -259,6 +282,7 @@ extends Capability
 		}
 		public void handleEvent(Game game)
 		{
+			CapabilityScheduler.getScheduler(game).countEvent();
 			if (activated && doPeriodic())
 			{
 				eventtime += interval;
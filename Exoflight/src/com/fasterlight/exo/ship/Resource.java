@@ -18,7 +18,7 @@
 *********************************************************************/
 package com.fasterlight.exo.ship;
 
-import java.io.IOException;
+import java.io.*;
 import java.util.*;
 
 import com.fasterlight.util.*;
@@ -31,7 +31,11 @@ import com.fasterlight.util.*;
 public class Resource
 implements java.io.Serializable
 {
+	// from before resources had ordinals, so old games still load
+	static final long serialVersionUID = 2030528118154340534L;
+
 	static Dictionary resources = new Hashtable();
+	static List by_ordinal = new ArrayList();
 
 	static {
 		try {
@@ -39,10 +43,11 @@ implements java.io.Serializable
 				ClassLoader.getSystemResourceAsStream("etc/resources.txt"));
 
 			Properties props = ini.getSection("Resources");
-			Enumeration e = props.propertyNames();
-			while (e.hasMoreElements())
+			// sort them, so ordinals are the same from run to run
+			Iterator it = new TreeSet(props.keySet()).iterator();
+			while (it.hasNext())
 			{
-				String name = (String)e.nextElement();
+				String name = (String)it.next();
 				String value = props.getProperty(name);
 				Resource res = new Resource(name, value);
 				res.massperunit = Util.parseFloat(ini.getString(name, "mass", "1"));
@@ -60,11 +65,17 @@ implements java.io.Serializable
 	String units;
 	float massperunit;
 	float molweight;
+	final transient int ordinal; // index into ResourceSet's arrays
 
 	public Resource(String shortname, String longname)
 	{
 		this.shortname = shortname;
 		this.longname = longname;
+		synchronized (by_ordinal)
+		{
+			this.ordinal = by_ordinal.size();
+			by_ordinal.add(this);
+		}
 	}
 
 	public String getShortName()
@@ -87,6 +98,15 @@ implements java.io.Serializable
 		return molweight;
 	}
 
+	/**
+	  * Returns a small integer that is unique to this resource,
+	  * assigned in order of creation.
+	  */
+	public int getOrdinal()
+	{
+		return ordinal;
+	}
+
 	public String toString()
 	{
 		return shortname;
@@ -97,6 +117,32 @@ implements java.io.Serializable
 		return shortname.hashCode();
 	}
 
+	public static Resource getResourceByOrdinal(int ordinal)
+	{
+		synchronized (by_ordinal)
+		{
+			return (Resource)by_ordinal.get(ordinal);
+		}
+	}
+
+	public static int getNumResources()
+	{
+		synchronized (by_ordinal)
+		{
+			return by_ordinal.size();
+		}
+	}
+
+	// there's only one of each resource, with the right ordinal
+	private Object readResolve()
+	throws ObjectStreamException
+	{
+		Resource r = (Resource)resources.get(shortname);
+		if (r == null)
+			throw new InvalidObjectException("Unknown resource: " + shortname);
+		return r;
+	}
+
 	public static Resource getResourceByName(String shortname)
 	{
 		Resource r = (Resource)resources.get(shortname);
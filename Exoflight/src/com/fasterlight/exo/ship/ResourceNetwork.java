@@ -0,0 +1,239 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship;
+
+import java.util.*;
+
+import com.fasterlight.exo.orbit.Constants;
+
+/**
+  * The resource flow graph of a Structure.
+  * For each capability that draws resources, it keeps the
+  * (uninhibited) sources it draws from, in order, and the
+  * resources each source can hold.
+  * A request then only looks at the tanks that can supply it,
+  * and doesn't allocate unless it comes up short.
+  * The graph is built lazily and thrown away whenever modules
+  * are added or removed, or a capability's sources change.
+  * Results are the same as Capability's own source walk.
+  */
+public class ResourceNetwork
+implements Constants
+{
+	private Structure struct;
+	private Map links = new HashMap(); // Capability -> Link
+	private int builds;
+
+	// scratch sets, reused from request to request
+	private ResourceSet rem = new ResourceSet();
+	private ResourceSet taken = new ResourceSet();
+
+	private static boolean enabled = true;
+
+	static class Link
+	{
+		Capability[] sources;
+		int[][] edges; // for each source, ordinals of the resources it can hold
+		boolean[] reachable; // by ordinal, true if any source can hold it
+	}
+
+	//
+
+	public ResourceNetwork(Structure struct)
+	{
+		this.struct = struct;
+	}
+
+	public Structure getStructure()
+	{
+		return struct;
+	}
+
+	public static void setEnabled(boolean b)
+	{
+		enabled = b;
+	}
+
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	  * Forget all the links, they'll be rebuilt on the next request.
+	  */
+	public void invalidate()
+	{
+		links.clear();
+	}
+
+	/**
+	  * Returns the # of links built so far
+	  */
+	public int getBuildCount()
+	{
+		return builds;
+	}
+
+	Link getLink(Capability consumer)
+	{
+		Link link = (Link)links.get(consumer);
+		if (link == null)
+		{
+			List srcs = consumer.getSources();
+			int inhibit = consumer.getSourceInhibitFlags();
+			List active = new ArrayList(srcs.size());
+			for (int i=0; i<srcs.size(); i++)
+			{
+				if ( (inhibit & (1<<i)) == 0 )
+					active.add(srcs.get(i));
+			}
+			int n = active.size();
+			link = new Link();
+			link.sources = (Capability[])active.toArray(new Capability[n]);
+			link.edges = new int[n][];
+			link.reachable = new boolean[Resource.getNumResources()];
+			for (int s=0; s<n; s++)
+			{
+				ResourceSet cap = link.sources[s].capacity;
+				int[] edge = new int[cap.countResources()];
+				int k = 0;
+				for (int i=0; i<cap.amounts.length; i++)
+				{
+					if (cap.amounts[i] > 0)
+					{
+						edge[k++] = i;
+						link.reachable[i] = true;
+					}
+				}
+				if (k < edge.length)
+				{
+					int[] tmp = new int[k];
+					System.arraycopy(edge, 0, tmp, 0, k);
+					edge = tmp;
+				}
+				link.edges[s] = edge;
+			}
+			links.put(consumer, link);
+			builds++;
+		}
+		return link;
+	}
+
+	/**
+	  * Same as Capability.request(), for a capability in this structure.
+	  */
+	public ResourceSet request(Capability consumer, ResourceSet desired, int flags)
+	{
+		Link link = getLink(consumer);
+		if ( (flags & Capability.ALL_OR_NONE) != 0 )
+		{
+			// can't get all of it if some of it can't come from anywhere
+			if (!canReach(link, desired))
+				return ResourceSet.EMPTY;
+			// make sure we can get all of it before we take any
+			// (like Capability, asking for nothing gets nothing)
+			if ( (flags & Capability.CHECK_ONLY) == 0 &&
+				(!drain(link, desired, true) || desired.mag() == 0) )
+				return ResourceSet.EMPTY;
+		}
+		if (drain(link, desired, (flags & Capability.CHECK_ONLY) != 0))
+			return desired;
+		if ( (flags & Capability.ALL_OR_NONE) != 0 )
+			return ResourceSet.EMPTY;
+		ResourceSet diff = new ResourceSet(desired);
+		diff.sub(rem);
+		return diff;
+	}
+
+	private boolean canReach(Link link, ResourceSet desired)
+	{
+		float[] arr = desired.amounts;
+		boolean[] reachable = link.reachable;
+		for (int i=0; i<arr.length; i++)
+		{
+			if (arr[i] > 0 && (i >= reachable.length || !reachable[i]))
+				return false;
+		}
+		return true;
+	}
+
+	// takes 'desired' from each source in turn, leaving what's left in 'rem'
+	// returns true if we got all of it
+	private boolean drain(Link link, ResourceSet desired, boolean checkonly)
+	{
+		rem.clear();
+		rem.add(desired);
+		Capability[] srcs = link.sources;
+		for (int s=0; s<srcs.length; s++)
+		{
+			Capability src = srcs[s];
+			int[] edge = link.edges[s];
+			float[] r = rem.amounts;
+			float[] sup = src.supply.amounts;
+			boolean any = false;
+			taken.clear();
+			for (int k=0; k<edge.length; k++)
+			{
+				int i = edge[k];
+				if (i >= r.length)
+					continue;
+				float want = r[i];
+				if (want == 0.0f)
+					continue;
+				float have = (i < sup.length) ? sup[i] : 0.0f;
+				float t = (have < want) ? have : want;
+				if (t != 0.0f)
+				{
+					taken.setAmountAt(i, t);
+					any = true;
+				}
+			}
+			if (any)
+			{
+				if (!checkonly)
+				{
+					// if the source came up short, drawing E heats things up
+					float amountE = taken.getAmountOf(Capability.RES_E);
+					boolean heat = (amountE > 0) && isShort(src.supply, rem);
+					src.addSupply(taken, -1);
+					if (heat)
+						src.getStructure().addHeat(KWH_TO_J*amountE, COBE_T0);
+				}
+				rem.add(taken, -1);
+			}
+			if (rem.mag() <= 0)
+				return true;
+		}
+		return false;
+	}
+
+	// true if 'supply' doesn't have all of 'want'
+	private boolean isShort(ResourceSet supply, ResourceSet want)
+	{
+		float[] w = want.amounts;
+		for (int i=0; i<w.length; i++)
+		{
+			if (w[i] != 0.0f && supply.getAmountAt(i) < w[i])
+				return true;
+		}
+		return false;
+	}
+
+}
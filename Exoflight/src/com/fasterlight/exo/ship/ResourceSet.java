@@ -18,23 +18,37 @@
 *********************************************************************/
 package com.fasterlight.exo.ship;
 
+import java.io.*;
 import java.util.*;
 
 import com.fasterlight.spif.*;
 import com.fasterlight.util.Util;
 
-// todo: hotspot
-
 /**
   * A set of resources, essentially a map of Resource -> quantity.
   * Various methods for modifying and querying the set.
+  * Amounts are kept in an array indexed by Resource.getOrdinal(),
+  * so the arithmetic methods don't allocate.
+  * They are saved as a map of resource name -> Float, since the
+  * ordinals change when resources are added to resources.txt.
   */
 public class ResourceSet
 implements java.io.Serializable, PropertyAware
 {
+	// from when 'amounts' was a HashMap, so old games still load
+	static final long serialVersionUID = -3199239705588760788L;
+
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("amounts", HashMap.class)
+	};
+
+	// (must come before EMPTY)
+	static final float[] NO_AMOUNTS = new float[0];
+
 	public static final ResourceSet EMPTY = new ImmutableResourceSet(new ResourceSet());
 
-	HashMap amounts = new HashMap();
+	transient float[] amounts = NO_AMOUNTS; // indexed by resource ordinal
+	transient int count; // # of nonzero amounts
 
 	public ResourceSet()
 	{
@@ -87,13 +101,39 @@ implements java.io.Serializable, PropertyAware
 		}
 	}
 
+	private void ensureCapacity(int n)
+	{
+		if (amounts.length < n)
+		{
+			float[] arr = new float[Math.max(n, Resource.getNumResources())];
+			System.arraycopy(amounts, 0, arr, 0, amounts.length);
+			amounts = arr;
+		}
+	}
+
+	// sets amounts[i], keeping 'count' up to date
+	private void setAt(int i, float amt)
+	{
+		float old = amounts[i];
+		if (old == 0.0f)
+		{
+			if (amt != 0.0f)
+				count++;
+		}
+		else if (amt == 0.0f)
+			count--;
+		amounts[i] = (amt == 0.0f) ? 0.0f : amt; // no -0
+	}
+
 	public float getAmountOf(Resource r)
 	{
-		Float f = (Float)amounts.get(r);
-		if (f == null)
-			return 0.0f;
-		else
-			return (f).floatValue();
+		return getAmountAt(r.ordinal);
+	}
+
+	// amount by resource ordinal
+	float getAmountAt(int i)
+	{
+		return (i < amounts.length) ? amounts[i] : 0.0f;
 	}
 
 	public float getAmountOf(String rname)
@@ -107,55 +147,83 @@ implements java.io.Serializable, PropertyAware
 
 	public Iterator getResources()
 	{
-		return new HashSet(amounts.keySet()).iterator();
+		List list = new ArrayList(count);
+		for (int i=0; i<amounts.length; i++)
+		{
+			if (amounts[i] != 0.0f)
+				list.add(Resource.getResourceByOrdinal(i));
+		}
+		return list.iterator();
 	}
 
+	/**
+	  * Returns an iterator of Map.Entry (Resource -> Float).
+	  * The entries are a copy; setting them doesn't change this set.
+	  */
 	public Iterator getEntries()
 	{
-		return amounts.entrySet().iterator();
+		return toMap().entrySet().iterator();
+	}
+
+	/**
+	  * Returns a copy of this set as a map of Resource -> Float.
+	  */
+	public Map toMap()
+	{
+		Map map = new LinkedHashMap();
+		for (int i=0; i<amounts.length; i++)
+		{
+			if (amounts[i] != 0.0f)
+				map.put(Resource.getResourceByOrdinal(i), new Float(amounts[i]));
+		}
+		return map;
 	}
 
 	public int countResources()
 	{
-		return amounts.size();
+		return count;
 	}
 
 	public float mag()
 	{
-		Iterator it = amounts.values().iterator();
 		float total=0;
-		while (it.hasNext())
-		{
-			total += ((Float)it.next()).floatValue();
-		}
+		for (int i=0; i<amounts.length; i++)
+			total += amounts[i];
 		return total;
 	}
 
 	public float mass()
 	{
 		float total=0;
-		Iterator it = getEntries();
-		while (it.hasNext())
+		for (int i=0; i<amounts.length; i++)
 		{
-			Map.Entry ent = (Map.Entry)it.next();
-			Resource r = (Resource)ent.getKey();
-			float value = ((Float)ent.getValue()).floatValue();
-			total += value * r.massperunit;
+			float value = amounts[i];
+			if (value != 0.0f)
+				total += value * Resource.getResourceByOrdinal(i).massperunit;
 		}
 		return total;
 	}
 
 	public void clear()
 	{
-		amounts.clear();
+		Arrays.fill(amounts, 0.0f);
+		count = 0;
 	}
 
 	public void setAmount(Resource r, float amt)
 	{
-		if (amt == 0.0f)
-			amounts.remove(r);
-		else
-			amounts.put(r, new Float(amt));
+		setAmountAt(r.ordinal, amt);
+	}
+
+	void setAmountAt(int i, float amt)
+	{
+		if (i >= amounts.length)
+		{
+			if (amt == 0.0f)
+				return;
+			ensureCapacity(i+1);
+		}
+		setAt(i, amt);
 	}
 
 	public void addAmount(Resource r, float amt)
@@ -170,34 +238,30 @@ implements java.io.Serializable, PropertyAware
 
 	public void add(ResourceSet a, float scale)
 	{
-		Iterator it = a.getEntries();
-		while (it.hasNext())
+		float[] arr = a.amounts;
+		ensureCapacity(arr.length);
+		for (int i=0; i<arr.length; i++)
 		{
-			Map.Entry ent = (Map.Entry)it.next();
-			Resource r = (Resource)ent.getKey();
-			float value = ((Float)ent.getValue()).floatValue();
-			if (a == this)
-				ent.setValue(new Float(value+value*scale));
-			else
-				addAmount(r, value*scale);
+			float value = arr[i];
+			if (value != 0.0f)
+				setAt(i, amounts[i] + value*scale);
 		}
 	}
 
 	public void scale(float scale)
 	{
-		Iterator it = getEntries();
-		while (it.hasNext())
+		for (int i=0; i<amounts.length; i++)
 		{
-			Map.Entry ent = (Map.Entry)it.next();
-			Resource r = (Resource)ent.getKey();
-			float value = ((Float)ent.getValue()).floatValue();
-			ent.setValue(new Float(value*scale));
+			float value = amounts[i];
+			if (value != 0.0f)
+				setAt(i, value*scale);
 		}
 	}
 
 	public void set(ResourceSet a)
 	{
-		amounts = new HashMap(a.amounts);
+		amounts = (a.count == 0) ? NO_AMOUNTS : (float[])a.amounts.clone();
+		count = a.count;
 	}
 
 	public void sub(ResourceSet a)
@@ -207,34 +271,22 @@ implements java.io.Serializable, PropertyAware
 
 	public boolean intersect(ResourceSet a)
 	{
-		boolean modified = false;
-		Iterator it = getResources();
-		while (it.hasNext())
-		{
-			Resource r = (Resource)it.next();
-			float amt = getAmountOf(r);
-			float amt2 = a.getAmountOf(r);
-			if (amt2 < amt)
-			{
-				setAmount(r, amt2);
-				modified = true;
-			}
-		}
-		return modified;
+		return intersect(a, 1);
 	}
 
 	public boolean intersect(ResourceSet a, float scale)
 	{
 		boolean modified = false;
-		Iterator it = getResources();
-		while (it.hasNext())
+		float[] arr = a.amounts;
+		for (int i=0; i<amounts.length; i++)
 		{
-			Resource r = (Resource)it.next();
-			float amt = getAmountOf(r);
-			float amt2 = a.getAmountOf(r)*scale;
+			float amt = amounts[i];
+			if (amt == 0.0f)
+				continue;
+			float amt2 = (i < arr.length) ? arr[i]*scale : 0.0f;
 			if (amt2 < amt)
 			{
-				setAmount(r, amt2);
+				setAt(i, amt2);
 				modified = true;
 			}
 		}
@@ -244,15 +296,16 @@ implements java.io.Serializable, PropertyAware
 	public boolean union(ResourceSet a)
 	{
 		boolean modified = false;
-		Iterator it = getResources();
-		while (it.hasNext())
+		float[] arr = a.amounts;
+		for (int i=0; i<amounts.length; i++)
 		{
-			Resource r = (Resource)it.next();
-			float amt = getAmountOf(r);
-			float amt2 = a.getAmountOf(r);
+			float amt = amounts[i];
+			if (amt == 0.0f)
+				continue;
+			float amt2 = (i < arr.length) ? arr[i] : 0.0f;
 			if (amt2 > amt)
 			{
-				setAmount(r, amt2);
+				setAt(i, amt2);
 				modified = true;
 			}
 		}
@@ -261,24 +314,24 @@ implements java.io.Serializable, PropertyAware
 
 	public void div(ResourceSet res)
 	{
-		Iterator it = getResources();
-		while (it.hasNext())
+		float[] arr = res.amounts;
+		int n = Math.min(amounts.length, arr.length);
+		for (int i=0; i<n; i++)
 		{
-			Resource r = (Resource)it.next();
-			float amt2 = res.getAmountOf(r);
-			if (amt2 != 0)
-				setAmount(r, this.getAmountOf(r)/amt2);
+			float amt = amounts[i];
+			float amt2 = arr[i];
+			if (amt != 0.0f && amt2 != 0)
+				setAt(i, amt/amt2);
 		}
 	}
 
 	public float getMaxAmount()
 	{
 		float x = 0;
-		Iterator it = getResources();
-		while (it.hasNext())
+		for (int i=0; i<amounts.length; i++)
 		{
-			Resource r = (Resource)it.next();
-			x = Math.max(getAmountOf(r), x);
+			if (amounts[i] != 0.0f)
+				x = Math.max(amounts[i], x);
 		}
 		return x;
 	}
@@ -286,11 +339,10 @@ implements java.io.Serializable, PropertyAware
 	public float getMinAmount()
 	{
 		float x = 1e30f;
-		Iterator it = getResources();
-		while (it.hasNext())
+		for (int i=0; i<amounts.length; i++)
 		{
-			Resource r = (Resource)it.next();
-			x = Math.min(getAmountOf(r), x);
+			if (amounts[i] != 0.0f)
+				x = Math.min(amounts[i], x);
 		}
 		return x;
 	}
@@ -313,21 +365,85 @@ implements java.io.Serializable, PropertyAware
       throw new RuntimeException("TODO");
 	}
 
+	// same as the hash code of toMap()
 	public int hashCode()
 	{
-		return amounts.hashCode();
+		int h = 0;
+		for (int i=0; i<amounts.length; i++)
+		{
+			if (amounts[i] != 0.0f)
+				h += Resource.getResourceByOrdinal(i).hashCode() ^ Float.floatToIntBits(amounts[i]);
+		}
+		return h;
 	}
 
 	public String toString()
 	{
-		return amounts.toString();
+		return toMap().toString();
 	}
 
 	public boolean equals(Object o)
 	{
 		if (o == null || !(o instanceof ResourceSet))
 			return false;
-		return (amounts.equals( ((ResourceSet)o).amounts ));
+		ResourceSet rs = (ResourceSet)o;
+		if (rs.count != count)
+			return false;
+		float[] arr = rs.amounts;
+		int n = Math.max(amounts.length, arr.length);
+		for (int i=0; i<n; i++)
+		{
+			float a = (i < amounts.length) ? amounts[i] : 0.0f;
+			float b = (i < arr.length) ? arr[i] : 0.0f;
+			if (Float.floatToIntBits(a) != Float.floatToIntBits(b))
+				return false;
+		}
+		return true;
+	}
+
+	// SERIALIZATION
+
+	private void writeObject(ObjectOutputStream stream)
+	throws IOException
+	{
+		HashMap map = new HashMap();
+		for (int i=0; i<amounts.length; i++)
+		{
+			if (amounts[i] != 0.0f)
+				map.put(Resource.getResourceByOrdinal(i).getShortName(), new Float(amounts[i]));
+		}
+		ObjectOutputStream.PutField fields = stream.putFields();
+		fields.put("amounts", map);
+		stream.writeFields();
+	}
+
+	// old games have Resource keys, newer ones have names
+	private void readObject(ObjectInputStream stream)
+	throws IOException, ClassNotFoundException
+	{
+		ObjectInputStream.GetField fields = stream.readFields();
+		Map map = (Map)fields.get("amounts", null);
+		amounts = NO_AMOUNTS;
+		count = 0;
+		if (map == null)
+			return;
+		Iterator it = map.entrySet().iterator();
+		while (it.hasNext())
+		{
+			Map.Entry entry = (Map.Entry)it.next();
+			Object key = entry.getKey();
+			String name = (key instanceof Resource) ?
+				((Resource)key).getShortName() : (String)key;
+			Resource r;
+			try {
+				r = Resource.getResourceByName(name);
+			} catch (IllegalArgumentException iae) {
+				throw new InvalidObjectException("Unknown resource: " + name);
+			}
+			// not setAmountAt(), ImmutableResourceSet won't allow it
+			ensureCapacity(r.ordinal+1);
+			setAt(r.ordinal, ((Float)entry.getValue()).floatValue());
+		}
 	}
 
 	// PROPERTIES
@@ -73,6 +73,26 @@ extends DefaultTelemetry
 	}
 
 
+	// DOUBLE PROPERTY AWARE
+
+	public int getDoublePropIndex(String key)
+	{
+		if ("dynpres".equals(key))
+			return NUM_DOUBLE_PROPS;
+		if ("dragcoeff".equals(key))
+			return NUM_DOUBLE_PROPS+1;
+		return super.getDoublePropIndex(key);
+	}
+
+	public double getDoubleProp(int index)
+	{
+		if (index == NUM_DOUBLE_PROPS)
+			return getDYNPRES();
+		if (index == NUM_DOUBLE_PROPS+1)
+			return getDRAGCOEFF();
+		return super.getDoubleProp(index);
+	}
+
 	// PROPERTY AWARE
 
 	public Object getProp(String key)
@@ -47,6 +47,13 @@ implements java.io.Serializable, PropertyAware, Constants
 	protected Vector3f cenmass = new Vector3f();
 	protected Vector3f lextents = new Vector3f(); // low extents
 	protected Vector3f hextents = new Vector3f(); // high extents
+	protected Vector3d inertia = new Vector3d(); // see getInertiaVector()
+
+	// running sums over the modules, updated as mass changes:
+	// sum of mass*position, and of mass*position*position
+	// (xx, yy, zz, xy, xz, yz) -- position in m
+	protected Vector3d massmoment = new Vector3d();
+	protected double[] massmoment2 = new double[6];
 
 	protected AeroForces lastforces;
 
@@ -62,6 +69,13 @@ implements java.io.Serializable, PropertyAware, Constants
 
 	protected Vector3f totalDamping = new Vector3f();
 
+	protected transient ResourceNetwork resnet;
+	protected transient AeroTable aerotable;
+	protected transient ModuleRegions regions;
+	// Class -> unmodifiable List of capabilities, see getCapabilitiesOfClass()
+	protected transient Map capindex;
+	protected transient Map exactcapindex;
+
 	//
 
 	public Structure(Game game)
@@ -115,12 +129,17 @@ implements java.io.Serializable, PropertyAware, Constants
 	  */
 	protected void addModule2(Module m)
 	{
+		invalidateResourceNetwork();
+		aerotable = null;
+		if (regions != null)
+			regions.invalidate();
 		modules.add(m);
 		m.setStructure(this);
-		adjustMass(m.getMass());
+		adjustMass(m, m.getMass());
 //		adjustSupply(m.getSupply(), 1);
 		List caps = m.getCapabilities();
 		allcaps.addAll(caps);
+		invalidateCapabilityIndex();
 		Iterator it = caps.iterator();
 		while (it.hasNext())
 		{
@@ -249,12 +268,17 @@ implements java.io.Serializable, PropertyAware, Constants
 		// todo: only deactivate leases aren't in this module
 		m.deactivate(); // remove all leases
 		removeDependencies(m);
+		invalidateResourceNetwork();
+		aerotable = null;
+		if (regions != null)
+			regions.invalidate();
 		modules.remove(m);
 		m.setStructure(null);
-		adjustMass(-m.getMass());
+		adjustMass(m, -m.getMass());
 //		adjustSupply(m.getSupply(), -1);
 		// todo: doesn't seem to work?
 		allcaps.removeAll(m.getCapabilities());
+		invalidateCapabilityIndex();
 		adjustCenterOfMass();
 		if (debug) {
 			System.out.println("Cap count = " + allcaps.size());
@@ -263,6 +287,19 @@ implements java.io.Serializable, PropertyAware, Constants
 		m.notifyRemoved();
 	}
 
+	public ResourceNetwork getResourceNetwork()
+	{
+		if (resnet == null)
+			resnet = new ResourceNetwork(this);
+		return resnet;
+	}
+
+	public void invalidateResourceNetwork()
+	{
+		if (resnet != null)
+			resnet.invalidate();
+	}
+
 	/**
 	  * Remove all dependencies on module 'm' in the rest of structure
 	  * todo: remove source from m to rest of structure
@@ -288,11 +325,13 @@ implements java.io.Serializable, PropertyAware, Constants
 	/**
 	  * Compute center of mass, relative
 	  * to the current CM -- also recomputes
-	  * 'extents' and 'radius'
+	  * 'extents' and 'radius', and the mass sums
 	  */
 	Vector3f computeCenterOfMass()
 	{
 		Vector3f cm = new Vector3f();
+		massmoment.set(0,0,0);
+		Arrays.fill(massmoment2, 0);
 		Iterator it = getModules().iterator();
 		float M = Float.MAX_VALUE;
 		lextents.set(M,M,M);
@@ -311,6 +350,7 @@ implements java.io.Serializable, PropertyAware, Constants
 			hextents.x = Math.max(hextents.x, ofs.x+dims.x/2);
 			hextents.y = Math.max(hextents.y, ofs.y+dims.y/2);
 			hextents.z = Math.max(hextents.z, ofs.z+dims.z/2);
+			addMassMoments(ofs, m.getMass());
 			ofs.scale(m.getMass());
 			cm.add(ofs);
 			// compute contact points
@@ -330,9 +370,104 @@ implements java.io.Serializable, PropertyAware, Constants
 		hextents.sub(cm);
 		radius = (float)(Math.max(getDimRad(lextents), getDimRad(hextents)) * 0.001); // m to km
 		computeContactPoints(numCustomContactPoints);
+		computeInertiaVector();
+		return cm;
+	}
+
+	private void addMassMoments(Vector3f p, float dm)
+	{
+		double x = p.x;
+		double y = p.y;
+		double z = p.z;
+		massmoment.x += dm*x;
+		massmoment.y += dm*y;
+		massmoment.z += dm*z;
+		double[] s = massmoment2;
+		s[0] += dm*x*x;
+		s[1] += dm*y*y;
+		s[2] += dm*z*z;
+		s[3] += dm*x*y;
+		s[4] += dm*x*z;
+		s[5] += dm*y*z;
+	}
+
+	/**
+	  * Moves the CM to where the running sums say it is,
+	  * and shifts the extents and contact points to match.
+	  * Doesn't go through the modules.
+	  */
+	void updateCenterOfMass()
+	{
+		if (mass <= 0)
+			return;
+		Vector3f d = new Vector3f(
+			(float)(massmoment.x/mass - cenmass.x),
+			(float)(massmoment.y/mass - cenmass.y),
+			(float)(massmoment.z/mass - cenmass.z));
+		cenmass.add(d);
+		lextents.sub(d);
+		hextents.sub(d);
+		radius = (float)(Math.max(getDimRad(lextents), getDimRad(hextents)) * 0.001); // m to km
+		if (contactPoints != null)
+		{
+			for (int i=0; i<contactPoints.length; i++)
+			{
+				ContactPoint cp = contactPoints[i];
+				if (i < 8)
+				{
+					// the default ones, see computeContactPoints()
+					cp.extpos.scaleAdd(-1.0f/1000, d, cp.extpos);
+					cp.Kspring = getMass()*COLLISION_SPRING_FACTOR;
+					cp.Kdamping = cp.Kspring*COLLISION_DAMPING_FACTOR;
+				} else
+					cp.extpos.sub(d);
+			}
+		}
+	}
+
+	/**
+	  * Returns the center of mass as of the last mass change
+	  * (getCenterOfMass() is only updated once a second)
+	  */
+	public Vector3f getCurrentCenterOfMass()
+	{
+		Vector3f cm = new Vector3f(massmoment);
+		if (mass > 0)
+			cm.scale(1/mass);
 		return cm;
 	}
 
+	/**
+	  * Computes the inertia tensor about the current center of mass,
+	  * treating each module as a point mass.
+	  * Units are kg*m^2.
+	  */
+	public void getInertiaTensor(Matrix3d I)
+	{
+		double[] s = massmoment2;
+		double M = mass;
+		double cx = 0, cy = 0, cz = 0;
+		if (M > 0)
+		{
+			cx = massmoment.x/M;
+			cy = massmoment.y/M;
+			cz = massmoment.z/M;
+		}
+		// parallel axis theorem, from the origin to the CM
+		double xx = s[0] - M*cx*cx;
+		double yy = s[1] - M*cy*cy;
+		double zz = s[2] - M*cz*cz;
+		double xy = s[3] - M*cx*cy;
+		double xz = s[4] - M*cx*cz;
+		double yz = s[5] - M*cy*cz;
+		I.m00 = yy+zz;
+		I.m11 = xx+zz;
+		I.m22 = xx+yy;
+		I.m01 = I.m10 = -xy;
+		I.m02 = I.m20 = -xz;
+		I.m12 = I.m21 = -yz;
+	}
+
 	public Vector3f getTotalDamping()
 	{
 		return totalDamping;
@@ -387,14 +522,15 @@ implements java.io.Serializable, PropertyAware, Constants
 	private long last_massadj_time = INVALID_TICK;
 	private long last_cmadj_time = INVALID_TICK;
 
-	void adjustMass(float amt)
+	void adjustMass(Module m, float amt)
 	{
 		mass += amt;
+		addMassMoments(m.position, amt);
 		long t = game.time();
 		last_massadj_time = t;
 		if (t > last_cmadj_time+TICKS_PER_SEC)
 		{
-			adjustCenterOfMass(); // todo??
+			updateCenterOfMass();
 			last_cmadj_time = t;
 		}
 	}
@@ -555,11 +691,25 @@ implements java.io.Serializable, PropertyAware, Constants
 	// units are km
 	// not scaled by mass
 	public Vector3d getInertiaVector()
+	{
+		return new Vector3d(inertia);
+	}
+
+	/**
+	  * Same as getInertiaVector(), but doesn't allocate
+	  */
+	public void getInertiaVector(Vector3d res)
+	{
+		res.set(inertia);
+	}
+
+	// only depends on the extents, so we do this when they change
+	private void computeInertiaVector()
 	{
 		Vector3f dim = new Vector3f(hextents);
 		dim.sub(lextents);
 		dim.scale(0.0005f);
-		return new Vector3d(dim.z*dim.z/3, dim.z*dim.z/3, dim.x*dim.y);
+		inertia.set(dim.z*dim.z/3, dim.z*dim.z/3, dim.x*dim.y);
 	}
 
 	public void setThing(StructureThing thing)
@@ -577,9 +727,97 @@ implements java.io.Serializable, PropertyAware, Constants
 		return (thing instanceof SpaceShip) ? (SpaceShip)thing : null;
 	}
 
+	// CAPABILITY INDEX
+
+	void invalidateCapabilityIndex()
+	{
+		capindex = null;
+		exactcapindex = null;
+	}
+
+	// class -> Class[] of itself, its superclasses and all interfaces
+	private static Map supertypes = new HashMap();
+
+	private static Class[] getSupertypes(Class c)
+	{
+		synchronized (supertypes)
+		{
+			Class[] arr = (Class[])supertypes.get(c);
+			if (arr == null)
+			{
+				List list = new ArrayList();
+				for (Class k = c; k != null; k = k.getSuperclass())
+					addSupertypes(list, k);
+				arr = (Class[])list.toArray(new Class[list.size()]);
+				supertypes.put(c, arr);
+			}
+			return arr;
+		}
+	}
+
+	private static void addSupertypes(List list, Class c)
+	{
+		if (list.contains(c))
+			return;
+		list.add(c);
+		Class[] ifaces = c.getInterfaces();
+		for (int i=0; i<ifaces.length; i++)
+			addSupertypes(list, ifaces[i]);
+	}
+
+	private static void addToIndex(Map index, Class c, Capability cap)
+	{
+		List list = (List)index.get(c);
+		if (list == null)
+		{
+			list = new ArrayList(2);
+			index.put(c, list);
+		}
+		list.add(cap);
+	}
+
+	private static void freezeIndex(Map index)
+	{
+		Iterator it = index.entrySet().iterator();
+		while (it.hasNext())
+		{
+			Map.Entry entry = (Map.Entry)it.next();
+			entry.setValue(Collections.unmodifiableList((List)entry.getValue()));
+		}
+	}
+
+	/**
+	  * Builds the class -> capabilities maps from 'allcaps'.
+	  * Each capability is filed under its class, all superclasses
+	  * and all interfaces, in the same order as 'allcaps'.
+	  */
+	private void buildCapabilityIndex()
+	{
+		Map index = new HashMap();
+		Map exactindex = new HashMap();
+		Iterator it = allcaps.iterator();
+		while (it.hasNext())
+		{
+			Capability cap = (Capability)it.next();
+			Class[] types = getSupertypes(cap.getClass());
+			for (int i=0; i<types.length; i++)
+				addToIndex(index, types[i], cap);
+			addToIndex(exactindex, cap.getClass(), cap);
+		}
+		freezeIndex(index);
+		freezeIndex(exactindex);
+		capindex = index;
+		exactcapindex = exactindex;
+	}
+
 	// todo: return multiple results
 	public Capability getCapabilityOfClass(Class c)
 	{
+		if (USE_CAP_INDEX)
+		{
+			List list = getCapabilitiesOfClass(c, false);
+			return list.isEmpty() ? null : (Capability)list.get(0);
+		}
 		Iterator it = allcaps.iterator();
 		while (it.hasNext())
 		{
@@ -595,8 +833,21 @@ implements java.io.Serializable, PropertyAware, Constants
 		return getCapabilitiesOfClass(c, false);
 	}
 
+	/**
+	  * Returns the capabilities of class 'c' (or subclasses
+	  * of 'c', if 'exact' is false).  The list is shared and
+	  * can't be modified; it isn't updated when modules are
+	  * added or removed, so call again to get the new set.
+	  */
 	public List getCapabilitiesOfClass(Class c, boolean exact)
 	{
+		if (USE_CAP_INDEX)
+		{
+			if (capindex == null)
+				buildCapabilityIndex();
+			List list = (List)(exact ? exactcapindex : capindex).get(c);
+			return (list != null) ? list : Collections.EMPTY_LIST;
+		}
 		List v = new ArrayList();
 		Iterator it = allcaps.iterator();
 		while (it.hasNext())
@@ -611,8 +862,40 @@ implements java.io.Serializable, PropertyAware, Constants
 
 	// REGIONS, PRESSURE
 
+	ModuleRegions getModuleRegions()
+	{
+		if (regions == null)
+			regions = new ModuleRegions(this);
+		return regions;
+	}
+
+	void moduleLinked(Module a, Module b)
+	{
+		if (regions != null)
+			regions.link(a, b);
+	}
+
+	void moduleUnlinked(Module a, Module b)
+	{
+		if (regions != null)
+			regions.invalidate();
+	}
+
+	/**
+	  * Returns the # of separate pressurized regions
+	  */
+	public int getRegionCount()
+	{
+		return getModuleRegions().getRegionCount();
+	}
+
 	void equalizePressure()
 	{
+		if (USE_REGION_INDEX)
+		{
+			getModuleRegions().equalizePressure();
+			return;
+		}
 		// equalize pressure
 		List rgns = getRegions();
 		Iterator it = rgns.iterator();
@@ -681,9 +964,32 @@ implements java.io.Serializable, PropertyAware, Constants
 	  * Calculate drag coeff given velocity vector of ship
 	  * relative to airflow (in structure-coordinates,
 	  * and normalized) and Mach value.
+	  * Comes from the AeroTable when we can.
 	  * hotspot
 	  */
 	public AeroForces calculateDragCoeff(Vector3f vel, float mach, long time)
+	{
+		AeroForces res = null;
+		if (USE_AERO_TABLE)
+			res = getAeroTable().getForces(vel, mach, time);
+		if (res == null)
+			res = computeDragCoeff(vel, mach, time);
+		lastforces = res;
+		return res;
+	}
+
+	public AeroTable getAeroTable()
+	{
+		if (aerotable == null)
+			aerotable = new AeroTable(this);
+		return aerotable;
+	}
+
+	/**
+	  * Same as calculateDragCoeff(), but always goes
+	  * through all the modules.
+	  */
+	public AeroForces computeDragCoeff(Vector3f vel, float mach, long time)
 	{
 		Iterator it;
 		Vector3f mdir = new Vector3f();
@@ -756,7 +1062,6 @@ implements java.io.Serializable, PropertyAware, Constants
 		}
 		// set values in result object
 		res.area = totarea;
-		lastforces = res;
 
 		return res;
 	}
@@ -1144,12 +1449,34 @@ implements java.io.Serializable, PropertyAware, Constants
 	static float COLLISION_KSTATIC;
 
 	static boolean DO_HEATING;
+	static boolean USE_AERO_TABLE;
+	static boolean USE_REGION_INDEX = true;
+	static boolean USE_CAP_INDEX = true;
+
+	/**
+	  * If false, equalizePressure() finds the regions
+	  * from scratch each time, like it used to.
+	  */
+	public static void setUseRegionIndex(boolean b)
+	{
+		USE_REGION_INDEX = b;
+	}
+
+	/**
+	  * If false, getCapabilitiesOfClass() scans all the
+	  * capabilities and returns a new list each time.
+	  */
+	public static void setUseCapabilityIndex(boolean b)
+	{
+		USE_CAP_INDEX = b;
+	}
 
 	static SettingsGroup settings = new SettingsGroup(Structure.class, "Ship")
 	{
 		public void updateSettings()
 		{
 			DO_HEATING = getBoolean("DoHeating", true);
+			USE_AERO_TABLE = getBoolean("AeroTable", true);
 			COLLISION_SPRING_FACTOR = getFloat("DefaultSpringFactor", 10.0f);
 			COLLISION_DAMPING_FACTOR = getFloat("DefaultDampingFactor", 0.10f);
 			COLLISION_KSTATIC = getFloat("DefaultKStatic", 0.25f);
@@ -57,6 +57,7 @@ implements PropertyAware
 	long compute_interval = TICKS_PER_SEC/4;
 	int compute_iters = 12;
 	int compute_maxiters = 1000;
+	boolean compute_background; // search runs on its own thread?
 
 	Vector3f currentpt = new Vector3f();
 
@@ -93,6 +94,9 @@ implements PropertyAware
 	{
 		if (target == ship)
 			throw new RuntimeException("Target cannot be same as ship!");
+		// the old search is no good anymore
+		if (target != this.target)
+			stopComputing();
 		this.target = target;
 	}
 
@@ -174,6 +178,12 @@ implements PropertyAware
 		opt.setMinYSize(1f/256);
 		opt.setMinRadius(minalt + destbody.getParent().getRadius());
 
+		// if it's safe, search in the background and just
+		// pick up the results in the event
+		compute_background = opt.isThreadSafe();
+		if (compute_background)
+			opt.startSearch(compute_maxiters);
+
 		computeevent = new ComputeEvent(game.time());
 		game.postEvent(computeevent);
 	}
@@ -185,6 +195,7 @@ implements PropertyAware
 
 		getGame().cancelEvent(computeevent);
 		computeevent = null;
+		opt.cancel();
 	}
 
 	public void setComputing(boolean b)
@@ -207,7 +218,15 @@ implements PropertyAware
 		}
 		public void handleEvent(Game game)
 		{
-			compute(compute_iters);
+			boolean done;
+			if (compute_background)
+			{
+				// check this first, so we get the final results
+				done = !opt.isSearching();
+			} else {
+				compute(compute_iters);
+				done = (opt.getSize() >= compute_maxiters);
+			}
 
 			Tuple2f bestpt = opt.getBestPoint();
 			if (bestpt != null)
@@ -217,7 +236,7 @@ implements PropertyAware
 				updateTransferOrbit();
 			}
 
-			if (opt.getSize() < compute_maxiters)
+			if (!done)
 			{
 				eventtime += compute_interval;
 				game.postEvent(this);
@@ -0,0 +1,131 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship.test;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.exo.strategy.Vehicle;
+import com.fasterlight.testing.*;
+import com.fasterlight.vecmath.*;
+
+public class AeroTableTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+			game = new SpaceGame();
+	}
+
+	public AeroTableTests(String name)
+	{
+		super(name);
+	}
+
+	Vector3f randomDir(Random rnd)
+	{
+		Vector3f v = new Vector3f();
+		do {
+			v.set(rnd.nextFloat()*2-1, rnd.nextFloat()*2-1, rnd.nextFloat()*2-1);
+		} while (v.lengthSquared() > 1 || v.lengthSquared() < 1e-3);
+		v.normalize();
+		return v;
+	}
+
+	// compares the table to the direct computation at random points,
+	// returns the rms error of the force, relative to the rms force
+	double compareVehicle(String name)
+	{
+		Structure struct = Vehicle.getVehicle(name).toStructure(game.getAgency());
+		AeroTable table = struct.getAeroTable();
+		assertTrue(table.isCacheable());
+		long time = game.time();
+		Random rnd = new Random(1234);
+		// first lookup just sets up the table
+		assertNull(table.getForces(new Vector3f(0,0,1), 1, time));
+		double ferr = 0, fmag = 0;
+		double bcerr = 0, bcmag = 0;
+		for (int i=0; i<2000; i++)
+		{
+			Vector3f vel = randomDir(rnd);
+			float mach = 0.3f + rnd.nextFloat()*10;
+			AeroForces af1 = struct.computeDragCoeff(vel, mach, time);
+			AeroForces af2 = table.getForces(vel, mach, time);
+			assertNotNull(af2);
+			Vector3d df = new Vector3d(af1.pf.f);
+			df.sub(af2.pf.f);
+			ferr += df.lengthSquared();
+			fmag += af1.pf.f.lengthSquared();
+			bcerr += (af1.BC-af2.BC)*(af1.BC-af2.BC);
+			bcmag += af1.BC*af1.BC;
+		}
+		assertTrue(fmag > 0);
+		ferr = Math.sqrt(ferr/fmag);
+		bcerr = Math.sqrt(bcerr/bcmag);
+		System.out.println(name + ": force error " + ferr + ", BC error " + bcerr +
+			", " + table.getEvaluationCount() + " evaluations");
+		assertTrue(bcerr < 0.02);
+		return ferr;
+	}
+
+	public void testAccuracy()
+	{
+		assertTrue(compareVehicle("Apollo CSM") < 0.02);
+		assertTrue(compareVehicle("Saturn V") < 0.02);
+		assertTrue(compareVehicle("Gemini") < 0.02);
+	}
+
+	public void testInvalidate()
+	{
+		Structure struct = Vehicle.getVehicle("Saturn V").toStructure(game.getAgency());
+		long time = game.time();
+		Vector3f vel = new Vector3f(0,0.1f,-1);
+		vel.normalize();
+		struct.calculateDragCoeff(vel, 2, time);
+		AeroForces af1 = struct.calculateDragCoeff(vel, 2, time);
+		AeroTable table = struct.getAeroTable();
+		assertTrue(table.getLookupCount() > 0);
+		// staging throws the table away
+		List modules = struct.getModules();
+		struct.removeModule((Module)modules.get(modules.size()-1));
+		assertTrue(table != struct.getAeroTable());
+		AeroForces af2 = struct.calculateDragCoeff(vel, 2, time);
+		AeroForces af3 = struct.computeDragCoeff(vel, 2, time);
+		assertEquals(af3.BC, af2.BC, 0);
+		assertTrue(af1.BC != af2.BC);
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(AeroTableTests.class);
+		return suite;
+	}
+
+}
@@ -0,0 +1,136 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship.test;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.exo.strategy.Vehicle;
+import com.fasterlight.testing.*;
+
+public class CapabilityIndexTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	static final Class[] CLASSES = {
+		Capability.class, PeriodicCapability.class, PropulsionCapability.class,
+		RocketEngineCapability.class, RCSCapability.class, GuidanceCapability.class,
+		AttitudeControlComponent.class, java.io.Serializable.class, String.class
+	};
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+			game = new SpaceGame();
+	}
+
+	public CapabilityIndexTests(String name)
+	{
+		super(name);
+	}
+
+	// compares the index against a scan of all capabilities
+	void compareStructure(Structure struct)
+	{
+		for (int i=0; i<CLASSES.length; i++)
+		{
+			for (int j=0; j<2; j++)
+			{
+				boolean exact = (j == 1);
+				Structure.setUseCapabilityIndex(false);
+				List l1 = struct.getCapabilitiesOfClass(CLASSES[i], exact);
+				Capability c1 = struct.getCapabilityOfClass(CLASSES[i]);
+				Structure.setUseCapabilityIndex(true);
+				List l2 = struct.getCapabilitiesOfClass(CLASSES[i], exact);
+				Capability c2 = struct.getCapabilityOfClass(CLASSES[i]);
+				assertEquals(struct + " " + CLASSES[i], l1, l2);
+				assertTrue(c1 == c2);
+			}
+		}
+	}
+
+	public void testVehicles()
+	{
+		List vehicles = Vehicle.getVehicleList();
+		assertTrue(vehicles.size() > 0);
+		try {
+			for (int j=0; j<vehicles.size(); j++)
+			{
+				Vehicle vehicle = (Vehicle)vehicles.get(j);
+				compareStructure(vehicle.toStructure(game.getAgency()));
+			}
+		} finally {
+			Structure.setUseCapabilityIndex(true);
+		}
+	}
+
+	public void testShared()
+	{
+		Structure struct = Vehicle.getVehicle("Space Shuttle").toStructure(game.getAgency());
+		List list = struct.getCapabilitiesOfClass(PropulsionCapability.class);
+		assertTrue(list.size() > 0);
+		assertTrue(list == struct.getCapabilitiesOfClass(PropulsionCapability.class));
+		try {
+			list.clear();
+			fail("list should be unmodifiable");
+		} catch (UnsupportedOperationException uoe) {
+		}
+	}
+
+	public void testRemoveModule()
+	{
+		Structure struct = Vehicle.getVehicle("Space Shuttle").toStructure(game.getAgency());
+		List before = struct.getCapabilitiesOfClass(Capability.class);
+		int n = before.size();
+		// last module with any capabilities
+		Module m = null;
+		for (int i=struct.getModules().size()-1; m == null && i>=0; i--)
+		{
+			if (struct.getModule(i).getCapabilities().size() > 0)
+				m = struct.getModule(i);
+		}
+		assertNotNull(m);
+		int ncaps = m.getCapabilities().size();
+		struct.removeModule(m);
+		List after = struct.getCapabilitiesOfClass(Capability.class);
+		// old list is left alone
+		assertEquals(n, before.size());
+		assertEquals(n-ncaps, after.size());
+		for (int i=0; i<ncaps; i++)
+			assertTrue(!after.contains(m.getCapabilities().get(i)));
+		compareStructure(struct);
+		Structure.setUseCapabilityIndex(true);
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(CapabilityIndexTests.class);
+		return suite;
+	}
+
+}
@@ -0,0 +1,169 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship.test;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.Constants;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.exo.strategy.Vehicle;
+import com.fasterlight.testing.*;
+
+public class CapabilitySchedulerTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+	static Module module;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+			Structure struct = Vehicle.getVehicle("Saturn V").toStructure(game.getAgency());
+			module = (Module)struct.getModules().get(0);
+		}
+	}
+
+	public CapabilitySchedulerTests(String name)
+	{
+		super(name);
+	}
+
+	// counts how many times it's run, stops after 'limit'
+	static class CountingCapability
+	extends PeriodicCapability
+	{
+		int calls;
+		int limit;
+		CountingCapability(Module m, String interval, int limit)
+		{
+			super(m);
+			Properties props = new Properties();
+			props.setProperty("interval", interval);
+			initialize(props);
+			this.limit = limit;
+		}
+		public boolean doPeriodic()
+		{
+			return (++calls < limit);
+		}
+	}
+
+	CountingCapability[] makeCaps(int n, int limit)
+	{
+		CountingCapability[] caps = new CountingCapability[n];
+		String[] intervals = { "1", "0.25", "10" };
+		for (int i=0; i<n; i++)
+		{
+			caps[i] = new CountingCapability(module, intervals[i%intervals.length], limit);
+			assertTrue(caps[i].activate());
+		}
+		return caps;
+	}
+
+	// runs some capabilities for an hour, returns the # of events it took
+	int runHour(CountingCapability[] caps)
+	{
+		CapabilityScheduler sched = CapabilityScheduler.getScheduler(game);
+		int events = sched.getEventCount();
+		game.update(Constants.TICKS_PER_SEC*3600);
+		for (int i=0; i<caps.length; i++)
+			caps[i].shutdown();
+		return sched.getEventCount() - events;
+	}
+
+	public void testBatching()
+	{
+		boolean oldenabled = CapabilityScheduler.isEnabled();
+		try {
+			// start on an even second so both runs fire on the same ticks
+			game.update(Constants.TICKS_PER_SEC - game.time()%Constants.TICKS_PER_SEC);
+			CapabilityScheduler.setEnabled(false);
+			CountingCapability[] caps1 = makeCaps(30, 100000);
+			int events1 = runHour(caps1);
+			CapabilityScheduler.setEnabled(true);
+			CountingCapability[] caps2 = makeCaps(30, 100000);
+			int events2 = runHour(caps2);
+			// the same work gets done
+			for (int i=0; i<caps1.length; i++)
+				assertEquals(caps1[i].calls, caps2[i].calls);
+			// in 1 event per interval, instead of 1 per capability
+			int calls = 0;
+			for (int i=0; i<caps1.length; i++)
+				calls += caps1[i].calls;
+			assertEquals(calls, events1);
+			assertEquals(caps2[0].calls + caps2[1].calls + caps2[2].calls, events2);
+			assertTrue(Math.abs(caps2[1].calls - 4*3600) <= 1);
+			assertTrue(events2*10 <= events1);
+			// groups go away once they're empty
+			game.update(Constants.TICKS_PER_SEC*60);
+			assertEquals(0, CapabilityScheduler.getScheduler(game).getGroupCount());
+		} finally {
+			CapabilityScheduler.setEnabled(oldenabled);
+		}
+	}
+
+	public void testDeactivate()
+	{
+		CountingCapability[] caps = makeCaps(3, 1000000);
+		game.update(Constants.TICKS_PER_SEC*60);
+		// deactivate() stops it the next time around
+		int calls = caps[0].calls;
+		assertTrue(calls > 0);
+		caps[0].deactivate();
+		game.update(Constants.TICKS_PER_SEC*60);
+		assertEquals(calls, caps[0].calls);
+		assertTrue(!caps[0].isRunning());
+		// shutdown() stops it right away
+		calls = caps[1].calls;
+		caps[1].shutdown();
+		game.update(Constants.TICKS_PER_SEC*60);
+		assertEquals(calls, caps[1].calls);
+		// and we can start it again
+		assertTrue(caps[1].activate());
+		game.update(Constants.TICKS_PER_SEC*60);
+		assertTrue(caps[1].calls > calls);
+		// returning false from doPeriodic() stops it too
+		caps[2].limit = caps[2].calls + 5;
+		game.update(Constants.TICKS_PER_SEC*600);
+		assertEquals(caps[2].limit, caps[2].calls);
+		assertTrue(!caps[2].isActive());
+		for (int i=0; i<caps.length; i++)
+			caps[i].shutdown();
+		game.update(Constants.TICKS_PER_SEC*60);
+		assertEquals(0, CapabilityScheduler.getScheduler(game).getGroupCount());
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(CapabilitySchedulerTests.class);
+		return suite;
+	}
+
+}
@@ -0,0 +1,168 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship.test;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.Constants;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.exo.strategy.Vehicle;
+import com.fasterlight.testing.*;
+import com.fasterlight.vecmath.*;
+
+public class MassPropertiesTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+		{
+			game = new SpaceGame();
+			game.start();
+		}
+	}
+
+	public MassPropertiesTests(String name)
+	{
+		super(name);
+		THRESHOLD = 1e-4;
+	}
+
+	// sums the mass properties straight from the modules
+	void checkAgainstModules(Structure struct)
+	{
+		double M = 0;
+		Vector3d mp = new Vector3d();
+		List modules = struct.getModules();
+		for (int i=0; i<modules.size(); i++)
+		{
+			Module m = (Module)modules.get(i);
+			M += m.getMass();
+			mp.scaleAdd(m.getMass(), new Vector3d(m.getPosition()), mp);
+		}
+		assertEquals(M, struct.getMass(), M*1e-4);
+		mp.scale(1/M);
+		Vector3f cm = struct.getCurrentCenterOfMass();
+		assertEquals(mp.x, cm.x, 1e-3);
+		assertEquals(mp.y, cm.y, 1e-3);
+		assertEquals(mp.z, cm.z, 1e-3);
+
+		// inertia tensor about the CM, with point masses
+		Matrix3d I = new Matrix3d();
+		struct.getInertiaTensor(I);
+		double Ixx = 0, Iyy = 0, Izz = 0, Ixy = 0;
+		for (int i=0; i<modules.size(); i++)
+		{
+			Module m = (Module)modules.get(i);
+			Vector3d p = new Vector3d(m.getPosition());
+			p.sub(mp);
+			double dm = m.getMass();
+			Ixx += dm*(p.y*p.y + p.z*p.z);
+			Iyy += dm*(p.x*p.x + p.z*p.z);
+			Izz += dm*(p.x*p.x + p.y*p.y);
+			Ixy -= dm*p.x*p.y;
+		}
+		double scale = Math.max(Math.max(Ixx, Iyy), Izz);
+		assertEquals(Ixx, I.m00, scale*1e-4);
+		assertEquals(Iyy, I.m11, scale*1e-4);
+		assertEquals(Izz, I.m22, scale*1e-4);
+		assertEquals(Ixy, I.m01, scale*1e-4);
+		assertEquals(I.m01, I.m10, 0);
+	}
+
+	public void testDraws()
+	{
+		Structure struct = Vehicle.getVehicle("Saturn V").toStructure(game.getAgency());
+		checkAgainstModules(struct);
+		Vector3d iv = struct.getInertiaVector();
+
+		// drain the tanks a bit at a time
+		List caps = new ArrayList();
+		Iterator it = struct.getAllCaps();
+		while (it.hasNext())
+		{
+			Capability cap = (Capability)it.next();
+			if (cap.getSupply().countResources() > 0)
+				caps.add(cap);
+		}
+		assertTrue(caps.size() > 0);
+		Random rnd = new Random(1234);
+		for (int i=0; i<2000; i++)
+		{
+			Capability cap = (Capability)caps.get(rnd.nextInt(caps.size()));
+			cap.addSupply(cap.getSupply(), -0.01f);
+			if (i%100 == 0)
+				game.update(Constants.TICKS_PER_SEC*2);
+		}
+		checkAgainstModules(struct);
+
+		// after a second, the CM catches up with the running sums
+		game.update(Constants.TICKS_PER_SEC*2);
+		Capability cap = (Capability)caps.get(0);
+		cap.addSupply(cap.getSupply(), -0.01f);
+		Vector3f cm = struct.getCenterOfMass();
+		Vector3f cm2 = struct.getCurrentCenterOfMass();
+		assertEquals(cm2.x, cm.x, 1e-4);
+		assertEquals(cm2.y, cm.y, 1e-4);
+		assertEquals(cm2.z, cm.z, 1e-4);
+
+		// extents are relative to the CM
+		float lz = Float.MAX_VALUE;
+		List modules = struct.getModules();
+		for (int i=0; i<modules.size(); i++)
+		{
+			Module m = (Module)modules.get(i);
+			lz = Math.min(lz, m.getPosition().z - m.getDimensions().z/2);
+		}
+		assertEquals(lz - cm.z, struct.getLoExtents().z, 1e-2);
+		// and the inertia vector only depends on the shape
+		assertEquals(iv, struct.getInertiaVector());
+	}
+
+	public void testStaging()
+	{
+		Structure struct = Vehicle.getVehicle("Saturn V").toStructure(game.getAgency());
+		List modules = struct.getModules();
+		struct.removeModule((Module)modules.get(modules.size()-1));
+		checkAgainstModules(struct);
+		// staging does a full recompute
+		Vector3f cm = struct.getCenterOfMass();
+		Vector3f cm2 = struct.getCurrentCenterOfMass();
+		assertEquals(cm2.x, cm.x, 1e-3);
+		assertEquals(cm2.y, cm.y, 1e-3);
+		assertEquals(cm2.z, cm.z, 1e-3);
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(MassPropertiesTests.class);
+		return suite;
+	}
+
+}
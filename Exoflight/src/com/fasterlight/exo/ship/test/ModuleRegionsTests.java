@@ -0,0 +1,132 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship.test;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.testing.*;
+
+public class ModuleRegionsTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+			game = new SpaceGame();
+	}
+
+	public ModuleRegionsTests(String name)
+	{
+		super(name);
+	}
+
+	Module[] makeChain(Structure struct, int n)
+	{
+		Module[] mods = new Module[n];
+		for (int i=0; i<n; i++)
+		{
+			mods[i] = new Module(game, "Apollo SM");
+			if (i == 0)
+				struct.addModule(mods[i]);
+			else
+				struct.addModule(mods[i], mods[i-1], Module.UP, Module.DOWN, -1, Module.NORTH);
+		}
+		return mods;
+	}
+
+	public void testRegions()
+	{
+		Structure struct = new Structure(game);
+		struct.setOwner(game.getAgency());
+		Module[] mods = makeChain(struct, 6);
+		assertEquals(1, struct.getRegionCount());
+		Module.unlink(mods[1], mods[2]);
+		Module.unlink(mods[3], mods[4]);
+		assertEquals(3, struct.getRegionCount());
+
+		// air only spreads within a region
+		mods[0].addAtmosphere(new ResourceSet("O2:10"));
+		assertEquals(5f, mods[0].getAtmosphere().getAmountOf("O2"), 1e-5);
+		assertEquals(5f, mods[1].getAtmosphere().getAmountOf("O2"), 1e-5);
+		assertEquals(0f, mods[2].getAtmosphere().getAmountOf("O2"), 0);
+
+		// relinking merges the regions
+		Module.link(mods[1], mods[2], Module.DOWN, Module.UP);
+		assertEquals(2, struct.getRegionCount());
+		mods[3].addAtmosphere(new ResourceSet("N2:4"));
+		for (int i=0; i<4; i++)
+		{
+			assertEquals(2.5f, mods[i].getAtmosphere().getAmountOf("O2"), 1e-5);
+			assertEquals(1f, mods[i].getAtmosphere().getAmountOf("N2"), 1e-5);
+		}
+		assertEquals(0f, mods[4].getAtmosphere().getAmountOf("N2"), 0);
+	}
+
+	public void testMatchesScratch()
+	{
+		Structure s1 = new Structure(game);
+		Structure s2 = new Structure(game);
+		s1.setOwner(game.getAgency());
+		s2.setOwner(game.getAgency());
+		Module[] m1 = makeChain(s1, 20);
+		Module[] m2 = makeChain(s2, 20);
+		for (int i=5; i<20; i+=5)
+		{
+			Module.unlink(m1[i-1], m1[i]);
+			Module.unlink(m2[i-1], m2[i]);
+		}
+		ResourceSet air = new ResourceSet("O2:0.1,N2:0.4,CO2:0.01");
+		try {
+			for (int i=0; i<200; i++)
+			{
+				Structure.setUseRegionIndex(false);
+				m1[(i*7)%20].addAtmosphere(air);
+				Structure.setUseRegionIndex(true);
+				m2[(i*7)%20].addAtmosphere(air);
+			}
+		} finally {
+			Structure.setUseRegionIndex(true);
+		}
+		for (int i=0; i<20; i++)
+		{
+			ResourceSet a1 = m1[i].getAtmosphere();
+			ResourceSet a2 = m2[i].getAtmosphere();
+			assertEquals(a1.getAmountOf("O2"), a2.getAmountOf("O2"), 1e-4);
+			assertEquals(a1.getAmountOf("N2"), a2.getAmountOf("N2"), 1e-4);
+			assertEquals(a1.getAmountOf("CO2"), a2.getAmountOf("CO2"), 1e-5);
+			assertEquals(m1[i].getPressure(), m2[i].getPressure(), 1e-3);
+		}
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(ModuleRegionsTests.class);
+		return suite;
+	}
+
+}
@@ -0,0 +1,219 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship.test;
+
+import java.util.*;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.exo.strategy.Vehicle;
+import com.fasterlight.testing.*;
+
+public class ResourceNetworkTests
+extends NumericTestCase
+{
+	// JUnit sucks.
+	static SpaceGame game;
+
+	//
+
+	public void setUp()
+	{
+		if (game == null)
+			game = new SpaceGame();
+	}
+
+	public ResourceNetworkTests(String name)
+	{
+		super(name);
+	}
+
+	// capabilities that draw from sources, in the same order for the same vehicle
+	List getConsumers(Structure struct)
+	{
+		List list = new ArrayList();
+		Iterator it = struct.getAllCaps();
+		while (it.hasNext())
+		{
+			Capability cap = (Capability)it.next();
+			if (cap instanceof PeriodicCapability && cap.getSources().size() > 0 &&
+				((PeriodicCapability)cap).getReactants().countResources() > 0)
+			{
+				list.add(cap);
+			}
+		}
+		return list;
+	}
+
+	List getAllCaps(Structure struct)
+	{
+		List list = new ArrayList();
+		Iterator it = struct.getAllCaps();
+		while (it.hasNext())
+			list.add(it.next());
+		return list;
+	}
+
+	// makes the same requests with and without the network,
+	// and makes sure all the tanks end up the same
+	void compareVehicle(Vehicle vehicle)
+	{
+		boolean oldenabled = ResourceNetwork.isEnabled();
+		try {
+			Structure s1 = vehicle.toStructure(game.getAgency());
+			Structure s2 = vehicle.toStructure(game.getAgency());
+			List cons1 = getConsumers(s1);
+			List cons2 = getConsumers(s2);
+			List caps1 = getAllCaps(s1);
+			List caps2 = getAllCaps(s2);
+			assertEquals(cons1.size(), cons2.size());
+			assertEquals(caps1.size(), caps2.size());
+			int[] flags = { Capability.ALL_OR_NONE, 0,
+				Capability.ALL_OR_NONE | Capability.CHECK_ONLY, Capability.CHECK_ONLY };
+			for (int iter=0; iter<200; iter++)
+			{
+				for (int i=0; i<cons1.size(); i++)
+				{
+					PeriodicCapability c1 = (PeriodicCapability)cons1.get(i);
+					PeriodicCapability c2 = (PeriodicCapability)cons2.get(i);
+					// big gulps, so the tanks run dry
+					ResourceSet react = new ResourceSet(c1.getReactants(), 100*(iter%5+1));
+					int f = flags[(iter+i)%flags.length];
+					ResourceNetwork.setEnabled(false);
+					ResourceSet r1 = c1.request(react, f);
+					ResourceNetwork.setEnabled(true);
+					ResourceSet r2 = c2.request(react, f);
+					assertEquals(vehicle + " " + c1 + " got", r1, r2);
+				}
+				for (int i=0; i<caps1.size(); i++)
+				{
+					Capability c1 = (Capability)caps1.get(i);
+					Capability c2 = (Capability)caps2.get(i);
+					assertEquals(vehicle + " " + c1 + " supply", c1.getSupply(), c2.getSupply());
+				}
+			}
+			assertEquals(s1.getMass(), s2.getMass(), 0);
+			assertEquals(s1.getTemperature(), s2.getTemperature(), 0);
+		} finally {
+			ResourceNetwork.setEnabled(oldenabled);
+		}
+	}
+
+	public void testVehicles()
+	{
+		List vehicles = Vehicle.getVehicleList();
+		assertTrue(vehicles.size() > 0);
+		for (int j=0; j<vehicles.size(); j++)
+			compareVehicle((Vehicle)vehicles.get(j));
+	}
+
+	// A-4: one tank (alcohol:2640,LO2:6160) feeding the engine
+	void checkA4(boolean network)
+	{
+		boolean oldenabled = ResourceNetwork.isEnabled();
+		ResourceNetwork.setEnabled(network);
+		try {
+			Structure struct = Vehicle.getVehicle("A-4").toStructure(game.getAgency());
+			Module mod = struct.getModule(0);
+			Capability tanks = mod.getCapabilityByName("tanks");
+			Capability engine = mod.getCapabilityByName("engine");
+			assertEquals(new ResourceSet("alcohol:2640,LO2:6160"), tanks.getSupply());
+
+			assertEquals(new ResourceSet("alcohol:1000,LO2:2000"),
+				engine.request(new ResourceSet("alcohol:1000,LO2:2000"), Capability.ALL_OR_NONE));
+			assertEquals(new ResourceSet("alcohol:1640,LO2:4160"), tanks.getSupply());
+
+			// not enough alcohol
+			ResourceSet want = new ResourceSet("alcohol:2000,LO2:1000");
+			assertEquals(ResourceSet.EMPTY, engine.request(want, Capability.ALL_OR_NONE));
+			assertEquals(new ResourceSet("alcohol:1640,LO2:1000"),
+				engine.request(want, Capability.CHECK_ONLY));
+			assertEquals(new ResourceSet("alcohol:1640,LO2:4160"), tanks.getSupply());
+			assertEquals(new ResourceSet("alcohol:1640,LO2:1000"), engine.request(want, 0));
+			assertEquals(new ResourceSet("LO2:3160"), tanks.getSupply());
+
+			// nothing upstream holds E
+			assertEquals(ResourceSet.EMPTY,
+				engine.request(new ResourceSet("E:1"), Capability.ALL_OR_NONE));
+
+			// the only source is inhibited
+			engine.setSourceInhibitFlags(1);
+			assertEquals(ResourceSet.EMPTY, engine.request(new ResourceSet("LO2:100"), 0));
+			assertEquals(new ResourceSet("LO2:3160"), tanks.getSupply());
+		} finally {
+			ResourceNetwork.setEnabled(oldenabled);
+		}
+	}
+
+	// both ways give the amounts worked out by hand
+	public void testA4()
+	{
+		checkA4(false);
+		checkA4(true);
+	}
+
+	public void testRebuild()
+	{
+		Vehicle vehicle = Vehicle.getVehicle("Saturn V");
+		Structure struct = vehicle.toStructure(game.getAgency());
+		ResourceNetwork net = struct.getResourceNetwork();
+		PeriodicCapability cap = (PeriodicCapability)getConsumers(struct).get(0);
+		cap.request(cap.getReactants(), Capability.ALL_OR_NONE);
+		int builds = net.getBuildCount();
+		// no changes, so no rebuild
+		cap.request(cap.getReactants(), Capability.ALL_OR_NONE);
+		assertEquals(builds, net.getBuildCount());
+		// removing a source rebuilds the link
+		List sources = new ArrayList(cap.getSources());
+		cap.removeAllSources();
+		assertEquals(ResourceSet.EMPTY, cap.request(cap.getReactants(), Capability.ALL_OR_NONE));
+		assertEquals(builds+1, net.getBuildCount());
+		for (int i=0; i<sources.size(); i++)
+			cap.addSource((Capability)sources.get(i));
+		assertEquals(cap.getReactants(), cap.request(cap.getReactants(), Capability.ALL_OR_NONE));
+		assertEquals(builds+2, net.getBuildCount());
+	}
+
+	public void testInhibit()
+	{
+		Vehicle vehicle = Vehicle.getVehicle("Saturn V");
+		Structure struct = vehicle.toStructure(game.getAgency());
+		PeriodicCapability cap = (PeriodicCapability)getConsumers(struct).get(0);
+		Capability src = (Capability)cap.getSources().get(0);
+		ResourceSet before = new ResourceSet(src.getSupply());
+		cap.setSourceInhibitFlags(1);
+		cap.request(cap.getReactants(), 0);
+		// inhibited source wasn't touched
+		assertEquals(before, src.getSupply());
+		cap.setSourceInhibitFlags(0);
+		cap.request(cap.getReactants(), 0);
+		assertTrue(!before.equals(src.getSupply()));
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(ResourceNetworkTests.class);
+		return suite;
+	}
+
+}
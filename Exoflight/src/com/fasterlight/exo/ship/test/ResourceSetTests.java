@@ -0,0 +1,144 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.ship.test;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.*;
+
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.testing.*;
+
+public class ResourceSetTests
+extends NumericTestCase
+{
+	public ResourceSetTests(String name)
+	{
+		super(name);
+		THRESHOLD = 1e-5;
+	}
+
+	//
+
+	public void testArithmetic()
+	{
+		ResourceSet a = new ResourceSet("LO2:100,LH2:20");
+		ResourceSet b = new ResourceSet("LH2:5,E:1");
+		assertEquals(2, a.countResources());
+		a.add(b, 2);
+		assertEquals(3, a.countResources());
+		assertEquals(30f, a.getAmountOf("LH2"), 0);
+		assertEquals(2f, a.getAmountOf("E"), 0);
+		a.sub(b);
+		a.sub(b);
+		// E went back to zero, so it isn't in the set anymore
+		assertEquals(2, a.countResources());
+		assertEquals(new ResourceSet("LO2:100,LH2:20"), a);
+		assertEquals(new ResourceSet("LO2:100,LH2:20").hashCode(), a.hashCode());
+
+		ResourceSet c = new ResourceSet(a);
+		assertTrue(c.intersect(new ResourceSet("LO2:50")));
+		assertEquals(50f, c.getAmountOf("LO2"), 0);
+		assertEquals(0f, c.getAmountOf("LH2"), 0);
+		assertEquals(1, c.countResources());
+		assertTrue(!c.union(new ResourceSet("LO2:10")));
+		// 'a' didn't change
+		assertEquals(100f, a.getAmountOf("LO2"), 0);
+
+		a.scale(0.5f);
+		assertEquals(60f, a.mag(), 0);
+		assertEquals(50f, a.getMaxAmount(), 0);
+		assertEquals(10f, a.getMinAmount(), 0);
+		assertEquals(5f, a.consume(Resource.getResourceByName("LH2"), 5, true), 0);
+		assertEquals(0f, a.consume(Resource.getResourceByName("LH2"), 6, true), 0);
+		assertEquals(5f, a.consume(Resource.getResourceByName("LH2"), 6, false), 0);
+		assertEquals(1, a.countResources());
+	}
+
+	public void testResources()
+	{
+		ResourceSet a = new ResourceSet("LO2:1,LH2:2,RP1:3");
+		Set names = new HashSet();
+		Iterator it = a.getResources();
+		while (it.hasNext())
+			names.add(it.next().toString());
+		assertEquals(new HashSet(Arrays.asList(new String[] { "LO2", "LH2", "RP1" })), names);
+		assertEquals(new Float(3), a.getProp("#RP1"));
+		a.setProp("#RP1", new Float(4));
+		assertEquals(4f, a.getAmountOf("RP1"), 0);
+	}
+
+	public void testImmutable()
+	{
+		ResourceSet a = new ResourceSet("LO2:1");
+		ResourceSet b = new ImmutableResourceSet(a);
+		a.addAmount(Resource.getResourceByName("LO2"), 1);
+		assertEquals(1f, b.getAmountOf("LO2"), 0);
+		try {
+			b.add(a);
+			fail("immutable set was modified");
+		} catch (IllegalArgumentException iae) {
+		}
+		assertEquals(0, ResourceSet.EMPTY.countResources());
+		assertEquals(0f, ResourceSet.EMPTY.mass(), 0);
+	}
+
+	Object roundTrip(Object o)
+	throws Exception
+	{
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bout);
+		out.writeObject(o);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+			new ByteArrayInputStream(bout.toByteArray()));
+		return in.readObject();
+	}
+
+	public void testSerialize()
+	throws Exception
+	{
+		ResourceSet a = new ResourceSet("LO2:100,LH2:20,E:0.5");
+		ResourceSet b = (ResourceSet)roundTrip(a);
+		assertEquals(a, b);
+		assertEquals(3, b.countResources());
+		assertEquals(0.5f, b.getAmountOf("E"), 0);
+		b.addAmount(Resource.getResourceByName("LO2"), 1);
+		assertEquals(101f, b.getAmountOf("LO2"), 0);
+
+		// resources come back as the same objects
+		Resource lo2 = Resource.getResourceByName("LO2");
+		assertTrue(lo2 == roundTrip(lo2));
+
+		ResourceSet c = (ResourceSet)roundTrip(new ImmutableResourceSet(a));
+		assertTrue(c instanceof ImmutableResourceSet);
+		assertEquals(a, c);
+		assertEquals(0, ((ResourceSet)roundTrip(ResourceSet.EMPTY)).countResources());
+	}
+
+	//
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(ResourceSetTests.class);
+		return suite;
+	}
+
+}
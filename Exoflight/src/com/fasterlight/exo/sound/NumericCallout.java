@@ -20,6 +20,7 @@ package com.fasterlight.exo.sound;
 
 import java.text.MessageFormat;
 
+import com.fasterlight.exo.game.PropertyPath;
 import com.fasterlight.exo.orbit.Constants;
 import com.fasterlight.game.Game;
 import com.fasterlight.spif.*;
@@ -33,6 +34,7 @@ extends VoiceCallout
 	protected float rangehi =  1e30f;
 	protected MessageFormat format = defaultFormat;
 	protected String value_prop;
+	protected PropertyPath value_path;
 	protected float value_scale = 1;
 	protected float value_step = 1;
 	protected float factor = 1;
@@ -89,6 +91,7 @@ extends VoiceCallout
 	public void setPropertyForValue(String value_prop)
 	{
 		this.value_prop = value_prop;
+		this.value_path = (value_prop != null) ? PropertyPath.compile(value_prop) : null;
 	}
 
 	public float getValueScale()
@@ -113,14 +116,11 @@ extends VoiceCallout
 
 	//
 
-	public float getValue()
+	public float getValue(long time)
 	{
-		if (value_prop == null || top == null)
+		if (value_path == null || top == null)
 			return 0;
-		Object o = PropertyEvaluator.get(top, value_prop);
-		if (o == null)
-			return 0;
-		float v = PropertyUtil.toFloat(o);
+		float v = (float)value_path.getDouble(top, time, 0);
 		// todo: doesn't work when decreasing
 		v = (float)(Math.floor(v/value_step)*value_step);
 		return v;
@@ -128,7 +128,7 @@ extends VoiceCallout
 
 	public float getPriority(long time)
 	{
-		float value = getValue();
+		float value = getValue(time);
 		if (value < rangelo || value >= rangehi)
 			return 0;
 		float prio = Math.abs(value - last_update_value);
@@ -144,7 +144,7 @@ extends VoiceCallout
 
 	public String getMessage(long time)
 	{
-		float value = getValue();
+		float value = getValue(time);
 		last_update_value = value;
 		Object[] arr = { new Float(value*value_scale) };
 		return format.format(arr);
@@ -47,9 +47,27 @@ extends TestSuite
 		suite.addTest(com.fasterlight.exo.orbit.test.DE405Tests.suite());
 		suite.addTest(com.fasterlight.exo.orbit.test.UtilTests.suite());
 		suite.addTest(com.fasterlight.exo.orbit.test.OrientationTests.suite());
+		suite.addTest(com.fasterlight.exo.orbit.test.SatelliteCatalogTests.suite());
+		suite.addTest(com.fasterlight.exo.orbit.test.AsteroidCatalogTests.suite());
+		suite.addTest(com.fasterlight.exo.orbit.nav.test.OptimizerTests.suite());
 
 		suite.addTest(LandedTrajectoryTests.suite());
 		suite.addTest(MutableTrajectoryTests.suite());
+		suite.addTest(CowellTrajectoryTests.suite());
+		suite.addTest(PropagationLODTests.suite());
+
+		suite.addTest(com.fasterlight.exo.ship.test.ResourceSetTests.suite());
+		suite.addTest(com.fasterlight.exo.ship.test.ResourceNetworkTests.suite());
+		suite.addTest(com.fasterlight.exo.ship.test.CapabilitySchedulerTests.suite());
+		suite.addTest(com.fasterlight.exo.ship.test.AeroTableTests.suite());
+		suite.addTest(com.fasterlight.exo.ship.test.MassPropertiesTests.suite());
+		suite.addTest(com.fasterlight.exo.ship.test.ModuleRegionsTests.suite());
+		suite.addTest(com.fasterlight.exo.ship.test.CapabilityIndexTests.suite());
+
+		suite.addTest(com.fasterlight.exo.game.test.PropertyPathTests.suite());
+		suite.addTest(com.fasterlight.exo.game.test.TelemetryRecorderTests.suite());
+		suite.addTest(com.fasterlight.exo.seq.test.ConditionWaitTests.suite());
+		suite.addTest(com.fasterlight.exo.seq.test.SequenceCacheTests.suite());
 
 		suite.addTest(com.fasterlight.exo.strategy.test.MissionTests.suite());
 		suite.addTest(com.fasterlight.exo.strategy.test.VehicleTests.suite());
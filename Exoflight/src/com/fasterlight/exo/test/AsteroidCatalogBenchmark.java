@@ -0,0 +1,124 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.PropagationScheduler;
+import com.fasterlight.vecmath.Vector3d;
+
+/**
+  * Times moving all of astorb.dat forward with AsteroidCatalog,
+  * with one thread and with the PropagationScheduler's threads,
+  * vs. a Conic per asteroid.  Then times nearest() vs. a linear search.
+  * Usage: AsteroidCatalogBenchmark [iters]
+  */
+public class AsteroidCatalogBenchmark
+{
+	SpaceGame game;
+	AsteroidCatalog cat;
+	int iters = 200;
+
+	void doUpdate(int nthreads)
+	{
+		PropagationScheduler.setNumThreads(nthreads);
+		long t = game.time();
+		long t1 = System.currentTimeMillis();
+		for (int i=0; i<iters; i++)
+		{
+			t += Constants.TICKS_PER_DAY;
+			cat.update(t);
+		}
+		long t2 = System.currentTimeMillis();
+		System.out.println("  update, " + nthreads + " threads: " +
+			(t2-t1)*1000/iters + " usec");
+	}
+
+	void doConics()
+	{
+		Conic[] conics = new Conic[cat.size()];
+		for (int j=0; j<conics.length; j++)
+			conics[j] = cat.getConic(j);
+		long t = game.time();
+		long t1 = System.currentTimeMillis();
+		for (int i=0; i<iters; i++)
+		{
+			t += Constants.TICKS_PER_DAY;
+			for (int j=0; j<conics.length; j++)
+				conics[j].getStateVectorAtTime(t*(1d/Constants.TICKS_PER_SEC));
+		}
+		long t2 = System.currentTimeMillis();
+		System.out.println("  conics: " + (t2-t1)*1000/iters + " usec");
+	}
+
+	void doNearest()
+	{
+		cat.update(game.time());
+		int nq = iters*100;
+		Vector3d p = new Vector3d();
+		long t1 = System.currentTimeMillis();
+		for (int i=0; i<nq; i++)
+		{
+			cat.getPosition(i % cat.size(), p);
+			p.x += 1e6;
+			cat.nearest(p, 1e8);
+		}
+		long t2 = System.currentTimeMillis();
+		Vector3d q = new Vector3d();
+		for (int i=0; i<nq; i++)
+		{
+			cat.getPosition(i % cat.size(), p);
+			p.x += 1e6;
+			double best = 1e8;
+			for (int j=0; j<cat.size(); j++)
+			{
+				cat.getPosition(j, q);
+				q.sub(p);
+				if (q.length() < best)
+					best = q.length();
+			}
+		}
+		long t3 = System.currentTimeMillis();
+		System.out.println("  nearest(): " + (t2-t1)*1000000/nq + " nsec, linear: " +
+			(t3-t2)*1000000/nq + " nsec");
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		AsteroidCatalogBenchmark acb = new AsteroidCatalogBenchmark();
+		if (args.length > 0)
+			acb.iters = Integer.parseInt(args[0]);
+		acb.game = new SpaceGame();
+		acb.game.start();
+		long t1 = System.currentTimeMillis();
+		acb.cat = acb.game.getAsteroidCatalog();
+		long t2 = System.currentTimeMillis();
+		System.out.println(acb.cat.size() + " asteroids, loaded in " + (t2-t1) + " msec");
+		int nthreads = Runtime.getRuntime().availableProcessors();
+		// fluff it
+		for (int i=0; i<2; i++)
+		{
+			acb.doUpdate(1);
+			acb.doUpdate(nthreads);
+			acb.doConics();
+			acb.doNearest();
+		}
+	}
+}
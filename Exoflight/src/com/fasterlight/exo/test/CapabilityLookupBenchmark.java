@@ -0,0 +1,98 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import java.util.List;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.AstroUtil;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.exo.strategy.Vehicle;
+
+/**
+  * Does the getCapabilitiesOfClass() lookups that the attitude,
+  * guidance and propulsion code do every frame, with and
+  * without the structure's capability index.
+  * Usage: CapabilityLookupBenchmark [vehicle] [msec]
+  */
+public class CapabilityLookupBenchmark
+{
+	static final Class[] CLASSES = {
+		GuidanceCapability.class, RCSCapability.class,
+		AttitudeControlComponent.class, PropulsionCapability.class
+	};
+
+	Structure struct;
+
+	void setup(String vehiclename)
+	{
+		SpaceGame game = new SpaceGame();
+		Vehicle vehicle = Vehicle.getVehicle(vehiclename);
+		if (vehicle == null)
+			throw new IllegalArgumentException("Vehicle " + vehiclename + " not found!");
+		struct = vehicle.toStructure(game.getAgency());
+		System.out.println(struct + ": " +
+			struct.getCapabilitiesOfClass(Capability.class).size() + " capabilities");
+	}
+
+	void run(long msec, boolean useindex)
+	{
+		Structure.setUseCapabilityIndex(useindex);
+		int nframes = 0;
+		int nfound = 0;
+		long t1 = System.currentTimeMillis();
+		long t2 = t1 + msec;
+		while (System.currentTimeMillis() < t2)
+		{
+			for (int i=0; i<CLASSES.length; i++)
+			{
+				List list = struct.getCapabilitiesOfClass(CLASSES[i]);
+				nfound += list.size();
+				if (struct.getCapabilityOfClass(CLASSES[i]) != null)
+					nfound++;
+			}
+			nframes++;
+		}
+		t2 = System.currentTimeMillis();
+		float rate = (nframes*1000f)/(t2-t1);
+		System.out.println("  index=" + useindex + ": " + nframes + " frames in " +
+			(t2-t1) + " msec, " + AstroUtil.format(rate) + " frames/sec" +
+			" (" + nfound/nframes + ")");
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		String vehiclename = "Space Shuttle";
+		long msec = 5000;
+		if (args.length > 0)
+			vehiclename = args[0];
+		if (args.length > 1)
+			msec = Long.parseLong(args[1]);
+
+		CapabilityLookupBenchmark clb = new CapabilityLookupBenchmark();
+		clb.setup(vehiclename);
+		System.out.println("warmup");
+		clb.run(msec/5, false);
+		clb.run(msec/5, true);
+		System.out.println("test");
+		clb.run(msec, false);
+		clb.run(msec, true);
+	}
+}
@@ -0,0 +1,93 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.*;
+import com.fasterlight.util.Vec3d;
+import com.fasterlight.vecmath.Vector3d;
+
+/**
+  * Compares the regular Cowell step control with adaptive
+  * RKF78 coasting on a translunar coast, starting just after
+  * TLI from a 300 km parking orbit.
+  * Reports force evaluations per simulated day.
+  * Usage: CoastBenchmark [days]
+  */
+public class CoastBenchmark
+{
+	static final double PERIGEE_ALT = 300;
+	static final double APOGEE_RAD = 384400;
+
+	int days;
+	Vector3d endpos;
+
+	CowellTrajectory makeTransfer(SpaceGame game, boolean adaptive)
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		double U = earth.getMass()*Constants.GRAV_CONST_KM;
+		double r = earth.getRadius() + PERIGEE_ALT;
+		double a = (r + APOGEE_RAD)/2;
+		double v = Math.sqrt(U*(2/r - 1/a));
+		DefaultUniverseThing thing = new DefaultUniverseThing();
+		thing.setName("Translunar");
+		thing.setMass(30000);
+		thing.setRadius(0.01f);
+		CowellTrajectory traj = new CowellTrajectory(earth,
+			new Vec3d(r,0,0), new Vec3d(0,v,0), game.time(), new Orientation());
+		traj.setAdaptiveCoast(adaptive);
+		thing.setTrajectory(traj);
+		return traj;
+	}
+
+	void doTest(boolean adaptive)
+	{
+		// each run gets its own game, so they start at the same time
+		SpaceGame game = new SpaceGame();
+		game.start();
+		CowellTrajectory traj = makeTransfer(game, adaptive);
+		long t1 = System.currentTimeMillis();
+		game.update(Constants.TICKS_PER_SEC*86400*days);
+		long t2 = System.currentTimeMillis();
+		endpos = traj.getPos(game.time());
+		System.out.println((adaptive ? "adaptive" : "fixed") + "\t"
+			+ (traj.getForceEvaluationCount()/days) + "\t\t" + (t2-t1));
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		CoastBenchmark cb = new CoastBenchmark();
+		cb.days = 3;
+		if (args.length > 0)
+			cb.days = Integer.parseInt(args[0]);
+		// no need to parallelize one ship
+		PropagationScheduler.setNumThreads(0);
+
+		System.out.println("mode\tevals/day\tmsec\t(" + cb.days + " days)");
+		cb.doTest(false);
+		Vector3d fixedpos = cb.endpos;
+		cb.doTest(true);
+		Vector3d diff = new Vector3d(fixedpos);
+		diff.sub(cb.endpos);
+		System.out.println("difference in final position: " + diff.length() + " km");
+		System.out.println("distance from Earth: " + cb.endpos.length() + " km");
+	}
+}
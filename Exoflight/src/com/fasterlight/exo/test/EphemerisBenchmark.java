@@ -0,0 +1,107 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.eph.*;
+
+/**
+  * Compares the serialized DE405 chunks against the memory-mapped
+  * flat file: time to first query across several chunks, then
+  * steady-state query rate.  Run MakeMappedEphemeris first.
+  */
+public class EphemerisBenchmark
+{
+	static final double[] JDS = {
+		2437000.5, 2444300.5, 2451600.5, 2458900.5
+	};
+
+	long t1,t2;
+	int niters = 0;
+
+	void startTest(long msec)
+	{
+		niters = 0;
+		t1 = System.currentTimeMillis();
+		t2 = t1+msec;
+	}
+
+	boolean testDone()
+	{
+		return (System.currentTimeMillis() >= t2);
+	}
+
+	void printResults()
+	{
+		t2 = System.currentTimeMillis();
+		float rate = (niters*1000f)/(t2-t1);
+		System.out.println("  " + niters + " queries in " + (t2-t1) +
+			" msec, " + AstroUtil.format(rate) + " queries/sec");
+	}
+
+	void firstQueries(Ephemeris eph, long tstart)
+	{
+		StateVector sv = new StateVector();
+		for (int i=0; i<JDS.length; i++)
+		{
+			eph.getBodyStateVector(sv, 3, JDS[i]);
+			long t = System.currentTimeMillis();
+			System.out.println("  JD " + JDS[i] + ": " + (t-tstart) + " msec since start");
+		}
+	}
+
+	void steadyState(Ephemeris eph, long msec)
+	{
+		StateVector sv = new StateVector();
+		double jd0 = eph.getStartTime();
+		double span = eph.getEndTime() - jd0;
+		startTest(msec);
+		while (!testDone())
+		{
+			// wander around so we aren't just hitting the per-JD cache
+			double jd = jd0 + ((niters*7919L) % 100000)*span/100000;
+			eph.getBodyStateVector(sv, 3, jd);
+			niters++;
+		}
+		printResults();
+	}
+
+	void doTest(long msec)
+	throws Exception
+	{
+		System.out.println("Serialized chunks (Ephemeris1960to2020)");
+		long t = System.currentTimeMillis();
+		Ephemeris eph = new Ephemeris1960to2020();
+		firstQueries(eph, t);
+		steadyState(eph, msec);
+
+		System.out.println("Mapped file (" + MappedEphemeris.DEFAULT_PATH + ")");
+		t = System.currentTimeMillis();
+		eph = new MappedEphemeris();
+		firstQueries(eph, t);
+		steadyState(eph, msec);
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		EphemerisBenchmark eb = new EphemerisBenchmark();
+		eb.doTest(5000);
+	}
+}
@@ -0,0 +1,108 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import java.util.Random;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.*;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.util.Vec3d;
+
+/**
+  * Puts a bunch of idle satellites in orbit and runs the game
+  * at 10,000x, with and without PropagationLOD.
+  * Prints how long each second of wall-clock time takes to simulate.
+  * Usage: LazyPropagationBenchmark [ships] [warp]
+  */
+public class LazyPropagationBenchmark
+{
+	static final int NUM_SECS = 30;
+
+	SpaceGame game;
+	Random rand = new Random(1234);
+
+	SpaceShip[] makeShips(int n)
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		double U = earth.getMass()*Constants.GRAV_CONST_KM;
+		SpaceShip[] ships = new SpaceShip[n];
+		for (int i=0; i<n; i++)
+		{
+			Structure struct = new Structure(game);
+			struct.addModule(new Module(game, "Comm Satellite"));
+			ships[i] = new SpaceShip(struct);
+			ships[i].setName("Sat " + i);
+			double r = earth.getRadius() + 700 + rand.nextDouble()*30000;
+			double v = Math.sqrt(U/r);
+			double inc = rand.nextDouble()*Math.PI;
+			ships[i].setTrajectory(new CowellTrajectory(earth,
+				new Vec3d(r,0,0), new Vec3d(0,v*Math.cos(inc),v*Math.sin(inc)),
+				game.time(), new Orientation()));
+		}
+		return ships;
+	}
+
+	void doTest(int nships, long warp, boolean lazy)
+	{
+		PropagationLOD.setEnabled(lazy);
+		SpaceShip[] ships = makeShips(nships);
+		long total = 0;
+		long worst = 0;
+		for (int i=0; i<NUM_SECS; i++)
+		{
+			long t1 = System.currentTimeMillis();
+			game.update(Constants.TICKS_PER_SEC*warp);
+			long t2 = System.currentTimeMillis();
+			total += t2-t1;
+			worst = Math.max(worst, t2-t1);
+		}
+		int nlazy = 0;
+		for (int i=0; i<ships.length; i++)
+		{
+			if (PropagationLOD.isLazy(ships[i]))
+				nlazy++;
+			ships[i].setTrajectory(null);
+		}
+		System.out.println("  lazy=" + lazy + ": " + (total/NUM_SECS) + " msec avg, " +
+			worst + " msec worst per wall second (" + nlazy + " lazy at end)");
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		int nships = 1000;
+		long warp = 10000;
+		if (args.length > 0)
+			nships = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			warp = Long.parseLong(args[1]);
+
+		LazyPropagationBenchmark lpb = new LazyPropagationBenchmark();
+		lpb.game = new SpaceGame();
+		lpb.game.start();
+		System.out.println(nships + " ships at " + warp + "x");
+		// fluff it
+		lpb.doTest(10, warp, false);
+		lpb.doTest(10, warp, true);
+		lpb.doTest(nships, warp, false);
+		lpb.doTest(nships, warp, true);
+	}
+}
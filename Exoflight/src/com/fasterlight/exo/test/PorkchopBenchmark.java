@@ -0,0 +1,94 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.nav.*;
+import com.fasterlight.vecmath.Tuple2f;
+
+/**
+  * Times a full Earth-Mars porkchop search (departures over
+  * 2 years, flights of 100-400 days) run to the end in the
+  * background, with one thread and with the optimizer's pool.
+  * Usage: PorkchopBenchmark [threads] [resolution]
+  */
+public class PorkchopBenchmark
+implements Constants
+{
+	static final long DEPART_DAYS = 365*2;
+	static final long MIN_FLIGHT_DAYS = 100;
+	static final long MAX_FLIGHT_DAYS = 400;
+
+	SpaceGame game;
+	int resolution = 128;
+
+	TOFOptimizer makeOptimizer()
+	{
+		long t = game.time();
+		long day = TICKS_PER_SEC*86400;
+		TOFOptimizer opt = new TOFOptimizer(
+			game.getBody("Earth"),
+			game.getBody("Mars"),
+			game.getBody("Sun"),
+			t, t+DEPART_DAYS*day, MIN_FLIGHT_DAYS*day, MAX_FLIGHT_DAYS*day);
+		opt.setMinXSize(1f/resolution);
+		opt.setMinYSize(1f/resolution);
+		return opt;
+	}
+
+	TOFOptimizer doTest(int nthreads)
+	throws InterruptedException
+	{
+		Optimizer.setNumThreads(nthreads);
+		TOFOptimizer opt = makeOptimizer();
+		long t1 = System.currentTimeMillis();
+		opt.startSearch(Integer.MAX_VALUE);
+		opt.waitForSearch();
+		long t2 = System.currentTimeMillis();
+		Tuple2f best = opt.getBestPoint();
+		System.out.println(nthreads + "\t" + (t2-t1) + "\t" + opt.getSize() + "\t" +
+			opt.getMinCost() + "\t" + best);
+		return opt;
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		int nthreads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 0)
+			nthreads = Integer.parseInt(args[0]);
+
+		PorkchopBenchmark pb = new PorkchopBenchmark();
+		if (args.length > 1)
+			pb.resolution = Integer.parseInt(args[1]);
+		pb.game = new SpaceGame();
+		pb.game.start();
+
+		System.out.println("threads\tmsec\titers\tmin dv\tbest point");
+		// fluff it
+		pb.doTest(1);
+		pb.doTest(nthreads);
+
+		TOFOptimizer serial = pb.doTest(1);
+		TOFOptimizer parallel = pb.doTest(nthreads);
+		if (!serial.getBestPoint().equals(parallel.getBestPoint()))
+			System.out.println("*** best points differ!");
+	}
+}
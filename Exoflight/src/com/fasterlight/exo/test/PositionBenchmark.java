@@ -0,0 +1,101 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import java.util.List;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+
+/**
+  * Times UniverseThing.getPosition() between every pair of bodies
+  * in the solar system (as set up by init/SolarSystem.seq),
+  * both many times per tick and once per tick.
+  */
+public class PositionBenchmark
+{
+	SpaceGame game;
+	List things;
+
+	long t1,t2;
+	int niters = 0;
+
+	void startTest(long msec)
+	{
+		niters = 0;
+		t1 = System.currentTimeMillis();
+		t2 = t1+msec;
+	}
+
+	boolean testDone()
+	{
+		return (System.currentTimeMillis() >= t2);
+	}
+
+	void printResults()
+	{
+		t2 = System.currentTimeMillis();
+		float rate = (niters*1000f)/(t2-t1);
+		System.out.println("  " + niters + " calls in " + (t2-t1) +
+			" msec, " + AstroUtil.format(rate) + " calls/sec");
+	}
+
+	void allPairs(long time)
+	{
+		int n = things.size();
+		for (int i=0; i<n; i++)
+		{
+			UniverseThing a = (UniverseThing)things.get(i);
+			for (int j=0; j<n; j++)
+			{
+				a.getPosition((UniverseThing)things.get(j), time);
+				niters++;
+			}
+		}
+	}
+
+	void doTest(long msec)
+	{
+		long time = game.time();
+		System.out.println("Same tick, " + things.size() + " bodies");
+		startTest(msec);
+		while (!testDone())
+			allPairs(time);
+		printResults();
+
+		System.out.println("New tick every pass");
+		startTest(msec);
+		while (!testDone())
+			allPairs(time++);
+		printResults();
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		PositionBenchmark pb = new PositionBenchmark();
+		pb.game = new SpaceGame();
+		pb.game.start();
+		pb.things = pb.game.getThings();
+		// fluff it
+		pb.doTest(250);
+		// real test
+		pb.doTest(5000);
+	}
+}
@@ -0,0 +1,100 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.AstroUtil;
+import com.fasterlight.exo.ship.*;
+
+/**
+  * Builds a station out of a chain of modules, splits it into
+  * a few sealed-off regions, and adds air to it over and over,
+  * which equalizes the pressure each time (like ECS and crew do).
+  * Runs once finding the regions from scratch, and once with
+  * the region index.
+  * Usage: PressureBenchmark [#modules] [msec]
+  */
+public class PressureBenchmark
+{
+	static final String MODULE_TYPE = "Apollo SM";
+	static final int REGION_SIZE = 10;
+
+	Structure struct;
+	Module[] mods;
+
+	void setup(int nmods)
+	{
+		SpaceGame game = new SpaceGame();
+		struct = new Structure(game);
+		struct.setOwner(game.getAgency());
+		mods = new Module[nmods];
+		for (int i=0; i<nmods; i++)
+		{
+			mods[i] = new Module(game, MODULE_TYPE);
+			if (i == 0)
+				struct.addModule(mods[i]);
+			else
+				struct.addModule(mods[i], mods[i-1], Module.UP, Module.DOWN, -1, Module.NORTH);
+		}
+		// seal off some of the hatches
+		for (int i=REGION_SIZE; i<nmods; i+=REGION_SIZE)
+			Module.unlink(mods[i-1], mods[i]);
+		System.out.println(struct + ": " + nmods + " modules, " +
+			struct.getRegionCount() + " regions");
+	}
+
+	void run(long msec)
+	{
+		ResourceSet air = new ResourceSet("O2:0.01,N2:0.04");
+		int n = 0;
+		long t1 = System.currentTimeMillis();
+		long t2 = t1 + msec;
+		while (System.currentTimeMillis() < t2)
+		{
+			mods[n % mods.length].addAtmosphere(air);
+			n++;
+		}
+		t2 = System.currentTimeMillis();
+		float rate = (n*1000f)/(t2-t1);
+		System.out.println("  " + n + " equalizations in " + (t2-t1) + " msec, " +
+			AstroUtil.format(rate) + "/sec (" + mods[0].getPressure() + " kPa)");
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		int nmods = 50;
+		long msec = 5000;
+		if (args.length > 0)
+			nmods = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			msec = Long.parseLong(args[1]);
+
+		PressureBenchmark pb = new PressureBenchmark();
+		pb.setup(nmods);
+		Structure.setUseRegionIndex(false);
+		System.out.println("from scratch");
+		pb.run(msec/5);
+		pb.run(msec);
+		Structure.setUseRegionIndex(true);
+		System.out.println("region index");
+		pb.run(msec/5);
+		pb.run(msec);
+	}
+}
@@ -0,0 +1,98 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import java.util.Random;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.*;
+import com.fasterlight.util.Vec3d;
+
+/**
+  * Measures how propagation scales with the # of ships in orbit,
+  * with one thread and with PropagationScheduler's worker threads.
+  * Usage: PropagationBenchmark [threads]
+  */
+public class PropagationBenchmark
+{
+	static final int[] NUM_SHIPS = { 1, 10, 50, 100, 250, 500 };
+	static final long SIM_SECS = 3600;
+
+	SpaceGame game;
+	Random rand = new Random(1234);
+
+	CowellTrajectory[] makeShips(int n)
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		double U = earth.getMass()*Constants.GRAV_CONST_KM;
+		CowellTrajectory[] trajs = new CowellTrajectory[n];
+		for (int i=0; i<n; i++)
+		{
+			DefaultUniverseThing thing = new DefaultUniverseThing();
+			thing.setName("Ship " + i);
+			thing.setMass(1000);
+			thing.setRadius(0.005f);
+			double r = earth.getRadius() + 300 + rand.nextDouble()*30000;
+			double v = Math.sqrt(U/r);
+			double inc = rand.nextDouble()*Math.PI;
+			trajs[i] = new CowellTrajectory(earth,
+				new Vec3d(r,0,0), new Vec3d(0,v*Math.cos(inc),v*Math.sin(inc)),
+				game.time(), new Orientation());
+			thing.setTrajectory(trajs[i]);
+		}
+		return trajs;
+	}
+
+	long doTest(int nships, int nthreads)
+	{
+		PropagationScheduler.setNumThreads(nthreads);
+		CowellTrajectory[] trajs = makeShips(nships);
+		long t1 = System.currentTimeMillis();
+		game.update(Constants.TICKS_PER_SEC*SIM_SECS);
+		long t2 = System.currentTimeMillis();
+		for (int i=0; i<trajs.length; i++)
+			trajs[i].getThing().setTrajectory(null);
+		return t2-t1;
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		int nthreads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 0)
+			nthreads = Integer.parseInt(args[0]);
+
+		PropagationBenchmark pb = new PropagationBenchmark();
+		pb.game = new SpaceGame();
+		pb.game.start();
+		// fluff it
+		pb.doTest(10, 0);
+		pb.doTest(10, nthreads);
+
+		System.out.println("ships\tserial\t" + nthreads + " threads\t(msec for " + SIM_SECS + " sim secs)");
+		for (int i=0; i<NUM_SHIPS.length; i++)
+		{
+			int n = NUM_SHIPS[i];
+			long ts = pb.doTest(n, 0);
+			long tp = pb.doTest(n, nthreads);
+			System.out.println(n + "\t" + ts + "\t" + tp);
+		}
+	}
+}
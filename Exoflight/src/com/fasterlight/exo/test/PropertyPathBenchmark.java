@@ -0,0 +1,157 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import java.io.*;
+import java.util.*;
+
+import com.fasterlight.exo.game.PropertyPath;
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+import com.fasterlight.exo.orbit.traj.CowellTrajectory;
+import com.fasterlight.exo.seq.Sequencer;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.spif.*;
+import com.fasterlight.util.Vec3d;
+
+/**
+  * Evaluates every text_prop in the MEDS page display, the way the
+  * panel does once per frame, with PropertyEvaluator and with
+  * PropertyPath.  "selected" is swapped for "ship" so a Sequencer
+  * can be the root.  Prints the time per frame at 60 fps.
+  * Usage: PropertyPathBenchmark [frames] [panel]
+  */
+public class PropertyPathBenchmark
+{
+	SpaceGame game;
+	Sequencer seq;
+	String[] props;
+	PropertyPath[] paths;
+	int frames = 6000;
+
+	void loadPanel(String resource)
+	throws IOException
+	{
+		InputStream in = ClassLoader.getSystemResourceAsStream(resource);
+		if (in == null)
+			throw new IOException("Could not find " + resource);
+		BufferedReader br = new BufferedReader(new InputStreamReader(in));
+		List l = new ArrayList();
+		String line;
+		while ((line=br.readLine()) != null)
+		{
+			line = line.trim();
+			if (line.startsWith("text_prop="))
+			{
+				String p = line.substring(10);
+				if (p.startsWith("selected."))
+					p = "ship." + p.substring(9);
+				l.add(p);
+			}
+		}
+		br.close();
+		props = (String[])l.toArray(new String[l.size()]);
+		paths = new PropertyPath[props.length];
+		for (int i=0; i<props.length; i++)
+			paths[i] = PropertyPath.compile(props[i]);
+	}
+
+	void setupShip()
+	{
+		Planet earth = (Planet)game.getBody("Earth");
+		Structure struct = new Structure(game);
+		struct.addModule(new Module(game, "Comm Satellite"));
+		SpaceShip ship = new SpaceShip(struct);
+		ship.setName("Benchmark");
+		double r = earth.getRadius() + 400;
+		double v = Math.sqrt(earth.getMass()*Constants.GRAV_CONST_KM/r);
+		ship.setTrajectory(new CowellTrajectory(earth,
+			new Vec3d(r,0,0), new Vec3d(0,v,0), game.time(), new Orientation()));
+		seq = new Sequencer(game);
+		seq.setShip(ship);
+	}
+
+	void report(String name, long msec)
+	{
+		System.out.println("  " + name + ": " + (msec*1000/frames) + " usec/frame, " +
+			(msec*100*60/(frames*1000f)) + "% of the 60 fps budget");
+	}
+
+	void doTest()
+	{
+		// each frame is a new game time, like a running game
+		long t = game.time();
+		long t1 = System.currentTimeMillis();
+		for (int f=0; f<frames; f++)
+		{
+			for (int i=0; i<props.length; i++)
+			{
+				try {
+					PropertyEvaluator.get(seq, props[i]);
+				} catch (PropertyException pe) {
+				}
+			}
+		}
+		long t2 = System.currentTimeMillis();
+		for (int f=0; f<frames; f++)
+		{
+			for (int i=0; i<props.length; i++)
+			{
+				try {
+					paths[i].get(seq, t+f);
+				} catch (PropertyException pe) {
+				}
+			}
+		}
+		long t3 = System.currentTimeMillis();
+		for (int f=0; f<frames; f++)
+		{
+			for (int i=0; i<props.length; i++)
+			{
+				try {
+					paths[i].getDouble(seq, t+f, Double.NaN);
+				} catch (PropertyException pe) {
+				}
+			}
+		}
+		long t4 = System.currentTimeMillis();
+		report("PropertyEvaluator", t2-t1);
+		report("PropertyPath.get", t3-t2);
+		report("PropertyPath.getDouble", t4-t3);
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		PropertyPathBenchmark ppb = new PropertyPathBenchmark();
+		String panel = "panels/meds_page_display.txt";
+		if (args.length > 0)
+			ppb.frames = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			panel = args[1];
+		ppb.game = new SpaceGame();
+		ppb.game.start();
+		ppb.setupShip();
+		ppb.loadPanel(panel);
+		System.out.println(ppb.props.length + " properties, " + ppb.frames + " frames");
+		// fluff it
+		ppb.doTest();
+		ppb.doTest();
+	}
+}
@@ -0,0 +1,120 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import java.util.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.AstroUtil;
+import com.fasterlight.exo.ship.*;
+import com.fasterlight.exo.strategy.Vehicle;
+
+/**
+  * Burns a Saturn V stack through Capability.request() and consume(),
+  * the way propulsion and life support do every tick, and sums
+  * the structure's supply once per tick.
+  * Supplies are refilled every REFILL_TICKS so we don't run dry.
+  * Usage: ResourceBenchmark [vehicle] [msec]
+  */
+public class ResourceBenchmark
+{
+	static final int REFILL_TICKS = 1000;
+
+	Structure struct;
+	List caps = new ArrayList(); // PeriodicCapabilities with reactants
+	List allcaps = new ArrayList();
+	List supplies = new ArrayList(); // initial supply of 'allcaps'
+
+	void setup(String vehiclename)
+	{
+		SpaceGame game = new SpaceGame();
+		Vehicle vehicle = Vehicle.getVehicle(vehiclename);
+		if (vehicle == null)
+			throw new IllegalArgumentException("Vehicle " + vehiclename + " not found!");
+		struct = vehicle.toStructure(game.getAgency());
+		Iterator it = struct.getAllCaps();
+		while (it.hasNext())
+		{
+			Capability cap = (Capability)it.next();
+			allcaps.add(cap);
+			supplies.add(new ResourceSet(cap.getSupply()));
+			if (cap instanceof PeriodicCapability &&
+				((PeriodicCapability)cap).getReactants().countResources() > 0)
+			{
+				caps.add(cap);
+			}
+		}
+		System.out.println(struct + ": " + allcaps.size() + " capabilities, " +
+			caps.size() + " with reactants");
+	}
+
+	void refill()
+	{
+		for (int i=0; i<allcaps.size(); i++)
+			((Capability)allcaps.get(i)).setSupply((ResourceSet)supplies.get(i));
+	}
+
+	void run(long msec)
+	{
+		int nticks = 0;
+		int nrequests = 0;
+		float mass = 0;
+		long t1 = System.currentTimeMillis();
+		long t2 = t1 + msec;
+		while (System.currentTimeMillis() < t2)
+		{
+			for (int i=0; i<caps.size(); i++)
+			{
+				PeriodicCapability cap = (PeriodicCapability)caps.get(i);
+				ResourceSet react = cap.getReactants();
+				// engines check first, then take what they can
+				cap.request(react, Capability.ALL_OR_NONE | Capability.CHECK_ONLY);
+				cap.request(react, 0);
+				nrequests += 2;
+			}
+			mass += struct.getSupply().mass();
+			if (++nticks % REFILL_TICKS == 0)
+				refill();
+		}
+		t2 = System.currentTimeMillis();
+		float rate = (nrequests*1000f)/(t2-t1);
+		System.out.println("  " + nticks + " ticks, " + nrequests + " requests in " +
+			(t2-t1) + " msec, " + AstroUtil.format(rate) + " requests/sec" +
+			" (" + mass/nticks + ")");
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		String vehiclename = "Saturn V";
+		long msec = 5000;
+		if (args.length > 0)
+			vehiclename = args[0];
+		if (args.length > 1)
+			msec = Long.parseLong(args[1]);
+
+		ResourceBenchmark rb = new ResourceBenchmark();
+		rb.setup(vehiclename);
+		System.out.println("warmup");
+		rb.run(msec/5);
+		rb.refill();
+		System.out.println("test");
+		rb.run(msec);
+	}
+}
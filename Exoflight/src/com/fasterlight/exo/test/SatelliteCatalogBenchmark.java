@@ -0,0 +1,136 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import java.text.*;
+import java.util.*;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.orbit.*;
+
+/**
+  * Makes a big catalog of TLEs by shuffling the RAAN and mean anomaly
+  * of the ones in earth-tles.dat, then times parsing it with one thread
+  * and with many, and propagating it with SatelliteCatalog.propagate()
+  * vs. a Conic for each satellite.
+  * Usage: SatelliteCatalogBenchmark [sats] [threads]
+  */
+public class SatelliteCatalogBenchmark
+{
+	static final int NUM_ITERS = 10;
+
+	SpaceGame game;
+	Random rand = new Random(1234);
+	NumberFormat angfmt = new DecimalFormat("000.0000", new DecimalFormatSymbols(Locale.US));
+
+	String[] names, tle1, tle2;
+
+	// replaces columns [start,end) of 'line' with an angle
+	String setAngle(String line, int start, int end, double deg)
+	{
+		String s = angfmt.format(deg);
+		while (s.length() < end-start)
+			s = " " + s;
+		return line.substring(0, start) + s + line.substring(end);
+	}
+
+	void makeTLEs(SatelliteCatalog cat, int n)
+	{
+		names = new String[n];
+		tle1 = new String[n];
+		tle2 = new String[n];
+		for (int i=0; i<n; i++)
+		{
+			int j = i % cat.size();
+			names[i] = cat.getName(j) + " " + i;
+			tle1[i] = cat.getTLE1(j);
+			String l2 = cat.getTLE2(j);
+			l2 = setAngle(l2, 17, 25, rand.nextDouble()*360);
+			l2 = setAngle(l2, 43, 51, rand.nextDouble()*360);
+			tle2[i] = l2;
+		}
+	}
+
+	SatelliteCatalog doParse(int nthreads)
+	{
+		SatelliteCatalog cat = new SatelliteCatalog((Planet)game.getBody("Earth"));
+		long t1 = System.currentTimeMillis();
+		for (int i=0; i<NUM_ITERS; i++)
+			cat.parse(names, tle1, tle2, nthreads);
+		long t2 = System.currentTimeMillis();
+		System.out.println("  parse, " + nthreads + " threads: " +
+			(t2-t1)/NUM_ITERS + " msec");
+		return cat;
+	}
+
+	void doPropagate(SatelliteCatalog cat)
+	{
+		int n = cat.size();
+		double[] pos = new double[n*3];
+		double[] vel = new double[n*3];
+		long t = game.time();
+		long t1 = System.currentTimeMillis();
+		for (int i=0; i<NUM_ITERS; i++)
+		{
+			t += Constants.TICKS_PER_SEC*60;
+			cat.propagate(t, pos, vel);
+		}
+		long t2 = System.currentTimeMillis();
+		System.out.println("  propagate catalog: " + (t2-t1)/NUM_ITERS + " msec");
+
+		Conic[] conics = new Conic[n];
+		for (int j=0; j<n; j++)
+			conics[j] = cat.getConic(j);
+		t = game.time();
+		t1 = System.currentTimeMillis();
+		for (int i=0; i<NUM_ITERS; i++)
+		{
+			t += Constants.TICKS_PER_SEC*60;
+			for (int j=0; j<n; j++)
+				conics[j].getStateVectorAtTime(t*(1d/Constants.TICKS_PER_SEC));
+		}
+		t2 = System.currentTimeMillis();
+		System.out.println("  propagate conics: " + (t2-t1)/NUM_ITERS + " msec");
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		int nsats = 20000;
+		int nthreads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 0)
+			nsats = Integer.parseInt(args[0]);
+		if (args.length > 1)
+			nthreads = Integer.parseInt(args[1]);
+
+		SatelliteCatalogBenchmark scb = new SatelliteCatalogBenchmark();
+		scb.game = new SpaceGame();
+		scb.game.start();
+		SatelliteCatalog cat = scb.game.loadSatelliteCatalog("orbits/earth-tles.dat", "Earth");
+		scb.makeTLEs(cat, nsats);
+		System.out.println(nsats + " satellites");
+		// fluff it
+		scb.doParse(1);
+		scb.doParse(1);
+		scb.doParse(nthreads);
+		cat = scb.doParse(nthreads);
+		scb.doPropagate(cat);
+		scb.doPropagate(cat);
+	}
+}
@@ -0,0 +1,91 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import com.fasterlight.exo.game.SpaceGame;
+import com.fasterlight.exo.seq.*;
+import com.fasterlight.exo.strategy.Mission;
+
+/**
+  * Times starting the Apollo 11 launch mission (which loads
+  * init/SolarSystem.seq, the vehicle init programs and the mission
+  * sequence), with and without the SequenceCache.
+  * Also times loading just the sequences.
+  * Usage: SequenceCacheBenchmark [iterations]
+  */
+public class SequenceCacheBenchmark
+{
+	static final String[] PATHS = {
+		"init/SolarSystem.seq",
+		"programs/csm_init.seq",
+		"programs/lm_activate.seq",
+		"missions/Apollo Missions/Apollo 11 Launch.seq"
+	};
+
+	int iters = 10;
+
+	long startMission()
+	{
+		long t1 = System.currentTimeMillis();
+		SpaceGame game = new SpaceGame();
+		Mission m = Mission.getMission("Apollo Missions", "Apollo 11 Launch");
+		m.prepare(game);
+		return System.currentTimeMillis() - t1;
+	}
+
+	long loadSequences()
+	{
+		SpaceGame game = new SpaceGame();
+		long t1 = System.currentTimeMillis();
+		for (int i=0; i<PATHS.length; i++)
+			SequencerParser.loadSequence(game, PATHS[i]);
+		return System.currentTimeMillis() - t1;
+	}
+
+	void doTest(boolean cache)
+	{
+		SequenceCache.setEnabled(cache);
+		SequenceCache.clear();
+		long mission = 0;
+		long seqs = 0;
+		for (int i=0; i<iters; i++)
+		{
+			mission += startMission();
+			seqs += loadSequences();
+		}
+		System.out.println((cache ? "  cached:" : "  parsed:") +
+			" mission start " + (mission/iters) + " ms," +
+			" sequences " + (seqs/iters) + " ms" +
+			(cache ? " (" + SequenceCache.getHits() + " hits, " +
+			SequenceCache.getMisses() + " misses)" : ""));
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		SequenceCacheBenchmark scb = new SequenceCacheBenchmark();
+		if (args.length > 0)
+			scb.iters = Integer.parseInt(args[0]);
+		// fluff it
+		scb.doTest(false);
+		scb.doTest(true);
+		scb.doTest(false);
+		scb.doTest(true);
+	}
+}
@@ -0,0 +1,108 @@
+/********************************************************************
+    Copyright (c) 2000-2008 Steven E. Hugg.
+
+    This file is part of Exoflight.
+
+    Exoflight is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    Exoflight is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with Exoflight.  If not, see <http://www.gnu.org/licenses/>.
+*********************************************************************/
+package com.fasterlight.exo.test;
+
+import java.io.ByteArrayOutputStream;
+
+import com.fasterlight.exo.game.*;
+import com.fasterlight.exo.orbit.Constants;
+import com.fasterlight.exo.seq.Sequencer;
+import com.fasterlight.exo.strategy.Mission;
+
+/**
+  * Flies the Apollo 11 launch with and without a TelemetryRecorder
+  * (streaming to memory), and prints how long each run took,
+  * and how long the samples themselves take.
+  * Usage: TelemetryRecorderBenchmark [seconds]
+  */
+public class TelemetryRecorderBenchmark
+{
+	static final long TPS = Constants.TICKS_PER_SEC;
+
+	static final String[] CHANNELS = {
+		"ship.telemetry.alt", "ship.telemetry.velocity", "ship.telemetry.vertvel",
+		"ship.telemetry.gaccel", "ship.telemetry.mach", "ship.telemetry.dynpres",
+		"ship.telemetry.apoapsis", "ship.telemetry.periapsis"
+	};
+
+	TelemetryRecorder rec;
+
+	// flies 'secs' of the Apollo 11 launch, with or without a recorder,
+	// and returns how long it took
+	long flyApollo(long secs, boolean record)
+	throws Exception
+	{
+		SpaceGame game = new SpaceGame();
+		Mission m = Mission.getMission("Apollo Missions", "Apollo 11 Launch");
+		if (m == null)
+			throw new RuntimeException("Apollo 11 Launch not found");
+		m.prepare(game);
+		Sequencer seq = m.getSequencer();
+		seq.start();
+		rec = null;
+		if (record)
+		{
+			rec = new TelemetryRecorder(game, seq, CHANNELS, 10, (int)(secs*10+10));
+			rec.startStreaming(new ByteArrayOutputStream(), false);
+			rec.start();
+		}
+		long tend = game.time() + secs*TPS;
+		long msec = System.currentTimeMillis();
+		while (game.time() < tend)
+		{
+			game.update(TPS, 5000);
+		}
+		msec = System.currentTimeMillis() - msec;
+		if (rec != null)
+		{
+			rec.stop();
+			rec.stopStreaming();
+		}
+		return msec;
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		long secs = 2*60*60;
+		if (args.length > 0)
+			secs = Long.parseLong(args[0]);
+
+		TelemetryRecorderBenchmark trb = new TelemetryRecorderBenchmark();
+		// fluff it
+		trb.flyApollo(120, false);
+		long plain = trb.flyApollo(secs, false);
+		long recorded = trb.flyApollo(secs, true);
+		TelemetryRecorder rec = trb.rec;
+		int alt = rec.getChannelIndex("ship.telemetry.alt");
+		double[] minmax = new double[2];
+		rec.getRange(alt, Long.MIN_VALUE, Long.MAX_VALUE, minmax);
+		System.out.println("Apollo " + secs + " s: " + plain + " ms plain, " +
+			recorded + " ms recorded");
+		System.out.println("  " + rec.getTotalSamples() + " samples, " +
+			rec.getDroppedSamples() + " dropped from stream, max alt " + minmax[1]);
+
+		// the samples themselves
+		long msec = System.currentTimeMillis();
+		for (int i=0; i<secs*10; i++)
+			rec.sample(rec.getNewestTime());
+		msec = System.currentTimeMillis() - msec;
+		System.out.println("  " + (secs*10) + " samples took " + msec + " ms");
+	}
+}
@@ -74,6 +74,56 @@ System.out.println();
 		}
   	}
 
+  	/**
+  	  * Sweeps angle of attack and Mach, and compares the
+  	  * structure's AeroTable with the direct computation.
+  	  */
+  	public void compareTable()
+  	throws Exception
+  	{
+  		game = new SpaceGame();
+  		agency = game.getAgency();
+
+  		vehicle = Vehicle.getVehicle(vehiclename);
+  		if (vehicle == null)
+  			throw new Exception("Vehicle " + vehiclename + " not found!");
+
+  		struct = vehicle.toStructure(agency);
+		AeroTable table = struct.getAeroTable();
+		if (!table.isCacheable())
+		{
+			System.out.println(struct + " isn't cached");
+			return;
+		}
+		long time = game.time();
+		table.getForces(airvel, mach, time);
+		float[] machs = { 0.5f, 0.9f, 1.1f, 2, 5, 10 };
+		for (int j=0; j<machs.length; j++)
+		{
+			double maxferr = 0, maxbcerr = 0;
+			for (int aa=0; aa<=180; aa++)
+			{
+				double a = Math.toRadians(aa);
+				Vector3f vel = new Vector3f(0, (float)-Math.sin(a), (float)Math.cos(a));
+				AeroForces af1 = struct.computeDragCoeff(vel, machs[j], time);
+				AeroForces af2 = table.getForces(vel, machs[j], time);
+				Vector3d df = new Vector3d(af1.pf.f);
+				df.sub(af2.pf.f);
+				double fl = af1.pf.f.length();
+				if (fl > 0)
+					maxferr = Math.max(maxferr, df.length()/fl);
+				if (af1.BC > 0)
+					maxbcerr = Math.max(maxbcerr, Math.abs(af1.BC-af2.BC)/af1.BC);
+				if (debug)
+					System.out.println(aa + "\t" + af1.BC + "\t" + af2.BC + "\t" + af1.pf.f + "\t" + af2.pf.f);
+			}
+			System.out.println("Mach " + machs[j] + ": max force error " + maxferr +
+				", max BC error " + maxbcerr);
+		}
+		System.out.println(table.getEvaluationCount() + " evaluations, " +
+			table.getLookupCount() + " lookups");
+  	}
+
   	boolean debug = false;
 
 
@@ -81,11 +131,14 @@ System.out.println();
    throws Exception
    {
    	WindTunnelTest os = new WindTunnelTest();
+   	boolean compare = false;
    	for (int i=0; i<args.length; i++)
    	{
    		String s = args[i];
 	   	if (args[i].equals("-d"))
    			os.debug = true;
+   		else if (args[i].equals("-a"))
+   			compare = true;
    		else if (args[i].equals("-v"))
    		{
    			s = args[++i];
@@ -93,6 +146,9 @@ System.out.println();
    			os.vehiclename = s;
    		}
    	}
-   	os.doTest();
+   	if (compare)
+   		os.compareTable();
+   	else
+   		os.doTest();
    }
 }